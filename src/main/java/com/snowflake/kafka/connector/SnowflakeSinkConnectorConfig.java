@@ -179,6 +179,51 @@ public class SnowflakeSinkConnectorConfig {
           + " format is deprecated and V1 will be used always, disabling this config could have"
           + " ramifications. Please consult Snowflake support before setting this to false.";
 
+  public static final String SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS =
+      "snowflake.streaming.offset.token.max.staleness.ms";
+  public static final String SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DISPLAY =
+      "Maximum staleness of committed offset tokens in milliseconds";
+  public static final long SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DEFAULT = 10_000L;
+  public static final String SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DOC =
+      "Committed offset tokens of all channels of a task are refreshed in the background and"
+          + " preCommit uses the refreshed value when it is not older than this many milliseconds,"
+          + " otherwise the offset token is fetched from Snowflake. 0 disables the background"
+          + " refresh and always fetches the offset token in preCommit. Only used with Streaming"
+          + " Snowpipe.";
+
+  public static final String SNOWPIPE_STREAMING_INSERT_PARALLELISM =
+      "snowflake.streaming.insert.parallelism";
+  public static final String SNOWPIPE_STREAMING_INSERT_PARALLELISM_DISPLAY =
+      "Number of threads inserting rows into streaming channels";
+  public static final int SNOWPIPE_STREAMING_INSERT_PARALLELISM_DEFAULT = 1;
+  public static final String SNOWPIPE_STREAMING_INSERT_PARALLELISM_DOC =
+      "With 1, records are converted and inserted into their channels on the task thread, one"
+          + " partition after the other. With more, every put hands the records of each partition"
+          + " to a pool of that many threads shared by all channels of the task, rows of one"
+          + " channel are still inserted in order by one thread at a time. Only used with"
+          + " Streaming Snowpipe.";
+
+  public static final String SNOWFLAKE_JDBC_SESSION_POOL_SIZE = "snowflake.jdbc.session.pool.size";
+  public static final String SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DISPLAY =
+      "Maximum number of JDBC sessions of a task";
+  public static final int SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DEFAULT = 2;
+  public static final String SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DOC =
+      "Metadata and DDL statements of a task, e.g. table checks, stage listing and file removal,"
+          + " run on a pool of up to this many JDBC sessions so that a slow statement does not"
+          + " block the others. Sessions beyond the first one are only opened when all open"
+          + " sessions are in use. With 1, all statements of the task share one session.";
+
+  public static final String SNOWFLAKE_METADATA_CACHE_TTL_MS = "snowflake.metadata.cache.ttl.ms";
+  public static final String SNOWFLAKE_METADATA_CACHE_TTL_MS_DISPLAY =
+      "Time to live of table, stage and pipe checks in milliseconds";
+  public static final long SNOWFLAKE_METADATA_CACHE_TTL_MS_DEFAULT = 30_000L;
+  public static final String SNOWFLAKE_METADATA_CACHE_TTL_MS_DOC =
+      "Results of the existence and compatibility checks of tables, stages and pipes are reused"
+          + " for this many milliseconds, so that partitions of the same table opened together"
+          + " only check it once. Results are dropped when the connector changes the object"
+          + " itself, changes made outside of the connector may go unnoticed for that long. 0"
+          + " runs every check.";
+
   // MDC logging header
   public static final String ENABLE_MDC_LOGGING_CONFIG = "enable.mdc.logging";
   public static final String ENABLE_MDC_LOGGING_DISPLAY = "Enable MDC logging";
@@ -611,7 +656,51 @@ public class SnowflakeSinkConnectorConfig {
             CONNECTOR_CONFIG,
             9,
             ConfigDef.Width.NONE,
-            ENABLE_CHANNEL_OFFSET_TOKEN_MIGRATION_DISPLAY);
+            ENABLE_CHANNEL_OFFSET_TOKEN_MIGRATION_DISPLAY)
+        .define(
+            SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS,
+            Type.LONG,
+            SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DOC,
+            CONNECTOR_CONFIG,
+            10,
+            ConfigDef.Width.NONE,
+            SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DISPLAY)
+        .define(
+            SNOWPIPE_STREAMING_INSERT_PARALLELISM,
+            Type.INT,
+            SNOWPIPE_STREAMING_INSERT_PARALLELISM_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SNOWPIPE_STREAMING_INSERT_PARALLELISM_DOC,
+            CONNECTOR_CONFIG,
+            11,
+            ConfigDef.Width.NONE,
+            SNOWPIPE_STREAMING_INSERT_PARALLELISM_DISPLAY)
+        .define(
+            SNOWFLAKE_JDBC_SESSION_POOL_SIZE,
+            Type.INT,
+            SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DOC,
+            CONNECTOR_CONFIG,
+            12,
+            ConfigDef.Width.NONE,
+            SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DISPLAY)
+        .define(
+            SNOWFLAKE_METADATA_CACHE_TTL_MS,
+            Type.LONG,
+            SNOWFLAKE_METADATA_CACHE_TTL_MS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SNOWFLAKE_METADATA_CACHE_TTL_MS_DOC,
+            CONNECTOR_CONFIG,
+            13,
+            ConfigDef.Width.NONE,
+            SNOWFLAKE_METADATA_CACHE_TTL_MS_DISPLAY);
   }
 
   public static class TopicToTableValidator implements ConfigDef.Validator {
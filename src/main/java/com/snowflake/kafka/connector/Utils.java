@@ -592,6 +592,42 @@ public class Utils {
       }
     }
 
+    if (config.containsKey(SnowflakeSinkConnectorConfig.SNOWFLAKE_JDBC_SESSION_POOL_SIZE)) {
+      String poolSize = config.get(SnowflakeSinkConnectorConfig.SNOWFLAKE_JDBC_SESSION_POOL_SIZE);
+      boolean isValid;
+      try {
+        isValid = Integer.parseInt(poolSize) >= 1;
+      } catch (NumberFormatException exception) {
+        isValid = false;
+      }
+      if (!isValid) {
+        invalidConfigParams.put(
+            SnowflakeSinkConnectorConfig.SNOWFLAKE_JDBC_SESSION_POOL_SIZE,
+            Utils.formatString(
+                "JDBC session pool size must be a positive parsable integer. Given configuration"
+                    + " was: {}",
+                poolSize));
+      }
+    }
+
+    if (config.containsKey(SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS)) {
+      String ttl = config.get(SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS);
+      boolean isValid;
+      try {
+        isValid = Long.parseLong(ttl) >= 0;
+      } catch (NumberFormatException exception) {
+        isValid = false;
+      }
+      if (!isValid) {
+        invalidConfigParams.put(
+            SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS,
+            Utils.formatString(
+                "Metadata cache time to live must be a non negative parsable long. Given"
+                    + " configuration was: {}",
+                ttl));
+      }
+    }
+
     // Check all config values for ingestion method == IngestionMethodConfig.SNOWPIPE_STREAMING
     invalidConfigParams.putAll(StreamingUtils.validateStreamingSnowpipeConfig(config));
 
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of fixed size byte chunks which back {@link ChunkedGzipBuffer}.
+ *
+ * <p>Chunks are acquired while a buffer grows and released once the file it holds has been
+ * uploaded, so that steady state flushing does not allocate. Chunks released while the pool is
+ * full are left to the garbage collector. Chunks can be allocated off heap, in which case buffered
+ * data does not count against the JVM heap at all.
+ */
+class ByteChunkPool {
+  static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  // 256 chunks of 64KB, about 16MB kept around per task
+  static final int DEFAULT_MAX_POOLED_CHUNKS = 256;
+
+  private final int chunkSize;
+  private final int maxPooledChunks;
+  private final boolean direct;
+
+  private final ConcurrentLinkedDeque<ByteBuffer> freeChunks = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger pooledChunks = new AtomicInteger(0);
+
+  /**
+   * @param chunkSize size of every chunk in bytes
+   * @param maxPooledChunks maximum number of free chunks kept in the pool
+   * @param direct true to allocate chunks off heap
+   */
+  ByteChunkPool(int chunkSize, int maxPooledChunks, boolean direct) {
+    this.chunkSize = chunkSize;
+    this.maxPooledChunks = maxPooledChunks;
+    this.direct = direct;
+  }
+
+  /** Heap pool with default chunk size and bound */
+  ByteChunkPool() {
+    this(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED_CHUNKS, false);
+  }
+
+  /** @return an empty chunk, ready to be written */
+  ByteBuffer acquire() {
+    ByteBuffer chunk = freeChunks.pollFirst();
+    if (chunk == null) {
+      return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+    pooledChunks.decrementAndGet();
+    // cast keeps the Java 8 signature of clear() when compiled with a newer JDK
+    ((Buffer) chunk).clear();
+    return chunk;
+  }
+
+  /** @param chunk chunk acquired from this pool which is not referenced anymore */
+  void release(ByteBuffer chunk) {
+    if (chunk.capacity() != chunkSize || chunk.isDirect() != direct) {
+      return;
+    }
+    if (pooledChunks.incrementAndGet() <= maxPooledChunks) {
+      freeChunks.offerFirst(chunk);
+    } else {
+      pooledChunks.decrementAndGet();
+    }
+  }
+
+  /** @return number of free chunks currently kept in the pool */
+  int getPooledChunkCount() {
+    return pooledChunks.get();
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append only buffer which gzip compresses the content of a file while it is written.
+ *
+ * <p>Compressed bytes are kept in fixed size chunks taken from a {@link ByteChunkPool}, the
+ * uncompressed content is never materialized. Once {@link #finish()} is called, {@link
+ * #newInputStream()} reads the chunks in place, every call returns a new stream starting at the
+ * beginning of the file so that uploads can be retried. {@link #release()} gives the chunks back to
+ * the pool, the buffer can not be used afterwards.
+ *
+ * <p>Not thread safe, callers are expected to hold the lock of the owning partition buffer.
+ */
+public class ChunkedGzipBuffer {
+  // size of the deflater output buffer, compressed bytes are copied into chunks from there
+  private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+  private final ByteChunkPool pool;
+  private final List<ByteBuffer> chunks = new ArrayList<>();
+
+  // created lazily, an empty buffer does not hold a native deflater
+  private GZIPOutputStream gzipStream = null;
+
+  private long uncompressedSizeBytes = 0;
+  private long compressedSizeBytes = 0;
+  private boolean finished = false;
+
+  ChunkedGzipBuffer(ByteChunkPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Compress and append a string as UTF-8
+   *
+   * @param data string to append
+   */
+  public void write(String data) {
+    byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+    write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Compress and append bytes
+   *
+   * @param bytes source array
+   * @param offset start offset in the array
+   * @param length number of bytes to append
+   */
+  public void write(byte[] bytes, int offset, int length) {
+    if (finished) {
+      throw new IllegalStateException("Can not write into a finished buffer");
+    }
+    try {
+      if (gzipStream == null) {
+        gzipStream = new GZIPOutputStream(new ChunkOutputStream(), GZIP_BUFFER_SIZE);
+      }
+      gzipStream.write(bytes, offset, length);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5024.getException(e);
+    }
+    uncompressedSizeBytes += length;
+  }
+
+  /** @return stream appending into this buffer, flushing and closing it have no effect */
+  public OutputStream asOutputStream() {
+    return new OutputStream() {
+      @Override
+      public void write(int b) {
+        ChunkedGzipBuffer.this.write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] bytes, int offset, int length) {
+        ChunkedGzipBuffer.this.write(bytes, offset, length);
+      }
+    };
+  }
+
+  /** Flush the deflater and write the gzip trailer, no data can be appended afterwards */
+  public void finish() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    try {
+      if (gzipStream == null) {
+        // a valid gzip file even when nothing was written
+        gzipStream = new GZIPOutputStream(new ChunkOutputStream(), GZIP_BUFFER_SIZE);
+      }
+      // closing also releases the native deflater, the chunk stream itself ignores close
+      gzipStream.close();
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5024.getException(e);
+    }
+  }
+
+  /**
+   * Read the compressed file without copying it. Finishes the buffer if that has not happened
+   * yet.
+   *
+   * @return new stream over the whole gzip file
+   */
+  public InputStream newInputStream() {
+    finish();
+    List<ByteBuffer> readable = new ArrayList<>(chunks.size());
+    for (ByteBuffer chunk : chunks) {
+      ByteBuffer view = chunk.duplicate();
+      // cast keeps the Java 8 signature of flip() when compiled with a newer JDK
+      ((Buffer) view).flip();
+      readable.add(view);
+    }
+    return new ChunkInputStream(readable);
+  }
+
+  /** Give the chunks back to the pool */
+  public void release() {
+    if (!finished) {
+      finish();
+    }
+    chunks.forEach(pool::release);
+    chunks.clear();
+  }
+
+  /** @return number of bytes written into the buffer before compression */
+  public long getUncompressedSizeBytes() {
+    return uncompressedSizeBytes;
+  }
+
+  /**
+   * @return number of compressed bytes held in chunks, data still pending in the deflater is not
+   *     included until the buffer is finished
+   */
+  public long getCompressedSizeBytes() {
+    return compressedSizeBytes;
+  }
+
+  /** Sink of the gzip stream, appends compressed bytes into pooled chunks */
+  private class ChunkOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+      currentChunk().put((byte) b);
+      compressedSizeBytes++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      while (length > 0) {
+        ByteBuffer chunk = currentChunk();
+        int count = Math.min(length, chunk.remaining());
+        chunk.put(bytes, offset, count);
+        offset += count;
+        length -= count;
+        compressedSizeBytes += count;
+      }
+    }
+
+    private ByteBuffer currentChunk() {
+      ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+      if (chunk == null || !chunk.hasRemaining()) {
+        chunk = pool.acquire();
+        chunks.add(chunk);
+      }
+      return chunk;
+    }
+  }
+
+  /** Reads a list of chunks one after another */
+  private static class ChunkInputStream extends InputStream {
+    private final List<ByteBuffer> chunks;
+    private int index = 0;
+
+    private ChunkInputStream(List<ByteBuffer> chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    public int read() {
+      ByteBuffer chunk = nextReadableChunk();
+      return chunk == null ? -1 : chunk.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      ByteBuffer chunk = nextReadableChunk();
+      if (chunk == null) {
+        return -1;
+      }
+      int count = Math.min(length, chunk.remaining());
+      chunk.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      int available = 0;
+      for (int i = index; i < chunks.size(); i++) {
+        available += chunks.get(i).remaining();
+      }
+      return available;
+    }
+
+    private ByteBuffer nextReadableChunk() {
+      while (index < chunks.size()) {
+        ByteBuffer chunk = chunks.get(index);
+        if (chunk.hasRemaining()) {
+          return chunk;
+        }
+        index++;
+      }
+      return null;
+    }
+  }
+}
@@ -1,8 +1,5 @@
 package com.snowflake.kafka.connector.internal;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public class FileNameUtils {
   private static final KCLogger LOGGER = new KCLogger(FileNameUtils.class.getName());
 
@@ -18,28 +15,16 @@ public class FileNameUtils {
    * @return file name
    */
   public static String fileName(String appName, String table, int partition, long start, long end) {
-    return fileName(filePrefix(appName, table, partition), start, end);
+    String fileName = fileName(appName, table, partition, start, end, System.currentTimeMillis());
+    LOGGER.debug("generated file name: {}", fileName);
+    return fileName;
   }
 
   // Used for testing only
   static String fileName(
       String appName, String table, int partition, long start, long end, long time) {
-    return filePrefix(appName, table, partition) + start + "_" + end + "_" + time + ".json.gz";
-  }
-
-  /**
-   * generate file name
-   *
-   * @param prefix prefix
-   * @param start start offset
-   * @param end end offset
-   * @return file name
-   */
-  static String fileName(String prefix, long start, long end) {
-    long time = System.currentTimeMillis();
-    String fileName = prefix + start + "_" + end + "_" + time + ".json.gz";
-    LOGGER.debug("generated file name: {}", fileName);
-    return fileName;
+    return StagedFileName.of(filePrefix(appName, table, partition), partition, start, end, time)
+        .getName();
   }
 
   /**
@@ -85,10 +70,6 @@ public class FileNameUtils {
     return appName + "/" + table + "/" + partition + "/";
   }
 
-  // applicationName/tableName/partitionNumber
-  // /startOffset_endOffset_time_format.json.gz
-  private static Pattern FILE_NAME_PATTERN =
-      Pattern.compile("^[^/]+/[^/]+/(\\d+)/(\\d+)_(\\d+)_(\\d+)\\.json\\.gz$");
   /**
    * verify file name
    *
@@ -96,7 +77,7 @@ public class FileNameUtils {
    * @return true if file name format is correct, false otherwise
    */
   static boolean verifyFileName(String fileName) {
-    return FILE_NAME_PATTERN.matcher(fileName).find();
+    return StagedFileName.tryParse(fileName) != null;
   }
 
   /**
@@ -106,7 +87,7 @@ public class FileNameUtils {
    * @return start offset
    */
   static long fileNameToStartOffset(String fileName) {
-    return Long.parseLong(readFromFileName(fileName, 2));
+    return StagedFileName.parse(fileName).getStartOffset();
   }
 
   /**
@@ -116,7 +97,7 @@ public class FileNameUtils {
    * @return end offset
    */
   static long fileNameToEndOffset(String fileName) {
-    return Long.parseLong(readFromFileName(fileName, 3));
+    return StagedFileName.parse(fileName).getEndOffset();
   }
 
   /**
@@ -126,7 +107,7 @@ public class FileNameUtils {
    * @return ingested time
    */
   static long fileNameToTimeIngested(String fileName) {
-    return Long.parseLong(readFromFileName(fileName, 4));
+    return StagedFileName.parse(fileName).getTimeIngested();
   }
 
   /**
@@ -136,7 +117,7 @@ public class FileNameUtils {
    * @return partition index
    */
   static int fileNameToPartition(String fileName) {
-    return Integer.parseInt(readFromFileName(fileName, 1));
+    return StagedFileName.parse(fileName).getPartition();
   }
 
   /**
@@ -157,13 +138,23 @@ public class FileNameUtils {
    * @return file name without .gz
    */
   static String removePrefixAndGZFromFileName(String name) {
-    if (name == null || name.isEmpty() || name.endsWith("/")) {
-      throw SnowflakeErrors.ERROR_0008.getException("input file name: " + name);
-    }
-
+    name = removePrefixFromFileName(name);
     if (name.endsWith(".gz")) {
       name = name.substring(0, name.length() - 3);
     }
+    return name;
+  }
+
+  /**
+   * remove prefix from file name, keeping .gz. note: for JDBC put of already compressed data only
+   *
+   * @param name file name
+   * @return file name without prefix
+   */
+  static String removePrefixFromFileName(String name) {
+    if (name == null || name.isEmpty() || name.endsWith("/")) {
+      throw SnowflakeErrors.ERROR_0008.getException("input file name: " + name);
+    }
 
     int prefixEndIndex = name.lastIndexOf('/');
     if (prefixEndIndex > -1) {
@@ -190,21 +181,4 @@ public class FileNameUtils {
     }
     return null;
   }
-
-  /**
-   * read a value from file name
-   *
-   * @param fileName file name
-   * @param index value index
-   * @return string value
-   */
-  private static String readFromFileName(String fileName, int index) {
-    Matcher matcher = FILE_NAME_PATTERN.matcher(fileName);
-
-    if (!matcher.find()) {
-      throw SnowflakeErrors.ERROR_0008.getException("input file name: " + fileName);
-    }
-
-    return matcher.group(index);
-  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Files of a pipe which are on stage and whose ingestion was not found loaded or failed yet, i.e.
+ * the files the cleaner keeps checking.
+ *
+ * <p>Files are indexed by name, every status reported by Snowpipe is applied in constant time. A
+ * file name is parsed once, when the file is added, and the parsed name is handed out. Files are
+ * also grouped by the minute they were ingested, so that the age checks of every cleaner run only
+ * go through the oldest files instead of all of them.
+ *
+ * <p>Not thread safe, callers are expected to hold the file list lock of the owning pipe.
+ */
+class InFlightFileRegistry {
+  private static final long BUCKET_SIZE_MS = 60 * 1000L;
+
+  private final Map<String, StagedFileName> files = new HashMap<>();
+
+  // files by the minute they were ingested
+  private final NavigableMap<Long, Set<StagedFileName>> filesByBucket = new TreeMap<>();
+
+  /**
+   * @param fileName name of a file on stage
+   * @return false if the file was already registered
+   */
+  boolean add(String fileName) {
+    return !files.containsKey(fileName) && add(StagedFileName.parse(fileName));
+  }
+
+  /**
+   * @param fileName name of a file on stage
+   * @return false if the file was already registered
+   */
+  boolean add(StagedFileName fileName) {
+    if (files.containsKey(fileName.getName())) {
+      return false;
+    }
+    files.put(fileName.getName(), fileName);
+    filesByBucket
+        .computeIfAbsent(bucketOf(fileName.getTimeIngested()), k -> new HashSet<>())
+        .add(fileName);
+    return true;
+  }
+
+  /** @param fileNames names of files on stage, the ones already registered are ignored */
+  void addAll(Collection<String> fileNames) {
+    fileNames.forEach(this::add);
+  }
+
+  /**
+   * @param fileName file name
+   * @return the removed file, null if the file is not registered
+   */
+  StagedFileName remove(String fileName) {
+    StagedFileName file = files.remove(fileName);
+    if (file != null) {
+      long bucket = bucketOf(file.getTimeIngested());
+      Set<StagedFileName> bucketFiles = filesByBucket.get(bucket);
+      bucketFiles.remove(file);
+      if (bucketFiles.isEmpty()) {
+        filesByBucket.remove(bucket);
+      }
+    }
+    return file;
+  }
+
+  /**
+   * @param time timestamp in milliseconds
+   * @return the removed files which were ingested before the given time
+   */
+  List<StagedFileName> removeIngestedBefore(long time) {
+    List<StagedFileName> removed = new ArrayList<>();
+    Iterator<Set<StagedFileName>> buckets =
+        filesByBucket.headMap(bucketOf(time), true).values().iterator();
+    while (buckets.hasNext()) {
+      Set<StagedFileName> bucketFiles = buckets.next();
+      bucketFiles.removeIf(
+          file -> {
+            if (file.getTimeIngested() < time) {
+              files.remove(file.getName());
+              removed.add(file);
+              return true;
+            }
+            return false;
+          });
+      if (bucketFiles.isEmpty()) {
+        buckets.remove();
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * @param time timestamp in milliseconds
+   * @return true if a file was ingested before the given time
+   */
+  boolean hasIngestedBefore(long time) {
+    for (Set<StagedFileName> bucketFiles : filesByBucket.headMap(bucketOf(time), true).values()) {
+      for (StagedFileName file : bucketFiles) {
+        if (file.getTimeIngested() < time) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /** @return names of all registered files */
+  List<String> getFileNames() {
+    return new ArrayList<>(files.keySet());
+  }
+
+  int size() {
+    return files.size();
+  }
+
+  private static long bucketOf(long time) {
+    return Math.floorDiv(time, BUCKET_SIZE_MS);
+  }
+}
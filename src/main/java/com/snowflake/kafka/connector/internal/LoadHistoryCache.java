@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.internal.InternalUtils.IngestedFileStatus;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Load history of one pipe over a sliding time window.
+ *
+ * <p>Statuses are indexed by the end of the time range they were fetched for, so that once that
+ * range falls out of the window its files are evicted together. The cache remembers up to which
+ * time the history has been fetched, only the newer slice has to be requested from Snowpipe. The
+ * last {@code overlapMs} of that history are requested again because loads committed shortly
+ * before a fetch may only show up in load history after it.
+ *
+ * <p>Not thread safe, it is only used by the cleaner of the pipe.
+ */
+class LoadHistoryCache {
+  private final long overlapMs;
+
+  // latest status and fetch range end of every file in the window
+  private final Map<String, CachedStatus> statusByFile = new HashMap<>();
+  // files by the end of the range they were fetched for
+  private final TreeMap<Long, List<String>> filesByRangeEnd = new TreeMap<>();
+
+  // exclusive end of the history fetched so far, 0 if nothing was fetched
+  private long coveredUntil = 0;
+
+  /** @param overlapMs length of already fetched history which is requested again */
+  LoadHistoryCache(long overlapMs) {
+    this.overlapMs = overlapMs;
+  }
+
+  /**
+   * @param windowStart start of the window which should be covered
+   * @return start of the time range to fetch so that the window is covered up to now
+   */
+  long getFetchStart(long windowStart) {
+    if (coveredUntil <= windowStart) {
+      return windowStart;
+    }
+    return Math.max(windowStart, coveredUntil - overlapMs);
+  }
+
+  /**
+   * Add the statuses fetched for a time range, a status already cached is replaced
+   *
+   * @param statuses file statuses returned by load history
+   * @param rangeEnd exclusive end of the fetched time range
+   */
+  void add(Map<String, IngestedFileStatus> statuses, long rangeEnd) {
+    if (!statuses.isEmpty()) {
+      List<String> files =
+          filesByRangeEnd.computeIfAbsent(rangeEnd, k -> new ArrayList<>(statuses.size()));
+      statuses.forEach(
+          (name, status) -> {
+            statusByFile.put(name, new CachedStatus(status, rangeEnd));
+            files.add(name);
+          });
+    }
+    coveredUntil = Math.max(coveredUntil, rangeEnd);
+  }
+
+  /**
+   * Drop every status fetched for a time range ending before the window
+   *
+   * @param windowStart start of the window
+   */
+  void evictBefore(long windowStart) {
+    Iterator<Map.Entry<Long, List<String>>> iterator =
+        filesByRangeEnd.headMap(windowStart, true).entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, List<String>> entry = iterator.next();
+      for (String name : entry.getValue()) {
+        CachedStatus cached = statusByFile.get(name);
+        // a file fetched again later is kept with its newer range
+        if (cached != null && cached.rangeEnd == entry.getKey()) {
+          statusByFile.remove(name);
+        }
+      }
+      iterator.remove();
+    }
+  }
+
+  /**
+   * @param fileName file name
+   * @return status of the file, null if it is not in the cached history
+   */
+  IngestedFileStatus get(String fileName) {
+    CachedStatus cached = statusByFile.get(fileName);
+    return cached == null ? null : cached.status;
+  }
+
+  /** @return number of files in the cached history */
+  int size() {
+    return statusByFile.size();
+  }
+
+  private static class CachedStatus {
+    private final IngestedFileStatus status;
+    private final long rangeEnd;
+
+    private CachedStatus(IngestedFileStatus status, long rangeEnd) {
+      this.status = status;
+      this.rangeEnd = rangeEnd;
+    }
+  }
+}
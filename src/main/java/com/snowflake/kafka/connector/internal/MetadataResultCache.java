@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Results of the existence and compatibility checks of tables, stages and pipes, kept for a short
+ * time so that the partitions of one table opened during the same rebalance check it once instead
+ * of once per partition.
+ *
+ * <p>Results are grouped by the name of the object they are about. The connection service drops
+ * all results of an object whenever it creates, alters or drops that object, a check which was
+ * running meanwhile does not store its result then.
+ */
+class MetadataResultCache {
+  private static class Result {
+    private final boolean value;
+    private final long expiryTimeMs;
+
+    private Result(boolean value, long expiryTimeMs) {
+      this.value = value;
+      this.expiryTimeMs = expiryTimeMs;
+    }
+  }
+
+  private final long ttlMs;
+
+  // object name -> check -> result
+  private final Map<String, Map<String, Result>> results = new ConcurrentHashMap<>();
+
+  /** @param ttlMs how long a result is kept in milliseconds, 0 disables the cache */
+  MetadataResultCache(long ttlMs) {
+    this.ttlMs = ttlMs;
+  }
+
+  /**
+   * @param objectName name of the checked object
+   * @param check name of the check, including the other objects it depends on
+   * @param loader runs the check
+   * @return the cached result of the check, or the result of the loader if there is none
+   */
+  boolean get(String objectName, String check, BooleanSupplier loader) {
+    if (ttlMs <= 0) {
+      return loader.getAsBoolean();
+    }
+    Map<String, Result> objectResults =
+        results.computeIfAbsent(objectName, k -> new ConcurrentHashMap<>());
+    Result result = objectResults.get(check);
+    long now = System.currentTimeMillis();
+    if (result != null && now < result.expiryTimeMs) {
+      return result.value;
+    }
+    boolean value = loader.getAsBoolean();
+    // a map dropped by invalidate meanwhile is not reachable anymore, the result is discarded
+    objectResults.put(check, new Result(value, now + ttlMs));
+    return value;
+  }
+
+  /** @param objectName name of an object which was changed */
+  void invalidate(String objectName) {
+    results.remove(objectName);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Moves files concurrently on a bounded pool of daemon threads, which only exist while files are
+ * being moved. Moves of all callers share the pool.
+ *
+ * <p>A failed move does not stop the others. The files which were moved are handed to the caller
+ * once every move completed, so that they are removed from their stage, then the first failure is
+ * rethrown.
+ */
+class ParallelFileMover {
+  private final ThreadPoolExecutor executor;
+  private final SnowflakeTelemetryService telemetry;
+
+  /**
+   * @param threadCount maximum number of files moved at the same time
+   * @param threadNamePrefix name prefix of the threads
+   * @param telemetry telemetry client, may be null
+   */
+  ParallelFileMover(int threadCount, String threadNamePrefix, SnowflakeTelemetryService telemetry) {
+    AtomicInteger count = new AtomicInteger(0);
+    this.executor =
+        new ThreadPoolExecutor(
+            threadCount,
+            threadCount,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, threadNamePrefix + count.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.executor.allowCoreThreadTimeOut(true);
+    this.telemetry = telemetry;
+  }
+
+  /**
+   * Move the given files concurrently
+   *
+   * @param files names of the files
+   * @param move moves one file
+   * @param onMoved receives the names of the files which were moved, in the given order, even if
+   *     some moves failed
+   */
+  void moveAll(List<String> files, Consumer<String> move, Consumer<List<String>> onMoved) {
+    List<Future<?>> moves = new ArrayList<>(files.size());
+    for (String name : files) {
+      moves.add(executor.submit(() -> move.accept(name)));
+    }
+    List<String> movedFiles = new ArrayList<>(files.size());
+    RuntimeException failure = null;
+    for (int i = 0; i < files.size(); i++) {
+      try {
+        moves.get(i).get();
+        movedFiles.add(files.get(i));
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure =
+              e.getCause() instanceof RuntimeException
+                  ? (RuntimeException) e.getCause()
+                  : SnowflakeErrors.ERROR_2003.getException(e, telemetry);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        moves.forEach(pending -> pending.cancel(true));
+        throw SnowflakeErrors.ERROR_2003.getException(e, telemetry);
+      }
+    }
+
+    onMoved.accept(movedFiles);
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Stop the threads, moves already submitted complete */
+  void shutdown() {
+    executor.shutdown();
+  }
+}
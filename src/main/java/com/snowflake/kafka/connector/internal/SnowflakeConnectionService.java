@@ -5,6 +5,7 @@ import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryServic
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 public interface SnowflakeConnectionService {
   /**
@@ -118,6 +119,14 @@ public interface SnowflakeConnectionService {
    */
   void alterNonNullableColumns(String tableName, List<String> columnNames);
 
+  /**
+   * Describe the columns of a table
+   *
+   * @param tableName the name of the table
+   * @return map from the name of every column, as stored in Snowflake, to whether it is nullable
+   */
+  Map<String, Boolean> describeTableColumns(String tableName);
+
   /**
    * Examine all file names matches our pattern
    *
@@ -136,6 +145,19 @@ public interface SnowflakeConnectionService {
    */
   boolean isPipeCompatible(String tableName, String stageName, String pipeName);
 
+  /**
+   * check the snowpipe definitions of all pipes whose name starts with given prefix, with a single
+   * statement
+   *
+   * @param tableName table name
+   * @param stageName stage name
+   * @param pipeNamePrefix prefix of the pipe names
+   * @return for every existing pipe, keyed by its name in upper case, true if its definition is
+   *     correct
+   */
+  Map<String, Boolean> getPipeCompatibility(
+      String tableName, String stageName, String pipeNamePrefix);
+
   /**
    * check if a given database exists
    *
@@ -180,6 +202,15 @@ public interface SnowflakeConnectionService {
    */
   void purgeStage(String stageName, List<String> files);
 
+  /**
+   * purge files from given stage, files sharing a prefix are removed in batches
+   *
+   * @param stageName stage name
+   * @param files list of file names
+   * @param batchLatencyMs receives the latency in milliseconds of every batch removed
+   */
+  void purgeStage(String stageName, List<String> files, LongConsumer batchLatencyMs);
+
   void moveToTableStage(String tableName, String stageName, List<String> files);
 
   /**
@@ -231,6 +262,17 @@ public interface SnowflakeConnectionService {
    */
   void putWithCache(final String stageName, final String fileName, final String content);
 
+  /**
+   * put a gzip compressed file to stage. Cache credential for AWS, Azure and GCS storage. The
+   * content is uploaded as is, without being compressed again.
+   *
+   * @param stageName stage name
+   * @param fileName file name, check {@link FileNameUtils} to find out how fileName is determined
+   * @param content finished gzip compressed file content
+   */
+  void putWithCache(
+      final String stageName, final String fileName, final ChunkedGzipBuffer content);
+
   /**
    * put a file to table stage
    *
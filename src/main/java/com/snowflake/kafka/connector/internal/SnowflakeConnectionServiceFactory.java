@@ -1,8 +1,13 @@
 package com.snowflake.kafka.connector.internal;
 
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.PROVIDER_CONFIG;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_JDBC_SESSION_POOL_SIZE;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DEFAULT;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS_DEFAULT;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
 import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.internal.streaming.IngestionMethodConfig;
@@ -29,6 +34,12 @@ public class SnowflakeConnectionServiceFactory {
     /** Underlying implementation - Check Enum {@link IngestionMethodConfig} */
     private IngestionMethodConfig ingestionMethodConfig;
 
+    // maximum number of JDBC sessions running the statements of the service
+    private int sessionPoolSize = SNOWFLAKE_JDBC_SESSION_POOL_SIZE_DEFAULT;
+
+    // how long results of existence and compatibility checks are reused
+    private long metadataCacheTtlMs = SNOWFLAKE_METADATA_CACHE_TTL_MS_DEFAULT;
+
     @VisibleForTesting
     public SnowflakeConnectionServiceBuilder setProperties(Properties prop) {
       this.prop = prop;
@@ -72,6 +83,12 @@ public class SnowflakeConnectionServiceFactory {
       this.connectorName = conf.get(Utils.NAME);
       this.ingestionMethodConfig = IngestionMethodConfig.determineIngestionMethod(conf);
       this.prop = InternalUtils.createProperties(conf, this.url, ingestionMethodConfig);
+      if (!Strings.isNullOrEmpty(conf.get(SNOWFLAKE_JDBC_SESSION_POOL_SIZE))) {
+        this.sessionPoolSize = Integer.parseInt(conf.get(SNOWFLAKE_JDBC_SESSION_POOL_SIZE));
+      }
+      if (!Strings.isNullOrEmpty(conf.get(SNOWFLAKE_METADATA_CACHE_TTL_MS))) {
+        this.metadataCacheTtlMs = Long.parseLong(conf.get(SNOWFLAKE_METADATA_CACHE_TTL_MS));
+      }
       return this;
     }
 
@@ -80,7 +97,15 @@ public class SnowflakeConnectionServiceFactory {
       InternalUtils.assertNotEmpty("url", url);
       InternalUtils.assertNotEmpty("connectorName", connectorName);
       return new SnowflakeConnectionServiceV1(
-          prop, url, connectorName, taskID, proxyProperties, kafkaProvider, ingestionMethodConfig);
+          prop,
+          url,
+          connectorName,
+          taskID,
+          proxyProperties,
+          kafkaProvider,
+          ingestionMethodConfig,
+          sessionPoolSize,
+          metadataCacheTtlMs);
     }
   }
 }
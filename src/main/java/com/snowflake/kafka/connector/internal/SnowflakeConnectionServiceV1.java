@@ -14,6 +14,7 @@ import com.snowflake.kafka.connector.internal.streaming.SchematizationUtils;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryServiceFactory;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
@@ -21,12 +22,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 import net.snowflake.client.jdbc.SnowflakeConnectionV1;
 import net.snowflake.client.jdbc.SnowflakeDriver;
 import net.snowflake.client.jdbc.cloud.storage.StageInfo;
@@ -40,6 +45,10 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   private final KCLogger LOGGER = new KCLogger(SnowflakeConnectionServiceV1.class.getName());
 
   private final Connection conn;
+  // sessions running the statements, the first one is conn
+  private final SnowflakeSessionPool sessions;
+  // results of the existence and compatibility checks
+  private final MetadataResultCache metadataResults;
   private final SnowflakeTelemetryService telemetry;
   private final String connectorName;
   private final String taskID;
@@ -63,6 +72,19 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+  // upper bound of file names listed in one REMOVE pattern, keeps the statement text small
+  static final int MAX_FILES_PER_REMOVE = 200;
+
+  // number of files moved to table stage concurrently
+  private static final int MOVE_THREAD_COUNT = 4;
+
+  // moves failed files to table stage, threads only exist while files are being moved
+  private final ParallelFileMover fileMover;
+
+  // sessions of the file moves, opened on the first move and apart from the statement sessions so
+  // that long file transfers do not hold up the metadata statements of every partition
+  private final SnowflakeSessionPool moveSessions;
+
   SnowflakeConnectionServiceV1(
       Properties prop,
       SnowflakeURL url,
@@ -70,7 +92,9 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       String taskID,
       Properties proxyProperties,
       String kafkaProvider,
-      IngestionMethodConfig ingestionMethodConfig) {
+      IngestionMethodConfig ingestionMethodConfig,
+      int sessionPoolSize,
+      long metadataCacheTtlMs) {
     this.connectorName = connectorName;
     this.taskID = taskID;
     this.url = url;
@@ -78,19 +102,24 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     this.stageType = null;
     this.proxyProperties = proxyProperties;
     this.kafkaProvider = kafkaProvider;
+    this.metadataResults = new MetadataResultCache(metadataCacheTtlMs);
+    Properties connectionProperties;
+    if (proxyProperties != null && !proxyProperties.isEmpty()) {
+      connectionProperties = mergeProxyAndConnectionProperties(this.prop, this.proxyProperties);
+      LOGGER.debug("Proxy properties are set, passing in JDBC while creating the connection");
+    } else {
+      connectionProperties = prop;
+      LOGGER.info("Establishing a JDBC connection with url:{}", url.getJdbcUrl());
+    }
     try {
-      if (proxyProperties != null && !proxyProperties.isEmpty()) {
-        Properties combinedProperties =
-            mergeProxyAndConnectionProperties(this.prop, this.proxyProperties);
-        LOGGER.debug("Proxy properties are set, passing in JDBC while creating the connection");
-        this.conn = new SnowflakeDriver().connect(url.getJdbcUrl(), combinedProperties);
-      } else {
-        LOGGER.info("Establishing a JDBC connection with url:{}", url.getJdbcUrl());
-        this.conn = new SnowflakeDriver().connect(url.getJdbcUrl(), prop);
-      }
+      this.conn = new SnowflakeDriver().connect(url.getJdbcUrl(), connectionProperties);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_1001.getException(e);
     }
+    SnowflakeSessionPool.SessionFactory sessionFactory =
+        () -> new SnowflakeDriver().connect(url.getJdbcUrl(), connectionProperties);
+    this.sessions = new SnowflakeSessionPool(this.conn, sessionFactory, sessionPoolSize);
+    this.moveSessions = new SnowflakeSessionPool(null, sessionFactory, MOVE_THREAD_COUNT);
     long credentialExpireTimeMillis = CREDENTIAL_EXPIRY_TIMEOUT_MILLIS;
     this.internalStage =
         new SnowflakeInternalStage(
@@ -100,6 +129,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
             .setAppName(this.connectorName)
             .setTaskID(this.taskID)
             .build();
+    this.fileMover = new ParallelFileMover(MOVE_THREAD_COUNT, "table-stage-move-", telemetry);
     LOGGER.info("initialized the snowflake connection");
   }
 
@@ -129,13 +159,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
               + "variant, record_content variant)";
     }
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, tableName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2007.getException(e);
     }
+    metadataResults.invalidate(tableName);
 
     LOGGER.info("create table {}", tableName);
   }
@@ -154,21 +182,17 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
             + " automatic table creation from Snowflake Kafka Connector')";
 
     try {
-      PreparedStatement stmt = conn.prepareStatement(createTableQuery);
-      stmt.setString(1, tableName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(createTableQuery, tableName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2007.getException(e);
     }
+    metadataResults.invalidate(tableName);
 
     // Enable schema evolution by default if the table is created by the connector
     String enableSchemaEvolutionQuery =
         "alter table identifier(?) set ENABLE_SCHEMA_EVOLUTION = true";
     try {
-      PreparedStatement stmt = conn.prepareStatement(enableSchemaEvolutionQuery);
-      stmt.setString(1, tableName);
-      stmt.executeQuery();
+      executeWithIdentifier(enableSchemaEvolutionQuery, tableName);
     } catch (SQLException e) {
       // Skip the error given that schema evolution is still under PrPr
       LOGGER.warn(
@@ -197,13 +221,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
     try {
       query += "as " + pipeDefinition(tableName, stageName);
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, pipeName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, pipeName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2009.getException(e);
     }
+    metadataResults.invalidate(pipeName);
     LOGGER.info("create pipe: {}", pipeName);
   }
 
@@ -224,13 +246,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       query = "create stage if not exists identifier(?)";
     }
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, stageName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, stageName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2008.getException(e);
     }
+    metadataResults.invalidate(stageName);
     LOGGER.info("create stage {}", stageName);
   }
 
@@ -243,136 +263,110 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
   public boolean tableExist(final String tableName) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
-    String query = "desc table identifier(?)";
-    PreparedStatement stmt = null;
-    boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      stmt.execute();
-      exist = true;
-    } catch (Exception e) {
-      LOGGER.debug("table {} doesn't exist", tableName);
-      exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
-    }
-    return exist;
+    return metadataResults.get(
+        tableName,
+        "table exist",
+        () -> {
+          String query = "desc table identifier(?)";
+          boolean exist;
+          try {
+            executeWithIdentifier(query, tableName);
+            exist = true;
+          } catch (Exception e) {
+            LOGGER.debug("table {} doesn't exist", tableName);
+            exist = false;
+          }
+          return exist;
+        });
   }
 
   @Override
   public boolean stageExist(final String stageName) {
     checkConnection();
     InternalUtils.assertNotEmpty("stageName", stageName);
-    String query = "desc stage identifier(?)";
-    PreparedStatement stmt = null;
-    boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, stageName);
-      stmt.execute();
-      exist = true;
-    } catch (SQLException e) {
-      LOGGER.debug("stage {} doesn't exists", stageName);
-      exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
-    }
-    return exist;
+    return metadataResults.get(
+        stageName,
+        "stage exist",
+        () -> {
+          String query = "desc stage identifier(?)";
+          boolean exist;
+          try {
+            executeWithIdentifier(query, stageName);
+            exist = true;
+          } catch (SQLException e) {
+            LOGGER.debug("stage {} doesn't exists", stageName);
+            exist = false;
+          }
+          return exist;
+        });
   }
 
   @Override
   public boolean pipeExist(final String pipeName) {
     checkConnection();
     InternalUtils.assertNotEmpty("pipeName", pipeName);
-    String query = "desc pipe identifier(?)";
-    PreparedStatement stmt = null;
-    boolean exist;
-    try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, pipeName);
-      stmt.execute();
-      exist = true;
-    } catch (SQLException e) {
-      LOGGER.debug("pipe {} doesn't exist", pipeName);
-      exist = false;
-    } finally {
-      if (stmt != null) {
-        try {
-          stmt.close();
-        } catch (SQLException e) {
-          e.printStackTrace();
-        }
-      }
-    }
-    return exist;
+    return metadataResults.get(
+        pipeName,
+        "pipe exist",
+        () -> {
+          String query = "desc pipe identifier(?)";
+          boolean exist;
+          try {
+            executeWithIdentifier(query, pipeName);
+            exist = true;
+          } catch (SQLException e) {
+            LOGGER.debug("pipe {} doesn't exist", pipeName);
+            exist = false;
+          }
+          return exist;
+        });
   }
 
   @Override
   public boolean isTableCompatible(final String tableName) {
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
+    return metadataResults.get(
+        tableName, "table compatible", () -> checkTableCompatible(tableName));
+  }
+
+  private boolean checkTableCompatible(String tableName) {
     String query = "desc table identifier(?)";
-    PreparedStatement stmt = null;
-    ResultSet result = null;
     boolean compatible;
     try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      result = stmt.executeQuery();
-      boolean hasMeta = false;
-      boolean hasContent = false;
-      boolean allNullable = true;
-      while (result.next()) {
-        switch (result.getString(1)) {
-          case TABLE_COLUMN_METADATA:
-            if (result.getString(2).equals("VARIANT")) {
-              hasMeta = true;
-            }
-            break;
-          case TABLE_COLUMN_CONTENT:
-            if (result.getString(2).equals("VARIANT")) {
-              hasContent = true;
-            }
-            break;
-          default:
-            if (result.getString(4).equals("N")) {
-              allNullable = false;
-            }
-        }
-      }
-      compatible = hasMeta && hasContent && allNullable;
+      compatible =
+          sessions.executePrepared(
+              query,
+              stmt -> {
+                stmt.setString(1, tableName);
+                ResultSet result = stmt.executeQuery();
+                boolean hasMeta = false;
+                boolean hasContent = false;
+                boolean allNullable = true;
+                while (result.next()) {
+                  switch (result.getString(1)) {
+                    case TABLE_COLUMN_METADATA:
+                      if (result.getString(2).equals("VARIANT")) {
+                        hasMeta = true;
+                      }
+                      break;
+                    case TABLE_COLUMN_CONTENT:
+                      if (result.getString(2).equals("VARIANT")) {
+                        hasContent = true;
+                      }
+                      break;
+                    default:
+                      if (result.getString(4).equals("N")) {
+                        allNullable = false;
+                      }
+                  }
+                }
+                result.close();
+                return hasMeta && hasContent && allNullable;
+              });
     } catch (SQLException e) {
       LOGGER.debug("table {} doesn't exist", tableName);
       compatible = false;
-    } finally {
-      try {
-        if (result != null) {
-          result.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-
-      try {
-        if (stmt != null) {
-          stmt.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
     }
     return compatible;
   }
@@ -382,35 +376,33 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     checkConnection();
     InternalUtils.assertNotEmpty("tableName", tableName);
     String query = "desc table identifier(?)";
-    PreparedStatement stmt = null;
-    ResultSet result = null;
-    boolean hasMeta = false;
-    boolean isVariant = false;
+    // type of the metadata column, null if there is none
+    String metaType;
     try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      result = stmt.executeQuery();
-      while (result.next()) {
-        // The result schema is row idx | column name | data type | kind | null? | ...
-        if (result.getString(1).equals(TABLE_COLUMN_METADATA)) {
-          hasMeta = true;
-          if (result.getString(2).equals("VARIANT")) {
-            isVariant = true;
-          }
-          break;
-        }
-      }
+      metaType =
+          sessions.executePrepared(
+              query,
+              stmt -> {
+                stmt.setString(1, tableName);
+                ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                  // The result schema is row idx | column name | data type | kind | null? | ...
+                  if (result.getString(1).equals(TABLE_COLUMN_METADATA)) {
+                    return result.getString(2);
+                  }
+                }
+                return null;
+              });
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2014.getException("table name: " + tableName);
     }
     try {
-      if (!hasMeta) {
+      if (metaType == null) {
         String metaQuery = "alter table identifier(?) add RECORD_METADATA VARIANT";
-        stmt = conn.prepareStatement(metaQuery);
-        stmt.setString(1, tableName);
-        stmt.executeQuery();
+        executeWithIdentifier(metaQuery, tableName);
+        metadataResults.invalidate(tableName);
       } else {
-        if (!isVariant) {
+        if (!metaType.equals("VARIANT")) {
           throw SnowflakeErrors.ERROR_2012.getException("table name: " + tableName);
         }
       }
@@ -434,47 +426,56 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     String query = "show grants on table identifier(?)";
     List<String> schemaEvolutionAllowedPrivilegeList =
         Arrays.asList("EVOLVE SCHEMA", "ALL", "OWNERSHIP");
-    ResultSet result = null;
     // whether the role has the privilege to do schema evolution (EVOLVE SCHEMA / ALL / OWNERSHIP)
-    boolean hasRolePrivilege = false;
+    boolean hasRolePrivilege;
     String myRole = SchematizationUtils.formatName(role);
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      result = stmt.executeQuery();
-      while (result.next()) {
-        if (!result.getString("grantee_name").equals(myRole)) {
-          continue;
-        }
-        if (schemaEvolutionAllowedPrivilegeList.contains(
-            result.getString("privilege").toUpperCase())) {
-          hasRolePrivilege = true;
-        }
-      }
-      stmt.close();
+      hasRolePrivilege =
+          sessions.executePrepared(
+              query,
+              stmt -> {
+                boolean hasPrivilege = false;
+                stmt.setString(1, tableName);
+                ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                  if (!result.getString("grantee_name").equals(myRole)) {
+                    continue;
+                  }
+                  if (schemaEvolutionAllowedPrivilegeList.contains(
+                      result.getString("privilege").toUpperCase())) {
+                    hasPrivilege = true;
+                  }
+                }
+                return hasPrivilege;
+              });
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2017.getException(e);
     }
 
     // whether the table has ENABLE_SCHEMA_EVOLUTION option set to true on the table.
-    boolean hasTableOptionEnabled = false;
-    query = "show tables like '" + tableName + "' limit 1";
+    boolean hasTableOptionEnabled;
+    String showTablesQuery = "show tables like '" + tableName + "' limit 1";
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, tableName);
-      result = stmt.executeQuery();
-      while (result.next()) {
-        String enableSchemaEvolution = "N";
-        try {
-          enableSchemaEvolution = result.getString("enable_schema_evolution");
-        } catch (SQLException e) {
-          // Do nothing since schema evolution is still in PrPr
-        }
-        if (enableSchemaEvolution.equals("Y")) {
-          hasTableOptionEnabled = true;
-        }
-      }
-      stmt.close();
+      hasTableOptionEnabled =
+          sessions.executePrepared(
+              showTablesQuery,
+              stmt -> {
+                boolean hasOptionEnabled = false;
+                stmt.setString(1, tableName);
+                ResultSet result = stmt.executeQuery();
+                while (result.next()) {
+                  String enableSchemaEvolution = "N";
+                  try {
+                    enableSchemaEvolution = result.getString("enable_schema_evolution");
+                  } catch (SQLException e) {
+                    // Do nothing since schema evolution is still in PrPr
+                  }
+                  if (enableSchemaEvolution.equals("Y")) {
+                    hasOptionEnabled = true;
+                  }
+                }
+                return hasOptionEnabled;
+              });
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2017.getException(e);
     }
@@ -515,13 +516,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
     try {
       LOGGER.info("Trying to run query: {}", appendColumnQuery.toString());
-      PreparedStatement stmt = conn.prepareStatement(appendColumnQuery.toString());
-      stmt.setString(1, tableName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(appendColumnQuery.toString(), tableName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2015.getException(e);
     }
+    metadataResults.invalidate(tableName);
 
     logColumn.insert(0, "Following columns created for table {}:\n").append("]");
     LOGGER.info(logColumn.toString(), tableName);
@@ -558,13 +557,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
     try {
       LOGGER.info("Trying to run query: {}", dropNotNullQuery.toString());
-      PreparedStatement stmt = conn.prepareStatement(dropNotNullQuery.toString());
-      stmt.setString(1, tableName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(dropNotNullQuery.toString(), tableName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2016.getException(e);
     }
+    metadataResults.invalidate(tableName);
 
     logColumn
         .insert(0, "Following columns' non-nullabilty was dropped for table {}:\n")
@@ -572,10 +569,46 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     LOGGER.info(logColumn.toString(), tableName);
   }
 
+  /**
+   * Describe the columns of a table
+   *
+   * @param tableName the name of the table
+   * @return map from the name of every column, as stored in Snowflake, to whether it is nullable
+   */
+  @Override
+  public Map<String, Boolean> describeTableColumns(String tableName) {
+    checkConnection();
+    InternalUtils.assertNotEmpty("tableName", tableName);
+    String query = "desc table identifier(?)";
+    Map<String, Boolean> columns = new LinkedHashMap<>();
+    try {
+      sessions.executePrepared(
+          query,
+          stmt -> {
+            stmt.setString(1, tableName);
+            ResultSet result = stmt.executeQuery();
+            while (result.next()) {
+              // The result schema is column name | data type | kind | null? | ...
+              columns.put(result.getString(1), result.getString(4).equals("Y"));
+            }
+            result.close();
+            return null;
+          });
+    } catch (SQLException e) {
+      throw SnowflakeErrors.ERROR_2018.getException(e);
+    }
+    return columns;
+  }
+
   @Override
   public boolean isStageCompatible(final String stageName) {
     checkConnection();
     InternalUtils.assertNotEmpty("stageName", stageName);
+    return metadataResults.get(
+        stageName, "stage compatible", () -> checkStageCompatible(stageName));
+  }
+
+  private boolean checkStageCompatible(String stageName) {
     if (!stageExist(stageName)) {
       LOGGER.debug("stage {} doesn't exists", stageName);
       return false;
@@ -597,40 +630,74 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     InternalUtils.assertNotEmpty("tableName", tableName);
     InternalUtils.assertNotEmpty("stageName", stageName);
     InternalUtils.assertNotEmpty("pipeName", pipeName);
+    return metadataResults.get(
+        pipeName,
+        "pipe compatible with table " + tableName + " and stage " + stageName,
+        () -> checkPipeCompatible(tableName, stageName, pipeName));
+  }
+
+  @Override
+  public Map<String, Boolean> getPipeCompatibility(
+      final String tableName, final String stageName, final String pipeNamePrefix) {
+    checkConnection();
+    InternalUtils.assertNotEmpty("tableName", tableName);
+    InternalUtils.assertNotEmpty("stageName", stageName);
+    InternalUtils.assertNotEmpty("pipeNamePrefix", pipeNamePrefix);
+    // '_' matches any character in the pattern, names are compared again below
+    String query = "show pipes like '" + pipeNamePrefix.replace("'", "''") + "%'";
+    String upperCasePrefix = pipeNamePrefix.toUpperCase();
+    String definition = pipeDefinition(tableName, stageName);
+    Map<String, Boolean> compatibility = new HashMap<>();
+    try {
+      sessions.executePrepared(
+          query,
+          stmt -> {
+            ResultSet result = stmt.executeQuery();
+            while (result.next()) {
+              String pipeName = result.getString("name").toUpperCase();
+              if (pipeName.startsWith(upperCasePrefix)) {
+                compatibility.put(
+                    pipeName, definition.equalsIgnoreCase(result.getString("definition")));
+              }
+            }
+            result.close();
+            return null;
+          });
+    } catch (SQLException e) {
+      throw SnowflakeErrors.ERROR_2001.getException(e, this.telemetry);
+    }
+    LOGGER.info(
+        "found {} pipes with prefix {}, {} of them compatible",
+        compatibility.size(),
+        pipeNamePrefix,
+        compatibility.values().stream().filter(compatible -> compatible).count());
+    return compatibility;
+  }
+
+  private boolean checkPipeCompatible(String tableName, String stageName, String pipeName) {
     if (!pipeExist(pipeName)) {
       return false;
     }
 
     String query = "desc pipe identifier(?)";
-    PreparedStatement stmt = null;
-    ResultSet result = null;
     boolean compatible;
     try {
-      stmt = conn.prepareStatement(query);
-      stmt.setString(1, pipeName);
-      result = stmt.executeQuery();
-      if (!result.next()) {
-        compatible = false;
-      } else {
-        String definition = result.getString("definition");
-        LOGGER.debug("pipe {} definition: {}", pipeName, definition);
-        compatible = definition.equalsIgnoreCase(pipeDefinition(tableName, stageName));
-      }
-
+      compatible =
+          sessions.executePrepared(
+              query,
+              stmt -> {
+                stmt.setString(1, pipeName);
+                ResultSet result = stmt.executeQuery();
+                if (!result.next()) {
+                  return false;
+                }
+                String definition = result.getString("definition");
+                LOGGER.debug("pipe {} definition: {}", pipeName, definition);
+                return definition.equalsIgnoreCase(pipeDefinition(tableName, stageName));
+              });
     } catch (SQLException e) {
       LOGGER.debug("pipe {} doesn't exists ", pipeName);
       compatible = false;
-    } finally {
-      try {
-        if (stmt != null) {
-          stmt.close();
-        }
-        if (result != null) {
-          result.close();
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
     }
 
     return compatible;
@@ -641,10 +708,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     checkConnection();
     String query = "use database identifier(?)";
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, databaseName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, databaseName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
@@ -658,10 +722,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     String query = "use schema identifier(?)";
     boolean foundSchema = false;
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, schemaName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, schemaName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
@@ -676,13 +737,11 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     String query = "drop pipe if exists identifier(?)";
 
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, pipeName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, pipeName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
+    metadataResults.invalidate(pipeName);
 
     LOGGER.info("pipe {} dropped", pipeName);
   }
@@ -695,20 +754,18 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       return false;
     }
     String query = "list @" + stageName;
+    boolean isEmpty;
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      ResultSet resultSet = stmt.executeQuery();
-      if (InternalUtils.resultSize(resultSet) == 0) {
-        dropStage(stageName);
-        stmt.close();
-        resultSet.close();
-        return true;
-      }
-      resultSet.close();
-      stmt.close();
+      isEmpty =
+          sessions.executePrepared(
+              query, stmt -> InternalUtils.resultSize(stmt.executeQuery()) == 0);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
+    if (isEmpty) {
+      dropStage(stageName);
+      return true;
+    }
     LOGGER.info("stage {} can't be dropped because it is not empty", stageName);
     return false;
   }
@@ -719,21 +776,44 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     InternalUtils.assertNotEmpty("stageName", stageName);
     String query = "drop stage if exists identifier(?)";
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, stageName);
-      stmt.execute();
-      stmt.close();
+      executeWithIdentifier(query, stageName);
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e);
     }
+    metadataResults.invalidate(stageName);
     LOGGER.info("stage {} dropped", stageName);
   }
 
   @Override
   public void purgeStage(final String stageName, final List<String> files) {
+    purgeStage(stageName, files, latencyMs -> {});
+  }
+
+  @Override
+  public void purgeStage(
+      final String stageName, final List<String> files, final LongConsumer batchLatencyMs) {
     InternalUtils.assertNotEmpty("stageName", stageName);
+    // files of one partition share the same prefix, one REMOVE can cover all of them
+    Map<String, List<String>> filesByPrefix = new LinkedHashMap<>();
     for (String fileName : files) {
-      removeFile(stageName, fileName);
+      String prefix = FileNameUtils.getPrefixFromFileName(fileName);
+      if (prefix == null) {
+        long startTime = System.currentTimeMillis();
+        removeFile(stageName, fileName);
+        batchLatencyMs.accept(System.currentTimeMillis() - startTime);
+      } else {
+        filesByPrefix.computeIfAbsent(prefix, k -> new ArrayList<>()).add(fileName);
+      }
+    }
+    for (Map.Entry<String, List<String>> entry : filesByPrefix.entrySet()) {
+      List<String> prefixFiles = entry.getValue();
+      for (int i = 0; i < prefixFiles.size(); i += MAX_FILES_PER_REMOVE) {
+        removeFiles(
+            stageName,
+            entry.getKey(),
+            prefixFiles.subList(i, Math.min(i + MAX_FILES_PER_REMOVE, prefixFiles.size())),
+            batchLatencyMs);
+      }
     }
     LOGGER.info("purge {} files from stage: {}", files.size(), stageName);
   }
@@ -743,31 +823,69 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       final String tableName, final String stageName, final List<String> files) {
     InternalUtils.assertNotEmpty("tableName", tableName);
     InternalUtils.assertNotEmpty("stageName", stageName);
-    SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) conn;
+    if (files.isEmpty()) {
+      return;
+    }
 
-    for (String name : files) {
-      // get
-      InputStream file;
-      try {
-        file = sfconn.downloadStream(stageName, name, true);
-      } catch (Exception e) {
-        throw SnowflakeErrors.ERROR_2002.getException(e, this.telemetry);
-      }
-      // put
-      try {
-        sfconn.uploadStream(
-            "%" + tableName,
-            FileNameUtils.getPrefixFromFileName(name),
-            file,
-            FileNameUtils.removePrefixAndGZFromFileName(name),
-            true);
-      } catch (SQLException e) {
-        throw SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
-      }
-      LOGGER.info("moved file: {} from stage: {} to table stage: {}", name, stageName, tableName);
-      // remove
-      removeFile(stageName, name);
+    // files are moved concurrently, each move streams one file from download to upload
+    fileMover.moveAll(
+        files,
+        name -> moveFileToTableStage(tableName, stageName, name),
+        movedFiles -> {
+          // files already in table stage are removed even if other moves failed, they are not
+          // moved twice
+          if (!movedFiles.isEmpty()) {
+            purgeStage(stageName, movedFiles);
+          }
+          LOGGER.info(
+              "moved {} of {} files from stage: {} to table stage: {}",
+              movedFiles.size(),
+              files.size(),
+              stageName,
+              tableName);
+        });
+  }
+
+  /**
+   * Copy one file from given stage into the table stage. Gzip files are copied as they are, the
+   * download stream is handed to the upload without being decompressed and compressed again.
+   *
+   * @param tableName table name
+   * @param stageName stage name
+   * @param name file name
+   */
+  private void moveFileToTableStage(String tableName, String stageName, String name) {
+    boolean compressed = name.endsWith(".gz");
+    try {
+      moveSessions.execute(
+          session -> {
+            SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) session;
+            // get
+            InputStream file;
+            try {
+              file = sfconn.downloadStream(stageName, name, !compressed);
+            } catch (Exception e) {
+              throw SnowflakeErrors.ERROR_2002.getException(e, this.telemetry);
+            }
+            // put
+            try (InputStream content = file) {
+              sfconn.uploadStream(
+                  "%" + tableName,
+                  FileNameUtils.getPrefixFromFileName(name),
+                  content,
+                  compressed
+                      ? FileNameUtils.removePrefixFromFileName(name)
+                      : FileNameUtils.removePrefixAndGZFromFileName(name),
+                  !compressed);
+            } catch (IOException e) {
+              throw SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
+            }
+            return null;
+          });
+    } catch (SQLException e) {
+      throw SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
     }
+    LOGGER.info("moved file: {} from stage: {} to table stage: {}", name, stageName, tableName);
   }
 
   @Override
@@ -792,17 +910,18 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
       stageNameLength = stageName.length() + 1; // stage name + '/'
       query = "ls @" + stageName + "/" + prefix;
     }
-    List<String> result;
+    List<String> result = new LinkedList<>();
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      ResultSet resultSet = stmt.executeQuery();
-
-      result = new LinkedList<>();
-      while (resultSet.next()) {
-        result.add(resultSet.getString("name").substring(stageNameLength));
-      }
-      stmt.close();
-      resultSet.close();
+      sessions.executePrepared(
+          query,
+          stmt -> {
+            ResultSet resultSet = stmt.executeQuery();
+            while (resultSet.next()) {
+              result.add(resultSet.getString("name").substring(stageNameLength));
+            }
+            resultSet.close();
+            return null;
+          });
     } catch (SQLException e) {
       throw SnowflakeErrors.ERROR_2001.getException(e, this.telemetry);
     }
@@ -866,25 +985,55 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
   }
 
+  @Override
+  public void putWithCache(
+      final String stageName, final String fileName, final ChunkedGzipBuffer content) {
+    // If we don't know the stage type yet, query that first.
+    if (stageType == null) {
+      stageType = internalStage.getStageType(stageName);
+    }
+    try {
+      InternalUtils.backoffAndRetry(
+          telemetry,
+          SnowflakeInternalOperations.UPLOAD_FILE_TO_INTERNAL_STAGE_NO_CONNECTION,
+          () -> {
+            // every attempt reads the file from its beginning
+            internalStage.putWithCache(
+                stageName, fileName, content.newInputStream(), false, stageType);
+            return true;
+          });
+    } catch (Exception e) {
+      LOGGER.error(
+          "Put With Cache(uploadWithoutConnection) failed after multiple retries for stageName:{},"
+              + " stageType:{}, fullFilePath:{}",
+          stageName,
+          stageType,
+          fileName);
+      throw SnowflakeErrors.ERROR_2011.getException(e, this.telemetry);
+    }
+  }
+
   @Override
   public void putToTableStage(final String tableName, final String fileName, final byte[] content) {
     InternalUtils.assertNotEmpty("tableName", tableName);
-    SnowflakeConnectionV1 sfconn = (SnowflakeConnectionV1) conn;
     InputStream input = new ByteArrayInputStream(content);
 
     try {
       InternalUtils.backoffAndRetry(
           telemetry,
           SnowflakeInternalOperations.UPLOAD_FILE_TO_TABLE_STAGE,
-          () -> {
-            sfconn.uploadStream(
-                "%" + tableName,
-                FileNameUtils.getPrefixFromFileName(fileName),
-                input,
-                FileNameUtils.removePrefixAndGZFromFileName(fileName),
-                true);
-            return true;
-          });
+          () ->
+              sessions.execute(
+                  session -> {
+                    ((SnowflakeConnectionV1) session)
+                        .uploadStream(
+                            "%" + tableName,
+                            FileNameUtils.getPrefixFromFileName(fileName),
+                            input,
+                            FileNameUtils.removePrefixAndGZFromFileName(fileName),
+                            true);
+                    return true;
+                  }));
     } catch (Exception e) {
       throw SnowflakeErrors.ERROR_2003.getException(e, this.telemetry);
     }
@@ -898,6 +1047,9 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
 
   @Override
   public void close() {
+    fileMover.shutdown();
+    sessions.close();
+    moveSessions.close();
     try {
       conn.close();
     } catch (SQLException e) {
@@ -963,6 +1115,23 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     }
   }
 
+  /**
+   * Run a statement whose only parameter is the given identifier on a session of the pool, the
+   * prepared statement is reused by the next calls with the same text
+   *
+   * @param query statement
+   * @param identifier value of the parameter
+   */
+  private void executeWithIdentifier(String query, String identifier) throws SQLException {
+    sessions.executePrepared(
+        query,
+        stmt -> {
+          stmt.setString(1, identifier);
+          stmt.execute();
+          return null;
+        });
+  }
+
   /**
    * generate pipe definition
    *
@@ -979,6 +1148,129 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
         + " t) file_format = (type = 'json')";
   }
 
+  /**
+   * Remove files sharing the same prefix from given stage with a single REMOVE statement. A failed
+   * batch is not retried as a whole, it is split in halves instead so that one problematic file
+   * does not block the others. A batch of one file goes through {@link #removeFile(String,
+   * String)} and its retries.
+   *
+   * @param stageName stage name
+   * @param prefix common prefix of the files, without trailing slash
+   * @param fileNames full file names, including the prefix
+   * @param batchLatencyMs receives the latency of every successful statement in milliseconds
+   */
+  private void removeFiles(
+      String stageName, String prefix, List<String> fileNames, LongConsumer batchLatencyMs) {
+    long startTime = System.currentTimeMillis();
+    if (fileNames.size() == 1) {
+      removeFile(stageName, fileNames.get(0));
+      batchLatencyMs.accept(System.currentTimeMillis() - startTime);
+      return;
+    }
+    String query = removeFilesQuery(stageName, prefix, fileNames);
+    try {
+      execute(query);
+    } catch (SQLException e) {
+      LOGGER.warn(
+          "failed to remove {} files with prefix {} from stage {}, retrying in smaller batches: {}",
+          fileNames.size(),
+          prefix,
+          stageName,
+          e.getMessage());
+      int half = fileNames.size() / 2;
+      removeFiles(stageName, prefix, fileNames.subList(0, half), batchLatencyMs);
+      removeFiles(stageName, prefix, fileNames.subList(half, fileNames.size()), batchLatencyMs);
+      return;
+    }
+    long latency = System.currentTimeMillis() - startTime;
+    batchLatencyMs.accept(latency);
+    LOGGER.debug(
+        "deleted {} files with prefix {} from stage {} in {} ms",
+        fileNames.size(),
+        prefix,
+        stageName,
+        latency);
+  }
+
+  /**
+   * Build a REMOVE statement scoped to the directory of the files, the pattern lists the file names
+   * so that nothing else in that directory is matched.
+   *
+   * @param stageName stage name
+   * @param prefix common prefix of the files, without trailing slash
+   * @param fileNames full file names, including the prefix
+   * @return REMOVE statement
+   */
+  static String removeFilesQuery(String stageName, String prefix, List<String> fileNames) {
+    StringBuilder query =
+        new StringBuilder("remove @")
+            .append(stageName)
+            .append("/")
+            .append(prefix)
+            .append("/ pattern = '.*/(");
+    for (int i = 0; i < fileNames.size(); i++) {
+      if (i > 0) {
+        query.append('|');
+      }
+      String fileName = fileNames.get(i);
+      appendPatternLiteral(query, fileName.substring(prefix.length() + 1));
+    }
+    return query.append(")'").toString();
+  }
+
+  /**
+   * Run a statement without parameter on a session of the pool, the statement is not cached since
+   * its text is never run again
+   *
+   * @param query statement
+   */
+  private void execute(String query) throws SQLException {
+    sessions.execute(
+        session -> {
+          try (PreparedStatement stmt = session.prepareStatement(query)) {
+            stmt.execute();
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Append a string matching itself literally inside a regular expression of a single quoted SQL
+   * string. Meta characters are wrapped in a character class, which avoids backslashes that would
+   * need escaping both in SQL and in the regular expression.
+   */
+  private static void appendPatternLiteral(StringBuilder builder, String literal) {
+    for (int i = 0; i < literal.length(); i++) {
+      char c = literal.charAt(i);
+      switch (c) {
+        case '.':
+        case '$':
+        case '|':
+        case '(':
+        case ')':
+        case '[':
+        case '{':
+        case '}':
+        case '*':
+        case '+':
+        case '?':
+          builder.append('[').append(c).append(']');
+          break;
+        case '\\':
+        case '^':
+        case ']':
+          // escaped backslash in SQL, escaping the character in the regular expression
+          builder.append("\\\\").append(c);
+          break;
+        case '\'':
+          builder.append("''");
+          break;
+        default:
+          builder.append(c);
+      }
+    }
+  }
+
   /**
    * Remove one file from given stage
    *
@@ -994,9 +1286,7 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
           telemetry,
           SnowflakeInternalOperations.REMOVE_FILE_FROM_INTERNAL_STAGE,
           () -> {
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.execute();
-            stmt.close();
+            execute(query);
             return true;
           });
     } catch (Exception e) {
@@ -1029,16 +1319,16 @@ public class SnowflakeConnectionServiceV1 implements SnowflakeConnectionService
     String query = "select SYSTEM$SNOWPIPE_STREAMING_MIGRATE_CHANNEL_OFFSET_TOKEN((?), (?), (?));";
 
     try {
-      PreparedStatement stmt = conn.prepareStatement(query);
-      stmt.setString(1, fullyQualifiedTableName);
-      stmt.setString(2, sourceChannelName);
-      stmt.setString(3, destinationChannelName);
-      ResultSet resultSet = stmt.executeQuery();
-
-      String migrateOffsetTokenResultFromSysFunc = null;
-      if (resultSet.next()) {
-        migrateOffsetTokenResultFromSysFunc = resultSet.getString(1 /*Only one column*/);
-      }
+      String migrateOffsetTokenResultFromSysFunc =
+          sessions.executePrepared(
+              query,
+              stmt -> {
+                stmt.setString(1, fullyQualifiedTableName);
+                stmt.setString(2, sourceChannelName);
+                stmt.setString(3, destinationChannelName);
+                ResultSet resultSet = stmt.executeQuery();
+                return resultSet.next() ? resultSet.getString(1 /*Only one column*/) : null;
+              });
       if (migrateOffsetTokenResultFromSysFunc == null) {
         final String errorMsg =
             String.format(
@@ -196,6 +196,8 @@ public enum SnowflakeErrors {
       "2017",
       "Failed to check schema evolution permission",
       "Failed to check schema evolution permission"),
+  ERROR_2018(
+      "2018", "Failed to describe table", "Failed to describe the columns of the table"),
   // Snowpipe related issues 3---
   ERROR_3001("3001", "Failed to ingest file", "Exception reported by Ingest SDK"),
 
@@ -303,7 +305,16 @@ public enum SnowflakeErrors {
       "5023",
       "Failure in Streaming Channel Offset Migration Response",
       "Streaming Channel Offset Migration from Source to Destination Channel has no/invalid"
-          + " response, please contact Snowflake Support");
+          + " response, please contact Snowflake Support"),
+
+  ERROR_5024(
+      "5024",
+      "Failed to compress file content",
+      "Failed to write records into the compressed buffer of a staged file"),
+  ERROR_5025(
+      "5025",
+      "Failed to open streaming channels",
+      "Opening the streaming channels of the assigned partitions failed or was interrupted");
 
   // properties
 
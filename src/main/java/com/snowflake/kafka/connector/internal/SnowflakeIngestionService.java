@@ -38,6 +38,13 @@ public interface SnowflakeIngestionService {
    */
   Map<String, IngestedFileStatus> readIngestReport(List<String> files);
 
+  /**
+   * retrieve status of all files reported by the ingest report since the previous call
+   *
+   * @return a map contains status of every reported file
+   */
+  Map<String, IngestedFileStatus> readIngestReport();
+
   /**
    * retrieve status of given files from load history in one hour time window
    *
@@ -27,13 +27,19 @@ public class SnowflakeIngestionServiceV1 implements SnowflakeIngestionService {
 
   private final KCLogger LOGGER = new KCLogger(SnowflakeIngestionServiceV1.class.getName());
   private static final long ONE_HOUR = 60 * 60 * 1000;
+  // recently fetched load history which is read again, late loads may show up after a fetch
+  private static final long LOAD_HISTORY_OVERLAP = 5 * 60 * 1000;
 
   private final String stageName;
   private final SimpleIngestManager ingestManager;
   private final String pipeName;
   private SnowflakeTelemetryService telemetry = null;
 
-  private String beginMark = null;
+  // only advanced by one caller at a time, the report poller of the pipe
+  private volatile String beginMark = null;
+
+  // load history of the last hour, only used by the cleaner of the pipe
+  private final LoadHistoryCache loadHistoryCache = new LoadHistoryCache(LOAD_HISTORY_OVERLAP);
 
   SnowflakeIngestionServiceV1(
       String accountName,
@@ -122,6 +128,22 @@ public class SnowflakeIngestionServiceV1 implements SnowflakeIngestionService {
       return fileStatus;
     }
 
+    Map<String, InternalUtils.IngestedFileStatus> report = readIngestReport();
+    int numOfRecords = 0;
+    for (String name : files) {
+      if (report.containsKey(name)) {
+        numOfRecords++;
+        fileStatus.put(name, report.get(name));
+      }
+    }
+
+    LOGGER.info("searched {} files in ingest report, found {}", files.size(), numOfRecords);
+
+    return fileStatus;
+  }
+
+  @Override
+  public Map<String, InternalUtils.IngestedFileStatus> readIngestReport() {
     HistoryResponse response;
     try {
       response =
@@ -134,30 +156,26 @@ public class SnowflakeIngestionServiceV1 implements SnowflakeIngestionService {
       throw SnowflakeErrors.ERROR_3002.getException(e, this.telemetry);
     }
 
-    int numOfRecords = 0;
+    Map<String, InternalUtils.IngestedFileStatus> fileStatus = new HashMap<>();
 
     if (response != null) {
       beginMark = response.getNextBeginMark();
 
       if (response.files != null) {
         for (HistoryResponse.FileEntry file : response.files) {
-          if (fileStatus.containsKey(file.getPath())) {
-            numOfRecords++;
-
-            final InternalUtils.IngestedFileStatus ingestionStatus =
-                convertIngestStatus(file.getStatus());
-            fileStatus.put(file.getPath(), ingestionStatus);
-            // Log errors
-            if (InternalUtils.IngestedFileStatus.FAILED.equals(ingestionStatus)
-                || InternalUtils.IngestedFileStatus.PARTIALLY_LOADED.equals(ingestionStatus)) {
-              LOGGER.warn("Failed to load file {} for pipe {}", file.getPath(), this.pipeName);
-            }
+          final InternalUtils.IngestedFileStatus ingestionStatus =
+              convertIngestStatus(file.getStatus());
+          fileStatus.put(file.getPath(), ingestionStatus);
+          // Log errors
+          if (InternalUtils.IngestedFileStatus.FAILED.equals(ingestionStatus)
+              || InternalUtils.IngestedFileStatus.PARTIALLY_LOADED.equals(ingestionStatus)) {
+            LOGGER.warn("Failed to load file {} for pipe {}", file.getPath(), this.pipeName);
           }
         }
       }
     }
 
-    LOGGER.info("searched {} files in ingest report, found {}", files.size(), numOfRecords);
+    LOGGER.debug("read {} files from ingest report of pipe {}", fileStatus.size(), pipeName);
 
     return fileStatus;
   }
@@ -165,15 +183,23 @@ public class SnowflakeIngestionServiceV1 implements SnowflakeIngestionService {
   @Override
   public Map<String, InternalUtils.IngestedFileStatus> readOneHourHistory(
       final List<String> files, final long startTime) {
-    long endTime = startTime + ONE_HOUR;
-    Map<String, InternalUtils.IngestedFileStatus> result = initFileStatus(files);
-    Map<String, InternalUtils.IngestedFileStatus> response =
-        checkHistoryByRange(startTime, endTime);
+    long currentTime = System.currentTimeMillis();
+    long windowStart = Math.min(startTime, currentTime);
+    long endTime = Math.min(startTime + ONE_HOUR, currentTime);
+
+    // only the part of the window which is not cached yet is read from load history
+    loadHistoryCache.evictBefore(windowStart);
+    long fetchStart = loadHistoryCache.getFetchStart(windowStart);
+    if (fetchStart < endTime) {
+      loadHistoryCache.add(checkHistoryByRange(fetchStart, endTime), endTime);
+    }
 
+    Map<String, InternalUtils.IngestedFileStatus> result = initFileStatus(files);
     files.forEach(
         name -> {
-          if (response.containsKey(name)) {
-            result.put(name, response.get(name));
+          InternalUtils.IngestedFileStatus status = loadHistoryCache.get(name);
+          if (status != null) {
+            result.put(name, status);
           }
         });
 
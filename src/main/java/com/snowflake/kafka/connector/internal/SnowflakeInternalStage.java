@@ -144,6 +144,26 @@ public class SnowflakeInternalStage {
    */
   public void putWithCache(
       String stageName, String fullFilePath, String data, final StageInfo.StageType stageType) {
+    byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
+    putWithCache(stageName, fullFilePath, new ByteArrayInputStream(dataBytes), true, stageType);
+  }
+
+  /**
+   * Upload a stream to internal stage with previously cached credentials, check {@link
+   * #putWithCache(String, String, String, StageInfo.StageType)}.
+   *
+   * @param stageName Stage name
+   * @param fullFilePath Full file name to be uploaded
+   * @param inStream content to be uploaded, consumed by this call
+   * @param requireCompress false if the stream is already gzip compressed
+   * @param stageType GCS, Azure or AWS
+   */
+  public void putWithCache(
+      String stageName,
+      String fullFilePath,
+      InputStream inStream,
+      boolean requireCompress,
+      final StageInfo.StageType stageType) {
     try {
       SnowflakeMetadataWithExpiration credential = storageInfoCache.getOrDefault(stageName, null);
 
@@ -170,9 +190,6 @@ public class SnowflakeInternalStage {
     // TODO: https://snowflakecomputing.atlassian.net/browse/SNOW-350676
     fileTransferMetadata.setPresignedUrlFileName(fullFilePath);
 
-    byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-    InputStream inStream = new ByteArrayInputStream(dataBytes);
-
     // This uploadWithoutConnection api cannot handle expired credentials very well.
     // Need to prevent passing expired credential to it.
     try {
@@ -180,7 +197,7 @@ public class SnowflakeInternalStage {
           SnowflakeFileTransferConfig.Builder.newInstance()
               .setSnowflakeFileTransferMetadata(fileTransferMetadata)
               .setUploadStream(inStream)
-              .setRequireCompress(true)
+              .setRequireCompress(requireCompress)
               // Setting a destinationFileName is a no-op for AWS and Azure since it still uses
               // presignedUrlFileName
               // Setting destFileName is useful for GCS and downscope URL
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of JDBC sessions running the statements of a connection service, so that a slow
+ * statement of one thread, e.g. listing or removing the files of a stage, does not hold up the
+ * statements of the others inside the driver.
+ *
+ * <p>The primary connection of the service, if any, is the first session of the pool, it is never
+ * replaced nor closed by the pool. The other sessions are only opened when every open session is in
+ * use and the pool is not full yet, a caller waits for a session to be released otherwise. A thread
+ * already holding a session reuses it for nested calls. Sessions which were idle for a while are
+ * validated before being handed out, closed or invalid ones are dropped and opened again when
+ * needed.
+ *
+ * <p>Every session keeps the statements prepared through {@link #executePrepared(String,
+ * StatementFunction)}, keyed by their text, so that statements run over and over, e.g. the
+ * existence checks of every partition, are only prepared once per session. The least recently used
+ * statement is closed once a session holds {@link #MAX_CACHED_STATEMENTS} of them.
+ */
+class SnowflakeSessionPool {
+  private static final KCLogger LOGGER = new KCLogger(SnowflakeSessionPool.class.getName());
+
+  // idle sessions are validated before being used again after this long
+  static final long VALIDATION_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final int VALIDATION_TIMEOUT_SEC = 5;
+
+  // after a failed login, no other session is opened for this long
+  static final long OPEN_RETRY_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+  // prepared statements kept open per session
+  static final int MAX_CACHED_STATEMENTS = 32;
+
+  /** Statements run on a session of the pool */
+  interface SessionFunction<T> {
+    T apply(Connection session) throws SQLException;
+  }
+
+  /**
+   * Runs a statement prepared by the pool, which must neither be closed nor be used once the
+   * function returned
+   */
+  interface StatementFunction<T> {
+    T apply(PreparedStatement stmt) throws SQLException;
+  }
+
+  private interface SessionTask<T> {
+    T apply(Session session) throws SQLException;
+  }
+
+  /** Opens a new session */
+  interface SessionFactory {
+    Connection open() throws SQLException;
+  }
+
+  private static class Session {
+    private final Connection connection;
+    private long lastUsedMs;
+
+    // only used by the thread holding the session, least recently used first
+    private final Map<String, PreparedStatement> statements =
+        new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > MAX_CACHED_STATEMENTS) {
+              closeQuietly(eldest.getValue());
+              return true;
+            }
+            return false;
+          }
+        };
+
+    private Session(Connection connection, long lastUsedMs) {
+      this.connection = connection;
+      this.lastUsedMs = lastUsedMs;
+    }
+
+    private <T> T runPrepared(String query, StatementFunction<T> function) throws SQLException {
+      // taken out of the cache while in use, a nested call preparing the same text gets its own
+      PreparedStatement stmt = statements.remove(query);
+      if (stmt == null || stmt.isClosed()) {
+        stmt = connection.prepareStatement(query);
+      }
+      try {
+        return function.apply(stmt);
+      } finally {
+        // a statement can run again after a failed execution, e.g. desc of a missing object
+        try {
+          if (!stmt.isClosed()) {
+            stmt.clearParameters();
+            PreparedStatement replaced = statements.put(query, stmt);
+            if (replaced != null) {
+              // put back by a nested call meanwhile
+              closeQuietly(replaced);
+            }
+          }
+        } catch (SQLException e) {
+          closeQuietly(stmt);
+        }
+      }
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+      try {
+        stmt.close();
+      } catch (SQLException e) {
+        LOGGER.warn("failed to close a prepared statement: {}", e.getMessage());
+      }
+    }
+  }
+
+  private final Connection primary;
+  private final SessionFactory factory;
+  private final int maxSize;
+
+  // session held by the current thread, if any
+  private final ThreadLocal<Session> heldSession = new ThreadLocal<>();
+
+  // guarded by this, most recently used first
+  private final Deque<Session> idleSessions = new ArrayDeque<>();
+  private int openSessions;
+  private long nextOpenTimeMs = 0;
+  private boolean closed = false;
+
+  /**
+   * @param primary primary connection of the service, null if every session is opened by the
+   *     factory
+   * @param factory opens the other sessions
+   * @param maxSize maximum number of sessions, including the primary connection
+   */
+  SnowflakeSessionPool(Connection primary, SessionFactory factory, int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("session pool size must be positive: " + maxSize);
+    }
+    this.primary = primary;
+    this.factory = factory;
+    this.maxSize = maxSize;
+    if (primary != null) {
+      this.idleSessions.add(new Session(primary, System.currentTimeMillis()));
+      this.openSessions = 1;
+    }
+  }
+
+  /**
+   * Run the given function on a session of the pool, waiting for one to be released if all of them
+   * are in use
+   *
+   * @param function statements to run
+   * @return result of the function
+   * @throws SQLException if the function failed, no session could be opened or the thread was
+   *     interrupted while waiting for a session
+   */
+  <T> T execute(SessionFunction<T> function) throws SQLException {
+    return run(session -> function.apply(session.connection));
+  }
+
+  /**
+   * Run the given function on a statement prepared on a session of the pool, the statement is
+   * reused by the next calls with the same text on that session
+   *
+   * @param query statement text
+   * @param function binds the parameters and runs the statement
+   * @return result of the function
+   * @throws SQLException if the statement could not be prepared, the function failed, no session
+   *     could be opened or the thread was interrupted while waiting for a session
+   */
+  <T> T executePrepared(String query, StatementFunction<T> function) throws SQLException {
+    return run(session -> session.runPrepared(query, function));
+  }
+
+  private <T> T run(SessionTask<T> task) throws SQLException {
+    Session session = heldSession.get();
+    if (session != null) {
+      return task.apply(session);
+    }
+    session = borrow();
+    heldSession.set(session);
+    try {
+      return task.apply(session);
+    } finally {
+      heldSession.remove();
+      release(session);
+    }
+  }
+
+  /** @return number of open sessions, including the primary connection if any */
+  synchronized int size() {
+    return openSessions;
+  }
+
+  /** Close all sessions but the primary connection, sessions in use are closed when released */
+  void close() {
+    List<Session> sessions;
+    synchronized (this) {
+      closed = true;
+      sessions = new ArrayList<>(idleSessions);
+      idleSessions.clear();
+      notifyAll();
+    }
+    sessions.forEach(this::discard);
+  }
+
+  private Session borrow() throws SQLException {
+    while (true) {
+      Session session;
+      synchronized (this) {
+        session = takeOrReserve();
+      }
+      if (session == null) {
+        // a slot was reserved for a new session
+        try {
+          Connection connection = factory.open();
+          LOGGER.info("opened a new JDBC session, pool size: {}", size());
+          return new Session(connection, System.currentTimeMillis());
+        } catch (SQLException e) {
+          boolean noSession;
+          synchronized (this) {
+            openSessions--;
+            nextOpenTimeMs = System.currentTimeMillis() + OPEN_RETRY_INTERVAL_MS;
+            noSession = openSessions == 0;
+            notifyAll();
+          }
+          if (noSession) {
+            // there is no session in use to wait for
+            throw e;
+          }
+          LOGGER.warn(
+              "failed to open a new JDBC session, waiting for a session in use: {}",
+              e.getMessage());
+          continue;
+        }
+      }
+      if (isHealthy(session)) {
+        return session;
+      }
+      LOGGER.info("dropping a closed or invalid JDBC session");
+      discard(session);
+    }
+  }
+
+  /** @return an idle session, null if a slot was reserved for a new session */
+  private Session takeOrReserve() throws SQLException {
+    while (true) {
+      if (closed) {
+        throw new SQLException("session pool is closed");
+      }
+      Session session = idleSessions.pollFirst();
+      if (session != null) {
+        return session;
+      }
+      long now = System.currentTimeMillis();
+      // without any session to wait for, the login is tried again right away
+      if (openSessions < maxSize && (now >= nextOpenTimeMs || openSessions == 0)) {
+        openSessions++;
+        return null;
+      }
+      try {
+        if (openSessions < maxSize) {
+          wait(nextOpenTimeMs - now);
+        } else {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("interrupted while waiting for a JDBC session", e);
+      }
+    }
+  }
+
+  private void release(Session session) {
+    session.lastUsedMs = System.currentTimeMillis();
+    boolean keep = session.connection == primary || !isClosed(session);
+    synchronized (this) {
+      keep &= !closed || session.connection == primary;
+      if (keep) {
+        idleSessions.addFirst(session);
+        notify();
+      }
+    }
+    if (!keep) {
+      discard(session);
+    }
+  }
+
+  private boolean isHealthy(Session session) {
+    if (session.connection == primary) {
+      // the service checks its primary connection itself
+      return true;
+    }
+    if (isClosed(session)) {
+      return false;
+    }
+    try {
+      return System.currentTimeMillis() - session.lastUsedMs < VALIDATION_INTERVAL_MS
+          || session.connection.isValid(VALIDATION_TIMEOUT_SEC);
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  private static boolean isClosed(Session session) {
+    try {
+      return session.connection.isClosed();
+    } catch (SQLException e) {
+      return true;
+    }
+  }
+
+  private void discard(Session session) {
+    if (session.connection == primary) {
+      return;
+    }
+    try {
+      session.connection.close();
+    } catch (SQLException e) {
+      LOGGER.warn("failed to close a JDBC session: {}", e.getMessage());
+    }
+    synchronized (this) {
+      openSessions--;
+      notifyAll();
+    }
+  }
+}
@@ -19,22 +19,37 @@ import com.snowflake.kafka.connector.records.RecordService;
 import com.snowflake.kafka.connector.records.SnowflakeJsonSchema;
 import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
 import com.snowflake.kafka.connector.records.SnowflakeRecordContent;
+import com.snowflake.kafka.connector.records.SnowpipeRecordWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.sink.SinkRecord;
@@ -56,6 +71,21 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
   private static final long TEN_MINUTES = 10 * 60 * 1000L;
   protected static final long CLEAN_TIME = 60 * 1000L; // one minutes
 
+  // number of files of this task uploaded to internal stage at the same time
+  @VisibleForTesting
+  static final int UPLOAD_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+  // number of files waiting for or in upload before put() blocks
+  @VisibleForTesting
+  static final int MAX_PENDING_UPLOADS = UPLOAD_THREAD_COUNT * 2;
+  // cleaner runs make blocking JDBC and REST calls, the cleaner pool gets one thread per this
+  // many partitions so that every pipe is cleaned within CLEAN_TIME
+  @VisibleForTesting
+  static final int PIPES_PER_CLEANER_THREAD = 8;
+  private static final int MAX_CLEANER_THREAD_COUNT = 32;
+  // a report poll is a single insertReport call every 20 seconds at most
+  private static final int PIPES_PER_REPORT_POLL_THREAD = 32;
+  private static final int MAX_REPORT_POLL_THREAD_COUNT = 8;
+
   // Set in config (Time based flush) in seconds
   private long flushTime;
   // Set in config (buffer size based flush) in bytes
@@ -71,6 +101,23 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
   private final SnowflakeTelemetryService telemetryService;
   private Map<String, String> topic2TableMap;
 
+  // chunks backing the compressed buffers of all partitions of this task
+  private final ByteChunkPool chunkPool;
+
+  // uploads files of all partitions off the put() thread, bounded by uploadPermits
+  private final ExecutorService uploadExecutor;
+  private final Semaphore uploadPermits;
+
+  // runs the cleaner of every partition of this task once per CLEAN_TIME, sized with the number of
+  // partitions
+  private final ScheduledThreadPoolExecutor cleanerExecutor;
+
+  // runs the ingest report polls, kept apart so that slow cleaner runs do not delay them
+  private final ScheduledThreadPoolExecutor reportPollExecutor;
+
+  // polls the ingest report of every partition of this task, runs on the reportPollExecutor
+  private final SnowpipeReportPoller reportPoller;
+
   // Behavior to be set at the start of connector start. (For tombstone records)
   private SnowflakeSinkConnectorConfig.BehaviorOnNullValues behaviorOnNullValues;
 
@@ -79,6 +126,19 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
   private boolean enableCustomJMXMonitoring = SnowflakeSinkConnectorConfig.JMX_OPT_DEFAULT;
 
   SnowflakeSinkServiceV1(SnowflakeConnectionService conn) {
+    this(conn, newScheduler("snowpipe-cleaner-"), newScheduler("snowpipe-report-poller-"));
+  }
+
+  /**
+   * @param conn connection service
+   * @param cleanerExecutor runs the cleaners, owned by this service from now on
+   * @param reportPollExecutor runs the ingest report polls, owned by this service from now on
+   */
+  @VisibleForTesting
+  SnowflakeSinkServiceV1(
+      SnowflakeConnectionService conn,
+      ScheduledThreadPoolExecutor cleanerExecutor,
+      ScheduledThreadPoolExecutor reportPollExecutor) {
     if (conn == null || conn.isClosed()) {
       throw SnowflakeErrors.ERROR_5010.getException();
     }
@@ -92,12 +152,64 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     this.telemetryService = conn.getTelemetryClient();
     this.recordService = new RecordService(this.telemetryService);
     this.topic2TableMap = new HashMap<>();
+    this.chunkPool = new ByteChunkPool();
+    AtomicInteger uploadThreadCount = new AtomicInteger(0);
+    this.uploadExecutor =
+        Executors.newFixedThreadPool(
+            UPLOAD_THREAD_COUNT,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, "snowpipe-upload-" + uploadThreadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.uploadPermits = new Semaphore(MAX_PENDING_UPLOADS);
+    this.cleanerExecutor = cleanerExecutor;
+    this.reportPollExecutor = reportPollExecutor;
+    this.reportPoller = new SnowpipeReportPoller(reportPollExecutor);
 
     // Setting the default value in constructor
     // meaning it will not ignore the null values (Tombstone records wont be ignored/filtered)
     this.behaviorOnNullValues = SnowflakeSinkConnectorConfig.BehaviorOnNullValues.DEFAULT;
   }
 
+  private static ScheduledThreadPoolExecutor newScheduler(String threadNamePrefix) {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // tasks of closed partitions are cancelled, do not keep them in the queue
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  /**
+   * @param pipeCount number of partitions of this task
+   * @param pipesPerThread number of partitions one thread can serve
+   * @param maxThreadCount upper bound
+   * @return number of threads needed for the given number of partitions, at least one
+   */
+  @VisibleForTesting
+  static int schedulerThreadCount(int pipeCount, int pipesPerThread, int maxThreadCount) {
+    int threadCount = (pipeCount + pipesPerThread - 1) / pipesPerThread;
+    return Math.max(1, Math.min(maxThreadCount, threadCount));
+  }
+
+  /** Size the cleaner and report poll pools for the current number of partitions */
+  private void resizeSchedulers() {
+    cleanerExecutor.setCorePoolSize(
+        schedulerThreadCount(pipes.size(), PIPES_PER_CLEANER_THREAD, MAX_CLEANER_THREAD_COUNT));
+    reportPollExecutor.setCorePoolSize(
+        schedulerThreadCount(
+            pipes.size(), PIPES_PER_REPORT_POLL_THREAD, MAX_REPORT_POLL_THREAD_COUNT));
+  }
+
   /**
    * Create new ingestion task from existing table and stage, tries to reuse existing pipe and
    * recover previous task, otherwise, create a new pipe.
@@ -107,24 +219,140 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
    */
   @Override
   public void startPartition(final String tableName, final TopicPartition topicPartition) {
+    createServiceContext(tableName, topicPartition);
+  }
+
+  /**
+   * Create the ingestion tasks of the given partitions. Unlike {@link #startPartition(String,
+   * TopicPartition)}, the table, stage and pipes are checked right away, in bulk for all partitions
+   * of a table: the table and stage are checked once, the stage is listed once for the files of all
+   * partitions and the pipes are checked with a single statement. Partitions of a table whose bulk
+   * check failed are initialized on their first record instead.
+   *
+   * @param partitions TopicPartitions passed from Kafka
+   * @param topic2Table topic to table map
+   */
+  @Override
+  public void startPartitions(
+      Collection<TopicPartition> partitions, Map<String, String> topic2Table) {
+    Map<String, List<ServiceContext>> newPipesByTable = new LinkedHashMap<>();
+    for (TopicPartition tp : partitions) {
+      String tableName = Utils.tableName(tp.topic(), topic2Table);
+      ServiceContext pipe = createServiceContext(tableName, tp);
+      if (pipe != null) {
+        newPipesByTable.computeIfAbsent(tableName, k -> new ArrayList<>()).add(pipe);
+      }
+    }
+    for (Map.Entry<String, List<ServiceContext>> entry : newPipesByTable.entrySet()) {
+      try {
+        bootstrapPipes(entry.getKey(), entry.getValue());
+      } catch (Exception e) {
+        LOGGER.warn(
+            "Bulk initialization of the pipes of table {} failed, they are initialized on their"
+                + " first record: {}",
+            entry.getKey(),
+            e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @param tableName destination table name in Snowflake
+   * @param topicPartition TopicPartition passed from Kafka
+   * @return the new ingestion task, null if the partition is already registered
+   */
+  private ServiceContext createServiceContext(
+      final String tableName, final TopicPartition topicPartition) {
     String stageName = Utils.stageName(conn.getConnectorName(), tableName);
     String nameIndex = getNameIndex(topicPartition.topic(), topicPartition.partition());
     if (pipes.containsKey(nameIndex)) {
       LOGGER.warn("task is already registered with {} partition", nameIndex);
+      return null;
+    }
+    String pipeName =
+        Utils.pipeName(conn.getConnectorName(), tableName, topicPartition.partition());
+    ServiceContext pipe =
+        new ServiceContext(tableName, stageName, pipeName, conn, topicPartition.partition());
+    pipes.put(nameIndex, pipe);
+    resizeSchedulers();
+    return pipe;
+  }
+
+  /**
+   * Check or create the table, stage and pipes of new partitions of one table, the same way {@link
+   * ServiceContext#createTableAndStage} and {@link ServiceContext#recover} do for one partition,
+   * and hand every pipe its files found on stage.
+   *
+   * @param tableName table name
+   * @param newPipes ingestion tasks of the new partitions of the table
+   */
+  private void bootstrapPipes(String tableName, List<ServiceContext> newPipes) {
+    String stageName = newPipes.get(0).stageName;
+    long startTime = System.currentTimeMillis();
+
+    boolean reuseTable = conn.tableExist(tableName);
+    if (reuseTable) {
+      if (!conn.isTableCompatible(tableName)) {
+        throw SnowflakeErrors.ERROR_5003.getException("table name: " + tableName, telemetryService);
+      }
+      LOGGER.info("Using existing table {}.", tableName);
     } else {
-      String pipeName =
-          Utils.pipeName(conn.getConnectorName(), tableName, topicPartition.partition());
+      LOGGER.info("Creating new table {}.", tableName);
+      conn.createTable(tableName);
+    }
 
-      pipes.put(
-          nameIndex,
-          new ServiceContext(tableName, stageName, pipeName, conn, topicPartition.partition()));
+    // files of all partitions, grouped by partition prefix
+    Map<String, List<String>> filesByPrefix = new HashMap<>();
+    boolean reuseStage = conn.stageExist(stageName);
+    if (reuseStage) {
+      // one listing checks the stage compatibility and finds the files of every partition
+      for (String name : conn.listStage(stageName, "")) {
+        StagedFileName fileName = StagedFileName.tryParse(name);
+        if (fileName == null) {
+          LOGGER.debug("file name {} in stage {} is not valid", name, stageName);
+          throw SnowflakeErrors.ERROR_5004.getException(
+              "stage name: " + stageName, telemetryService);
+        }
+        filesByPrefix.computeIfAbsent(fileName.getPrefix(), k -> new ArrayList<>()).add(name);
+      }
+      LOGGER.info("Using existing stage {}.", stageName);
+    } else {
+      LOGGER.info("Creating new stage {}.", stageName);
+      conn.createStage(stageName);
     }
-  }
 
-  @Override
-  public void startPartitions(
-      Collection<TopicPartition> partitions, Map<String, String> topic2Table) {
-    partitions.forEach(tp -> this.startPartition(Utils.tableName(tp.topic(), topic2Table), tp));
+    // pipe names only differ by their partition number suffix
+    ServiceContext first = newPipes.get(0);
+    String pipeNamePrefix =
+        first.pipeName.substring(
+            0, first.pipeName.length() - String.valueOf(first.partition).length());
+    Map<String, Boolean> pipeCompatibility =
+        conn.getPipeCompatibility(tableName, stageName, pipeNamePrefix);
+
+    for (ServiceContext pipe : newPipes) {
+      SnowflakeTelemetryPipeCreation pipeCreation =
+          new SnowflakeTelemetryPipeCreation(tableName, stageName, pipe.pipeName);
+      pipeCreation.setReuseTable(reuseTable);
+      pipeCreation.setReuseStage(reuseStage);
+      Boolean compatible = pipeCompatibility.get(pipe.pipeName.toUpperCase());
+      if (compatible == null) {
+        conn.createPipe(tableName, stageName, pipe.pipeName);
+      } else if (compatible) {
+        LOGGER.info("pipe {}, recovered from existing pipe", pipe.pipeName);
+        pipeCreation.setReusePipe(true);
+      } else {
+        // left to the initialization on the first record, which fails as before
+        LOGGER.warn("pipe {} is not compatible", pipe.pipeName);
+        continue;
+      }
+      pipe.setBootstrapped(
+          pipeCreation, filesByPrefix.getOrDefault(pipe.prefix, new ArrayList<>()));
+    }
+    LOGGER.info(
+        "initialized {} pipes of table {} in {} ms",
+        newPipes.size(),
+        tableName,
+        System.currentTimeMillis() - startTime);
   }
 
   @Override
@@ -216,6 +444,7 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
                 tp.partition());
           }
         });
+    resizeSchedulers();
   }
 
   @Override
@@ -227,11 +456,19 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           context.unregisterPipeJMXMetrics();
         });
     pipes.clear();
+    // uploads already submitted are finished, their files are picked up by the cleaner on restart
+    uploadExecutor.shutdown();
+    cleanerExecutor.shutdown();
+    reportPollExecutor.shutdown();
   }
 
   @Override
   public void setIsStoppedToTrue() {
     this.isStopped = true; // release all cleaner and flusher threads
+    uploadExecutor.shutdown();
+    // periodic cleaners stop, a pending purge of reprocessed files still runs
+    cleanerExecutor.shutdown();
+    reportPollExecutor.shutdown();
   }
 
   @Override
@@ -338,6 +575,11 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     return Optional.empty();
   }
 
+  @VisibleForTesting
+  int getPooledChunkCount() {
+    return chunkPool.getPooledChunkCount();
+  }
+
   @VisibleForTesting
   protected static String getNameIndex(String topic, int partition) {
     return topic + "_" + partition;
@@ -349,26 +591,35 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     private final String pipeName;
     private final SnowflakeConnectionService conn;
     private final SnowflakeIngestionService ingestionService;
-    private List<String> fileNames;
+    private List<StagedFileName> fileNames;
 
-    // Includes a list of files:
+    // Includes the files:
     // 1. Which are added after a flush into internal stage is successful
     // 2. While an app restarts and we do list on an internal stage to find out what needs to be
     // done on leaked files.
-    private List<String> cleanerFileNames;
+    // guarded by fileListLock
+    private final InFlightFileRegistry cleanerFiles;
     private SnowpipeBuffer buffer;
     private final String prefix;
+    private final int partition;
     private final AtomicLong committedOffset; // loaded offset + 1
     private final AtomicLong flushedOffset; // flushed offset (file on stage)
     private final AtomicLong processedOffset; // processed offset
     private long previousFlushTimeStamp;
 
-    // threads
-    private final ExecutorService cleanerExecutor;
-    private final ExecutorService reprocessCleanerExecutor;
+    // cleaner runs scheduled on the task cleanerExecutor, null until the pipe is initialized
+    private ScheduledFuture<?> cleanerFuture;
+    private ScheduledFuture<?> reprocessCleanerFuture;
+    // ingest report statuses polled for this pipe, null until the pipe is initialized
+    private SnowpipeReportPoller.Registration reportPolling;
     private final Lock bufferLock;
     private final Lock fileListLock;
 
+    // files submitted for upload in flush order, guarded by fileListLock
+    private final Deque<PendingUpload> pendingUploads;
+    // first failure of an asynchronous upload, rethrown on the put() thread
+    private final AtomicReference<RuntimeException> uploadFailure;
+
     // telemetry
     private final SnowflakeTelemetryPipeStatus pipeStatus;
     // non null
@@ -383,7 +634,12 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
     // make the initialization lazy
     private boolean hasInitialized = false;
-    private boolean forceCleanerFileReset = false;
+    // set when the table, stage and pipe were checked on assignment, null otherwise
+    private SnowflakeTelemetryPipeCreation bootstrapPipeCreation = null;
+    // files of this pipe found on stage on assignment
+    private List<String> bootstrapFilesOnStage = null;
+    // consecutive cleaner runs may happen on different threads of the shared executor
+    private volatile boolean forceCleanerFileReset = false;
 
     private ServiceContext(
         String tableName,
@@ -396,10 +652,11 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       this.stageName = stageName;
       this.conn = conn;
       this.fileNames = new LinkedList<>();
-      this.cleanerFileNames = new LinkedList<>();
+      this.cleanerFiles = new InFlightFileRegistry();
       this.buffer = new SnowpipeBuffer();
       this.ingestionService = conn.buildIngestService(stageName, pipeName);
       this.prefix = FileNameUtils.filePrefix(conn.getConnectorName(), tableName, partition);
+      this.partition = partition;
       this.processedOffset = new AtomicLong(-1);
       this.flushedOffset = new AtomicLong(-1);
       this.committedOffset = new AtomicLong(0);
@@ -407,6 +664,8 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
       this.bufferLock = new ReentrantLock();
       this.fileListLock = new ReentrantLock();
+      this.pendingUploads = new ArrayDeque<>();
+      this.uploadFailure = new AtomicReference<>();
       this.metricRegistry = new MetricRegistry();
       this.metricsJmxReporter =
           new MetricsJmxReporter(this.metricRegistry, conn.getConnectorName());
@@ -415,9 +674,6 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           new SnowflakeTelemetryPipeStatus(
               tableName, stageName, pipeName, enableCustomJMXMonitoring, this.metricsJmxReporter);
 
-      this.cleanerExecutor = Executors.newSingleThreadExecutor();
-      this.reprocessCleanerExecutor = Executors.newSingleThreadExecutor();
-
       if (enableCustomJMXMonitoring) {
         partitionBufferCountHistogram =
             this.metricRegistry.histogram(
@@ -432,18 +688,40 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       LOGGER.info("pipe: {} - service started", pipeName);
     }
 
+    /**
+     * Record that the table, stage and pipe were already checked, the first record then does not
+     * check them again
+     *
+     * @param pipeCreation telemetry of the checks
+     * @param filesOnStage files of this pipe on stage, the cleaner starts with them
+     */
+    private void setBootstrapped(
+        SnowflakeTelemetryPipeCreation pipeCreation, List<String> filesOnStage) {
+      this.bootstrapPipeCreation = pipeCreation;
+      this.bootstrapFilesOnStage = filesOnStage;
+    }
+
     private void init(long recordOffset) {
       LOGGER.info("init pipe: {}", pipeName);
-      SnowflakeTelemetryPipeCreation pipeCreation =
-          new SnowflakeTelemetryPipeCreation(tableName, stageName, pipeName);
+      SnowflakeTelemetryPipeCreation pipeCreation;
+      List<String> filesOnStage = null;
+      if (bootstrapPipeCreation != null) {
+        // checked on assignment, only this task adds files to this pipe's prefix since then
+        pipeCreation = bootstrapPipeCreation;
+        filesOnStage = bootstrapFilesOnStage;
+        bootstrapPipeCreation = null;
+        bootstrapFilesOnStage = null;
+      } else {
+        pipeCreation = new SnowflakeTelemetryPipeCreation(tableName, stageName, pipeName);
 
-      // wait for sinkConnector to start
-      createTableAndStage(pipeCreation);
-      // recover will only check pipe status and create pipe if it does not exist.
-      recover(pipeCreation);
+        // wait for sinkConnector to start
+        createTableAndStage(pipeCreation);
+        // recover will only check pipe status and create pipe if it does not exist.
+        recover(pipeCreation);
+      }
 
       try {
-        startCleaner(recordOffset, pipeCreation);
+        startCleaner(recordOffset, pipeCreation, filesOnStage);
         telemetryService.reportKafkaPartitionStart(pipeCreation);
       } catch (Exception e) {
         LOGGER.warn("Cleaner and Flusher threads shut down before initialization");
@@ -460,8 +738,8 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
         List<String> tmpCleanerFileNames = conn.listStage(stageName, prefix);
         fileListLock.lock();
         try {
-          cleanerFileNames.addAll(tmpCleanerFileNames);
-          cleanerFileNames = cleanerFileNames.stream().distinct().collect(Collectors.toList());
+          // files still registered are ignored
+          cleanerFiles.addAll(tmpCleanerFileNames);
         } finally {
           fileListLock.unlock();
         }
@@ -476,10 +754,13 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
     // If there are files already on stage, we need to decide whether we will reprocess the offsets
     // or we will purge them.
-    private void startCleaner(long recordOffset, SnowflakeTelemetryPipeCreation pipeCreation) {
+    // filesOnStage: files of this pipe on stage if already listed, null to list them
+    private void startCleaner(
+        long recordOffset, SnowflakeTelemetryPipeCreation pipeCreation, List<String> filesOnStage) {
       // When cleaner start, scan stage for all files of this pipe.
       // If we know that we are going to reprocess the file, then safely delete the file.
-      List<String> currentFilesOnStage = conn.listStage(stageName, prefix);
+      List<String> currentFilesOnStage =
+          filesOnStage != null ? filesOnStage : conn.listStage(stageName, prefix);
       List<String> reprocessFiles = new ArrayList<>();
 
       filterFileReprocess(currentFilesOnStage, reprocessFiles, recordOffset);
@@ -494,57 +775,75 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
 
       fileListLock.lock();
       try {
-        cleanerFileNames.addAll(currentFilesOnStage);
+        cleanerFiles.addAll(currentFilesOnStage);
       } finally {
         fileListLock.unlock();
       }
 
-      cleanerExecutor.submit(
-          () -> {
-            LOGGER.info("pipe {}: cleaner started", pipeName);
-            while (!isStopped) {
-              try {
-                telemetryService.reportKafkaPartitionUsage(pipeStatus, false);
-                Thread.sleep(CLEAN_TIME);
-
-                if (forceCleanerFileReset && resetCleanerFiles()) {
-                  continue;
-                }
-
-                checkStatus();
-              } catch (InterruptedException e) {
-                LOGGER.info("Cleaner terminated by an interrupt:\n{}", e.getMessage());
-                break;
-              } catch (Exception e) {
-                LOGGER.warn(
-                    "Cleaner encountered an exception {}:\n{}\n{}",
-                    e.getClass(),
-                    e.getMessage(),
-                    e.getStackTrace());
-                telemetryService.reportKafkaConnectFatalError(e.getMessage());
-                forceCleanerFileReset = true;
-              }
-            }
-          });
+      reportPolling =
+          reportPoller.register(
+              pipeName,
+              ingestionService,
+              this::getCleanerFileCount,
+              pipeStatus::updateInsertReportLatency);
+
+      // spread the cleaners of all partitions over the clean interval, so that they do not all
+      // call Snowpipe at the same time
+      long initialDelay = CLEAN_TIME + ThreadLocalRandom.current().nextLong(CLEAN_TIME);
+      cleanerFuture =
+          cleanerExecutor.scheduleWithFixedDelay(
+              this::runCleaner, initialDelay, CLEAN_TIME, TimeUnit.MILLISECONDS);
+      LOGGER.info("pipe {}: cleaner started", pipeName);
 
       if (reprocessFiles.size() > 0) {
-        // After we start the cleaner thread, delay a while and start deleting files.
-        reprocessCleanerExecutor.submit(
-            () -> {
-              try {
-                Thread.sleep(CLEAN_TIME);
-                LOGGER.info(
-                    "Purging files already present on the stage before start. ReprocessFileSize:{}",
-                    reprocessFiles.size());
-                purge(reprocessFiles);
-              } catch (Exception e) {
-                LOGGER.error(
-                    "Reprocess cleaner encountered an exception {}:\n{}\n{}",
-                    e.getClass(),
-                    e.getMessage(),
-                    e.getStackTrace());
-              }
-            });
+        // After we start the cleaner, delay a while and start deleting files.
+        reprocessCleanerFuture =
+            cleanerExecutor.schedule(
+                () -> {
+                  try {
+                    LOGGER.info(
+                        "Purging files already present on the stage before start."
+                            + " ReprocessFileSize:{}",
+                        reprocessFiles.size());
+                    purge(reprocessFiles);
+                  } catch (Exception e) {
+                    LOGGER.error(
+                        "Reprocess cleaner encountered an exception {}:\n{}\n{}",
+                        e.getClass(),
+                        e.getMessage(),
+                        e.getStackTrace());
+                  }
+                },
+                CLEAN_TIME,
+                TimeUnit.MILLISECONDS);
+      }
+    }
+
+    /**
+     * One cleaner run of this pipe. Every exception is caught here, it would otherwise cancel the
+     * periodic run and the failure of one pipe must not affect the cleaners of other pipes sharing
+     * the executor.
+     */
+    private void runCleaner() {
+      if (isStopped) {
+        return;
+      }
+      try {
+        telemetryService.reportKafkaPartitionUsage(pipeStatus, false);
+
+        if (forceCleanerFileReset && resetCleanerFiles()) {
+          return;
+        }
+
+        checkStatus();
+      } catch (Exception e) {
+        LOGGER.warn(
+            "Cleaner encountered an exception {}:\n{}\n{}",
+            e.getClass(),
+            e.getMessage(),
+            e.getStackTrace());
+        telemetryService.reportKafkaConnectFatalError(e.getMessage());
+        forceCleanerFileReset = true;
       }
     }
 
@@ -570,28 +869,36 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
      */
     private void filterFileReprocess(
         List<String> currentFilesOnStage, List<String> reprocessFiles, long recordOffset) {
-      // iterate over a copy since reprocess files get removed from it
-      new LinkedList<>(currentFilesOnStage)
-          .forEach(
-              name -> {
-                long fileStartOffset = FileNameUtils.fileNameToStartOffset(name);
-                // If start offset of this file is greater than the offset of the record that is
-                // sent to the connector,
-                // all content of this file will be reprocessed. Thus this file can be deleted.
-                if (recordOffset <= fileStartOffset) {
-                  reprocessFiles.add(name);
-                  currentFilesOnStage.remove(name);
-                }
-              });
+      currentFilesOnStage.removeIf(
+          name -> {
+            long fileStartOffset = StagedFileName.parse(name).getStartOffset();
+            // If start offset of this file is greater than the offset of the record that is
+            // sent to the connector,
+            // all content of this file will be reprocessed. Thus this file can be deleted.
+            if (recordOffset <= fileStartOffset) {
+              reprocessFiles.add(name);
+              return true;
+            }
+            return false;
+          });
     }
 
     private void stopCleaner() {
-      cleanerExecutor.shutdownNow();
-      reprocessCleanerExecutor.shutdownNow();
+      // a run in progress completes, the executor is shared with other pipes
+      if (cleanerFuture != null) {
+        cleanerFuture.cancel(false);
+      }
+      if (reportPolling != null) {
+        reportPolling.cancel();
+      }
+      if (reprocessCleanerFuture != null) {
+        reprocessCleanerFuture.cancel(false);
+      }
       LOGGER.info("pipe {}: cleaner terminated", pipeName);
     }
 
     private void insert(final SinkRecord record) {
+      throwIfUploadFailed();
       // init pipe
       if (!hasInitialized) {
         // This will only be called once at the beginning when an offset arrives for first time
@@ -701,6 +1008,7 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
 
     private void flushBuffer() {
+      throwIfUploadFailed();
       // Just checking buffer size, no atomic operation required
       if (buffer.isEmpty()) {
         return;
@@ -742,34 +1050,36 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
 
     private long getOffset() {
-      if (fileNames.isEmpty()) {
-        return committedOffset.get();
-      }
+      throwIfUploadFailed();
 
-      List<String> fileNamesCopy = new ArrayList<>();
-      List<String> fileNamesForMetrics = new ArrayList<>();
+      List<StagedFileName> filesToIngest;
+      long flushedOffsetOfFiles;
       fileListLock.lock();
       try {
-        fileNamesCopy.addAll(fileNames);
-        fileNamesForMetrics.addAll(fileNames);
+        if (fileNames.isEmpty()) {
+          return committedOffset.get();
+        }
+        filesToIngest = fileNames;
         fileNames = new LinkedList<>();
+        // read together with the file names, files uploaded meanwhile are committed next time
+        flushedOffsetOfFiles = flushedOffset.get();
       } finally {
         fileListLock.unlock();
       }
 
+      List<String> fileNamesCopy = toFileNames(filesToIngest);
       LOGGER.info("pipe {}, ingest files: {}", pipeName, fileNamesCopy);
 
       ingestionService.ingestFiles(fileNamesCopy);
 
       // committedOffset should be updated only when ingestFiles has succeeded.
-      committedOffset.set(flushedOffset.get());
+      committedOffset.set(flushedOffsetOfFiles);
       // update telemetry data
       long currentTime = System.currentTimeMillis();
       pipeStatus.setCommittedOffset(committedOffset.get() - 1);
-      pipeStatus.addAndGetFileCountOnIngestion(fileNamesForMetrics.size());
-      fileNamesForMetrics.forEach(
-          name ->
-              pipeStatus.updateCommitLag(currentTime - FileNameUtils.fileNameToTimeIngested(name)));
+      pipeStatus.addAndGetFileCountOnIngestion(filesToIngest.size());
+      filesToIngest.forEach(
+          file -> pipeStatus.updateCommitLag(currentTime - file.getTimeIngested()));
 
       return committedOffset.get();
     }
@@ -780,108 +1090,214 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       }
       this.previousFlushTimeStamp = System.currentTimeMillis();
 
-      // If we failed to submit/put, throw an runtime exception that kills the connector.
-      // SnowflakeThreadPoolUtils.flusherThreadPool.submit(
-      String fileName = FileNameUtils.fileName(prefix, buff.getFirstOffset(), buff.getLastOffset());
-      String content = buff.getData();
-      conn.putWithCache(stageName, fileName, content);
+      StagedFileName fileName =
+          StagedFileName.of(
+              prefix,
+              partition,
+              buff.getFirstOffset(),
+              buff.getLastOffset(),
+              System.currentTimeMillis());
+      LOGGER.debug("generated file name: {}", fileName);
+      ChunkedGzipBuffer content = buff.getData();
+      PendingUpload upload = new PendingUpload(fileName, buff.getLastOffset(), content);
+
+      // backpressure, put() waits here while too many files of this task are not uploaded yet
+      try {
+        uploadPermits.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        content.release();
+        throw SnowflakeErrors.ERROR_2011.getException(e, telemetryService);
+      }
 
-      // compute metrics which will be exported to JMX for now.
-      // TODO: Send it to Telemetry API too
-      computeBufferMetrics(buff);
+      fileListLock.lock();
+      try {
+        pendingUploads.addLast(upload);
+      } finally {
+        fileListLock.unlock();
+      }
 
-      // This is safe and atomic
-      flushedOffset.updateAndGet((value) -> Math.max(buff.getLastOffset() + 1, value));
-      pipeStatus.setFlushedOffset(flushedOffset.get() - 1);
-      pipeStatus.addAndGetFileCountOnStage(1L); // plus one
-      pipeStatus.resetMemoryUsage();
+      try {
+        upload.future = uploadExecutor.submit(() -> upload(upload, buff, content));
+      } catch (RejectedExecutionException e) {
+        fileListLock.lock();
+        try {
+          pendingUploads.remove(upload);
+        } finally {
+          fileListLock.unlock();
+        }
+        uploadPermits.release();
+        content.release();
+        throw SnowflakeErrors.ERROR_2011.getException(e, telemetryService);
+      }
+    }
 
+    /**
+     * Called when the partition is closed. Uploads which did not start are cancelled, their records
+     * are consumed again by the next owner of the partition since their offsets were never
+     * committed. Uploads in progress are waited for, so that their files are on stage before the
+     * next owner lists the stage.
+     */
+    private void cancelPendingUploads() {
+      List<PendingUpload> uploads;
       fileListLock.lock();
       try {
-        fileNames.add(fileName);
-        cleanerFileNames.add(fileName);
+        uploads = new ArrayList<>(pendingUploads);
       } finally {
         fileListLock.unlock();
       }
+      for (PendingUpload upload : uploads) {
+        Future<?> future = upload.future;
+        if (future == null) {
+          continue;
+        }
+        if (future.cancel(false)) {
+          fileListLock.lock();
+          try {
+            pendingUploads.remove(upload);
+          } finally {
+            fileListLock.unlock();
+          }
+          pipeStatus.addAndGetMemoryUsage(-upload.content.getCompressedSizeBytes());
+          upload.content.release();
+          uploadPermits.release();
+          LOGGER.info("pipe {}, cancelled upload of file {}", pipeName, upload.fileName);
+        } else {
+          try {
+            // failures are handled by the upload itself
+            future.get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("pipe {}, interrupted while waiting for uploads to complete", pipeName);
+            return;
+          } catch (ExecutionException | CancellationException e) {
+            LOGGER.warn("pipe {}, upload of file {} failed", pipeName, upload.fileName);
+          }
+        }
+      }
+    }
 
-      LOGGER.info("pipe {}, flush pipe: {}", pipeName, fileName);
+    /**
+     * Runs on the upload executor. If we failed to put, the failure is rethrown on the next put()
+     * which kills the connector, offsets never move past a file which is not on stage.
+     */
+    private void upload(
+        final PendingUpload upload, final SnowpipeBuffer buff, final ChunkedGzipBuffer content) {
+      try {
+        conn.putWithCache(stageName, upload.fileName.getName(), content);
+
+        // compute metrics which will be exported to JMX for now.
+        // TODO: Send it to Telemetry API too
+        computeBufferMetrics(buff);
+        completeUpload(upload);
+        LOGGER.info("pipe {}, flush pipe: {}", pipeName, upload.fileName);
+      } catch (RuntimeException e) {
+        LOGGER.error(
+            "pipe {}, failed to upload file {}:\n{}", pipeName, upload.fileName, e.getMessage());
+        uploadFailure.compareAndSet(null, e);
+      } finally {
+        pipeStatus.addAndGetMemoryUsage(-content.getCompressedSizeBytes());
+        content.release();
+        uploadPermits.release();
+      }
     }
 
-    private void checkStatus() {
-      // We are using a temporary list which will reset the cleanerFileNames
-      // After this checkStatus() call, we will have an updated cleanerFileNames which are subset of
-      // existing cleanerFileNames
-      // this time th
-      List<String> tmpFileNames;
+    /**
+     * Files of a partition can finish uploading out of order. The flushed offset only moves past
+     * the files whose predecessors are all on stage, so that preCommit never reports an offset
+     * whose data might be lost.
+     */
+    private void completeUpload(final PendingUpload upload) {
+      fileListLock.lock();
+      try {
+        upload.uploaded = true;
+        while (!pendingUploads.isEmpty() && pendingUploads.peekFirst().uploaded) {
+          PendingUpload uploaded = pendingUploads.pollFirst();
+          // This is safe and atomic
+          flushedOffset.updateAndGet((value) -> Math.max(uploaded.lastOffset + 1, value));
+          pipeStatus.setFlushedOffset(flushedOffset.get() - 1);
+          pipeStatus.addAndGetFileCountOnStage(1L); // plus one
+          fileNames.add(uploaded.fileName);
+          cleanerFiles.add(uploaded.fileName);
+        }
+      } finally {
+        fileListLock.unlock();
+      }
+    }
 
+    private int getCleanerFileCount() {
       fileListLock.lock();
       try {
-        tmpFileNames = cleanerFileNames;
-        cleanerFileNames = new LinkedList<>();
+        return cleanerFiles.size();
       } finally {
         fileListLock.unlock();
       }
+    }
 
-      long currentTime = System.currentTimeMillis();
-      List<String> loadedFiles = new LinkedList<>();
-      List<String> failedFiles = new LinkedList<>();
-
-      // ingest report
-      // This will update the loadedFiles (successfully loaded) &
-      // failedFiles: PARTIAL + FAILED
-      // In any cases tmpFileNames will be updated.
-      // If we get all files in ingestReport, tmpFileNames will be empty
-      filterResultFromSnowpipeScan(
-          ingestionService.readIngestReport(tmpFileNames), tmpFileNames, loadedFiles, failedFiles);
-
-      // old files
-      List<String> oldFiles = new LinkedList<>();
-
-      // iterate over a copy since failed files get removed from it
-      // Iterate over those files which were not found in ingest report call and are sitting more
-      // than an hour earlier.
-      // Also add those files into oldFiles which are not purged/found in ingestReport since last 10
-      // minutes.
-      new LinkedList<>(tmpFileNames)
-          .forEach(
-              name -> {
-                long time = FileNameUtils.fileNameToTimeIngested(name);
-                if (time < currentTime - ONE_HOUR) {
-                  failedFiles.add(name);
-                  tmpFileNames.remove(name);
-                } else if (time < currentTime - TEN_MINUTES) {
-                  oldFiles.add(name);
-                }
-              });
-      // load history
-      // Use loadHistoryScan API to scan last one hour of data and if filter files from above
-      // filtered list.
-      // This is the last filtering we do and after this, we start purging loadedFiles and moving
-      // failedFiles to tableStage
-      if (!oldFiles.isEmpty()) {
-        filterResultFromSnowpipeScan(
-            ingestionService.readOneHourHistory(tmpFileNames, currentTime - ONE_HOUR),
-            tmpFileNames,
-            loadedFiles,
-            failedFiles);
+    private void throwIfUploadFailed() {
+      RuntimeException failure = uploadFailure.get();
+      if (failure != null) {
+        throw failure;
       }
-      purge(loadedFiles);
+    }
 
-      moveToTableStage(failedFiles);
+    private void checkStatus() {
+      // Files are removed from cleanerFiles as soon as they are found loaded or failed, the others
+      // stay registered for the next run. Snowpipe is called without holding the lock, files
+      // uploaded meanwhile are registered and checked by the next run.
+
+      // drained before taking the lock, files are only ingested once they are registered, so every
+      // reported file is registered
+      Map<String, InternalUtils.IngestedFileStatus> reportedStatus = reportPolling.drain();
+
+      long currentTime = System.currentTimeMillis();
+      List<StagedFileName> loadedFiles = new ArrayList<>();
+      List<StagedFileName> failedFiles = new ArrayList<>();
+      List<String> remainingFileNames = null;
 
       fileListLock.lock();
       try {
-        // Add back all those files which were neither found in ingestReport nor in loadHistoryScan
-        cleanerFileNames.addAll(tmpFileNames);
+        // ingest report, polled in the background since the previous run
+        // This will update the loadedFiles (successfully loaded) &
+        // failedFiles: PARTIAL + FAILED
+        filterResultFromSnowpipeScan(reportedStatus, loadedFiles, failedFiles);
+
+        // Files which were not found in ingest report call and are sitting more than an hour
+        // earlier are failed.
+        failedFiles.addAll(cleanerFiles.removeIngestedBefore(currentTime - ONE_HOUR));
+
+        // If some files are not purged/found in ingestReport since last 10 minutes, the load
+        // history of every remaining file is scanned.
+        if (cleanerFiles.hasIngestedBefore(currentTime - TEN_MINUTES)) {
+          remainingFileNames = cleanerFiles.getFileNames();
+        }
       } finally {
         fileListLock.unlock();
       }
 
+      // load history
+      // Use loadHistoryScan API to scan last one hour of data and if filter files from above
+      // filtered list.
+      // This is the last filtering we do and after this, we start purging loadedFiles and moving
+      // failedFiles to tableStage
+      if (remainingFileNames != null) {
+        Map<String, InternalUtils.IngestedFileStatus> history =
+            ingestionService.readOneHourHistory(remainingFileNames, currentTime - ONE_HOUR);
+        fileListLock.lock();
+        try {
+          filterResultFromSnowpipeScan(history, loadedFiles, failedFiles);
+        } finally {
+          fileListLock.unlock();
+        }
+      }
+      purge(toFileNames(loadedFiles));
+
+      moveToTableStage(toFileNames(failedFiles));
+
       // update purged offset in telemetry
       loadedFiles.forEach(
-          name ->
-              pipeStatus.setPurgedOffsetAtomically(
-                  value -> Math.max(FileNameUtils.fileNameToEndOffset(name), value)));
+          file ->
+              pipeStatus.setPurgedOffsetAtomically(value -> Math.max(file.getEndOffset(), value)));
       // update file count in telemetry
       int fileCountRemovedFromStage = loadedFiles.size() + failedFiles.size();
       pipeStatus.addAndGetFileCountOnStage(-fileCountRemovedFromStage);
@@ -891,29 +1307,25 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       pipeStatus.addAndGetFileCountPurged(loadedFiles.size());
       // update lag information
       loadedFiles.forEach(
-          name ->
-              pipeStatus.updateIngestionLag(
-                  currentTime - FileNameUtils.fileNameToTimeIngested(name)));
+          file -> pipeStatus.updateIngestionLag(currentTime - file.getTimeIngested()));
     }
 
     // fileStatus Map may include mapping of fileNames with their ingestion status.
     // It can be received either from insertReport API or loadHistoryScan
+    // Loaded and failed files are removed from cleanerFiles, fileListLock must be held.
     private void filterResultFromSnowpipeScan(
         Map<String, InternalUtils.IngestedFileStatus> fileStatus,
-        List<String> allFiles,
-        List<String> loadedFiles,
-        List<String> failedFiles) {
+        List<StagedFileName> loadedFiles,
+        List<StagedFileName> failedFiles) {
       fileStatus.forEach(
           (name, status) -> {
             switch (status) {
               case LOADED:
-                loadedFiles.add(name);
-                allFiles.remove(name);
+                addIfRegistered(cleanerFiles.remove(name), loadedFiles);
                 break;
               case FAILED:
               case PARTIALLY_LOADED:
-                failedFiles.add(name);
-                allFiles.remove(name);
+                addIfRegistered(cleanerFiles.remove(name), failedFiles);
                 break;
               default:
                 // otherwise, do nothing
@@ -921,6 +1333,18 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
           });
     }
 
+    private void addIfRegistered(StagedFileName file, List<StagedFileName> files) {
+      if (file != null) {
+        files.add(file);
+      }
+    }
+
+    private List<String> toFileNames(List<StagedFileName> files) {
+      List<String> fileNames = new ArrayList<>(files.size());
+      files.forEach(file -> fileNames.add(file.getName()));
+      return fileNames;
+    }
+
     private void purge(List<String> files) {
       if (!files.isEmpty()) {
         LOGGER.debug(
@@ -928,7 +1352,7 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
             pipeName,
             files.size(),
             Arrays.toString(files.toArray()));
-        conn.purgeStage(stageName, files);
+        conn.purgeStage(stageName, files, pipeStatus::updatePurgeBatchLatency);
       }
     }
 
@@ -957,6 +1381,8 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
     }
 
     private void close() {
+      cancelPendingUploads();
+      releaseBuffer();
       try {
         stopCleaner();
       } catch (Exception e) {
@@ -1001,6 +1427,20 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       }
     }
 
+    /**
+     * Called when the partition is closed. Records which were not flushed yet are consumed again by
+     * the next owner of the partition, their chunks go back to the pool.
+     */
+    private void releaseBuffer() {
+      bufferLock.lock();
+      try {
+        buffer.release();
+        this.buffer = new SnowpipeBuffer();
+      } finally {
+        bufferLock.unlock();
+      }
+    }
+
     private boolean isBufferEmpty() {
       return this.buffer.isEmpty();
     }
@@ -1033,6 +1473,23 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
       return this.metricRegistry;
     }
 
+    /** File handed to the upload executor */
+    private class PendingUpload {
+      private final StagedFileName fileName;
+      private final long lastOffset;
+      private final ChunkedGzipBuffer content;
+      // set by the put() thread once submitted
+      private Future<?> future;
+      // guarded by fileListLock
+      private boolean uploaded = false;
+
+      private PendingUpload(StagedFileName fileName, long lastOffset, ChunkedGzipBuffer content) {
+        this.fileName = fileName;
+        this.lastOffset = lastOffset;
+        this.content = content;
+      }
+    }
+
     /**
      * Implementation of Buffer for Snowpipe based implementation of KC.
      *
@@ -1043,31 +1500,55 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
      * <p>Check the usage of {@link #getData()} to understand when we would empty this buffer and
      * when we would generate files in internal stage for snowpipe to ingest later using Snowpipe's
      * REST APIs
+     *
+     * <p>Records are compressed as they are inserted, the buffer size is the number of UTF-8 bytes
+     * of the records before compression while the memory usage is the compressed size.
      */
-    private class SnowpipeBuffer extends PartitionBuffer<String> {
-      private final StringBuilder stringBuilder;
+    private class SnowpipeBuffer extends PartitionBuffer<ChunkedGzipBuffer> {
+      private final ChunkedGzipBuffer content;
+
+      // writes records straight into the compressed content, created with the first record
+      private SnowpipeRecordWriter writer = null;
 
       private SnowpipeBuffer() {
         super();
-        stringBuilder = new StringBuilder();
+        content = new ChunkedGzipBuffer(chunkPool);
       }
 
       @Override
       public void insert(SinkRecord record) {
-        String data = recordService.getProcessedRecordForSnowpipe(record);
+        long compressedSizeBytes = content.getCompressedSizeBytes();
+        try {
+          if (writer == null) {
+            writer = recordService.newSnowpipeRecordWriter(content.asOutputStream());
+          }
+          writer.write(record);
+        } catch (IOException e) {
+          throw SnowflakeErrors.ERROR_5024.getException(e);
+        }
         if (getBufferSizeBytes() == 0L) {
           setFirstOffset(record.kafkaOffset());
         }
 
-        stringBuilder.append(data);
         setNumOfRecords(getNumOfRecords() + 1);
-        setBufferSizeBytes(getBufferSizeBytes() + data.length() * 2L); // 1 char = 2 bytes
+        // records still buffered by the writer are part of the file
+        setBufferSizeBytes(content.getUncompressedSizeBytes() + writer.getBufferedBytes());
         setLastOffset(record.kafkaOffset());
-        pipeStatus.addAndGetMemoryUsage(data.length() * 2L);
+        pipeStatus.addAndGetMemoryUsage(content.getCompressedSizeBytes() - compressedSizeBytes);
       }
 
-      public String getData() {
-        String result = stringBuilder.toString();
+      /** @return finished gzip file, to be released by the caller once it is uploaded */
+      public ChunkedGzipBuffer getData() {
+        long compressedSizeBytes = content.getCompressedSizeBytes();
+        if (writer != null) {
+          try {
+            writer.close();
+          } catch (IOException e) {
+            throw SnowflakeErrors.ERROR_5024.getException(e);
+          }
+        }
+        content.finish();
+        pipeStatus.addAndGetMemoryUsage(content.getCompressedSizeBytes() - compressedSizeBytes);
         LOGGER.debug(
             "flush buffer: {} records, {} bytes, offset {} - {}",
             getNumOfRecords(),
@@ -1076,7 +1557,13 @@ class SnowflakeSinkServiceV1 implements SnowflakeSinkService {
             getLastOffset());
         pipeStatus.addAndGetTotalSizeOfData(getBufferSizeBytes());
         pipeStatus.addAndGetTotalNumberOfRecord(getNumOfRecords());
-        return result;
+        return content;
+      }
+
+      /** Drop the buffered records without flushing them, the buffer can not be used afterwards */
+      public void release() {
+        pipeStatus.addAndGetMemoryUsage(-content.getCompressedSizeBytes());
+        content.release();
       }
 
       @Override
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.internal.InternalUtils.IngestedFileStatus;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+
+/**
+ * Polls the insertReport API of all pipes of a task on a shared executor.
+ *
+ * <p>Every pipe is polled on its own schedule. Intervals are jittered so that the pipes of a task
+ * do not call Snowpipe at the same time. The frequency adapts to the pipe: a pipe with files
+ * waiting for their ingestion status is polled every {@link #DEFAULT_ACTIVE_POLL_INTERVAL_MS},
+ * which is well within the 10 minutes insertReport keeps events for, a pipe without such files is
+ * not polled at all and only checked again after {@link #DEFAULT_IDLE_POLL_INTERVAL_MS}.
+ *
+ * <p>Polled statuses are queued for the owning pipe, which drains them from its cleaner without
+ * blocking the poller.
+ */
+class SnowpipeReportPoller {
+  private static final KCLogger LOGGER = new KCLogger(SnowpipeReportPoller.class.getName());
+
+  static final long DEFAULT_ACTIVE_POLL_INTERVAL_MS = 20 * 1000L;
+  static final long DEFAULT_IDLE_POLL_INTERVAL_MS = 60 * 1000L;
+
+  // every delay is randomly moved by up to this fraction in both directions
+  private static final double JITTER = 0.2;
+
+  private final ScheduledExecutorService executor;
+  private final long activePollIntervalMs;
+  private final long idlePollIntervalMs;
+
+  /** @param executor executor running the polls, owned by the caller */
+  SnowpipeReportPoller(ScheduledExecutorService executor) {
+    this(executor, DEFAULT_ACTIVE_POLL_INTERVAL_MS, DEFAULT_IDLE_POLL_INTERVAL_MS);
+  }
+
+  SnowpipeReportPoller(
+      ScheduledExecutorService executor, long activePollIntervalMs, long idlePollIntervalMs) {
+    this.executor = executor;
+    this.activePollIntervalMs = activePollIntervalMs;
+    this.idlePollIntervalMs = idlePollIntervalMs;
+  }
+
+  /**
+   * Start polling the ingest report of a pipe
+   *
+   * @param pipeName pipe name, used in logs
+   * @param ingestionService ingestion service of the pipe
+   * @param pendingFileCount number of files of the pipe waiting for their ingestion status
+   * @param pollLatencyMs receives the latency of every poll in milliseconds
+   * @return registration holding the polled statuses of the pipe
+   */
+  Registration register(
+      String pipeName,
+      SnowflakeIngestionService ingestionService,
+      IntSupplier pendingFileCount,
+      LongConsumer pollLatencyMs) {
+    Registration registration =
+        new Registration(pipeName, ingestionService, pendingFileCount, pollLatencyMs);
+    registration.scheduleNext(activePollIntervalMs);
+    return registration;
+  }
+
+  private long jitter(long delayMs) {
+    return (long) (delayMs * (1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1)));
+  }
+
+  /** Polling state of one pipe */
+  class Registration {
+    private final String pipeName;
+    private final SnowflakeIngestionService ingestionService;
+    private final IntSupplier pendingFileCount;
+    private final LongConsumer pollLatencyMs;
+
+    private final Queue<Map<String, IngestedFileStatus>> reports = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pollCount = new AtomicLong(0);
+    private volatile boolean cancelled = false;
+
+    private Registration(
+        String pipeName,
+        SnowflakeIngestionService ingestionService,
+        IntSupplier pendingFileCount,
+        LongConsumer pollLatencyMs) {
+      this.pipeName = pipeName;
+      this.ingestionService = ingestionService;
+      this.pendingFileCount = pendingFileCount;
+      this.pollLatencyMs = pollLatencyMs;
+    }
+
+    /**
+     * Take all statuses polled since the previous call. A file reported more than once keeps its
+     * latest status.
+     *
+     * @return map from file name to ingestion status
+     */
+    Map<String, IngestedFileStatus> drain() {
+      Map<String, IngestedFileStatus> result = new HashMap<>();
+      Map<String, IngestedFileStatus> report;
+      while ((report = reports.poll()) != null) {
+        result.putAll(report);
+      }
+      return result;
+    }
+
+    /** Stop polling, a poll in progress completes */
+    void cancel() {
+      cancelled = true;
+    }
+
+    /** @return number of insertReport calls made for this pipe */
+    long getPollCount() {
+      return pollCount.get();
+    }
+
+    private void scheduleNext(long delayMs) {
+      if (cancelled) {
+        return;
+      }
+      try {
+        executor.schedule(this::poll, jitter(delayMs), TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        LOGGER.info("pipe {}: ingest report polling stopped", pipeName);
+      }
+    }
+
+    private void poll() {
+      if (cancelled) {
+        return;
+      }
+      if (pendingFileCount.getAsInt() == 0) {
+        scheduleNext(idlePollIntervalMs);
+        return;
+      }
+      long startTime = System.currentTimeMillis();
+      try {
+        Map<String, IngestedFileStatus> report = ingestionService.readIngestReport();
+        pollCount.incrementAndGet();
+        pollLatencyMs.accept(System.currentTimeMillis() - startTime);
+        if (!report.isEmpty()) {
+          reports.offer(report);
+        }
+      } catch (Exception e) {
+        LOGGER.warn(
+            "pipe {}: failed to poll ingest report {}:\n{}",
+            pipeName,
+            e.getClass(),
+            e.getMessage());
+      }
+      scheduleNext(activePollIntervalMs);
+    }
+  }
+}
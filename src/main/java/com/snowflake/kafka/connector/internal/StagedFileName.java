@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal;
+
+/**
+ * Name of a file staged for Snowpipe, with the values it is made of. File Name Format:
+ * app/table/partition/start_end_timeStamp.json.gz
+ *
+ * <p>Names are parsed in one pass without regular expression and without substrings, so that
+ * callers needing several of its values read them from the same instance instead of parsing the
+ * name again for each of them. Names are generated by appending the numbers into a builder reused
+ * by every thread.
+ */
+class StagedFileName {
+  private static final String SUFFIX = ".json.gz";
+
+  private static final ThreadLocal<StringBuilder> BUILDER =
+      ThreadLocal.withInitial(() -> new StringBuilder(128));
+
+  private final String name;
+  // length of app/table/partition/
+  private final int prefixLength;
+  private final int partition;
+  private final long startOffset;
+  private final long endOffset;
+  private final long timeIngested;
+
+  private StagedFileName(
+      String name,
+      int prefixLength,
+      int partition,
+      long startOffset,
+      long endOffset,
+      long timeIngested) {
+    this.name = name;
+    this.prefixLength = prefixLength;
+    this.partition = partition;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.timeIngested = timeIngested;
+  }
+
+  /**
+   * generate file name
+   *
+   * @param prefix prefix, see {@link FileNameUtils#filePrefix(String, String, int)}
+   * @param partition partition number used in the prefix
+   * @param startOffset start offset
+   * @param endOffset end offset
+   * @param timeIngested timestamp of the file in milliseconds
+   * @return file name
+   */
+  static StagedFileName of(
+      String prefix, int partition, long startOffset, long endOffset, long timeIngested) {
+    StringBuilder builder = BUILDER.get();
+    builder.setLength(0);
+    builder
+        .append(prefix)
+        .append(startOffset)
+        .append('_')
+        .append(endOffset)
+        .append('_')
+        .append(timeIngested)
+        .append(SUFFIX);
+    return new StagedFileName(
+        builder.toString(), prefix.length(), partition, startOffset, endOffset, timeIngested);
+  }
+
+  /**
+   * @param name file name
+   * @return parsed file name
+   * @throws SnowflakeKafkaConnectorException if the file name format is not correct
+   */
+  static StagedFileName parse(String name) {
+    StagedFileName fileName = tryParse(name);
+    if (fileName == null) {
+      throw SnowflakeErrors.ERROR_0008.getException("input file name: " + name);
+    }
+    return fileName;
+  }
+
+  /**
+   * @param name file name
+   * @return parsed file name, null if the file name format is not correct
+   */
+  static StagedFileName tryParse(String name) {
+    if (name == null || !name.endsWith(SUFFIX)) {
+      return null;
+    }
+    // app and table are not empty and do not contain '/'
+    int tableStart = name.indexOf('/') + 1;
+    if (tableStart <= 1) {
+      return null;
+    }
+    int partitionStart = name.indexOf('/', tableStart) + 1;
+    if (partitionStart <= tableStart + 1) {
+      return null;
+    }
+    int partitionEnd = name.indexOf('/', partitionStart);
+    if (partitionEnd < 0 || name.indexOf('/', partitionEnd + 1) >= 0) {
+      return null;
+    }
+    int startOffsetEnd = name.indexOf('_', partitionEnd + 1);
+    int endOffsetEnd = startOffsetEnd < 0 ? -1 : name.indexOf('_', startOffsetEnd + 1);
+    int timeEnd = name.length() - SUFFIX.length();
+    if (endOffsetEnd < 0 || endOffsetEnd >= timeEnd) {
+      return null;
+    }
+
+    long partition = parseDigits(name, partitionStart, partitionEnd);
+    long startOffset = parseDigits(name, partitionEnd + 1, startOffsetEnd);
+    long endOffset = parseDigits(name, startOffsetEnd + 1, endOffsetEnd);
+    long timeIngested = parseDigits(name, endOffsetEnd + 1, timeEnd);
+    if (partition < 0
+        || partition > Integer.MAX_VALUE
+        || startOffset < 0
+        || endOffset < 0
+        || timeIngested < 0) {
+      return null;
+    }
+    return new StagedFileName(
+        name, partitionEnd + 1, (int) partition, startOffset, endOffset, timeIngested);
+  }
+
+  /**
+   * @param text text
+   * @param start index of the first digit
+   * @param end index after the last digit
+   * @return the number, -1 if there is no digit, a character is not a digit or the number does not
+   *     fit in a long
+   */
+  private static long parseDigits(String text, int start, int end) {
+    if (start >= end) {
+      return -1;
+    }
+    long value = 0;
+    for (int idx = start; idx < end; idx++) {
+      int digit = text.charAt(idx) - '0';
+      if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /** @return file name */
+  String getName() {
+    return name;
+  }
+
+  /** @return app/table/partition/ */
+  String getPrefix() {
+    return name.substring(0, prefixLength);
+  }
+
+  int getPartition() {
+    return partition;
+  }
+
+  long getStartOffset() {
+    return startOffset;
+  }
+
+  long getEndOffset() {
+    return endOffset;
+  }
+
+  long getTimeIngested() {
+    return timeIngested;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof StagedFileName && ((StagedFileName) other).name.equals(name);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
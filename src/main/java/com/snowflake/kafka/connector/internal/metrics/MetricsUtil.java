@@ -112,6 +112,17 @@ public class MetricsUtil {
      * file ingestion status through insertReport or loadHistoryScan API.
      */
     INGESTION_LAG("ingestion-lag"),
+
+    /**
+     * Time taken by one REMOVE statement purging a batch of ingested files from internal stage.
+     */
+    PURGE_BATCH_LATENCY("purge-batch-latency"),
+
+    /**
+     * Time taken by one insertReport API call. The count of this timer is the number of times the
+     * ingest report of the pipe was polled.
+     */
+    INSERT_REPORT_LATENCY("insert-report-latency"),
     ;
 
     /** The metric name that will be used in JMX */
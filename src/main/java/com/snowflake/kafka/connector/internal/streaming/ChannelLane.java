@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal.streaming;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.kafka.connect.errors.ConnectException;
+
+/**
+ * Runs the work of one channel in submission order on an executor shared by all channels of a
+ * task, at most one task of a lane runs at any time.
+ *
+ * <p>A lane gives the executor back after every task so that lanes with a backlog do not starve
+ * the others. Work submitted with {@link #submit(Runnable)} is bounded, the caller blocks once
+ * maxPendingTasks of them are queued or running.
+ *
+ * <p>The first exception thrown by submitted work fails the lane: later work is dropped and the
+ * exception is rethrown to the caller of the next {@link #submit(Runnable)} or {@link
+ * #call(Supplier)}.
+ */
+class ChannelLane {
+  private final Executor executor;
+  private final Semaphore pendingTasks;
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean isScheduled = new AtomicBoolean(false);
+
+  private volatile RuntimeException failure = null;
+
+  /**
+   * @param executor executor running the tasks of all lanes
+   * @param maxPendingTasks maximum number of submitted tasks queued or running
+   */
+  ChannelLane(Executor executor, int maxPendingTasks) {
+    this.executor = executor;
+    this.pendingTasks = new Semaphore(maxPendingTasks);
+  }
+
+  /**
+   * Queue work without waiting for it, blocks while the lane is full
+   *
+   * @param work work to run after everything queued before
+   */
+  void submit(Runnable work) {
+    throwIfFailed();
+    try {
+      pendingTasks.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectException(e);
+    }
+    enqueue(
+        () -> {
+          try {
+            if (failure == null) {
+              work.run();
+            }
+          } catch (RuntimeException e) {
+            failure = e;
+          } finally {
+            pendingTasks.release();
+          }
+        });
+  }
+
+  /**
+   * Run work after everything queued before and wait for its result. Not bounded by
+   * maxPendingTasks, an exception thrown by the work is rethrown without failing the lane.
+   *
+   * @param work work to run
+   * @return result of the work
+   */
+  <T> T call(Supplier<T> work) {
+    throwIfFailed();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    enqueue(
+        () -> {
+          if (failure != null) {
+            result.completeExceptionally(failure);
+            return;
+          }
+          try {
+            result.complete(work.get());
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return await(result);
+  }
+
+  /** Wait until everything queued so far has run, a failure of the lane is not rethrown */
+  void drain() {
+    CompletableFuture<Void> drained = new CompletableFuture<>();
+    enqueue(() -> drained.complete(null));
+    await(drained);
+  }
+
+  private void throwIfFailed() {
+    RuntimeException currentFailure = failure;
+    if (currentFailure != null) {
+      throw currentFailure;
+    }
+  }
+
+  private void enqueue(Runnable task) {
+    tasks.add(task);
+    schedule();
+  }
+
+  private void schedule() {
+    if (isScheduled.compareAndSet(false, true)) {
+      executor.execute(this::runNext);
+    }
+  }
+
+  private void runNext() {
+    try {
+      Runnable task = tasks.poll();
+      if (task != null) {
+        task.run();
+      }
+    } finally {
+      isScheduled.set(false);
+      if (!tasks.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ConnectException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectException(e);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.internal.streaming;
+
+import com.snowflake.kafka.connector.internal.KCLogger;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import com.snowflake.kafka.connector.internal.SnowflakeKafkaConnectorException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.kafka.connect.errors.ConnectException;
+
+/**
+ * Schema evolution of one table, shared by the channels of every task of the worker writing into
+ * it. The coordinators of a connector are dropped once its last task on the worker is closed.
+ *
+ * <p>Requests made while an evolution of the table is running are merged: once it completes, one of
+ * the waiting channels runs the ALTER TABLE commands for all of them and every waiting channel
+ * resumes when these are done.
+ *
+ * <p>The columns of the table are cached so that channels can check their rows before calling
+ * insertRows. They are described the first time they are needed and again after every evolution.
+ * The cache misses changes made to the table outside of the connector, rows rejected by insertRows
+ * still have to be handled.
+ */
+class SchemaEvolutionCoordinator {
+  private static final KCLogger LOGGER = new KCLogger(SchemaEvolutionCoordinator.class.getName());
+
+  // tables written by the tasks of this worker, by connector name. Guarded by itself
+  private static final Map<String, ConnectorTables> CONNECTORS = new HashMap<>();
+
+  private final String tableName;
+
+  // name of every column of the table to whether it is nullable, null until described
+  private Map<String, Boolean> columns = null;
+
+  // requests not applied yet, by column name as stored in Snowflake
+  private final Map<String, String> pendingNonNullableColumns = new LinkedHashMap<>();
+  private final Map<String, String> pendingExtraColumns = new LinkedHashMap<>();
+  private final Map<String, String> pendingExtraColumnTypes = new HashMap<>();
+
+  // evolution applying the pending requests, it runs once the running one completes
+  private Evolution pendingEvolution = new Evolution();
+  private boolean isEvolving = false;
+
+  /**
+   * @param connectorName name of the connector writing into the table
+   * @param tableName table name
+   * @return coordinator of the table
+   */
+  static SchemaEvolutionCoordinator forTable(String connectorName, String tableName) {
+    synchronized (CONNECTORS) {
+      return CONNECTORS
+          .computeIfAbsent(connectorName, k -> new ConnectorTables())
+          .coordinators
+          .computeIfAbsent(tableName, SchemaEvolutionCoordinator::new);
+    }
+  }
+
+  /**
+   * Register a task of a connector, the coordinators of its tables are kept until its last task is
+   * released
+   *
+   * @param connectorName name of the connector
+   */
+  static void registerTask(String connectorName) {
+    synchronized (CONNECTORS) {
+      CONNECTORS.computeIfAbsent(connectorName, k -> new ConnectorTables()).taskCount++;
+    }
+  }
+
+  /**
+   * Release a task registered with {@link #registerTask(String)}, the coordinators of the tables of
+   * the connector are dropped once no task of it is left
+   *
+   * @param connectorName name of the connector
+   */
+  static void releaseTask(String connectorName) {
+    synchronized (CONNECTORS) {
+      ConnectorTables tables = CONNECTORS.get(connectorName);
+      if (tables != null && --tables.taskCount <= 0) {
+        CONNECTORS.remove(connectorName);
+        LOGGER.info(
+            "Dropped schema evolution of {} tables of connector:{}",
+            tables.coordinators.size(),
+            connectorName);
+      }
+    }
+  }
+
+  private SchemaEvolutionCoordinator(String tableName) {
+    this.tableName = tableName;
+  }
+
+  /**
+   * @param conn connection used to describe the table if its columns are not cached
+   * @return map from the name of every column of the table to whether it is nullable, null if
+   *     the table could not be described
+   */
+  synchronized Map<String, Boolean> getColumns(SnowflakeConnectionService conn) {
+    if (columns == null) {
+      try {
+        Map<String, Boolean> describedColumns = conn.describeTableColumns(tableName);
+        // a table always has columns, nothing is known about it otherwise
+        if (describedColumns != null && !describedColumns.isEmpty()) {
+          columns = Collections.unmodifiableMap(describedColumns);
+        }
+      } catch (SnowflakeKafkaConnectorException e) {
+        LOGGER.warn("Failure describing table:{}, msg:{}", tableName, e.getMessage());
+      }
+    }
+    return columns;
+  }
+
+  /**
+   * Add columns to the table and drop the non-nullability of columns, together with the requests
+   * of other channels made in the meantime. Returns once the changes were applied, throws if the
+   * ALTER TABLE commands applying them failed, whichever channel ran them.
+   *
+   * @param conn connection used for the ALTER TABLE commands if this channel runs them
+   * @param nonNullableColumns columns that need to update the nullability
+   * @param extraColumnsToType columns that need to be added, with their Snowflake data type
+   */
+  void evolve(
+      SnowflakeConnectionService conn,
+      Collection<String> nonNullableColumns,
+      Map<String, String> extraColumnsToType) {
+    List<String> nonNullableColumnsToApply;
+    Map<String, String> extraColumnsToApply;
+    Evolution evolution;
+    synchronized (this) {
+      for (String columnName : nonNullableColumns) {
+        pendingNonNullableColumns.putIfAbsent(
+            SchematizationUtils.formatName(columnName), columnName);
+      }
+      extraColumnsToType.forEach(
+          (columnName, type) -> {
+            String storedName = SchematizationUtils.formatName(columnName);
+            if (pendingExtraColumns.putIfAbsent(storedName, columnName) == null) {
+              pendingExtraColumnTypes.put(columnName, type);
+            }
+          });
+      evolution = pendingEvolution;
+      while (isEvolving && !evolution.isDone) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ConnectException(e);
+        }
+      }
+      if (evolution.isDone) {
+        if (!evolution.isApplied) {
+          throw new ConnectException(
+              String.format("Schema evolution of table:%s failed", tableName), evolution.failure);
+        }
+        return;
+      }
+
+      // run the evolution for every request made so far
+      isEvolving = true;
+      pendingEvolution = new Evolution();
+      nonNullableColumnsToApply = new ArrayList<>(pendingNonNullableColumns.values());
+      extraColumnsToApply = new LinkedHashMap<>();
+      for (String columnName : pendingExtraColumns.values()) {
+        extraColumnsToApply.put(columnName, pendingExtraColumnTypes.get(columnName));
+      }
+      pendingNonNullableColumns.clear();
+      pendingExtraColumns.clear();
+      pendingExtraColumnTypes.clear();
+    }
+
+    try {
+      LOGGER.info(
+          "Evolving schema of table:{}, nonNullableColumns:{}, extraColumns:{}",
+          tableName,
+          nonNullableColumnsToApply,
+          extraColumnsToApply.keySet());
+      SchematizationUtils.evolveSchemaIfNeeded(
+          conn, tableName, nonNullableColumnsToApply, extraColumnsToApply);
+      evolution.isApplied = true;
+    } catch (RuntimeException e) {
+      // the channels which requested these changes fail with it
+      evolution.failure = e;
+      throw e;
+    } finally {
+      synchronized (this) {
+        // described again when needed, it includes the changes of other connectors and tasks
+        columns = null;
+        evolution.isDone = true;
+        isEvolving = false;
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Compare rows with the columns of the table
+   *
+   * @param columns map from the name of every column of the table to whether it is nullable
+   * @param rows rows to insert into the table
+   * @return columns of the rows missing from the table and not nullable columns missing from rows
+   */
+  static SchemaMismatch findMismatch(Map<String, Boolean> columns, List<Map<String, Object>> rows) {
+    SchemaMismatch mismatch = new SchemaMismatch();
+    // rows name columns with quotes, except for the metadata column
+    List<String> nonNullableColumns = new ArrayList<>();
+    List<String> quotedNonNullableColumns = new ArrayList<>();
+    columns.forEach(
+        (columnName, isNullable) -> {
+          if (!isNullable) {
+            nonNullableColumns.add(columnName);
+            quotedNonNullableColumns.add('"' + columnName + '"');
+          }
+        });
+    // rows of a batch share their columns, names are only formatted once
+    Map<String, String> storedNames = new HashMap<>();
+    for (int idx = 0; idx < rows.size(); idx++) {
+      Map<String, Object> row = rows.get(idx);
+      for (String rowColumnName : row.keySet()) {
+        String storedName =
+            storedNames.computeIfAbsent(rowColumnName, SchematizationUtils::formatName);
+        if (!columns.containsKey(storedName)) {
+          mismatch.extraColumns.putIfAbsent(rowColumnName, idx);
+        }
+      }
+      for (int col = 0; col < nonNullableColumns.size(); col++) {
+        String quotedName = quotedNonNullableColumns.get(col);
+        if (!row.containsKey(quotedName) && !row.containsKey(nonNullableColumns.get(col))) {
+          mismatch.nonNullableColumns.add(quotedName);
+        }
+      }
+    }
+    return mismatch;
+  }
+
+  /** One run of the ALTER TABLE commands, applying the requests made before it started */
+  private static class Evolution {
+    // isApplied and failure are set by the running channel before isDone, all of them are read
+    // under the lock of the coordinator
+    private boolean isDone = false;
+    private boolean isApplied = false;
+    private RuntimeException failure = null;
+  }
+
+  /** Coordinators of the tables of one connector and the number of its running tasks */
+  private static class ConnectorTables {
+    private final Map<String, SchemaEvolutionCoordinator> coordinators = new HashMap<>();
+    private int taskCount = 0;
+  }
+
+  /** Difference between rows and the columns of a table */
+  static class SchemaMismatch {
+    // column name used by the rows to the index of the first row having the column
+    private final Map<String, Integer> extraColumns = new LinkedHashMap<>();
+    // quoted names of the not nullable columns missing from some rows
+    private final Set<String> nonNullableColumns = new LinkedHashSet<>();
+
+    boolean isEmpty() {
+      return extraColumns.isEmpty() && nonNullableColumns.isEmpty();
+    }
+
+    Map<String, Integer> getExtraColumns() {
+      return extraColumns;
+    }
+
+    Set<String> getNonNullableColumns() {
+      return nonNullableColumns;
+    }
+  }
+}
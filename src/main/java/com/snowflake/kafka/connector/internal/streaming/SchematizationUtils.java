@@ -74,8 +74,30 @@ public class SchematizationUtils {
       List<String> nonNullableColumns,
       List<String> extraColNames,
       SinkRecord record) {
+    evolveSchemaIfNeeded(
+        conn,
+        tableName,
+        nonNullableColumns,
+        extraColNames == null ? null : getColumnTypes(record, extraColNames));
+  }
+
+  /**
+   * Execute the ALTER TABLE commands needed by schema evolution: one dropping the non-nullability
+   * of all given columns and one adding all extra columns, each only if there is any such column
+   *
+   * @param conn connection to the Snowflake
+   * @param tableName table name
+   * @param nonNullableColumns a list of columns that needs to update the nullability
+   * @param extraColumnsToType a map from the columns that needs to be added to their Snowflake
+   *     data type
+   */
+  public static void evolveSchemaIfNeeded(
+      @Nonnull SnowflakeConnectionService conn,
+      String tableName,
+      List<String> nonNullableColumns,
+      Map<String, String> extraColumnsToType) {
     // Update nullability if needed, ignore any exceptions since other task might be succeeded
-    if (nonNullableColumns != null) {
+    if (nonNullableColumns != null && !nonNullableColumns.isEmpty()) {
       try {
         conn.alterNonNullableColumns(tableName, nonNullableColumns);
       } catch (SnowflakeKafkaConnectorException e) {
@@ -90,8 +112,7 @@ public class SchematizationUtils {
     }
 
     // Add columns if needed, ignore any exceptions since other task might be succeeded
-    if (extraColNames != null) {
-      Map<String, String> extraColumnsToType = getColumnTypes(record, extraColNames);
+    if (extraColumnsToType != null && !extraColumnsToType.isEmpty()) {
       try {
         conn.appendColumnsToTable(tableName, extraColumnsToType);
       } catch (SnowflakeKafkaConnectorException e) {
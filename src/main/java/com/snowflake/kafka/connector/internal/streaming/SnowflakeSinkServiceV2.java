@@ -2,6 +2,10 @@ package com.snowflake.kafka.connector.internal.streaming;
 
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.BUFFER_SIZE_BYTES_DEFAULT;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWFLAKE_ROLE;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_INSERT_PARALLELISM;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_INSERT_PARALLELISM_DEFAULT;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DEFAULT;
 import static com.snowflake.kafka.connector.internal.streaming.StreamingUtils.STREAMING_BUFFER_COUNT_RECORDS_DEFAULT;
 import static com.snowflake.kafka.connector.internal.streaming.StreamingUtils.STREAMING_BUFFER_FLUSH_TIME_DEFAULT_SEC;
 import static com.snowflake.kafka.connector.internal.streaming.TopicPartitionChannel.NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE;
@@ -20,12 +24,28 @@ import com.snowflake.kafka.connector.internal.metrics.MetricsJmxReporter;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
 import com.snowflake.kafka.connector.records.RecordService;
 import com.snowflake.kafka.connector.records.SnowflakeMetadataConfig;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestChannel;
 import net.snowflake.ingest.streaming.SnowflakeStreamingIngestClient;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.sink.SinkRecord;
@@ -50,6 +70,12 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
 
   private static final KCLogger LOGGER = new KCLogger(SnowflakeSinkServiceV2.class.getName());
 
+  // maximum number of channels opened at the same time during partition assignment
+  private static final int CHANNEL_OPEN_THREAD_COUNT = 16;
+
+  // batches of one channel queued or being inserted before put blocks, with parallel inserts
+  private static final int MAX_PENDING_BATCHES_PER_CHANNEL = 2;
+
   // Assume next three values are a threshold after which we will call insertRows API
   // Set in config (Time based flush) in seconds
   private long flushTimeSeconds;
@@ -106,6 +132,30 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
   // Set that keeps track of the channels that have been seen per input batch
   private final Set<String> channelsVisitedPerBatch = new HashSet<>();
 
+  // Maximum age of the committed offset tokens returned to preCommit, 0 if they are always fetched
+  private final long offsetTokenMaxStalenessMs;
+
+  // Refreshes the committed offset tokens of all channels, null if offset tokens are always fetched
+  private final ScheduledExecutorService offsetTokenRefreshExecutor;
+
+  // Snapshot of the channels in partitionsToChannel, read by the offset token refresh
+  private volatile List<TopicPartitionChannel> channelsToRefresh = Collections.emptyList();
+
+  // Opens the channels of assigned partitions, threads only exist while channels are being opened
+  private final ThreadPoolExecutor channelOpenExecutor = createChannelOpenExecutor();
+
+  // Inserts records of all channels when insert parallelism is above 1, null otherwise
+  private final ExecutorService insertExecutor;
+
+  // Lane of every channel on the insertExecutor, created on first use. Only used by the task thread
+  private final Map<String, ChannelLane> channelLanes = new HashMap<>();
+
+  // Id of the latest batch given to insert, only used with parallel inserts
+  private long insertBatchId = 0;
+
+  // Whether this task still holds the schema evolution coordinators of the connector tables
+  private boolean isRegisteredForSchemaEvolution;
+
   public SnowflakeSinkServiceV2(
       SnowflakeConnectionService conn, Map<String, String> connectorConfig) {
     if (conn == null || conn.isClosed()) {
@@ -137,6 +187,11 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
 
     this.tableName2SchemaEvolutionPermission = new HashMap<>();
 
+    this.offsetTokenMaxStalenessMs = getOffsetTokenMaxStalenessMs(this.connectorConfig);
+    this.offsetTokenRefreshExecutor = startOffsetTokenRefresh(this.offsetTokenMaxStalenessMs);
+    this.insertExecutor = createInsertExecutor(getInsertParallelism(this.connectorConfig));
+    registerForSchemaEvolution();
+
     // jmx
     String connectorName =
         conn == null || Strings.isNullOrEmpty(this.conn.getConnectorName())
@@ -173,11 +228,12 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     this.enableCustomJMXMonitoring = enableCustomJMXMonitoring;
     this.kafkaRecordErrorReporter = kafkaRecordErrorReporter;
     this.sinkTaskContext = sinkTaskContext;
-    this.streamingIngestClient = streamingIngestClient;
     this.connectorConfig = connectorConfig;
     this.streamingIngestClient =
-        StreamingClientProvider.getStreamingClientProviderInstance()
-            .getClient(this.connectorConfig);
+        streamingIngestClient != null
+            ? streamingIngestClient
+            : StreamingClientProvider.getStreamingClientProviderInstance()
+                .getClient(this.connectorConfig);
     this.enableSchematization = enableSchematization;
     this.partitionsToChannel = partitionsToChannel;
 
@@ -188,6 +244,12 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
             populateSchemaEvolutionPermissions(tableName);
           });
     }
+
+    this.offsetTokenMaxStalenessMs = getOffsetTokenMaxStalenessMs(this.connectorConfig);
+    this.offsetTokenRefreshExecutor = startOffsetTokenRefresh(this.offsetTokenMaxStalenessMs);
+    this.insertExecutor = createInsertExecutor(getInsertParallelism(this.connectorConfig));
+    registerForSchemaEvolution();
+    updateChannelsToRefresh();
   }
 
   /**
@@ -213,20 +275,71 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
    * Initializes multiple Channels and partitionsToChannel maps with new instances of {@link
    * TopicPartitionChannel}
    *
+   * <p>If some channels could not be opened, the others are still registered and {@link
+   * SnowflakeErrors#ERROR_5025} is thrown with the first failure.
+   *
    * @param partitions collection of topic partition
    * @param topic2Table map of topic to table name
    */
   @Override
   public void startPartitions(
       Collection<TopicPartition> partitions, Map<String, String> topic2Table) {
-    partitions.forEach(
-        tp -> {
-          String tableName = Utils.tableName(tp.topic(), topic2Table);
-          createTableIfNotExists(tableName);
+    final long startTime = System.currentTimeMillis();
+    Map<TopicPartition, String> partitionToTable = new LinkedHashMap<>();
+    partitions.forEach(tp -> partitionToTable.put(tp, Utils.tableName(tp.topic(), topic2Table)));
 
-          createStreamingChannelForTopicPartition(
-              tableName, tp, tableName2SchemaEvolutionPermission.get(tableName));
+    // every table is checked once, no matter how many of its partitions are assigned
+    for (String tableName : new LinkedHashSet<>(partitionToTable.values())) {
+      createTableIfNotExists(tableName);
+    }
+
+    // opening a channel and fetching its offset token are round trips to Snowflake, open the
+    // channels concurrently
+    Map<TopicPartition, Future<TopicPartitionChannel>> openings = new LinkedHashMap<>();
+    partitionToTable.forEach(
+        (tp, tableName) -> {
+          boolean hasSchemaEvolutionPermission =
+              tableName2SchemaEvolutionPermission.get(tableName);
+          openings.put(
+              tp,
+              channelOpenExecutor.submit(
+                  () -> newTopicPartitionChannel(tableName, tp, hasSchemaEvolutionPermission)));
         });
+
+    // channels which were opened are kept even if others failed, they are closed with the task
+    ExecutionException failure = null;
+    int failedCount = 0;
+    for (Map.Entry<TopicPartition, Future<TopicPartitionChannel>> opening : openings.entrySet()) {
+      TopicPartition tp = opening.getKey();
+      try {
+        putChannel(partitionChannelKey(tp.topic(), tp.partition()), opening.getValue().get());
+      } catch (ExecutionException e) {
+        failedCount++;
+        LOGGER.error(
+            "Failed to open channel for topic:{}, partition:{}, exception:{}",
+            tp.topic(),
+            tp.partition(),
+            e.getCause().toString());
+        if (failure == null) {
+          failure = e;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        openings.values().forEach(future -> future.cancel(true));
+        updateChannelsToRefresh();
+        throw SnowflakeErrors.ERROR_5025.getException(e, this.telemetryService);
+      }
+    }
+    updateChannelsToRefresh();
+    LOGGER.info(
+        "Opened {} of {} channels for {} tables in {} ms",
+        openings.size() - failedCount,
+        openings.size(),
+        new HashSet<>(partitionToTable.values()).size(),
+        System.currentTimeMillis() - startTime);
+    if (failure != null) {
+      throw SnowflakeErrors.ERROR_5025.getException(failure, this.telemetryService);
+    }
   }
 
   /**
@@ -242,23 +355,64 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     final String partitionChannelKey =
         partitionChannelKey(topicPartition.topic(), topicPartition.partition());
     // Create new instance of TopicPartitionChannel which will always open the channel.
-    partitionsToChannel.put(
+    putChannel(
         partitionChannelKey,
-        new TopicPartitionChannel(
-            this.streamingIngestClient,
-            topicPartition,
-            partitionChannelKey, // Streaming channel name
-            tableName,
-            hasSchemaEvolutionPermission,
-            new StreamingBufferThreshold(this.flushTimeSeconds, this.fileSizeBytes, this.recordNum),
-            this.connectorConfig,
-            this.kafkaRecordErrorReporter,
-            this.sinkTaskContext,
-            this.conn,
-            this.recordService,
-            this.conn.getTelemetryClient(),
-            this.enableCustomJMXMonitoring,
-            this.metricsJmxReporter));
+        newTopicPartitionChannel(tableName, topicPartition, hasSchemaEvolutionPermission));
+    updateChannelsToRefresh();
+  }
+
+  /** Register a new channel, work still queued for the channel it replaces is completed first */
+  private void putChannel(String partitionChannelKey, TopicPartitionChannel topicPartitionChannel) {
+    ChannelLane replacedLane = channelLanes.remove(partitionChannelKey);
+    if (replacedLane != null) {
+      replacedLane.drain();
+    }
+    partitionsToChannel.put(partitionChannelKey, topicPartitionChannel);
+  }
+
+  /**
+   * Opens the channel of a partition and fetches its offset token, safe to call from the channel
+   * open threads since it does not touch partitionsToChannel.
+   */
+  private TopicPartitionChannel newTopicPartitionChannel(
+      final String tableName,
+      final TopicPartition topicPartition,
+      boolean hasSchemaEvolutionPermission) {
+    return new TopicPartitionChannel(
+        this.streamingIngestClient,
+        topicPartition,
+        partitionChannelKey(topicPartition.topic(), topicPartition.partition()),
+        tableName,
+        hasSchemaEvolutionPermission,
+        new StreamingBufferThreshold(this.flushTimeSeconds, this.fileSizeBytes, this.recordNum),
+        this.connectorConfig,
+        this.kafkaRecordErrorReporter,
+        this.sinkTaskContext,
+        this.conn,
+        this.recordService,
+        this.conn.getTelemetryClient(),
+        this.enableCustomJMXMonitoring,
+        this.metricsJmxReporter);
+  }
+
+  private static ThreadPoolExecutor createChannelOpenExecutor() {
+    AtomicInteger channelOpenThreadCount = new AtomicInteger(0);
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            CHANNEL_OPEN_THREAD_COUNT,
+            CHANNEL_OPEN_THREAD_COUNT,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              String threadName =
+                  "streaming-channel-open-" + channelOpenThreadCount.incrementAndGet();
+              Thread thread = new Thread(runnable, threadName);
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   /**
@@ -273,6 +427,10 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
    */
   @Override
   public void insert(final Collection<SinkRecord> records) {
+    if (insertExecutor != null) {
+      insertInParallel(records);
+      return;
+    }
     // note that records can be empty but, we will still need to check for time based flush
     channelsVisitedPerBatch.clear();
     for (SinkRecord record : records) {
@@ -283,7 +441,7 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
 
       // While inserting into buffer, we will check for count threshold and buffered bytes
       // threshold.
-      insert(record);
+      insertRecord(record);
     }
 
     // check all partitions to see if they need to be flushed based on time
@@ -301,8 +459,81 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
    */
   @Override
   public void insert(SinkRecord record) {
+    if (insertExecutor != null) {
+      insertInParallel(Collections.singletonList(record));
+    } else {
+      insertRecord(record);
+    }
+  }
+
+  private void insertRecord(SinkRecord record) {
+    String partitionChannelKey = partitionChannelKey(record.topic(), record.kafkaPartition());
+    TopicPartitionChannel channelPartition = getOrStartChannel(record);
+    boolean isFirstRowPerPartitionInBatch = channelsVisitedPerBatch.add(partitionChannelKey);
+    channelPartition.insertRecordToBuffer(record, isFirstRowPerPartitionInBatch);
+  }
+
+  /**
+   * Hands the records of every channel to its lane, so that records of different channels are
+   * converted and inserted concurrently while the records of one channel are inserted in order.
+   * Only blocks while a channel already has {@link #MAX_PENDING_BATCHES_PER_CHANNEL} batches
+   * waiting. Failures of a lane are thrown by the next call.
+   *
+   * @param records records of one put
+   */
+  private void insertInParallel(final Collection<SinkRecord> records) {
+    final long batchId = ++insertBatchId;
+    Map<String, List<SinkRecord>> recordsByChannel = new HashMap<>();
+    for (SinkRecord record : records) {
+      // check if it needs to handle null value records
+      if (recordService.shouldSkipNullValue(record, behaviorOnNullValues)) {
+        continue;
+      }
+      String partitionChannelKey = partitionChannelKey(record.topic(), record.kafkaPartition());
+      List<SinkRecord> channelRecords = recordsByChannel.get(partitionChannelKey);
+      if (channelRecords == null) {
+        getOrStartChannel(record);
+        channelRecords = new ArrayList<>();
+        recordsByChannel.put(partitionChannelKey, channelRecords);
+      }
+      channelRecords.add(record);
+    }
+
+    // channels without records are visited too for time based flushing
+    partitionsToChannel.forEach(
+        (partitionChannelKey, topicPartitionChannel) -> {
+          // a reset requested by the lane takes effect from the next put, this batch is skipped
+          topicPartitionChannel.applyPendingOffsetReset(batchId);
+          List<SinkRecord> channelRecords =
+              recordsByChannel.getOrDefault(partitionChannelKey, Collections.emptyList());
+          getLane(partitionChannelKey, topicPartitionChannel)
+              .submit(() -> insertBatch(topicPartitionChannel, batchId, channelRecords));
+        });
+  }
+
+  /** Runs on the lane of the channel */
+  private static void insertBatch(
+      TopicPartitionChannel topicPartitionChannel, long batchId, List<SinkRecord> records) {
+    if (!records.isEmpty()) {
+      if (topicPartitionChannel.shouldSkipBatch(batchId)) {
+        LOGGER.info(
+            "Ignore {} records for channel:{} because we recently reset offset in Kafka",
+            records.size(),
+            topicPartitionChannel.getChannelNameFormatV1());
+      } else {
+        boolean isFirstRowPerPartitionInBatch = true;
+        for (SinkRecord record : records) {
+          topicPartitionChannel.insertRecordToBuffer(record, isFirstRowPerPartitionInBatch);
+          isFirstRowPerPartitionInBatch = false;
+        }
+      }
+    }
+    topicPartitionChannel.insertBufferedRecordsIfFlushTimeThresholdReached();
+  }
+
+  /** Init a new topic partition if it's not presented in cache or if channel is closed */
+  private TopicPartitionChannel getOrStartChannel(SinkRecord record) {
     String partitionChannelKey = partitionChannelKey(record.topic(), record.kafkaPartition());
-    // init a new topic partition if it's not presented in cache or if channel is closed
     if (!partitionsToChannel.containsKey(partitionChannelKey)
         || partitionsToChannel.get(partitionChannelKey).isChannelClosed()) {
       LOGGER.warn(
@@ -313,10 +544,17 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
           Utils.tableName(record.topic(), this.topicToTableMap),
           new TopicPartition(record.topic(), record.kafkaPartition()));
     }
+    return partitionsToChannel.get(partitionChannelKey);
+  }
 
-    TopicPartitionChannel channelPartition = partitionsToChannel.get(partitionChannelKey);
-    boolean isFirstRowPerPartitionInBatch = channelsVisitedPerBatch.add(partitionChannelKey);
-    channelPartition.insertRecordToBuffer(record, isFirstRowPerPartitionInBatch);
+  private ChannelLane getLane(
+      String partitionChannelKey, TopicPartitionChannel topicPartitionChannel) {
+    return channelLanes.computeIfAbsent(
+        partitionChannelKey,
+        key -> {
+          topicPartitionChannel.deferOffsetResets();
+          return new ChannelLane(insertExecutor, MAX_PENDING_BATCHES_PER_CHANNEL);
+        });
   }
 
   @Override
@@ -324,9 +562,21 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     String partitionChannelKey =
         partitionChannelKey(topicPartition.topic(), topicPartition.partition());
     if (partitionsToChannel.containsKey(partitionChannelKey)) {
-      long offset = partitionsToChannel.get(partitionChannelKey).getOffsetSafeToCommitToKafka();
-      partitionsToChannel.get(partitionChannelKey).setLatestConsumerOffset(offset);
-      return offset;
+      TopicPartitionChannel topicPartitionChannel = partitionsToChannel.get(partitionChannelKey);
+      if (insertExecutor != null) {
+        // preCommit does not wait for the batches queued on the lane, only reopening an invalid
+        // channel must not run concurrently with inserts
+        OptionalLong offset =
+            topicPartitionChannel.getOffsetSafeToCommitToKafkaWithoutReopen(
+                offsetTokenMaxStalenessMs);
+        if (offset.isPresent()) {
+          topicPartitionChannel.setLatestConsumerOffset(offset.getAsLong());
+          return offset.getAsLong();
+        }
+        return getLane(partitionChannelKey, topicPartitionChannel)
+            .call(() -> getOffsetSafeToCommitToKafka(topicPartitionChannel));
+      }
+      return getOffsetSafeToCommitToKafka(topicPartitionChannel);
     } else {
       LOGGER.warn(
           "Topic: {} Partition: {} hasn't been initialized to get offset",
@@ -336,6 +586,12 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     }
   }
 
+  private long getOffsetSafeToCommitToKafka(TopicPartitionChannel topicPartitionChannel) {
+    long offset = topicPartitionChannel.getOffsetSafeToCommitToKafka(offsetTokenMaxStalenessMs);
+    topicPartitionChannel.setLatestConsumerOffset(offset);
+    return offset;
+  }
+
   @Override
   public int getPartitionCount() {
     return partitionsToChannel.size();
@@ -351,9 +607,22 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
     partitionsToChannel.forEach(
         (partitionChannelKey, topicPartitionChannel) -> {
           LOGGER.info("Closing partition channel:{}", partitionChannelKey);
+          drainLane(partitionChannelKey);
           topicPartitionChannel.closeChannel();
         });
     partitionsToChannel.clear();
+    if (insertExecutor != null) {
+      insertExecutor.shutdown();
+    }
+    updateChannelsToRefresh();
+    if (offsetTokenRefreshExecutor != null) {
+      offsetTokenRefreshExecutor.shutdownNow();
+    }
+    channelOpenExecutor.shutdown();
+    if (isRegisteredForSchemaEvolution) {
+      isRegisteredForSchemaEvolution = false;
+      SchemaEvolutionCoordinator.releaseTask(getConnectorName());
+    }
 
     StreamingClientProvider.getStreamingClientProviderInstance()
         .closeClient(this.connectorConfig, this.streamingIngestClient);
@@ -382,6 +651,7 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
           // Check for null since it's possible that the something goes wrong even before the
           // channels are created
           if (topicPartitionChannel != null) {
+            drainLane(partitionChannelKey);
             topicPartitionChannel.closeChannel();
           }
           LOGGER.info(
@@ -391,6 +661,7 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
               topicPartition.partition());
           partitionsToChannel.remove(partitionChannelKey);
         });
+    updateChannelsToRefresh();
     LOGGER.info(
         "Closing {} partitions and remaining partitions which are not closed are:{}, with size:{}",
         partitions.size(),
@@ -398,6 +669,14 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
         partitionsToChannel.size());
   }
 
+  /** Wait for the records handed to the lane of a channel and remove the lane */
+  private void drainLane(String partitionChannelKey) {
+    ChannelLane lane = channelLanes.remove(partitionChannelKey);
+    if (lane != null) {
+      lane.drain();
+    }
+  }
+
   @Override
   public void setIsStoppedToTrue() {}
 
@@ -555,6 +834,140 @@ public class SnowflakeSinkServiceV2 implements SnowflakeSinkService {
   }
 
   // ------ Streaming Ingest Related Functions ------ //
+  private static long getOffsetTokenMaxStalenessMs(Map<String, String> connectorConfig) {
+    if (connectorConfig == null
+        || Strings.isNullOrEmpty(
+            connectorConfig.get(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS))) {
+      return SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS_DEFAULT;
+    }
+    return Long.parseLong(connectorConfig.get(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS));
+  }
+
+  /**
+   * Start refreshing the committed offset tokens of all channels of this task, twice per staleness
+   * bound so that preCommit finds a fresh enough offset token even if one refresh is slow.
+   *
+   * @param maxStalenessMs maximum age of offset tokens returned to preCommit
+   * @return executor running the refresh, null if maxStalenessMs is 0
+   */
+  private ScheduledExecutorService startOffsetTokenRefresh(long maxStalenessMs) {
+    if (maxStalenessMs <= 0) {
+      LOGGER.info("Offset tokens are fetched from Snowflake on every preCommit");
+      return null;
+    }
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "streaming-offset-token-refresh");
+              thread.setDaemon(true);
+              return thread;
+            });
+    long refreshIntervalMs = Math.max(1, maxStalenessMs / 2);
+    executor.scheduleWithFixedDelay(
+        this::refreshCommittedOffsetTokens, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    LOGGER.info(
+        "Refreshing offset tokens every {} ms, max staleness:{} ms",
+        refreshIntervalMs,
+        maxStalenessMs);
+    return executor;
+  }
+
+  private static int getInsertParallelism(Map<String, String> connectorConfig) {
+    if (connectorConfig == null
+        || Strings.isNullOrEmpty(connectorConfig.get(SNOWPIPE_STREAMING_INSERT_PARALLELISM))) {
+      return SNOWPIPE_STREAMING_INSERT_PARALLELISM_DEFAULT;
+    }
+    return Integer.parseInt(connectorConfig.get(SNOWPIPE_STREAMING_INSERT_PARALLELISM));
+  }
+
+  /**
+   * @param parallelism number of threads inserting records
+   * @return executor shared by the lanes of all channels, null to insert on the task thread
+   */
+  private static ExecutorService createInsertExecutor(int parallelism) {
+    if (parallelism <= 1) {
+      return null;
+    }
+    AtomicInteger insertThreadCount = new AtomicInteger(0);
+    LOGGER.info("Inserting records of all channels with {} threads", parallelism);
+    return Executors.newFixedThreadPool(
+        parallelism,
+        runnable -> {
+          Thread thread =
+              new Thread(runnable, "streaming-insert-" + insertThreadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /** Publish the current channels to the offset token refresh */
+  private void updateChannelsToRefresh() {
+    if (offsetTokenRefreshExecutor != null) {
+      channelsToRefresh = new ArrayList<>(partitionsToChannel.values());
+    }
+  }
+
+  /**
+   * Fetch the committed offset tokens of all channels in one request. Failures are logged only,
+   * preCommit fetches the offset token itself once the cached one gets too old.
+   */
+  private void refreshCommittedOffsetTokens() {
+    List<TopicPartitionChannel> topicPartitionChannels = channelsToRefresh;
+    if (topicPartitionChannels.isEmpty()) {
+      return;
+    }
+    Map<String, TopicPartitionChannel> channelsByName = new HashMap<>();
+    List<SnowflakeStreamingIngestChannel> channels = new ArrayList<>();
+    for (TopicPartitionChannel topicPartitionChannel : topicPartitionChannels) {
+      SnowflakeStreamingIngestChannel channel = topicPartitionChannel.getChannel();
+      if (channel != null && !channel.isClosed()) {
+        channelsByName.put(channel.getFullyQualifiedName(), topicPartitionChannel);
+        channels.add(channel);
+      }
+    }
+    if (channels.isEmpty()) {
+      return;
+    }
+
+    final long fetchTimeMs = System.currentTimeMillis();
+    try {
+      Map<String, String> offsetTokens =
+          this.streamingIngestClient.getLatestCommittedOffsetTokens(channels);
+      if (offsetTokens == null) {
+        return;
+      }
+      offsetTokens.forEach(
+          (channelName, offsetToken) -> {
+            TopicPartitionChannel topicPartitionChannel = channelsByName.get(channelName);
+            if (topicPartitionChannel != null) {
+              topicPartitionChannel.updateCommittedOffsetToken(offsetToken, fetchTimeMs);
+            }
+          });
+      LOGGER.debug(
+          "Refreshed offset tokens of {} channels in {} ms",
+          offsetTokens.size(),
+          System.currentTimeMillis() - fetchTimeMs);
+    } catch (Exception e) {
+      LOGGER.warn(
+          "Failed to refresh offset tokens of {} channels, exception:{}",
+          channels.size(),
+          e.toString());
+    }
+  }
+
+  /**
+   * The schema evolution coordinators of the connector tables are shared by its tasks on this
+   * worker, they are dropped when the last task is closed
+   */
+  private void registerForSchemaEvolution() {
+    SchemaEvolutionCoordinator.registerTask(getConnectorName());
+    this.isRegisteredForSchemaEvolution = true;
+  }
+
+  private String getConnectorName() {
+    return this.conn == null ? null : this.conn.getConnectorName();
+  }
+
   private void createTableIfNotExists(final String tableName) {
     if (this.conn.tableExist(tableName)) {
       if (!this.enableSchematization) {
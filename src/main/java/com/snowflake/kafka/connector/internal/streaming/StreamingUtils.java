@@ -8,7 +8,9 @@ import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.ERRORS_
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.ErrorTolerance;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.INGESTION_METHOD_OPT;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.KEY_CONVERTER_CONFIG_FIELD;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_INSERT_PARALLELISM;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_MAX_CLIENT_LAG;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS;
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.VALUE_CONVERTER_CONFIG_FIELD;
 
 import com.google.common.base.Strings;
@@ -236,6 +238,42 @@ public class StreamingUtils {
             }
           }
 
+          if (inputConfig.containsKey(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS)) {
+            String maxStaleness = inputConfig.get(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS);
+            boolean isValid;
+            try {
+              isValid = Long.parseLong(maxStaleness) >= 0;
+            } catch (NumberFormatException exception) {
+              isValid = false;
+            }
+            if (!isValid) {
+              invalidParams.put(
+                  SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS,
+                  Utils.formatString(
+                      "Offset token max staleness must be a non negative parsable long. Given"
+                          + " configuration was: {}",
+                      maxStaleness));
+            }
+          }
+
+          if (inputConfig.containsKey(SNOWPIPE_STREAMING_INSERT_PARALLELISM)) {
+            String parallelism = inputConfig.get(SNOWPIPE_STREAMING_INSERT_PARALLELISM);
+            boolean isValid;
+            try {
+              isValid = Integer.parseInt(parallelism) >= 1;
+            } catch (NumberFormatException exception) {
+              isValid = false;
+            }
+            if (!isValid) {
+              invalidParams.put(
+                  SNOWPIPE_STREAMING_INSERT_PARALLELISM,
+                  Utils.formatString(
+                      "Insert parallelism must be a positive parsable integer. Given configuration"
+                          + " was: {}",
+                      parallelism));
+            }
+          }
+
           // Valid schematization for Snowpipe Streaming
           invalidParams.putAll(validateSchematizationConfig(inputConfig));
         }
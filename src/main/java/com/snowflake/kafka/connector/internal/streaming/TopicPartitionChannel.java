@@ -7,7 +7,6 @@ import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.ERRORS_
 import static com.snowflake.kafka.connector.internal.streaming.StreamingUtils.DURATION_BETWEEN_GET_OFFSET_TOKEN_RETRY;
 import static com.snowflake.kafka.connector.internal.streaming.StreamingUtils.MAX_GET_OFFSET_TOKEN_RETRIES;
 import static java.time.temporal.ChronoUnit.SECONDS;
-import static org.apache.kafka.common.record.TimestampType.NO_TIMESTAMP_TYPE;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
@@ -34,12 +33,21 @@ import dev.failsafe.function.CheckedSupplier;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonProcessingException;
 import net.snowflake.ingest.streaming.InsertValidationResponse;
 import net.snowflake.ingest.streaming.OpenChannelRequest;
@@ -84,7 +92,12 @@ public class TopicPartitionChannel {
 
   // used to communicate to the streaming ingest's insertRows API
   // This is non final because we might decide to get the new instance of Channel
-  private SnowflakeStreamingIngestChannel channel;
+  // Volatile since the sink service reads it when refreshing offset tokens in the background
+  private volatile SnowflakeStreamingIngestChannel channel;
+
+  // Columns of the table from before the channel was last opened, to whether they are nullable. The
+  // channel sees at least these columns, null if they are not known
+  private volatile Map<String, Boolean> channelTableColumns = null;
 
   // -------- private final fields -------- //
 
@@ -107,11 +120,30 @@ public class TopicPartitionChannel {
   private final AtomicLong latestConsumerOffset =
       new AtomicLong(NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE);
 
+  // Latest committed offset token known for this channel, refreshed in the background by the sink
+  // service and read in preCommit, see getOffsetSafeToCommitToKafka(long)
+  private final AtomicReference<CachedOffsetToken> cachedOffsetToken =
+      new AtomicReference<>(CachedOffsetToken.NONE);
+
   // Indicates whether we need to skip and discard any leftover rows in the current batch, this
   // could happen when the channel gets invalidated and reset, then anything left in the buffer
   // should be skipped
   private boolean needToSkipCurrentBatch = false;
 
+  // Set when records are inserted from a channel lane instead of the task thread. Offset resets in
+  // Kafka are then only requested from the task thread, see applyPendingOffsetReset
+  private volatile boolean deferOffsetResets = false;
+
+  // Offset reset requested while deferOffsetResets is set, not yet sent to Kafka
+  private final AtomicLong pendingOffsetReset =
+      new AtomicLong(NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE);
+
+  // True from a deferred offset reset until the first batch Kafka delivers after the reset
+  private volatile boolean isAwaitingRewind = false;
+
+  // Id of the batch during which the deferred reset was sent to Kafka, -1 while it is pending
+  private volatile long rewindBatchId = -1;
+
   private final SnowflakeStreamingIngestClient streamingIngestClient;
 
   // Topic partition Object from connect consisting of topic and partition
@@ -158,6 +190,9 @@ public class TopicPartitionChannel {
   // Whether schema evolution could be done on this channel
   private final boolean enableSchemaEvolution;
 
+  // Schema evolution of the table shared with other channels, null if schema evolution is disabled
+  private final SchemaEvolutionCoordinator schemaEvolutionCoordinator;
+
   // Reference to the Snowflake connection service
   private final SnowflakeConnectionService conn;
 
@@ -262,6 +297,10 @@ public class TopicPartitionChannel {
         this.recordService.setAndGetEnableSchematizationFromConfig(sfConnectorConfig);
 
     this.enableSchemaEvolution = this.enableSchematization && hasSchemaEvolutionPermission;
+    this.schemaEvolutionCoordinator =
+        this.enableSchemaEvolution
+            ? SchemaEvolutionCoordinator.forTable(conn.getConnectorName(), this.tableName)
+            : null;
 
     if (isEnableChannelOffsetMigration(sfConnectorConfig)) {
       /* Channel Name format V2 is computed from connector name, topic and partition */
@@ -293,11 +332,16 @@ public class TopicPartitionChannel {
             this.offsetPersistedInSnowflake,
             this.processedOffset,
             this.latestConsumerOffset);
-    this.telemetryServiceV2.reportKafkaPartitionStart(
-        new SnowflakeTelemetryChannelCreation(this.tableName, this.channelNameFormatV1, startTime));
+    final long openDurationMs = System.currentTimeMillis() - startTime;
+    SnowflakeTelemetryChannelCreation channelCreation =
+        new SnowflakeTelemetryChannelCreation(this.tableName, this.channelNameFormatV1, startTime);
+    channelCreation.setOpenDurationMs(openDurationMs);
+    this.telemetryServiceV2.reportKafkaPartitionStart(channelCreation);
+    LOGGER.info(
+        "TopicPartitionChannel:{}, opened in {} ms", this.getChannelNameFormatV1(), openDurationMs);
 
     if (lastCommittedOffsetToken != NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE) {
-      this.sinkTaskContext.offset(this.topicPartition, lastCommittedOffsetToken + 1L);
+      resetOffsetInKafka(lastCommittedOffsetToken + 1L);
     } else {
       LOGGER.info(
           "TopicPartitionChannel:{}, offset token is NULL, will rely on Kafka to send us the"
@@ -450,7 +494,8 @@ public class TopicPartitionChannel {
   }
 
   private boolean isContentBroken(final Object content) {
-    return content != null && ((SnowflakeRecordContent) content).isBroken();
+    return content instanceof SnowflakeRecordContent
+        && ((SnowflakeRecordContent) content).isBroken();
   }
 
   private SinkRecord handleNativeRecord(SinkRecord record, boolean isKey) {
@@ -558,8 +603,8 @@ public class TopicPartitionChannel {
             response.getInsertErrors(), streamingBufferToInsert.getSinkRecords());
       }
 
-      // Due to schema evolution, we may need to reopen the channel and reset the offset in kafka
-      // since it's possible that not all rows are ingested
+      // Rows inserted before the batch may have been dropped when the channel was reopened for
+      // schema evolution, they are consumed again from the offset token committed in Snowflake
       if (response.needToResetOffset()) {
         streamingApiFallbackSupplier(
             StreamingApiFallbackInvoker.INSERT_ROWS_SCHEMA_EVOLUTION_FALLBACK);
@@ -618,15 +663,27 @@ public class TopicPartitionChannel {
     return Failsafe.with(reopenChannelFallbackExecutorForInsertRows)
         .get(
             new InsertRowsApiResponseSupplier(
-                this.channel, buffer, this.enableSchemaEvolution, this.conn));
+                this.channel,
+                buffer,
+                this.enableSchemaEvolution,
+                this.conn,
+                this.schemaEvolutionCoordinator,
+                this.channelTableColumns,
+                this::reopenChannelAfterSchemaEvolution,
+                this::fetchLatestCommittedOffsetFromSnowflake));
   }
 
   /** Invokes the API given the channel and streaming Buffer. */
   private static class InsertRowsApiResponseSupplier
       implements CheckedSupplier<InsertRowsResponse> {
 
-    // Reference to the Snowpipe Streaming channel
-    private final SnowflakeStreamingIngestChannel channel;
+    // Number of times rows rejected for the table schema are inserted again after evolving it, rows
+    // still rejected after that are handled like rows failing for any other reason
+    private static final int MAX_SCHEMA_EVOLUTION_ATTEMPTS = 3;
+
+    // Reference to the Snowpipe Streaming channel, replaced when it is reopened after schema
+    // evolution
+    private SnowflakeStreamingIngestChannel channel;
 
     // Buffer that holds the original sink records from kafka
     private final StreamingBuffer insertRowsStreamingBuffer;
@@ -637,15 +694,35 @@ public class TopicPartitionChannel {
     // Connection service which will be used to do the ALTER TABLE command for schema evolution
     private final SnowflakeConnectionService conn;
 
+    // Schema evolution of the table shared with other channels
+    private final SchemaEvolutionCoordinator schemaEvolutionCoordinator;
+
+    // Columns of the table the channel sees, null if they are not known
+    private final Map<String, Boolean> channelTableColumns;
+
+    // Flushes and reopens the channel so that it sees the evolved table schema
+    private final Supplier<SnowflakeStreamingIngestChannel> channelReopener;
+
+    // Fetches the offset token committed in Snowflake for the current channel
+    private final LongSupplier committedOffsetFetcher;
+
     private InsertRowsApiResponseSupplier(
         SnowflakeStreamingIngestChannel channelForInsertRows,
         StreamingBuffer insertRowsStreamingBuffer,
         boolean enableSchemaEvolution,
-        SnowflakeConnectionService conn) {
+        SnowflakeConnectionService conn,
+        SchemaEvolutionCoordinator schemaEvolutionCoordinator,
+        Map<String, Boolean> channelTableColumns,
+        Supplier<SnowflakeStreamingIngestChannel> channelReopener,
+        LongSupplier committedOffsetFetcher) {
       this.channel = channelForInsertRows;
       this.insertRowsStreamingBuffer = insertRowsStreamingBuffer;
       this.enableSchemaEvolution = enableSchemaEvolution;
       this.conn = conn;
+      this.schemaEvolutionCoordinator = schemaEvolutionCoordinator;
+      this.channelTableColumns = channelTableColumns;
+      this.channelReopener = channelReopener;
+      this.committedOffsetFetcher = committedOffsetFetcher;
     }
 
     @Override
@@ -658,49 +735,229 @@ public class TopicPartitionChannel {
           this.insertRowsStreamingBuffer.getData();
       List<Map<String, Object>> records = recordsAndOffsets.getKey();
       List<Long> offsets = recordsAndOffsets.getValue();
-      InsertValidationResponse finalResponse = new InsertValidationResponse();
-      boolean needToResetOffset = false;
+      String lastOffsetToken = Long.toString(this.insertRowsStreamingBuffer.getLastOffset());
       if (!enableSchemaEvolution) {
-        finalResponse =
-            this.channel.insertRows(
-                records, Long.toString(this.insertRowsStreamingBuffer.getLastOffset()));
-      } else {
-        for (int idx = 0; idx < records.size(); idx++) {
-          // For schema evolution, we need to call the insertRows API row by row in order to
-          // preserve the original order, for anything after the first schema mismatch error we will
-          // retry after the evolution
-          InsertValidationResponse response =
-              this.channel.insertRow(records.get(idx), Long.toString(offsets.get(idx)));
-          if (response.hasErrors()) {
-            InsertValidationResponse.InsertError insertError = response.getInsertErrors().get(0);
-            List<String> extraColNames = insertError.getExtraColNames();
-            List<String> nonNullableColumns = insertError.getMissingNotNullColNames();
-            long originalSinkRecordIdx =
-                offsets.get(idx) - this.insertRowsStreamingBuffer.getFirstOffset();
-            if (extraColNames == null && nonNullableColumns == null) {
-              InsertValidationResponse.InsertError newInsertError =
-                  new InsertValidationResponse.InsertError(
-                      insertError.getRowContent(), originalSinkRecordIdx);
-              newInsertError.setException(insertError.getException());
-              newInsertError.setExtraColNames(insertError.getExtraColNames());
-              newInsertError.setMissingNotNullColNames(insertError.getMissingNotNullColNames());
-              // Simply added to the final response if it's not schema related errors
-              finalResponse.addError(insertError);
-            } else {
-              SchematizationUtils.evolveSchemaIfNeeded(
-                  this.conn,
-                  this.channel.getTableName(),
-                  nonNullableColumns,
-                  extraColNames,
-                  this.insertRowsStreamingBuffer.getSinkRecord(originalSinkRecordIdx));
-              // Offset reset needed since it's possible that we successfully ingested partial batch
-              needToResetOffset = true;
-              break;
+        return new InsertRowsResponse(this.channel.insertRows(records, lastOffsetToken), false);
+      }
+
+      InsertValidationResponse finalResponse = new InsertValidationResponse();
+      // rows of the batch inserted by the next insertRows call, by index in the batch
+      List<Integer> rowIndexes = new ArrayList<>(records.size());
+      for (int idx = 0; idx < records.size(); idx++) {
+        rowIndexes.add(idx);
+      }
+
+      // Rows not matching the columns the channel sees would be rejected by insertRows, the table
+      // is evolved for them first unless another channel did it already
+      if (this.channelTableColumns != null
+          && evolveSchemaForMismatch(
+              SchemaEvolutionCoordinator.findMismatch(this.channelTableColumns, records))) {
+        rowIndexes =
+            getRowIndexesToInsertAfterReopen(offsets, Collections.emptySet(), finalResponse);
+        if (rowIndexes == null) {
+          return new InsertRowsResponse(new InsertValidationResponse(), true);
+        }
+      }
+
+      for (int attempt = 1; ; attempt++) {
+        if (rowIndexes.isEmpty()) {
+          // every row of the batch was committed before the channel was reopened
+          return new InsertRowsResponse(finalResponse, false);
+        }
+        List<Map<String, Object>> rows = records;
+        if (rowIndexes.size() != records.size()) {
+          rows = new ArrayList<>(rowIndexes.size());
+          for (int rowIndex : rowIndexes) {
+            rows.add(records.get(rowIndex));
+          }
+        }
+        InsertValidationResponse response = this.channel.insertRows(rows, lastOffsetToken);
+        Set<Integer> mismatchedRowIndexes =
+            collectSchemaMismatches(
+                response, rowIndexes, finalResponse, attempt < MAX_SCHEMA_EVOLUTION_ATTEMPTS);
+        if (mismatchedRowIndexes.isEmpty()) {
+          return new InsertRowsResponse(finalResponse, false);
+        }
+
+        // The other rows are in the channel under the offset token of the batch. Closing it flushes
+        // them, the reopened channel sees the evolved table and the rejected rows are inserted
+        // again without consuming the batch again from Kafka
+        LOGGER.warn(
+            "{} rows of channel:{} mismatch the schema of table:{} after it was checked, inserting"
+                + " them again after reopening the channel, attempt:{}",
+            mismatchedRowIndexes.size(),
+            this.channel.getFullyQualifiedName(),
+            this.channel.getTableName(),
+            attempt);
+        rowIndexes = getRowIndexesToInsertAfterReopen(offsets, mismatchedRowIndexes, finalResponse);
+        if (rowIndexes == null) {
+          return new InsertRowsResponse(new InsertValidationResponse(), true);
+        }
+      }
+    }
+
+    /**
+     * Reopen the channel and find the rows of the batch which are not in the table, from the offset
+     * token committed in Snowflake.
+     *
+     * @param offsets offset of every row of the batch
+     * @param mismatchedRowIndexes rows rejected by the last insertRows for the table schema, they
+     *     are missing from the table whatever the committed offset token is
+     * @param finalResponse errors of rows failing for other reasons, these are not inserted again
+     * @return indexes of the rows to insert, null if rows inserted before the batch are missing
+     *     from the table and the offset has to be reset in Kafka
+     */
+    private List<Integer> getRowIndexesToInsertAfterReopen(
+        List<Long> offsets,
+        Set<Integer> mismatchedRowIndexes,
+        InsertValidationResponse finalResponse) {
+      this.channel = this.channelReopener.get();
+      final long committedOffset = this.committedOffsetFetcher.getAsLong();
+      if (committedOffset < this.insertRowsStreamingBuffer.getFirstOffset() - 1) {
+        LOGGER.warn(
+            "Rows before offset:{} of channel:{} were dropped with the channel, committed offset"
+                + " token:{}",
+            this.insertRowsStreamingBuffer.getFirstOffset(),
+            this.channel.getFullyQualifiedName(),
+            committedOffset);
+        return null;
+      }
+      Set<Integer> failedRowIndexes = new HashSet<>();
+      for (InsertValidationResponse.InsertError insertError : finalResponse.getInsertErrors()) {
+        failedRowIndexes.add((int) insertError.getRowIndex());
+      }
+      List<Integer> rowIndexes = new ArrayList<>();
+      for (int idx = 0; idx < offsets.size(); idx++) {
+        if (mismatchedRowIndexes.contains(idx)
+            || (offsets.get(idx) > committedOffset && !failedRowIndexes.contains(idx))) {
+          rowIndexes.add(idx);
+        }
+      }
+      return rowIndexes;
+    }
+
+    /**
+     * Evolve the table schema for all rows of an insertRows response which did not match it, at
+     * most one ALTER TABLE adding columns and one making columns nullable are run for all of them.
+     * Other errors are added to the final response.
+     *
+     * @param response response of insertRows
+     * @param rowIndexes index in the batch of every row given to insertRows
+     * @param finalResponse response collecting the errors not caused by the table schema, with the
+     *     index of the row in the batch
+     * @param canEvolve false to add the errors caused by the table schema to the final response too
+     * @return indexes in the batch of the rows which did not match the table schema
+     */
+    private Set<Integer> collectSchemaMismatches(
+        InsertValidationResponse response,
+        List<Integer> rowIndexes,
+        InsertValidationResponse finalResponse,
+        boolean canEvolve) {
+      Set<Integer> mismatchedRowIndexes = new LinkedHashSet<>();
+      Set<String> nonNullableColumns = new LinkedHashSet<>();
+      Map<String, String> extraColumnsToType = new LinkedHashMap<>();
+      for (InsertValidationResponse.InsertError insertError : response.getInsertErrors()) {
+        int rowIndex = rowIndexes.get((int) insertError.getRowIndex());
+        List<String> extraColNames = insertError.getExtraColNames();
+        List<String> missingNotNullColNames = insertError.getMissingNotNullColNames();
+        if (!canEvolve || (extraColNames == null && missingNotNullColNames == null)) {
+          // Simply added to the final response if it's not schema related errors
+          finalResponse.addError(withRowIndex(insertError, rowIndex));
+          continue;
+        }
+        mismatchedRowIndexes.add(rowIndex);
+        if (missingNotNullColNames != null) {
+          nonNullableColumns.addAll(missingNotNullColNames);
+        }
+        if (extraColNames != null) {
+          // the type of a column is taken from the first row which needs it
+          List<String> untypedColNames = new ArrayList<>();
+          for (String colName : extraColNames) {
+            if (!extraColumnsToType.containsKey(colName)) {
+              untypedColNames.add(colName);
             }
           }
+          if (!untypedColNames.isEmpty()) {
+            extraColumnsToType.putAll(
+                SchematizationUtils.getColumnTypes(
+                    this.insertRowsStreamingBuffer.getSinkRecord(rowIndex), untypedColNames));
+          }
         }
       }
-      return new InsertRowsResponse(finalResponse, needToResetOffset);
+      if (!mismatchedRowIndexes.isEmpty()) {
+        LOGGER.info(
+            "{} rows mismatch the schema of table:{}, evolving it for them",
+            mismatchedRowIndexes.size(),
+            this.channel.getTableName());
+        this.schemaEvolutionCoordinator.evolve(this.conn, nonNullableColumns, extraColumnsToType);
+      }
+      return mismatchedRowIndexes;
+    }
+
+    /**
+     * @param insertError error of a row given to insertRows
+     * @param rowIndex index of the row in the batch
+     * @return the error with the index of the row in the batch
+     */
+    private static InsertValidationResponse.InsertError withRowIndex(
+        InsertValidationResponse.InsertError insertError, int rowIndex) {
+      if (insertError.getRowIndex() == rowIndex) {
+        return insertError;
+      }
+      InsertValidationResponse.InsertError batchInsertError =
+          new InsertValidationResponse.InsertError(insertError.getRowContent(), rowIndex);
+      batchInsertError.setException(insertError.getException());
+      batchInsertError.setExtraColNames(insertError.getExtraColNames());
+      batchInsertError.setMissingNotNullColNames(insertError.getMissingNotNullColNames());
+      return batchInsertError;
+    }
+
+    /**
+     * Evolve the table for rows which do not match the columns the channel sees, the columns
+     * already in the table are left as they are
+     *
+     * @param mismatch difference between the rows to insert and the columns the channel sees
+     * @return true if the table now has columns the channel does not see
+     */
+    private boolean evolveSchemaForMismatch(SchemaEvolutionCoordinator.SchemaMismatch mismatch) {
+      if (mismatch.isEmpty()) {
+        return false;
+      }
+      Map<String, Boolean> tableColumns = this.schemaEvolutionCoordinator.getColumns(this.conn);
+      boolean isTableAhead = false;
+      List<String> nonNullableColumns = new ArrayList<>();
+      for (String columnName : mismatch.getNonNullableColumns()) {
+        if (tableColumns != null
+            && Boolean.TRUE.equals(tableColumns.get(SchematizationUtils.formatName(columnName)))) {
+          isTableAhead = true;
+        } else {
+          nonNullableColumns.add(columnName);
+        }
+      }
+      // the type of a column is taken from the first row which has it
+      Map<Integer, List<String>> extraColNamesByRow = new LinkedHashMap<>();
+      for (Map.Entry<String, Integer> extraColumn : mismatch.getExtraColumns().entrySet()) {
+        if (tableColumns != null
+            && tableColumns.containsKey(SchematizationUtils.formatName(extraColumn.getKey()))) {
+          isTableAhead = true;
+        } else {
+          extraColNamesByRow
+              .computeIfAbsent(extraColumn.getValue(), k -> new ArrayList<>())
+              .add(extraColumn.getKey());
+        }
+      }
+      Map<String, String> extraColumnsToType = new LinkedHashMap<>();
+      extraColNamesByRow.forEach(
+          (rowIndex, colNames) ->
+              extraColumnsToType.putAll(
+                  SchematizationUtils.getColumnTypes(
+                      this.insertRowsStreamingBuffer.getSinkRecord(rowIndex), colNames)));
+
+      if (nonNullableColumns.isEmpty() && extraColumnsToType.isEmpty()) {
+        return isTableAhead;
+      }
+      this.schemaEvolutionCoordinator.evolve(this.conn, nonNullableColumns, extraColumnsToType);
+      return true;
     }
   }
 
@@ -790,8 +1047,6 @@ public class TopicPartitionChannel {
     }
   }
 
-  // TODO: SNOW-529755 POLL committed offsets in background thread
-
   /**
    * Get committed offset from Snowflake. It does an HTTP call internally to find out what was the
    * last offset inserted.
@@ -814,6 +1069,87 @@ public class TopicPartitionChannel {
    */
   public long getOffsetSafeToCommitToKafka() {
     final long committedOffsetInSnowflake = fetchOffsetTokenWithRetry();
+    return toOffsetSafeToCommitToKafka(committedOffsetInSnowflake);
+  }
+
+  /**
+   * Same as {@link #getOffsetSafeToCommitToKafka()}, but answers from the offset token refreshed
+   * in the background when it was fetched at most maxStalenessMs ago. The offset token in Snowflake
+   * only moves forward, so a stale value commits less than possible to Kafka but never more.
+   *
+   * @param maxStalenessMs maximum age of the cached offset token, 0 always fetches it
+   * @return (offsetToken present in Snowflake + 1), else -1
+   */
+  public long getOffsetSafeToCommitToKafka(long maxStalenessMs) {
+    OptionalLong cachedOffset = getCachedOffsetSafeToCommitToKafka(maxStalenessMs);
+    return cachedOffset.isPresent() ? cachedOffset.getAsLong() : getOffsetSafeToCommitToKafka();
+  }
+
+  /**
+   * Same as {@link #getOffsetSafeToCommitToKafka(long)}, but never retries nor reopens the channel,
+   * so that it can run while records are inserted into the channel from another thread.
+   *
+   * @param maxStalenessMs maximum age of the cached offset token, 0 always fetches it
+   * @return (offsetToken present in Snowflake + 1), else -1. Empty if the offset token could not
+   *     be fetched from the current channel, the caller then falls back to {@link
+   *     #getOffsetSafeToCommitToKafka(long)} without inserting concurrently.
+   */
+  public OptionalLong getOffsetSafeToCommitToKafkaWithoutReopen(long maxStalenessMs) {
+    OptionalLong cachedOffset = getCachedOffsetSafeToCommitToKafka(maxStalenessMs);
+    if (cachedOffset.isPresent()) {
+      return cachedOffset;
+    }
+    try {
+      return OptionalLong.of(
+          toOffsetSafeToCommitToKafka(fetchLatestCommittedOffsetFromSnowflake()));
+    } catch (SFException e) {
+      LOGGER.warn(
+          "Failed to fetch offsetToken for channel:{}, message:{}",
+          this.getChannelNameFormatV1(),
+          e.getMessage());
+      return OptionalLong.empty();
+    }
+  }
+
+  private OptionalLong getCachedOffsetSafeToCommitToKafka(long maxStalenessMs) {
+    if (maxStalenessMs > 0) {
+      CachedOffsetToken cached = cachedOffsetToken.get();
+      if (cached.isValid && System.currentTimeMillis() - cached.fetchTimeMs <= maxStalenessMs) {
+        return OptionalLong.of(toOffsetSafeToCommitToKafka(cached.offset));
+      }
+    }
+    return OptionalLong.empty();
+  }
+
+  /**
+   * Record an offset token fetched outside of this class. It is ignored if a newer one is already
+   * known or if the channel was reset after the fetch started.
+   *
+   * @param offsetToken offset token returned by Snowflake, null if none was committed
+   * @param fetchTimeMs time at which the fetch started
+   */
+  public void updateCommittedOffsetToken(String offsetToken, long fetchTimeMs) {
+    final CachedOffsetToken update;
+    try {
+      update =
+          new CachedOffsetToken(
+              offsetToken == null
+                  ? NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE
+                  : Long.parseLong(offsetToken),
+              fetchTimeMs,
+              true);
+    } catch (NumberFormatException ex) {
+      LOGGER.warn(
+          "Ignoring offsetToken which does not contain a parsable long:{} for channel:{}",
+          offsetToken,
+          this.getChannelNameFormatV1());
+      return;
+    }
+    cachedOffsetToken.accumulateAndGet(
+        update, (current, next) -> next.fetchTimeMs > current.fetchTimeMs ? next : current);
+  }
+
+  private static long toOffsetSafeToCommitToKafka(long committedOffsetInSnowflake) {
     if (committedOffsetInSnowflake == NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE) {
       return NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE;
     } else {
@@ -934,6 +1270,11 @@ public class TopicPartitionChannel {
   private void resetChannelMetadataAfterRecovery(
       final StreamingApiFallbackInvoker streamingApiFallbackInvoker,
       final long offsetRecoveredFromSnowflake) {
+    // offset tokens fetched from the previous channel must not be used anymore
+    cachedOffsetToken.set(
+        new CachedOffsetToken(
+            NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE, System.currentTimeMillis(), false));
+
     if (offsetRecoveredFromSnowflake == NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE) {
       LOGGER.info(
           "{} Channel:{}, offset token is NULL, will use the consumer offset managed by the"
@@ -964,7 +1305,7 @@ public class TopicPartitionChannel {
       this.streamingBuffer = new StreamingBuffer();
 
       // Reset Offset in kafka for this topic partition.
-      this.sinkTaskContext.offset(this.topicPartition, offsetToResetInKafka);
+      resetOffsetInKafka(offsetToResetInKafka);
 
       // Need to update the in memory processed offset otherwise if same offset is send again, it
       // might get rejected.
@@ -985,6 +1326,70 @@ public class TopicPartitionChannel {
         offsetToResetInKafka);
   }
 
+  /**
+   * Ask Kafka to send records of this partition starting at the given offset. Channels of a task
+   * are opened concurrently and the task context is not thread safe, so calls are serialized on it.
+   *
+   * @param offset next offset Kafka should send
+   */
+  private void resetOffsetInKafka(long offset) {
+    if (deferOffsetResets) {
+      this.rewindBatchId = -1;
+      this.isAwaitingRewind = true;
+      this.pendingOffsetReset.set(offset);
+      return;
+    }
+    synchronized (this.sinkTaskContext) {
+      this.sinkTaskContext.offset(this.topicPartition, offset);
+    }
+  }
+
+  /**
+   * Defer offset resets in Kafka to {@link #applyPendingOffsetReset(long)}. Used when records are
+   * inserted outside of the task thread: Kafka only rewinds on the poll following the put in which
+   * the reset was requested, so batches already delivered by then have to be skipped.
+   */
+  void deferOffsetResets() {
+    this.deferOffsetResets = true;
+  }
+
+  /**
+   * Send a deferred offset reset to Kafka. Must be called from the task thread before the records
+   * of the batch are inserted.
+   *
+   * @param batchId id of the batch being put, increasing with every put
+   */
+  void applyPendingOffsetReset(long batchId) {
+    final long offset = this.pendingOffsetReset.getAndSet(NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE);
+    if (offset != NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE) {
+      synchronized (this.sinkTaskContext) {
+        this.sinkTaskContext.offset(this.topicPartition, offset);
+      }
+      this.rewindBatchId = batchId;
+      LOGGER.info(
+          "[RESET_PARTITION] Channel:{}, reset kafka offset to:{} in batch:{}",
+          this.getChannelNameFormatV1(),
+          offset,
+          batchId);
+    }
+  }
+
+  /**
+   * @param batchId id of the batch
+   * @return true if the batch was delivered by Kafka before a deferred offset reset took effect
+   */
+  boolean shouldSkipBatch(long batchId) {
+    if (!this.isAwaitingRewind) {
+      return false;
+    }
+    final long currentRewindBatchId = this.rewindBatchId;
+    if (currentRewindBatchId >= 0 && batchId > currentRewindBatchId) {
+      this.isAwaitingRewind = false;
+      return false;
+    }
+    return true;
+  }
+
   /**
    * {@link Fallback} executes below code if retries have failed on {@link SFException}.
    *
@@ -1059,6 +1464,9 @@ public class TopicPartitionChannel {
             .setTableName(this.tableName)
             .setOnErrorOption(OpenChannelRequest.OnErrorOption.CONTINUE)
             .build();
+    if (this.schemaEvolutionCoordinator != null) {
+      this.channelTableColumns = this.schemaEvolutionCoordinator.getColumns(this.conn);
+    }
     LOGGER.info(
         "Opening a channel with name:{} for table name:{}",
         this.channelNameFormatV1,
@@ -1066,6 +1474,29 @@ public class TopicPartitionChannel {
     return streamingIngestClient.openChannel(channelRequest);
   }
 
+  /**
+   * Close the channel and open it again, so that it sees the columns added to the table by schema
+   * evolution. Closing flushes the rows inserted so far, the channel is reopened even if that fails
+   * and the caller finds the rows missing from the table with the committed offset token.
+   *
+   * @return reopened channel
+   */
+  private SnowflakeStreamingIngestChannel reopenChannelAfterSchemaEvolution() {
+    try {
+      this.channel.close().get();
+    } catch (InterruptedException | ExecutionException e) {
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      LOGGER.warn(
+          "Failure closing channel:{} after schema evolution, msg:{}",
+          this.getChannelNameFormatV1(),
+          e.getMessage());
+    }
+    this.channel = openChannelForTable();
+    return this.channel;
+  }
+
   /**
    * Close channel associated to this partition Not rethrowing connect exception because the
    * connector will stop. Channel will eventually be reopened.
@@ -1132,7 +1563,6 @@ public class TopicPartitionChannel {
     return streamingBuffer.isEmpty();
   }
 
-  @VisibleForTesting
   protected SnowflakeStreamingIngestChannel getChannel() {
     return this.channel;
   }
@@ -1157,12 +1587,13 @@ public class TopicPartitionChannel {
    * Converts the original kafka sink record into a Json Record. i.e key and values are converted
    * into Json so that it can be used to insert into variant column of Snowflake Table.
    *
-   * <p>TODO: SNOW-630885 - When schematization is enabled, we should create the map directly from
-   * the SinkRecord instead of first turning it into json
+   * <p>When schematization is enabled, Struct values are kept as is since the row is created
+   * directly from them (See {@link RecordService#isValueConvertedDirectly(SinkRecord)})
    */
   private SinkRecord getSnowflakeSinkRecordFromKafkaRecord(final SinkRecord kafkaSinkRecord) {
     SinkRecord snowflakeRecord = kafkaSinkRecord;
-    if (shouldConvertContent(kafkaSinkRecord.value())) {
+    if (shouldConvertContent(kafkaSinkRecord.value())
+        && !recordService.isValueConvertedDirectly(kafkaSinkRecord)) {
       snowflakeRecord = handleNativeRecord(kafkaSinkRecord, false);
     }
     if (shouldConvertContent(kafkaSinkRecord.key())) {
@@ -1173,60 +1604,46 @@ public class TopicPartitionChannel {
   }
 
   /**
-   * Get Approximate size of Sink Record which we get from Kafka. This is useful to find out how
-   * much data(records) we have buffered per channel/partition.
+   * Get Approximate size of a row which was converted from the Sink Record we got from Kafka. This
+   * is useful to find out how much data(records) we have buffered per channel/partition.
    *
    * <p>This is an approximate size since there is no API available to find out size of record.
    *
-   * <p>We first serialize the incoming kafka record into a Json format and find estimate size.
+   * <p>The row is the exact map which will be handed to insertRows API, so the conversion of a
+   * kafka record happens only once (See {@link StreamingBuffer#insert(SinkRecord)}).
    *
    * <p>Please note, the size we calculate here is not accurate and doesnt match with actual size of
    * Kafka record which we buffer in memory. (Kafka Sink Record has lot of other metadata
    * information which is discarded when we calculate the size of Json Record)
    *
-   * <p>We also do the same processing just before calling insertRows API for the buffered rows.
-   *
    * <p>Downside of this calculation is we might try to buffer more records but we could be close to
    * JVM memory getting full
    *
-   * @param kafkaSinkRecord sink record received as is from Kafka (With connector specific converter
-   *     being invoked)
-   * @return Approximate long size of record in bytes. 0 if record is broken
+   * @param tableRow row converted from the kafka record, which will be inserted into Snowflake
+   * @return Approximate long size of row in bytes
    */
-  protected long getApproxSizeOfRecordInBytes(SinkRecord kafkaSinkRecord) {
+  protected static long getApproxSizeOfRowInBytes(Map<String, Object> tableRow) {
     long sinkRecordBufferSizeInBytes = 0L;
 
-    SinkRecord snowflakeRecord = getSnowflakeSinkRecordFromKafkaRecord(kafkaSinkRecord);
-
-    if (isRecordBroken(snowflakeRecord)) {
-      // we won't be able to find accurate size of serialized record since serialization itself
-      // failed
-      // But this will not happen in streaming ingest since we deprecated custom converters.
-      return 0L;
-    }
-
-    try {
-      // get the row that we want to insert into Snowflake.
-      Map<String, Object> tableRow =
-          recordService.getProcessedRecordForStreamingIngest(snowflakeRecord);
-      // need to loop through the map and get the object node
-      for (Map.Entry<String, Object> entry : tableRow.entrySet()) {
-        sinkRecordBufferSizeInBytes += entry.getKey().length() * 2L;
-        // Can Typecast into string because value is JSON
-        Object value = entry.getValue();
-        if (value != null) {
-          if (value instanceof String) {
-            sinkRecordBufferSizeInBytes += ((String) value).length() * 2L; // 1 char = 2 bytes
-          } else {
-            // for now it could only be a list of string
-            for (String s : (List<String>) value) {
-              sinkRecordBufferSizeInBytes += s.length() * 2L;
-            }
+    // need to loop through the map and get the object node
+    for (Map.Entry<String, Object> entry : tableRow.entrySet()) {
+      sinkRecordBufferSizeInBytes += entry.getKey().length() * 2L;
+      // values are Json strings, except for the typed columns of schematized records
+      Object value = entry.getValue();
+      if (value != null) {
+        if (value instanceof String) {
+          sinkRecordBufferSizeInBytes += ((String) value).length() * 2L; // 1 char = 2 bytes
+        } else if (value instanceof byte[]) {
+          sinkRecordBufferSizeInBytes += ((byte[]) value).length;
+        } else if (value instanceof List) {
+          for (String s : (List<String>) value) {
+            sinkRecordBufferSizeInBytes += s.length() * 2L;
           }
+        } else {
+          // numbers and booleans of typed columns
+          sinkRecordBufferSizeInBytes += Long.BYTES;
         }
       }
-    } catch (JsonProcessingException e) {
-      // We ignore any errors here because this is just calculating the record size
     }
 
     sinkRecordBufferSizeInBytes += StreamingUtils.MAX_RECORD_OVERHEAD_BYTES;
@@ -1243,90 +1660,110 @@ public class TopicPartitionChannel {
    * records from Kafka and once threshold has reached, we would call insertRows API to insert into
    * Snowflake.
    *
-   * <p>We would transform kafka records to Snowflake understood records (In JSON format) just
-   * before calling insertRows API.
+   * <p>Kafka records are transformed to Snowflake understood rows exactly once, when they are
+   * inserted into this buffer. The converted rows are kept along with the original records so that
+   * insertRows API gets the prebuilt rows and the buffer size reflects the rows being sent.
    */
   @VisibleForTesting
   protected class StreamingBuffer
       extends PartitionBuffer<Pair<List<Map<String, Object>>, List<Long>>> {
-    // Records coming from Kafka
+    // Records coming from Kafka which were successfully converted, index aligned with tableRows
     private final List<SinkRecord> sinkRecords;
 
+    // Rows converted from sinkRecords, ready to be sent to insertRows API
+    private final List<Map<String, Object>> tableRows;
+
+    // Kafka offsets of tableRows
+    private final List<Long> offsets;
+
+    // Records which could not be converted along with the cause, reported to DLQ in getData
+    private final List<Pair<SinkRecord, Exception>> failedRecords;
+
     StreamingBuffer() {
       super();
       sinkRecords = new ArrayList<>();
+      tableRows = new ArrayList<>();
+      offsets = new ArrayList<>();
+      failedRecords = new ArrayList<>();
     }
 
+    /**
+     * Converts the kafka record into a row and adds it to the buffer. The buffer size is updated
+     * with the size of the converted row.
+     *
+     * <p>Broken records or records which cannot be serialized are not added as rows, they are
+     * reported to DLQ when the buffer data is fetched. Check {@link #handleNativeRecord(SinkRecord,
+     * boolean)}
+     *
+     * @param kafkaSinkRecord sink record received as is from Kafka (With connector specific
+     *     converter being invoked)
+     */
     @Override
     public void insert(SinkRecord kafkaSinkRecord) {
-      if (sinkRecords.isEmpty()) {
+      if (isEmpty()) {
         setFirstOffset(kafkaSinkRecord.kafkaOffset());
       }
-      sinkRecords.add(kafkaSinkRecord);
 
       setNumOfRecords(getNumOfRecords() + 1);
       setLastOffset(kafkaSinkRecord.kafkaOffset());
 
-      final long currentKafkaRecordSizeInBytes = getApproxSizeOfRecordInBytes(kafkaSinkRecord);
-      // update size of buffer
-      setBufferSizeBytes(getBufferSizeBytes() + currentKafkaRecordSizeInBytes);
+      SinkRecord snowflakeRecord = getSnowflakeSinkRecordFromKafkaRecord(kafkaSinkRecord);
+
+      // broken record
+      if (isRecordBroken(snowflakeRecord)) {
+        // we won't be able to find size of serialized record since serialization itself failed
+        // But this will not happen in streaming ingest since we deprecated custom converters.
+        failedRecords.add(new Pair<>(kafkaSinkRecord, new DataException("Broken Record")));
+        return;
+      }
+
+      // Convert this records into Json Schema which has content and metadata, add it to DLQ if
+      // there is an exception
+      try {
+        Map<String, Object> tableRow =
+            recordService.getProcessedRecordForStreamingIngest(snowflakeRecord);
+        sinkRecords.add(kafkaSinkRecord);
+        tableRows.add(tableRow);
+        offsets.add(snowflakeRecord.kafkaOffset());
+
+        // update size of buffer
+        setBufferSizeBytes(getBufferSizeBytes() + getApproxSizeOfRowInBytes(tableRow));
+      } catch (JsonProcessingException e) {
+        failedRecords.add(new Pair<>(kafkaSinkRecord, e));
+      }
     }
 
     /**
      * Get all rows and their offsets. Each map corresponds to one row whose keys are column names
      * and values are corresponding data in that column.
      *
-     * <p>This goes over through all buffered kafka records and transforms into JsonSchema and
-     * JsonNode Check {@link #handleNativeRecord(SinkRecord, boolean)}
+     * <p>Rows were already converted in {@link #insert(SinkRecord)}, records which failed the
+     * conversion are sent to DLQ here.
      *
      * @return A pair that contains the records and their corresponding offsets
      */
     @Override
     public Pair<List<Map<String, Object>>, List<Long>> getData() {
-      final List<Map<String, Object>> records = new ArrayList<>();
-      final List<Long> offsets = new ArrayList<>();
-      for (SinkRecord kafkaSinkRecord : sinkRecords) {
-        SinkRecord snowflakeRecord = getSnowflakeSinkRecordFromKafkaRecord(kafkaSinkRecord);
-
-        // broken record
-        if (isRecordBroken(snowflakeRecord)) {
-          // check for error tolerance and log tolerance values
-          // errors.log.enable and errors.tolerance
-          LOGGER.debug(
-              "Broken record offset:{}, topic:{}",
-              kafkaSinkRecord.kafkaOffset(),
-              kafkaSinkRecord.topic());
-          kafkaRecordErrorReporter.reportError(kafkaSinkRecord, new DataException("Broken Record"));
-        } else {
-          // lag telemetry, note that sink record timestamp might be null
-          if (snowflakeRecord.timestamp() != null
-              && snowflakeRecord.timestampType() != NO_TIMESTAMP_TYPE) {
-            // TODO:SNOW-529751 telemetry
-          }
-
-          // Convert this records into Json Schema which has content and metadata, add it to DLQ if
-          // there is an exception
-          try {
-            Map<String, Object> tableRow =
-                recordService.getProcessedRecordForStreamingIngest(snowflakeRecord);
-            records.add(tableRow);
-            offsets.add(snowflakeRecord.kafkaOffset());
-          } catch (JsonProcessingException e) {
-            LOGGER.warn(
-                "Record has JsonProcessingException offset:{}, topic:{}",
-                kafkaSinkRecord.kafkaOffset(),
-                kafkaSinkRecord.topic());
-            kafkaRecordErrorReporter.reportError(kafkaSinkRecord, e);
-          }
-        }
+      for (Pair<SinkRecord, Exception> failedRecord : failedRecords) {
+        SinkRecord kafkaSinkRecord = failedRecord.getKey();
+        // check for error tolerance and log tolerance values
+        // errors.log.enable and errors.tolerance
+        LOGGER.warn(
+            "Failed to convert record offset:{}, topic:{}, error:{}",
+            kafkaSinkRecord.kafkaOffset(),
+            kafkaSinkRecord.topic(),
+            failedRecord.getValue().getMessage());
+        kafkaRecordErrorReporter.reportError(kafkaSinkRecord, failedRecord.getValue());
       }
+      failedRecords.clear();
+
       LOGGER.debug(
           "Get rows for streaming ingest. {} records, {} bytes, offset {} - {}",
           getNumOfRecords(),
           getBufferSizeBytes(),
           getFirstOffset(),
           getLastOffset());
-      return new Pair<>(records, offsets);
+      return new Pair<>(tableRows, offsets);
     }
 
     @Override
@@ -1339,6 +1776,23 @@ public class TopicPartitionChannel {
     }
   }
 
+  /** Committed offset token of the channel together with the time it was fetched at */
+  private static class CachedOffsetToken {
+    private static final CachedOffsetToken NONE =
+        new CachedOffsetToken(NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE, 0, false);
+
+    private final long offset;
+    private final long fetchTimeMs;
+    // false once the channel was reset, until an offset token fetched afterwards is recorded
+    private final boolean isValid;
+
+    private CachedOffsetToken(long offset, long fetchTimeMs, boolean isValid) {
+      this.offset = offset;
+      this.fetchTimeMs = fetchTimeMs;
+      this.isValid = isValid;
+    }
+  }
+
   /**
    * Enum representing which Streaming API is invoking the fallback supplier. ({@link
    * #streamingApiFallbackSupplier(StreamingApiFallbackInvoker)})
@@ -21,6 +21,7 @@ import static com.snowflake.kafka.connector.internal.telemetry.TelemetryConstant
 import static com.snowflake.kafka.connector.internal.telemetry.TelemetryConstants.TABLE_NAME;
 import static com.snowflake.kafka.connector.internal.telemetry.TelemetryConstants.TOPIC_PARTITION_CHANNEL_CREATION_TIME;
 import static com.snowflake.kafka.connector.internal.telemetry.TelemetryConstants.TOPIC_PARTITION_CHANNEL_NAME;
+import static com.snowflake.kafka.connector.internal.telemetry.TelemetryConstants.TOPIC_PARTITION_CHANNEL_OPEN_DURATION_MS;
 
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryBasicInfo;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
@@ -34,6 +35,7 @@ public class SnowflakeTelemetryChannelCreation extends SnowflakeTelemetryBasicIn
   private final long tpChannelCreationTime; // start time of the channel
   private final String tpChannelName;
   private boolean isReuseTable = false; // is the channel reusing existing table
+  private long openDurationMs = 0; // time taken to open the channel and fetch its offset token
 
   public SnowflakeTelemetryChannelCreation(
       final String tableName, final String channelName, final long startTime) {
@@ -49,6 +51,7 @@ public class SnowflakeTelemetryChannelCreation extends SnowflakeTelemetryBasicIn
 
     msg.put(IS_REUSE_TABLE, this.isReuseTable);
     msg.put(TOPIC_PARTITION_CHANNEL_CREATION_TIME, tpChannelCreationTime);
+    msg.put(TOPIC_PARTITION_CHANNEL_OPEN_DURATION_MS, openDurationMs);
   }
 
   @Override
@@ -60,4 +63,8 @@ public class SnowflakeTelemetryChannelCreation extends SnowflakeTelemetryBasicIn
   public void setReuseTable(boolean reuseTable) {
     isReuseTable = reuseTable;
   }
+
+  public void setOpenDurationMs(long openDurationMs) {
+    this.openDurationMs = openDurationMs;
+  }
 }
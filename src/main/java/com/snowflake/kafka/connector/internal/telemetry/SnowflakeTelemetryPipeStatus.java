@@ -205,6 +205,32 @@ public class SnowflakeTelemetryPipeStatus extends SnowflakeTelemetryBasicInfo {
     updateLag(lag, averageCommitLagFileCount, averageCommitLagMs, EventType.COMMIT_LAG);
   }
 
+  /**
+   * Purge batch latency is the time taken to remove one batch of ingested files from internal
+   * stage. Only reported through JMX, it is not part of the telemetry averages.
+   *
+   * @param latency latency in milliseconds
+   */
+  public void updatePurgeBatchLatency(final long latency) {
+    if (this.enableCustomJMXConfig) {
+      // Map will only be non empty if jmx is enabled.
+      eventsByType.get(EventType.PURGE_BATCH_LATENCY).update(latency, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Insert report latency is the time taken by one poll of the insertReport API. Only reported
+   * through JMX, it is not part of the telemetry averages.
+   *
+   * @param latency latency in milliseconds
+   */
+  public void updateInsertReportLatency(final long latency) {
+    if (this.enableCustomJMXConfig) {
+      // Map will only be non empty if jmx is enabled.
+      eventsByType.get(EventType.INSERT_REPORT_LATENCY).update(latency, TimeUnit.MILLISECONDS);
+    }
+  }
+
   /**
    * The current lag is just added to the running average to calculate the new average.
    *
@@ -456,6 +482,11 @@ public class SnowflakeTelemetryPipeStatus extends SnowflakeTelemetryBasicInfo {
 
   // --------------- For testing --------------- //
 
+  @VisibleForTesting
+  public long getMemoryUsage() {
+    return this.memoryUsage.get();
+  }
+
   @VisibleForTesting
   public void setCleanerRestartCount(long cleanerRestartCount) {
     this.cleanerRestartCount.set(cleanerRestartCount);
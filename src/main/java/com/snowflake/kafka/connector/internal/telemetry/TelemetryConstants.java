@@ -55,6 +55,8 @@ public final class TelemetryConstants {
   public static final String TOPIC_PARTITION_CHANNEL_NAME = "topic_partition_channel_name";
   public static final String TOPIC_PARTITION_CHANNEL_CREATION_TIME =
       "topic_partition_channel_creation_time";
+  public static final String TOPIC_PARTITION_CHANNEL_OPEN_DURATION_MS =
+      "topic_partition_channel_open_duration_ms";
   public static final String TOPIC_PARTITION_CHANNEL_CLOSE_TIME =
       "topic_partition_channel_close_time";
   // ********** ^ Streaming Constants ^ **********//
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.records;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ArrayNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.JsonNodeFactory;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.ResolvingDecoder;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Avro {@link DatumReader} which walks the reader schema and decodes binary Avro data straight into
+ * a Jackson {@link JsonNode}, without building a {@link org.apache.avro.generic.GenericRecord} and
+ * without the text round trip of {@code mapper.readTree(genericRecord.toString())}.
+ *
+ * <p>The produced tree is identical to the one the text round trip produces when the record is
+ * read with a {@link GenericData} which has either no conversion or only the decimal conversion
+ * registered:
+ *
+ * <p>1. with the decimal conversion, decimals are numbers parsed from {@link
+ * BigDecimal#toString()} the same way Jackson does, otherwise they are plain bytes or fixed
+ *
+ * <p>2. bytes are ISO_8859_1 decoded strings and fixed are arrays of signed bytes
+ *
+ * <p>3. NaN and infinite floating point numbers are strings
+ *
+ * <p>4. unions are the value of the resolved branch
+ *
+ * <p>5. map entries keep the iteration order of the HashMap Avro reads maps into
+ *
+ * <p>Only records are supported as top level schema, check {@link #isSupported(Schema)}.
+ *
+ * <p>The resolving decoder for the writer and reader schema is built once per thread and reused
+ * for every datum. An instance must be created per writer and reader schema pair.
+ */
+class AvroJsonDatumReader implements DatumReader<JsonNode> {
+  private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+  private Schema writerSchema;
+  private Schema readerSchema;
+  private final boolean decimalConversion;
+
+  // Resolving decoder holds the parsing grammar of writer and reader schema, it is expensive to
+  // build and not thread safe
+  private ThreadLocal<ResolvingDecoder> resolver = new ThreadLocal<>();
+
+  /**
+   * @param writerSchema avro schema with which data got serialized
+   * @param readerSchema avro schema that describes the shape of the returned JsonNode
+   * @param decimalConversion true if decimal logical types are converted to numbers
+   */
+  AvroJsonDatumReader(Schema writerSchema, Schema readerSchema, boolean decimalConversion) {
+    this.writerSchema = writerSchema;
+    this.readerSchema = readerSchema;
+    this.decimalConversion = decimalConversion;
+  }
+
+  /**
+   * Reader which resolves the schema from the data file, used with DataFileReader
+   *
+   * @param decimalConversion true if decimal logical types are converted to numbers
+   */
+  AvroJsonDatumReader(boolean decimalConversion) {
+    this(null, null, decimalConversion);
+  }
+
+  /**
+   * @param schema top level schema of the data
+   * @return true if data with this top level schema can be converted with this reader
+   */
+  static boolean isSupported(Schema schema) {
+    return schema.getType() == Schema.Type.RECORD;
+  }
+
+  @Override
+  public void setSchema(Schema schema) {
+    this.writerSchema = schema;
+    if (this.readerSchema == null) {
+      this.readerSchema = schema;
+    }
+    this.resolver = new ThreadLocal<>();
+  }
+
+  @Override
+  public JsonNode read(JsonNode reuse, Decoder in) throws IOException {
+    ResolvingDecoder resolvingDecoder = resolver.get();
+    if (resolvingDecoder == null) {
+      resolvingDecoder = DecoderFactory.get().resolvingDecoder(writerSchema, readerSchema, null);
+      resolver.set(resolvingDecoder);
+    }
+    resolvingDecoder.configure(in);
+    JsonNode result = read(readerSchema, resolvingDecoder);
+    resolvingDecoder.drain();
+    return result;
+  }
+
+  private JsonNode read(Schema expected, ResolvingDecoder in) throws IOException {
+    switch (expected.getType()) {
+      case RECORD:
+        return readRecord(expected, in);
+      case ENUM:
+        return NODE_FACTORY.textNode(expected.getEnumSymbols().get(in.readEnum()));
+      case ARRAY:
+        return readArray(expected, in);
+      case MAP:
+        return readMap(expected, in);
+      case UNION:
+        return read(expected.getTypes().get(in.readIndex()), in);
+      case FIXED:
+        return readFixed(expected, in);
+      case STRING:
+        return NODE_FACTORY.textNode(in.readString(null).toString());
+      case BYTES:
+        return readBytes(expected, in);
+      case INT:
+        return NODE_FACTORY.numberNode(in.readInt());
+      case LONG:
+        return integralNode(in.readLong());
+      case FLOAT:
+        return floatingPointNode(Float.toString(in.readFloat()));
+      case DOUBLE:
+        return floatingPointNode(Double.toString(in.readDouble()));
+      case BOOLEAN:
+        return NODE_FACTORY.booleanNode(in.readBoolean());
+      case NULL:
+        in.readNull();
+        return NODE_FACTORY.nullNode();
+      default:
+        throw new IOException("Unknown avro type: " + expected);
+    }
+  }
+
+  private JsonNode readRecord(Schema expected, ResolvingDecoder in) throws IOException {
+    // fields are decoded in the writer order, but the record lists them in the reader order
+    List<Schema.Field> fields = expected.getFields();
+    JsonNode[] values = new JsonNode[fields.size()];
+    for (Schema.Field field : in.readFieldOrder()) {
+      values[field.pos()] = read(field.schema(), in);
+    }
+    ObjectNode node = NODE_FACTORY.objectNode();
+    for (Schema.Field field : fields) {
+      node.set(field.name(), values[field.pos()]);
+    }
+    return node;
+  }
+
+  private JsonNode readArray(Schema expected, ResolvingDecoder in) throws IOException {
+    Schema elementSchema = expected.getElementType();
+    ArrayNode node = NODE_FACTORY.arrayNode();
+    for (long l = in.readArrayStart(); l > 0; l = in.arrayNext()) {
+      for (long i = 0; i < l; i++) {
+        node.add(read(elementSchema, in));
+      }
+    }
+    return node;
+  }
+
+  private JsonNode readMap(Schema expected, ResolvingDecoder in) throws IOException {
+    Schema valueSchema = expected.getValueType();
+    boolean javaStringKeys =
+        GenericData.StringType.String.name().equals(expected.getProp(GenericData.STRING_PROP));
+    long l = in.readMapStart();
+    // Avro reads maps into a HashMap sized by the first block, keep the same iteration order
+    Map<Object, JsonNode> map = new HashMap<>((int) l);
+    for (; l > 0; l = in.mapNext()) {
+      for (long i = 0; i < l; i++) {
+        Object key = javaStringKeys ? in.readString() : in.readString(new Utf8());
+        map.put(key, read(valueSchema, in));
+      }
+    }
+    ObjectNode node = NODE_FACTORY.objectNode();
+    for (Map.Entry<Object, JsonNode> entry : map.entrySet()) {
+      node.set(String.valueOf(entry.getKey()), entry.getValue());
+    }
+    return node;
+  }
+
+  private JsonNode readFixed(Schema expected, ResolvingDecoder in) throws IOException {
+    byte[] bytes = new byte[expected.getFixedSize()];
+    in.readFixed(bytes, 0, bytes.length);
+    LogicalType logicalType = expected.getLogicalType();
+    if (decimalConversion && logicalType instanceof LogicalTypes.Decimal) {
+      return decimalNode(bytes, (LogicalTypes.Decimal) logicalType);
+    }
+    ArrayNode node = NODE_FACTORY.arrayNode();
+    for (byte b : bytes) {
+      node.add((int) b);
+    }
+    return node;
+  }
+
+  private JsonNode readBytes(Schema expected, ResolvingDecoder in) throws IOException {
+    ByteBuffer buffer = in.readBytes(null);
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    LogicalType logicalType = expected.getLogicalType();
+    if (decimalConversion && logicalType instanceof LogicalTypes.Decimal) {
+      return decimalNode(bytes, (LogicalTypes.Decimal) logicalType);
+    }
+    return NODE_FACTORY.textNode(new String(bytes, StandardCharsets.ISO_8859_1));
+  }
+
+  private static JsonNode decimalNode(byte[] unscaled, LogicalTypes.Decimal decimal) {
+    String text = new BigDecimal(new BigInteger(unscaled), decimal.getScale()).toString();
+    if (text.indexOf('.') >= 0 || text.indexOf('E') >= 0) {
+      return NODE_FACTORY.numberNode(Double.parseDouble(text));
+    }
+    BigInteger value = new BigInteger(text);
+    if (value.bitLength() < Long.SIZE) {
+      return integralNode(value.longValue());
+    }
+    return NODE_FACTORY.numberNode(value);
+  }
+
+  /** Jackson parses integral numbers into the smallest of int and long which fits the value */
+  private static JsonNode integralNode(long value) {
+    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+      return NODE_FACTORY.numberNode((int) value);
+    }
+    return NODE_FACTORY.numberNode(value);
+  }
+
+  /** NaN and infinite values are written as strings, any other value is parsed as double */
+  private static JsonNode floatingPointNode(String text) {
+    double value = Double.parseDouble(text);
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      return NODE_FACTORY.textNode(text);
+    }
+    return NODE_FACTORY.numberNode(value);
+  }
+}
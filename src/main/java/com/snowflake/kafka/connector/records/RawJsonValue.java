@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.records;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.SerializableString;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * A Json value kept as the UTF-8 bytes it was received in, written verbatim with {@code
+ * JsonGenerator.writeRawValue}.
+ *
+ * <p>The bytes have to be a single valid Json value, nothing checks it here. Generators writing in
+ * UTF-8 copy them as is, the String is only decoded when a generator writing chars needs it.
+ */
+class RawJsonValue implements SerializableString {
+  private final byte[] json;
+
+  // decoded lazily, most values are only ever written in UTF-8
+  private String value = null;
+
+  RawJsonValue(byte[] json) {
+    this.json = json;
+  }
+
+  /** @return the Json value in UTF-8, not a copy */
+  byte[] getBytes() {
+    return json;
+  }
+
+  @Override
+  public String getValue() {
+    if (value == null) {
+      value = new String(json, StandardCharsets.UTF_8);
+    }
+    return value;
+  }
+
+  @Override
+  public int charLength() {
+    return getValue().length();
+  }
+
+  @Override
+  public char[] asQuotedChars() {
+    return JsonStringEncoder.getInstance().quoteAsString(getValue());
+  }
+
+  @Override
+  public byte[] asUnquotedUTF8() {
+    return json;
+  }
+
+  @Override
+  public byte[] asQuotedUTF8() {
+    return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+  }
+
+  @Override
+  public int appendQuotedUTF8(byte[] buffer, int offset) {
+    return append(asQuotedUTF8(), buffer, offset);
+  }
+
+  @Override
+  public int appendQuoted(char[] buffer, int offset) {
+    char[] quoted = asQuotedChars();
+    if (offset + quoted.length > buffer.length) {
+      return -1;
+    }
+    System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+    return quoted.length;
+  }
+
+  @Override
+  public int appendUnquotedUTF8(byte[] buffer, int offset) {
+    return append(json, buffer, offset);
+  }
+
+  @Override
+  public int appendUnquoted(char[] buffer, int offset) {
+    String unquoted = getValue();
+    if (offset + unquoted.length() > buffer.length) {
+      return -1;
+    }
+    unquoted.getChars(0, unquoted.length(), buffer, offset);
+    return unquoted.length();
+  }
+
+  @Override
+  public int writeQuotedUTF8(OutputStream out) throws IOException {
+    byte[] quoted = asQuotedUTF8();
+    out.write(quoted);
+    return quoted.length;
+  }
+
+  @Override
+  public int writeUnquotedUTF8(OutputStream out) throws IOException {
+    out.write(json);
+    return json.length;
+  }
+
+  @Override
+  public int putQuotedUTF8(ByteBuffer buffer) {
+    return put(asQuotedUTF8(), buffer);
+  }
+
+  @Override
+  public int putUnquotedUTF8(ByteBuffer buffer) {
+    return put(json, buffer);
+  }
+
+  @Override
+  public String toString() {
+    return getValue();
+  }
+
+  private static int append(byte[] bytes, byte[] buffer, int offset) {
+    if (offset + bytes.length > buffer.length) {
+      return -1;
+    }
+    System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+    return bytes.length;
+  }
+
+  private static int put(byte[] bytes, ByteBuffer buffer) {
+    if (bytes.length > buffer.remaining()) {
+      return -1;
+    }
+    buffer.put(bytes);
+    return bytes.length;
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.records;
+
+import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonGenerator;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.io.SerializedString;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Writes the metadata of records in Json without building a Json tree for it.
+ *
+ * <p>Field names are encoded once for all records and the name of every topic once for all its
+ * records, only the fields which change from one record to the next are encoded per record. The
+ * fields are written in the same order as the tree built before.
+ *
+ * <p>Every thread writes into its own generator and buffer, both are reused for its next records.
+ */
+class RecordMetadataWriter {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final SerializedString TOPIC = new SerializedString(RecordService.TOPIC);
+  private static final SerializedString OFFSET = new SerializedString(RecordService.OFFSET);
+  private static final SerializedString PARTITION = new SerializedString(RecordService.PARTITION);
+  private static final SerializedString SCHEMA_ID = new SerializedString(RecordService.SCHEMA_ID);
+  private static final SerializedString KEY = new SerializedString(RecordService.KEY);
+  private static final SerializedString KEY_SCHEMA_ID =
+      new SerializedString(RecordService.KEY_SCHEMA_ID);
+  private static final SerializedString HEADERS = new SerializedString(RecordService.HEADERS);
+  private static final Map<TimestampType, SerializedString> TIMESTAMP_TYPES =
+      new EnumMap<>(TimestampType.class);
+
+  static {
+    for (TimestampType timestampType : TimestampType.values()) {
+      TIMESTAMP_TYPES.put(timestampType, new SerializedString(timestampType.name));
+    }
+  }
+
+  private static final String STRING_SCHEMA = Schema.STRING_SCHEMA.toString();
+
+  private static final ThreadLocal<Output> OUTPUTS = ThreadLocal.withInitial(Output::new);
+
+  // encoded name of every topic written so far
+  private final ConcurrentMap<String, SerializedString> topics = new ConcurrentHashMap<>();
+
+  /**
+   * @param record record from Kafka
+   * @param schemaID schema id of the value, {@link SnowflakeRecordContent#NON_AVRO_SCHEMA} if it
+   *     was not converted using schema registry
+   * @param metadataConfig fields to include
+   * @return metadata of the record in Json
+   */
+  String write(SinkRecord record, int schemaID, SnowflakeMetadataConfig metadataConfig)
+      throws IOException {
+    checkKey(record);
+    JsonNode headers = parseHeaders(record);
+    Output output = OUTPUTS.get();
+    try {
+      write(output.generator, record, schemaID, metadataConfig, headers);
+      return output.getAndReset();
+    } catch (IOException | RuntimeException e) {
+      // the generator may be left in the middle of the object, the next record starts over
+      OUTPUTS.remove();
+      throw e;
+    }
+  }
+
+  /**
+   * Write the metadata of a record as the next value of a generator. The key has to be checked
+   * with {@link #checkKey(SinkRecord)} and the headers parsed with {@link
+   * #parseHeaders(SinkRecord)} beforehand, so that an unsupported record fails before anything of
+   * it is written.
+   *
+   * @param generator generator to write into
+   * @param record record from Kafka
+   * @param schemaID schema id of the value, {@link SnowflakeRecordContent#NON_AVRO_SCHEMA} if it
+   *     was not converted using schema registry
+   * @param metadataConfig fields to include
+   * @param headers parsed headers of the record, null if it has none
+   */
+  void write(
+      JsonGenerator generator,
+      SinkRecord record,
+      int schemaID,
+      SnowflakeMetadataConfig metadataConfig,
+      JsonNode headers)
+      throws IOException {
+    generator.writeStartObject();
+    if (metadataConfig.topicFlag) {
+      generator.writeFieldName(TOPIC);
+      if (record.topic() == null) {
+        generator.writeNull();
+      } else {
+        generator.writeString(topics.computeIfAbsent(record.topic(), SerializedString::new));
+      }
+    }
+    if (metadataConfig.offsetAndPartitionFlag) {
+      generator.writeFieldName(OFFSET);
+      generator.writeNumber(record.kafkaOffset());
+      generator.writeFieldName(PARTITION);
+      writeNumber(generator, record.kafkaPartition());
+    }
+
+    // ignore if no timestamp
+    if (record.timestampType() != TimestampType.NO_TIMESTAMP_TYPE
+        && metadataConfig.createtimeFlag) {
+      generator.writeFieldName(TIMESTAMP_TYPES.get(record.timestampType()));
+      writeNumber(generator, record.timestamp());
+    }
+
+    // include schema id if using avro with schema registry
+    if (schemaID != SnowflakeRecordContent.NON_AVRO_SCHEMA) {
+      generator.writeFieldName(SCHEMA_ID);
+      generator.writeNumber(schemaID);
+    }
+
+    writeKey(generator, record);
+
+    if (headers != null) {
+      generator.writeFieldName(HEADERS);
+      generator.writeTree(headers);
+    }
+    generator.writeEndObject();
+  }
+
+  /**
+   * @param record record from Kafka
+   * @return headers of the record in Json, null if it has none
+   */
+  static JsonNode parseHeaders(SinkRecord record) {
+    return record.headers().isEmpty() ? null : RecordService.parseHeaders(record.headers());
+  }
+
+  /**
+   * Check that the key of the record is supported, without writing it
+   *
+   * @param record record from Kafka
+   */
+  static void checkKey(SinkRecord record) {
+    if (record.key() != null) {
+      isStringKey(record);
+    }
+  }
+
+  private static void writeKey(JsonGenerator generator, SinkRecord record) throws IOException {
+    if (record.key() == null) {
+      return;
+    }
+
+    if (isStringKey(record)) {
+      generator.writeFieldName(KEY);
+      generator.writeString(record.key().toString());
+      return;
+    }
+
+    SnowflakeRecordContent keyContent = (SnowflakeRecordContent) record.key();
+    generator.writeFieldName(KEY);
+    if (keyContent.getRawJson() != null) {
+      generator.writeRawValue(keyContent.getRawJson());
+      return;
+    }
+    JsonNode[] keyData = keyContent.getData();
+    if (keyData.length == 1) {
+      generator.writeTree(keyData[0]);
+    } else {
+      generator.writeStartArray();
+      for (JsonNode keyNode : keyData) {
+        generator.writeTree(keyNode);
+      }
+      generator.writeEndArray();
+    }
+
+    if (keyContent.getSchemaID() != SnowflakeRecordContent.NON_AVRO_SCHEMA) {
+      generator.writeFieldName(KEY_SCHEMA_ID);
+      generator.writeNumber(keyContent.getSchemaID());
+    }
+  }
+
+  /**
+   * @param record record from Kafka with a key
+   * @return true if the key is a string, false if it is a {@link SnowflakeRecordContent}
+   */
+  private static boolean isStringKey(SinkRecord record) {
+    if (record.keySchema() == null) {
+      throw SnowflakeErrors.ERROR_0010.getException(
+          "Unsupported Key format, please implement either String Key Converter or Snowflake"
+              + " Converters");
+    }
+
+    if (record.keySchema().type() == Schema.Type.STRING
+        && record.keySchema().toString().equals(STRING_SCHEMA)) {
+      return true;
+    } else if (SnowflakeJsonSchema.NAME.equals(record.keySchema().name())) {
+      if (!(record.key() instanceof SnowflakeRecordContent)) {
+        throw SnowflakeErrors.ERROR_0010.getException(
+            "Input record key should be SnowflakeRecordContent object if key schema is"
+                + " SNOWFLAKE_JSON_SCHEMA");
+      }
+      return false;
+    } else {
+      throw SnowflakeErrors.ERROR_0010.getException(
+          "Unsupported Key format, please implement either String Key Converter or Snowflake"
+              + " Converters");
+    }
+  }
+
+  private static void writeNumber(JsonGenerator generator, Number value) throws IOException {
+    if (value == null) {
+      generator.writeNull();
+    } else {
+      generator.writeNumber(value.longValue());
+    }
+  }
+
+  /** Generator of a thread with the buffer it writes into */
+  private static class Output {
+    private final CharArrayWriter buffer = new CharArrayWriter(256);
+    private final JsonGenerator generator;
+
+    private Output() {
+      try {
+        this.generator = MAPPER.getFactory().createGenerator(buffer);
+        // every record is a root value of its own, written without separator
+        this.generator.setRootValueSeparator(null);
+      } catch (IOException e) {
+        throw SnowflakeErrors.ERROR_5015.getException(e);
+      }
+    }
+
+    private String getAndReset() throws IOException {
+      generator.flush();
+      String json = buffer.toString();
+      buffer.reset();
+      return json;
+    }
+  }
+}
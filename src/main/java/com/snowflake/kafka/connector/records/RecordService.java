@@ -25,22 +25,27 @@ import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.internal.KCLogger;
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.TimeZone;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonGenerator;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonProcessingException;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ArrayNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.BinaryNode;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.JsonNodeFactory;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ObjectNode;
-import org.apache.kafka.common.record.TimestampType;
 import org.apache.kafka.connect.data.ConnectSchema;
 import org.apache.kafka.connect.data.Date;
 import org.apache.kafka.connect.data.Decimal;
@@ -66,10 +71,11 @@ public class RecordService {
   static final String CONTENT = "content";
   static final String META = "meta";
   static final String SCHEMA_ID = "schema_id";
-  private static final String KEY_SCHEMA_ID = "key_schema_id";
+  static final String KEY_SCHEMA_ID = "key_schema_id";
   static final String HEADERS = "headers";
 
-  private boolean enableSchematization = false;
+  // set by the sink service before its channels are opened, read by the threads inserting rows
+  private volatile boolean enableSchematization = false;
   private SnowflakeSinkConnectorConfig.BehaviorOnNullValues behaviorOnNullValues =
       SnowflakeSinkConnectorConfig.BehaviorOnNullValues.DEFAULT;
 
@@ -93,6 +99,11 @@ public class RecordService {
   // This class is designed to work with empty metadata config map
   private SnowflakeMetadataConfig metadataConfig = new SnowflakeMetadataConfig();
 
+  // converts Struct values into columns when schematization is enabled
+  private final StructRowConverter structRowConverter = new StructRowConverter();
+
+  private final RecordMetadataWriter metadataWriter = new RecordMetadataWriter();
+
   /** Send Telemetry Data to Snowflake */
   private final SnowflakeTelemetryService telemetryService;
 
@@ -168,6 +179,15 @@ public class RecordService {
    * @return a Row wrapper which contains both actual content(payload) and metadata
    */
   private SnowflakeTableRow processRecord(SinkRecord record) {
+    SnowflakeRecordContent valueContent = getValueContent(record);
+    return new SnowflakeTableRow(valueContent, getMetadata(record, valueContent.getSchemaID()));
+  }
+
+  /**
+   * @param record SinkRecord
+   * @return content of the record, empty for a tombstone record
+   */
+  private SnowflakeRecordContent getValueContent(SinkRecord record) {
     SnowflakeRecordContent valueContent;
 
     if (record.value() == null || record.valueSchema() == null) {
@@ -186,34 +206,26 @@ public class RecordService {
       }
       valueContent = (SnowflakeRecordContent) record.value();
     }
+    return valueContent;
+  }
 
-    ObjectNode meta = MAPPER.createObjectNode();
-    if (metadataConfig.topicFlag) {
-      meta.put(TOPIC, record.topic());
-    }
-    if (metadataConfig.offsetAndPartitionFlag) {
-      meta.put(OFFSET, record.kafkaOffset());
-      meta.put(PARTITION, record.kafkaPartition());
-    }
-
-    // ignore if no timestamp
-    if (record.timestampType() != TimestampType.NO_TIMESTAMP_TYPE
-        && metadataConfig.createtimeFlag) {
-      meta.put(record.timestampType().name, record.timestamp());
-    }
-
-    // include schema id if using avro with schema registry
-    if (valueContent.getSchemaID() != SnowflakeRecordContent.NON_AVRO_SCHEMA) {
-      meta.put(SCHEMA_ID, valueContent.getSchemaID());
+  /**
+   * @param record SinkRecord
+   * @param schemaID schema id of the value, {@link SnowflakeRecordContent#NON_AVRO_SCHEMA} if it
+   *     was not converted using schema registry
+   * @return metadata of the record in Json, null if metadata is not ingested
+   */
+  private String getMetadata(SinkRecord record, int schemaID) {
+    if (!metadataConfig.allFlag) {
+      // unsupported keys fail the record even if metadata is not ingested
+      RecordMetadataWriter.checkKey(record);
+      return null;
     }
-
-    putKey(record, meta);
-
-    if (!record.headers().isEmpty()) {
-      meta.set(HEADERS, parseHeaders(record.headers()));
+    try {
+      return metadataWriter.write(record, schemaID, metadataConfig);
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5015.getException(e);
     }
-
-    return new SnowflakeTableRow(valueContent, meta);
   }
 
   /**
@@ -226,17 +238,67 @@ public class RecordService {
    * @return Json String with metadata and actual Payload from Kafka Record
    */
   public String getProcessedRecordForSnowpipe(SinkRecord record) {
-    SnowflakeTableRow row = processRecord(record);
-    StringBuilder buffer = new StringBuilder();
-    for (JsonNode node : row.content.getData()) {
-      ObjectNode data = MAPPER.createObjectNode();
-      data.set(CONTENT, node);
-      if (metadataConfig.allFlag) {
-        data.set(META, row.metadata);
-      }
-      buffer.append(data.toString());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      SnowpipeRecordWriter writer = newSnowpipeRecordWriter(out);
+      writer.write(record);
+      writer.close();
+    } catch (IOException e) {
+      throw SnowflakeErrors.ERROR_5015.getException(e);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param out stream the records are written into in UTF-8, not closed by the writer
+   * @return writer of records in the format of {@link #getProcessedRecordForSnowpipe(SinkRecord)}
+   */
+  public SnowpipeRecordWriter newSnowpipeRecordWriter(OutputStream out) throws IOException {
+    return new SnowpipeRecordWriter(this, out);
+  }
+
+  /**
+   * Write a single Record from put API as {"content": ..., "meta": ...}, one object per content
+   * node. Nothing is written if the record is not supported.
+   *
+   * @param record record from Kafka
+   * @param generator generator to write into
+   */
+  void writeProcessedRecordForSnowpipe(SinkRecord record, JsonGenerator generator)
+      throws IOException {
+    SnowflakeRecordContent valueContent = getValueContent(record);
+    // everything which can fail the record is done before writing it
+    RecordMetadataWriter.checkKey(record);
+    JsonNode headers = metadataConfig.allFlag ? RecordMetadataWriter.parseHeaders(record) : null;
+    RawJsonValue rawJson = valueContent.getRawJson();
+    if (rawJson != null) {
+      // copied verbatim, the value was never parsed into a tree
+      generator.writeStartObject();
+      generator.writeFieldName(CONTENT);
+      generator.writeRawValue(rawJson);
+      writeMetaForSnowpipe(record, generator, valueContent, headers);
+      generator.writeEndObject();
+      return;
+    }
+    for (JsonNode node : valueContent.getData()) {
+      generator.writeStartObject();
+      generator.writeFieldName(CONTENT);
+      generator.writeTree(node);
+      writeMetaForSnowpipe(record, generator, valueContent, headers);
+      generator.writeEndObject();
+    }
+  }
+
+  private void writeMetaForSnowpipe(
+      SinkRecord record,
+      JsonGenerator generator,
+      SnowflakeRecordContent valueContent,
+      JsonNode headers)
+      throws IOException {
+    if (metadataConfig.allFlag) {
+      generator.writeFieldName(META);
+      metadataWriter.write(generator, record, valueContent.getSchemaID(), metadataConfig, headers);
     }
-    return buffer.toString();
   }
 
   /**
@@ -251,27 +313,72 @@ public class RecordService {
    *
    * <p>When schematization is enabled, the content of the record is extracted into a map
    *
-   * @param record record from Kafka to (Which was serialized in Json)
+   * @param record record from Kafka to (Which was serialized in Json, unless {@link
+   *     #isValueConvertedDirectly(SinkRecord)})
    * @return Json String with metadata and actual Payload from Kafka Record
    */
   public Map<String, Object> getProcessedRecordForStreamingIngest(SinkRecord record)
       throws JsonProcessingException {
+    if (isValueConvertedDirectly(record)) {
+      return getProcessedStructForStreamingIngest(record);
+    }
     SnowflakeTableRow row = processRecord(record);
     final Map<String, Object> streamingIngestRow = new HashMap<>();
+    RawJsonValue rawJson = row.content.getRawJson();
+    if (rawJson != null && !enableSchematization) {
+      // decoded as is, the value was never parsed into a tree
+      streamingIngestRow.put(TABLE_COLUMN_CONTENT, rawJson.getValue());
+      if (row.metadata != null) {
+        streamingIngestRow.put(TABLE_COLUMN_METADATA, row.metadata);
+      }
+      return streamingIngestRow;
+    }
     for (JsonNode node : row.content.getData()) {
       if (enableSchematization) {
         streamingIngestRow.putAll(getMapFromJsonNodeForStreamingIngest(node));
       } else {
         streamingIngestRow.put(TABLE_COLUMN_CONTENT, MAPPER.writeValueAsString(node));
       }
-      if (metadataConfig.allFlag) {
-        streamingIngestRow.put(TABLE_COLUMN_METADATA, MAPPER.writeValueAsString(row.metadata));
+      if (row.metadata != null) {
+        streamingIngestRow.put(TABLE_COLUMN_METADATA, row.metadata);
       }
     }
 
     return streamingIngestRow;
   }
 
+  /**
+   * When schematization is enabled, Struct values of native converters are converted into columns
+   * as is, instead of being converted into a Json tree first.
+   *
+   * @param record record from Kafka
+   * @return true if the value of the record does not need to be serialized in Json before calling
+   *     {@link #getProcessedRecordForStreamingIngest(SinkRecord)}
+   */
+  public boolean isValueConvertedDirectly(SinkRecord record) {
+    return enableSchematization
+        && record.value() instanceof Struct
+        && record.valueSchema() != null
+        && record.valueSchema().type() == Schema.Type.STRUCT;
+  }
+
+  private Map<String, Object> getProcessedStructForStreamingIngest(SinkRecord record)
+      throws JsonProcessingException {
+    final Map<String, Object> streamingIngestRow =
+        structRowConverter.convert(record.valueSchema(), (Struct) record.value());
+    // Thrown an exception if the Struct has no field and empty records are not ingested
+    if (streamingIngestRow.isEmpty()
+        && this.behaviorOnNullValues != SnowflakeSinkConnectorConfig.BehaviorOnNullValues.DEFAULT) {
+      throw SnowflakeErrors.ERROR_0010.getException(
+          "Not able to convert node to Snowpipe Streaming input format");
+    }
+    String metadata = getMetadata(record, SnowflakeRecordContent.NON_AVRO_SCHEMA);
+    if (metadata != null) {
+      streamingIngestRow.put(TABLE_COLUMN_METADATA, metadata);
+    }
+    return streamingIngestRow;
+  }
+
   private Map<String, Object> getMapFromJsonNodeForStreamingIngest(JsonNode node)
       throws JsonProcessingException {
     final Map<String, Object> streamingIngestRow = new HashMap<>();
@@ -286,17 +393,8 @@ public class RecordService {
     while (columnNames.hasNext()) {
       String columnName = columnNames.next();
       JsonNode columnNode = node.get(columnName);
-      Object columnValue;
-      if (columnNode.isTextual()) {
-        columnValue = columnNode.textValue();
-      } else if (columnNode.isNull()) {
-        columnValue = null;
-      } else {
-        columnValue = MAPPER.writeValueAsString(columnNode);
-      }
-      // while the value is always dumped into a string, the Streaming Ingest SDK
-      // will transform the value according to its type in the table
-      streamingIngestRow.put(Utils.quoteNameIfNeeded(columnName), columnValue);
+      streamingIngestRow.put(
+          Utils.quoteNameIfNeeded(columnName), getColumnValueForStreamingIngest(columnNode));
     }
     // Thrown an exception if the input JsonNode is not in the expected format
     if (streamingIngestRow.isEmpty()) {
@@ -306,57 +404,86 @@ public class RecordService {
     return streamingIngestRow;
   }
 
+  /**
+   * Give the value of a column to the Streaming Ingest SDK in the same form as {@link
+   * StructRowConverter}: numbers, booleans and bytes as Java values, so that they are not printed
+   * into a string only to be parsed back by the SDK. Numbers with a precision higher than
+   * Snowflake supports, arrays and objects are still given as Json strings, the SDK will transform
+   * them according to the type of the column in the table.
+   */
+  private static Object getColumnValueForStreamingIngest(JsonNode columnNode)
+      throws JsonProcessingException {
+    if (columnNode.isTextual()) {
+      return columnNode.textValue();
+    } else if (columnNode.isNull()) {
+      return null;
+    } else if (columnNode.isBoolean()) {
+      return columnNode.booleanValue();
+    } else if (columnNode.isIntegralNumber()) {
+      if (columnNode.canConvertToLong()) {
+        return columnNode.longValue();
+      }
+      BigInteger bigIntegerValue = columnNode.bigIntegerValue();
+      if (new BigDecimal(bigIntegerValue).precision() > MAX_SNOWFLAKE_NUMBER_PRECISION) {
+        // in order to prevent losing precision, convert this value to text
+        return bigIntegerValue.toString();
+      }
+      return bigIntegerValue;
+    } else if (columnNode.isBigDecimal()) {
+      BigDecimal bigDecimalValue = columnNode.decimalValue();
+      if (bigDecimalValue.precision() > MAX_SNOWFLAKE_NUMBER_PRECISION) {
+        // in order to prevent losing precision, convert this value to text
+        return bigDecimalValue.toString();
+      }
+      return bigDecimalValue;
+    } else if (columnNode.isNumber()) {
+      return columnNode.numberValue();
+    } else if (columnNode.isBinary()) {
+      return ((BinaryNode) columnNode).binaryValue();
+    }
+    return MAPPER.writeValueAsString(columnNode);
+  }
+
   /** For now there are two columns one is content and other is metadata. Both are Json */
   private static class SnowflakeTableRow {
     // This can be a JsonNode but we will keep this as is.
     private final SnowflakeRecordContent content;
-    private final JsonNode metadata;
+    // metadata in Json, null if metadata is not ingested
+    private final String metadata;
 
-    public SnowflakeTableRow(SnowflakeRecordContent content, JsonNode metadata) {
+    public SnowflakeTableRow(SnowflakeRecordContent content, String metadata) {
       this.content = content;
       this.metadata = metadata;
     }
   }
 
-  void putKey(SinkRecord record, ObjectNode meta) {
-    if (record.key() == null) {
-      return;
-    }
-
-    if (record.keySchema() == null) {
-      throw SnowflakeErrors.ERROR_0010.getException(
-          "Unsupported Key format, please implement either String Key Converter or Snowflake"
-              + " Converters");
-    }
-
-    if (record.keySchema().toString().equals(Schema.STRING_SCHEMA.toString())) {
-      meta.put(KEY, record.key().toString());
-    } else if (SnowflakeJsonSchema.NAME.equals(record.keySchema().name())) {
-      if (!(record.key() instanceof SnowflakeRecordContent)) {
-        throw SnowflakeErrors.ERROR_0010.getException(
-            "Input record key should be SnowflakeRecordContent object if key schema is"
-                + " SNOWFLAKE_JSON_SCHEMA");
+  /**
+   * @param value value of a bytes schema which is not a Decimal
+   * @return content of the value
+   */
+  static byte[] toByteArray(Object value) {
+    byte[] valueArr = null;
+    if (value instanceof byte[]) valueArr = (byte[]) value;
+    else if (value instanceof ByteBuffer) {
+      ByteBuffer byteBufferValue = (ByteBuffer) value;
+      if (byteBufferValue.hasArray()) valueArr = ((ByteBuffer) value).array();
+      else {
+        // If the byte buffer is read only, make a copy of the buffer then access the byte
+        // array.
+        ByteBuffer clone = ByteBuffer.allocate(byteBufferValue.capacity());
+        byteBufferValue.rewind();
+        clone.put(byteBufferValue);
+        byteBufferValue.rewind();
+        clone.flip();
+        valueArr = clone.array();
       }
+    }
 
-      SnowflakeRecordContent keyContent = (SnowflakeRecordContent) record.key();
-
-      JsonNode[] keyData = keyContent.getData();
-      if (keyData.length == 1) {
-        meta.set(KEY, keyData[0]);
-      } else {
-        ArrayNode keyNode = MAPPER.createArrayNode();
-        keyNode.addAll(Arrays.asList(keyData));
-        meta.set(KEY, keyNode);
-      }
+    if (valueArr == null)
+      throw SnowflakeErrors.ERROR_5015.getException(
+          "Invalid type for bytes type: " + value.getClass());
 
-      if (keyContent.getSchemaID() != SnowflakeRecordContent.NON_AVRO_SCHEMA) {
-        meta.put(KEY_SCHEMA_ID, keyContent.getSchemaID());
-      }
-    } else {
-      throw SnowflakeErrors.ERROR_0010.getException(
-          "Unsupported Key format, please implement either String Key Converter or Snowflake"
-              + " Converters");
-    }
+    return valueArr;
   }
 
   static JsonNode parseHeaders(Headers headers) {
@@ -449,28 +576,7 @@ public class RecordService {
             return JsonNodeFactory.instance.numberNode(bigDecimalValue);
           }
 
-          byte[] valueArr = null;
-          if (value instanceof byte[]) valueArr = (byte[]) value;
-          else if (value instanceof ByteBuffer) {
-            ByteBuffer byteBufferValue = (ByteBuffer) value;
-            if (byteBufferValue.hasArray()) valueArr = ((ByteBuffer) value).array();
-            else {
-              // If the byte buffer is read only, make a copy of the buffer then access the byte
-              // array.
-              ByteBuffer clone = ByteBuffer.allocate(byteBufferValue.capacity());
-              byteBufferValue.rewind();
-              clone.put(byteBufferValue);
-              byteBufferValue.rewind();
-              clone.flip();
-              valueArr = clone.array();
-            }
-          }
-
-          if (valueArr == null)
-            throw SnowflakeErrors.ERROR_5015.getException(
-                "Invalid type for bytes type: " + value.getClass());
-
-          return JsonNodeFactory.instance.binaryNode(valueArr);
+          return JsonNodeFactory.instance.binaryNode(toByteArray(value));
 
         case ARRAY:
           {
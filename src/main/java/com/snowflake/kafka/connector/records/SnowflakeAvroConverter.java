@@ -19,11 +19,10 @@ package com.snowflake.kafka.connector.records;
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
 import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
 import org.apache.avro.Conversions;
 import org.apache.avro.Schema;
@@ -31,6 +30,7 @@ import org.apache.avro.SchemaParseException;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
@@ -48,6 +48,13 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
   as the reader schema. See https://avro.apache.org/docs/1.9.2/spec.html#Schema+Resolution */
   private Schema readerSchema = null;
 
+  // Datum readers for each writer schema id, the reader schema is fixed for this converter so the
+  // writer schema id identifies the (writer, reader) schema pair
+  private final Map<Integer, AvroJsonDatumReader> datumReaders = new ConcurrentHashMap<>();
+
+  // Binary decoder is reused by each thread to avoid allocating its internal buffer per record
+  private static final ThreadLocal<BinaryDecoder> DECODER = new ThreadLocal<>();
+
   @Override
   public void configure(final Map<String, ?> configs, final boolean isKey) {
     readBreakOnSchemaRegistryError(configs);
@@ -113,6 +120,7 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
    */
   void setSchemaRegistry(SchemaRegistryClient schemaRegistryClient) {
     this.schemaRegistry = schemaRegistryClient;
+    this.datumReaders.clear();
   }
 
   /**
@@ -153,15 +161,15 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
     }
 
     try {
-      int length = buffer.limit() - 1 - 4;
-      byte[] data = new byte[length];
-      buffer.get(data, 0, length);
-
       return new SchemaAndValue(
           new SnowflakeJsonSchema(),
           new SnowflakeRecordContent(
               parseAvroWithSchema(
-                  data, writerSchema, readerSchema == null ? writerSchema : readerSchema),
+                  bytes,
+                  buffer.position(),
+                  id,
+                  writerSchema,
+                  readerSchema == null ? writerSchema : readerSchema),
               id));
     } catch (Exception e) {
       if (breakOnSchemaRegistryError) {
@@ -184,19 +192,52 @@ public class SnowflakeAvroConverter extends SnowflakeConverter {
    * have to be compatible as described in
    * https://avro.apache.org/docs/1.9.2/spec.html#Schema+Resolution
    *
-   * @param data avro data
+   * <p>Records are decoded straight into a JsonNode by a {@link AvroJsonDatumReader} cached per
+   * writer schema id. Any other top level schema goes through the generic record path.
+   *
+   * @param bytes kafka message
+   * @param offset position of avro data in the kafka message, right after the schema id
+   * @param writerSchemaId schema registry id of the writer schema
    * @param writerSchema avro schema with which data got serialized
    * @param readerSchema avro schema that describes the shape of the returned JsonNode
    * @return JsonNode array
    */
-  private JsonNode parseAvroWithSchema(final byte[] data, Schema writerSchema, Schema readerSchema)
+  private JsonNode parseAvroWithSchema(
+      final byte[] bytes,
+      final int offset,
+      final int writerSchemaId,
+      Schema writerSchema,
+      Schema readerSchema)
       throws IOException {
+    BinaryDecoder decoder =
+        DecoderFactory.get().binaryDecoder(bytes, offset, bytes.length - offset, DECODER.get());
+    DECODER.set(decoder);
+
+    if (!AvroJsonDatumReader.isSupported(readerSchema)) {
+      return parseAvroWithGenericRecord(decoder, writerSchema, readerSchema);
+    }
+
+    AvroJsonDatumReader reader =
+        datumReaders.computeIfAbsent(
+            writerSchemaId, ignored -> new AvroJsonDatumReader(writerSchema, readerSchema, true));
+    return reader.read(null, decoder);
+  }
+
+  /**
+   * Parse Avro data into a generic record and convert it into JsonNode through its String
+   * representation.
+   *
+   * @param decoder decoder positioned at the avro data
+   * @param writerSchema avro schema with which data got serialized
+   * @param readerSchema avro schema that describes the shape of the returned JsonNode
+   * @return JsonNode array
+   */
+  private JsonNode parseAvroWithGenericRecord(
+      final Decoder decoder, Schema writerSchema, Schema readerSchema) throws IOException {
     final GenericData genericData = new GenericData();
     // Conversion for logical type Decimal. There are conversions for other logical types as well.
     genericData.addLogicalTypeConversion(new Conversions.DecimalConversion());
 
-    InputStream is = new ByteArrayInputStream(data);
-    Decoder decoder = DecoderFactory.get().binaryDecoder(is, null);
     DatumReader<GenericRecord> reader =
         new GenericDatumReader<>(writerSchema, readerSchema, genericData);
     GenericRecord datum = reader.read(null, decoder);
@@ -17,17 +17,46 @@
 package com.snowflake.kafka.connector.records;
 
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.file.DataFileConstants;
 import org.apache.avro.file.DataFileReader;
 import org.apache.avro.file.SeekableByteArrayInput;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericRecord;
-import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
 import org.apache.kafka.connect.data.SchemaAndValue;
 
 public class SnowflakeAvroConverterWithoutSchemaRegistry extends SnowflakeConverter {
+  // producers usually share a handful of schemas, the bound only protects against unbounded growth
+  static final int MAX_CACHED_SCHEMAS = 100;
+
+  // parsed schemas and their readers keyed by the fingerprint of the schema embedded in the file
+  private final Map<Long, CachedSchema> schemaCache =
+      Collections.synchronizedMap(
+          new LinkedHashMap<Long, CachedSchema>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedSchema> eldest) {
+              return size() > MAX_CACHED_SCHEMAS;
+            }
+          });
+
+  private static final ThreadLocal<BinaryDecoder> DECODER = new ThreadLocal<>();
+
   /**
    * Parse Avro record without schema
    *
@@ -41,49 +70,183 @@ public class SnowflakeAvroConverterWithoutSchemaRegistry extends SnowflakeConver
       return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent());
     }
     try {
-      // avro input parser
-      DatumReader<GenericRecord> datumReader = new GenericDatumReader<>();
-      DataFileReader<GenericRecord> dataFileReader;
-
+      JsonNode[] result;
       try {
-        dataFileReader = new DataFileReader<>(new SeekableByteArrayInput(value), datumReader);
-      } catch (Exception e) {
+        result = parseAvroContainer(value);
+      } catch (IOException | RuntimeException e) {
         throw SnowflakeErrors.ERROR_0010.getException(
             "Failed to parse AVRO " + "record\n" + e.getMessage());
       }
 
-      ArrayList<JsonNode> buffer = new ArrayList<>();
-      while (dataFileReader.hasNext()) {
-        String jsonString = dataFileReader.next().toString();
-        try {
-          buffer.add(mapper.readTree(jsonString));
-        } catch (IOException e) {
-          throw SnowflakeErrors.ERROR_0010.getException(
-              "Failed to parse JSON"
-                  + " "
-                  + "record\nInput String: "
-                  + jsonString
-                  + "\n"
-                  + e.getMessage());
+      return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(result));
+    } catch (Exception e) {
+      LOGGER.error("Failed to parse AVRO record\n" + e.getMessage());
+      return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(value));
+    }
+  }
+
+  /**
+   * Decode an Avro object container file.
+   *
+   * <p>The header is read by hand so that the embedded schema is only parsed the first time it is
+   * seen, blocks written with the null or deflate codec are decoded straight into JsonNode with
+   * the cached reader. Any other codec goes through {@link DataFileReader}.
+   *
+   * @param value Avro object container file
+   * @return one JsonNode per datum in the file
+   * @throws IOException if the data is not a valid container file
+   */
+  private JsonNode[] parseAvroContainer(final byte[] value) throws IOException {
+    BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(value, DECODER.get());
+    DECODER.set(decoder);
+
+    byte[] magic = new byte[DataFileConstants.MAGIC.length];
+    decoder.readFixed(magic);
+    if (!Arrays.equals(DataFileConstants.MAGIC, magic)) {
+      throw new IOException("Not an Avro data file");
+    }
+
+    byte[] schemaBytes = null;
+    String codec = DataFileConstants.NULL_CODEC;
+    for (long l = decoder.readMapStart(); l > 0; l = decoder.mapNext()) {
+      for (long i = 0; i < l; i++) {
+        String key = decoder.readString();
+        byte[] metadata = toByteArray(decoder.readBytes(null));
+        if (DataFileConstants.SCHEMA.equals(key)) {
+          schemaBytes = metadata;
+        } else if (DataFileConstants.CODEC.equals(key)) {
+          codec = new String(metadata, StandardCharsets.UTF_8);
         }
       }
+    }
+    if (schemaBytes == null) {
+      throw new IOException("Avro data file has no schema");
+    }
+    byte[] sync = new byte[DataFileConstants.SYNC_SIZE];
+    decoder.readFixed(sync);
+
+    CachedSchema cachedSchema = getCachedSchema(schemaBytes);
+    boolean deflate = DataFileConstants.DEFLATE_CODEC.equals(codec);
+    if (!deflate && !DataFileConstants.NULL_CODEC.equals(codec)) {
+      return parseWithDataFileReader(value, cachedSchema);
+    }
 
-      JsonNode[] result = new JsonNode[buffer.size()];
-      for (int i = 0; i < buffer.size(); i++) {
-        result[i] = buffer.get(i);
+    List<JsonNode> buffer = new ArrayList<>();
+    byte[] blockSync = new byte[DataFileConstants.SYNC_SIZE];
+    while (!decoder.isEnd()) {
+      long count = decoder.readLong();
+      long size = decoder.readLong();
+      Decoder blockDecoder = decoder;
+      if (deflate) {
+        byte[] block = new byte[Math.toIntExact(size)];
+        decoder.readFixed(block);
+        blockDecoder = DecoderFactory.get().binaryDecoder(inflate(block), null);
+      }
+      for (long i = 0; i < count; i++) {
+        buffer.add(cachedSchema.read(blockDecoder));
       }
+      decoder.readFixed(blockSync);
+      if (!Arrays.equals(sync, blockSync)) {
+        throw new IOException("Invalid sync in Avro data file");
+      }
+    }
+    return buffer.toArray(new JsonNode[0]);
+  }
 
+  /** Previous decoding path, kept for codecs other than null and deflate */
+  private JsonNode[] parseWithDataFileReader(final byte[] value, final CachedSchema cachedSchema)
+      throws IOException {
+    List<JsonNode> buffer = new ArrayList<>();
+    try (DataFileReader<Object> dataFileReader =
+        new DataFileReader<>(new SeekableByteArrayInput(value), new GenericDatumReader<>())) {
+      while (dataFileReader.hasNext()) {
+        buffer.add(cachedSchema.toJsonNode(dataFileReader.next()));
+      }
+    }
+    return buffer.toArray(new JsonNode[0]);
+  }
+
+  private CachedSchema getCachedSchema(final byte[] schemaBytes) {
+    long fingerprint = SchemaNormalization.fingerprint64(schemaBytes);
+    CachedSchema cachedSchema = schemaCache.get(fingerprint);
+    // compare the schema text as well, fingerprint collisions must not mix up schemas
+    if (cachedSchema == null || !Arrays.equals(schemaBytes, cachedSchema.schemaBytes)) {
+      Schema schema =
+          new Schema.Parser()
+              .setValidate(false)
+              .setValidateDefaults(false)
+              .parse(new String(schemaBytes, StandardCharsets.UTF_8));
+      cachedSchema = new CachedSchema(schemaBytes, schema);
+      schemaCache.put(fingerprint, cachedSchema);
+    }
+    return cachedSchema;
+  }
+
+  /** @return number of schemas currently cached, used in tests */
+  int getCachedSchemaCount() {
+    return schemaCache.size();
+  }
+
+  private static byte[] toByteArray(final ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /** Deflate codec of Avro writes raw deflate data without zlib header and checksum */
+  private static byte[] inflate(final byte[] block) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(block.length * 2);
+    Inflater inflater = new Inflater(true);
+    try (InflaterOutputStream inflaterStream = new InflaterOutputStream(out, inflater)) {
+      inflaterStream.write(block);
+    } finally {
+      inflater.end();
+    }
+    return out.toByteArray();
+  }
+
+  /** Parsed schema embedded in an Avro data file together with the readers for its data */
+  private class CachedSchema {
+    private final byte[] schemaBytes;
+
+    // set when the top level schema is a record, which can be decoded into JsonNode directly
+    private final AvroJsonDatumReader jsonReader;
+
+    // fallback for any other top level schema
+    private final GenericDatumReader<Object> genericReader;
+
+    private CachedSchema(final byte[] schemaBytes, final Schema schema) {
+      this.schemaBytes = schemaBytes;
+      if (AvroJsonDatumReader.isSupported(schema)) {
+        // no logical type conversion is registered when reading data files
+        this.jsonReader = new AvroJsonDatumReader(schema, schema, false);
+        this.genericReader = null;
+      } else {
+        this.jsonReader = null;
+        this.genericReader = new GenericDatumReader<>(schema);
+      }
+    }
+
+    private JsonNode read(final Decoder decoder) throws IOException {
+      if (jsonReader != null) {
+        return jsonReader.read(null, decoder);
+      }
+      return toJsonNode(genericReader.read(null, decoder));
+    }
+
+    private JsonNode toJsonNode(final Object datum) throws IOException {
+      String jsonString = datum.toString();
       try {
-        dataFileReader.close();
+        return mapper.readTree(jsonString);
       } catch (IOException e) {
         throw SnowflakeErrors.ERROR_0010.getException(
-            "Failed to parse AVRO " + "record\n" + e.getMessage());
+            "Failed to parse JSON"
+                + " "
+                + "record\nInput String: "
+                + jsonString
+                + "\n"
+                + e.getMessage());
       }
-
-      return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(result));
-    } catch (Exception e) {
-      LOGGER.error("Failed to parse AVRO record\n" + e.getMessage());
-      return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(value));
     }
   }
 }
@@ -16,9 +16,29 @@
  */
 package com.snowflake.kafka.connector.records;
 
+import java.io.IOException;
+import java.util.Map;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonParser;
 import org.apache.kafka.connect.data.SchemaAndValue;
 
 public class SnowflakeJsonConverter extends SnowflakeConverter {
+  /**
+   * When true, records are only validated with a streaming parser and their original bytes are
+   * written into Snowflake as is. The Json tree of a record is only built if it is needed, for
+   * schematization or for a key converted by this converter.
+   */
+  public static final String LAZY_PARSING = "lazy.parsing";
+
+  // By default, every record is parsed into a Json tree
+  private boolean lazyParsing = false;
+
+  @Override
+  public void configure(final Map<String, ?> configs, final boolean isKey) {
+    Object lazyParsingConfig = configs.get(LAZY_PARSING);
+    if (lazyParsingConfig instanceof String) {
+      lazyParsing = ((String) lazyParsingConfig).equalsIgnoreCase("true");
+    }
+  }
 
   /**
    * cast bytes array to Json array
@@ -32,6 +52,10 @@ public class SnowflakeJsonConverter extends SnowflakeConverter {
     if (bytes == null) {
       return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent());
     }
+    if (lazyParsing && isPassThroughJson(bytes)) {
+      return new SchemaAndValue(
+          new SnowflakeJsonSchema(), new SnowflakeRecordContent(new RawJsonValue(bytes)));
+    }
     try {
       // always return an array of JsonNode because AVRO record may contains
       // multiple records
@@ -42,4 +66,45 @@ public class SnowflakeJsonConverter extends SnowflakeConverter {
       return new SchemaAndValue(new SnowflakeJsonSchema(), new SnowflakeRecordContent(bytes));
     }
   }
+
+  /**
+   * Check that the bytes are a single valid Json value which can be written verbatim, without
+   * building its tree.
+   *
+   * <p>Anything else goes through the regular parsing, which reports broken records and keeps its
+   * handling of the input: a byte order mark or another encoding than UTF-8, trailing content
+   * after the value and duplicate keys of which only the last one is kept.
+   *
+   * @param bytes input bytes array
+   * @return true if the bytes can be kept as is
+   */
+  boolean isPassThroughJson(final byte[] bytes) {
+    if (!isUtf8WithoutBom(bytes)) {
+      return false;
+    }
+    try (JsonParser parser = mapper.getFactory().createParser(bytes)) {
+      parser.enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+      if (parser.nextToken() == null) {
+        return false;
+      }
+      // goes through every token of objects and arrays, strings are checked without decoding
+      parser.skipChildren();
+      return parser.nextToken() == null;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @param bytes input bytes array
+   * @return false if the bytes start with a byte order mark, or with a character encoded in UTF-16
+   *     or UTF-32, which the parser detects by itself
+   */
+  private static boolean isUtf8WithoutBom(final byte[] bytes) {
+    if (bytes.length < 2) {
+      return bytes.length == 1 && bytes[0] != 0;
+    }
+    int first = bytes[0] & 0xFF;
+    return first != 0 && bytes[1] != 0 && first != 0xEF && first != 0xFE && first != 0xFF;
+  }
 }
@@ -1,6 +1,7 @@
 package com.snowflake.kafka.connector.records;
 
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import java.io.IOException;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.connect.data.Schema;
@@ -9,7 +10,10 @@ public class SnowflakeRecordContent {
 
   private static ObjectMapper MAPPER = new ObjectMapper();
   public static int NON_AVRO_SCHEMA = -1;
-  private final JsonNode[] content;
+  // parsed lazily when the record was received as raw Json
+  private JsonNode[] content;
+  // original bytes of a Json value which was only validated, null otherwise
+  private final RawJsonValue rawJson;
   private final byte[] brokenData;
   private int schemaID;
   private boolean isBroken;
@@ -32,6 +36,7 @@ public class SnowflakeRecordContent {
     content = new JsonNode[1];
     content[0] = MAPPER.createObjectNode();
     brokenData = null;
+    rawJson = null;
     isNullValueRecord = true;
   }
 
@@ -48,6 +53,7 @@ public class SnowflakeRecordContent {
     this.content[0] = RecordService.convertToJson(schema, data, isStreaming);
     this.isBroken = false;
     this.brokenData = null;
+    this.rawJson = null;
   }
 
   /**
@@ -61,6 +67,7 @@ public class SnowflakeRecordContent {
     this.isBroken = false;
     this.schemaID = NON_AVRO_SCHEMA;
     this.brokenData = null;
+    this.rawJson = null;
   }
 
   /**
@@ -73,6 +80,20 @@ public class SnowflakeRecordContent {
     this.isBroken = false;
     this.schemaID = NON_AVRO_SCHEMA;
     this.brokenData = null;
+    this.rawJson = null;
+  }
+
+  /**
+   * constructor for json converter which only validated the value
+   *
+   * @param rawJson original bytes of a single valid Json value
+   */
+  SnowflakeRecordContent(RawJsonValue rawJson) {
+    this.content = null;
+    this.isBroken = false;
+    this.schemaID = NON_AVRO_SCHEMA;
+    this.brokenData = null;
+    this.rawJson = rawJson;
   }
 
   /**
@@ -85,6 +106,7 @@ public class SnowflakeRecordContent {
     this.isBroken = true;
     this.schemaID = NON_AVRO_SCHEMA;
     this.content = null;
+    this.rawJson = null;
   }
 
   /**
@@ -117,10 +139,27 @@ public class SnowflakeRecordContent {
     return schemaID;
   }
 
+  /**
+   * @return original bytes of the value if it was received as Json and only validated, null if it
+   *     was parsed into a Json tree. Such a value is written as is and parsed only when {@link
+   *     #getData()} is called.
+   */
+  RawJsonValue getRawJson() {
+    return rawJson;
+  }
+
   public JsonNode[] getData() {
     if (isBroken) {
       throw SnowflakeErrors.ERROR_5012.getException();
     }
+    if (content == null && rawJson != null) {
+      try {
+        content = new JsonNode[] {MAPPER.readTree(rawJson.getBytes())};
+      } catch (IOException e) {
+        // the value was validated by the converter already
+        throw SnowflakeErrors.ERROR_5015.getException(e);
+      }
+    }
     assert content != null;
     return content.clone();
   }
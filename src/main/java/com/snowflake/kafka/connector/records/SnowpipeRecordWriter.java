@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.records;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonEncoding;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonGenerator;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Writes records for Snowpipe into a stream with one Jackson generator, neither a Json tree nor a
+ * String is built per record. The output is the same as the concatenation of {@link
+ * RecordService#getProcessedRecordForSnowpipe(SinkRecord)} for every record.
+ *
+ * <p>The generator buffers what it writes, {@link #getBufferedBytes()} bytes have not reached the
+ * stream yet until {@link #flush()} or {@link #close()} is called.
+ *
+ * <p>Not thread safe, callers are expected to hold the lock of the owning partition buffer.
+ */
+public class SnowpipeRecordWriter {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final RecordService recordService;
+  private final JsonGenerator generator;
+
+  SnowpipeRecordWriter(RecordService recordService, OutputStream out) throws IOException {
+    this.recordService = recordService;
+    this.generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+    // records are root values written one after another without separator
+    this.generator.setRootValueSeparator(null);
+    this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  /**
+   * Write a record, nothing is written if it is not supported
+   *
+   * @param record record from Kafka
+   */
+  public void write(SinkRecord record) throws IOException {
+    recordService.writeProcessedRecordForSnowpipe(record, generator);
+  }
+
+  /** @return number of bytes written but not passed to the stream yet */
+  public long getBufferedBytes() {
+    return Math.max(generator.getOutputBuffered(), 0);
+  }
+
+  /** Pass the buffered bytes to the stream */
+  public void flush() throws IOException {
+    generator.flush();
+  }
+
+  /** Pass the buffered bytes to the stream and release the buffer of the generator */
+  public void close() throws IOException {
+    generator.close();
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.snowflake.kafka.connector.records;
+
+import static com.snowflake.kafka.connector.records.RecordService.ISO_DATE_TIME_FORMAT;
+import static com.snowflake.kafka.connector.records.RecordService.MAX_SNOWFLAKE_NUMBER_PRECISION;
+import static com.snowflake.kafka.connector.records.RecordService.TIME_FORMAT_STREAMING;
+
+import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonProcessingException;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+
+/**
+ * Converts Struct values into rows for insertRows API of Snowpipe Streaming, without building the
+ * Json tree of the value first.
+ *
+ * <p>The column name and the conversion of every field are compiled once per schema. Schemas are
+ * cached by identity, native converters hand out the same instance for the records of a schema.
+ * The cache is cleared once it holds {@link #MAX_CACHED_SCHEMAS} schemas, in case a
+ * transformation creates a new schema for every record.
+ *
+ * <p>Numbers, booleans, decimals and bytes are given as Java values, the Streaming Ingest SDK does
+ * not have to parse them. Date, Time and Timestamp fields are given as the strings of their Json
+ * form, arrays, maps and structs as Json strings, since the columns created for them by schema
+ * evolution take these forms.
+ */
+class StructRowConverter {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static final int MAX_CACHED_SCHEMAS = 1000;
+
+  private final ConcurrentMap<SchemaIdentity, CompiledSchema> compiledSchemas =
+      new ConcurrentHashMap<>();
+
+  // schema of the previous record, most records of a partition share it
+  private volatile CompiledSchema lastCompiledSchema = null;
+
+  /**
+   * @param schema schema of the record value
+   * @param struct record value
+   * @return map from the column name of every field to its value, to which more columns can be
+   *     added
+   */
+  Map<String, Object> convert(Schema schema, Struct struct) throws JsonProcessingException {
+    if (struct.schema() != schema) {
+      throw SnowflakeErrors.ERROR_5015.getException("Mismatching schema.");
+    }
+    CompiledSchema compiledSchema = getCompiledSchema(schema);
+    Map<String, Object> row = new HashMap<>(compiledSchema.columnNames.length * 2 + 2);
+    for (int idx = 0; idx < compiledSchema.columnNames.length; idx++) {
+      Field field = compiledSchema.fields.get(idx);
+      row.put(
+          compiledSchema.columnNames[idx],
+          convertField(field, compiledSchema.converters[idx], struct.get(field)));
+    }
+    return row;
+  }
+
+  /** @return number of compiled schemas in the cache */
+  int getCachedSchemaCount() {
+    return compiledSchemas.size();
+  }
+
+  private CompiledSchema getCompiledSchema(Schema schema) {
+    CompiledSchema compiledSchema = lastCompiledSchema;
+    if (compiledSchema != null && compiledSchema.schema == schema) {
+      return compiledSchema;
+    }
+    if (compiledSchemas.size() >= MAX_CACHED_SCHEMAS) {
+      compiledSchemas.clear();
+    }
+    compiledSchema =
+        compiledSchemas.computeIfAbsent(
+            new SchemaIdentity(schema), identity -> new CompiledSchema(schema));
+    lastCompiledSchema = compiledSchema;
+    return compiledSchema;
+  }
+
+  private static Object convertField(Field field, FieldConverter converter, Object value)
+      throws JsonProcessingException {
+    if (value == null) {
+      // Struct already returned the default value if there is one
+      if (field.schema().isOptional()) {
+        return null;
+      }
+      throw SnowflakeErrors.ERROR_5015.getException(
+          "Conversion error: null value for field that is required and has no default value");
+    }
+    try {
+      return converter.convert(value);
+    } catch (ClassCastException e) {
+      throw SnowflakeErrors.ERROR_5015.getException(
+          "Invalid type for " + field.schema().type() + ": " + value.getClass());
+    }
+  }
+
+  /**
+   * @param schema schema of a field
+   * @return conversion of the values of the field into the value of its column
+   */
+  private static FieldConverter compile(Schema schema) {
+    String logicalName = schema.name();
+    switch (schema.type()) {
+      case INT8:
+        return value -> ((Byte) value).intValue();
+      case INT32:
+        if (Date.LOGICAL_NAME.equals(logicalName)) {
+          return value -> ISO_DATE_TIME_FORMAT.get().format((java.util.Date) value);
+        }
+        if (Time.LOGICAL_NAME.equals(logicalName)) {
+          return value -> TIME_FORMAT_STREAMING.get().format((java.util.Date) value);
+        }
+        return value -> (Integer) value;
+      case INT64:
+        if (Timestamp.LOGICAL_NAME.equals(logicalName)) {
+          return value -> Long.toString(Timestamp.fromLogical(schema, (java.util.Date) value));
+        }
+        return value -> (Long) value;
+      case INT16:
+        return value -> (Short) value;
+      case FLOAT32:
+        return value -> (Float) value;
+      case FLOAT64:
+        return value -> (Double) value;
+      case BOOLEAN:
+        return value -> (Boolean) value;
+      case STRING:
+        return value -> ((CharSequence) value).toString();
+      case BYTES:
+        if (Decimal.LOGICAL_NAME.equals(logicalName)) {
+          return value -> {
+            BigDecimal bigDecimalValue = (BigDecimal) value;
+            // in order to prevent losing precision, convert this value to text
+            return bigDecimalValue.precision() > MAX_SNOWFLAKE_NUMBER_PRECISION
+                ? bigDecimalValue.toString()
+                : bigDecimalValue;
+          };
+        }
+        return RecordService::toByteArray;
+      default:
+        // arrays, maps and structs
+        return value -> MAPPER.writeValueAsString(RecordService.convertToJson(schema, value, true));
+    }
+  }
+
+  @FunctionalInterface
+  private interface FieldConverter {
+    Object convert(Object value) throws JsonProcessingException;
+  }
+
+  private static class CompiledSchema {
+    private final Schema schema;
+    private final List<Field> fields;
+    private final String[] columnNames;
+    private final FieldConverter[] converters;
+
+    private CompiledSchema(Schema schema) {
+      this.schema = schema;
+      this.fields = schema.fields();
+      this.columnNames = new String[fields.size()];
+      this.converters = new FieldConverter[fields.size()];
+      for (int idx = 0; idx < fields.size(); idx++) {
+        columnNames[idx] = Utils.quoteNameIfNeeded(fields.get(idx).name());
+        converters[idx] = compile(fields.get(idx).schema());
+      }
+    }
+  }
+
+  /** Key comparing schemas by reference, comparing their content is as costly as compiling them */
+  private static class SchemaIdentity {
+    private final Schema schema;
+
+    private SchemaIdentity(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof SchemaIdentity && ((SchemaIdentity) other).schema == schema;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(schema);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.records.RecordService;
+import com.snowflake.kafka.connector.records.SnowpipeRecordWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChunkedGzipBufferTest {
+
+  @Test
+  public void testRoundTripAcrossChunks() throws IOException {
+    // tiny chunks so that the compressed file spans many of them
+    ByteChunkPool pool = new ByteChunkPool(16, 1000, false);
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(pool);
+
+    StringBuilder expected = new StringBuilder();
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      String record = "{\"id\":" + i + ",\"value\":\"" + random.nextLong() + " \u00e9\"}";
+      expected.append(record);
+      buffer.write(record);
+    }
+    byte[] expectedBytes = expected.toString().getBytes(StandardCharsets.UTF_8);
+    Assert.assertEquals(expectedBytes.length, buffer.getUncompressedSizeBytes());
+
+    // every stream reads the whole file, uploads can be retried
+    for (int i = 0; i < 2; i++) {
+      Assert.assertArrayEquals(expectedBytes, gunzip(buffer.newInputStream()));
+    }
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    copy(buffer.newInputStream(), compressed);
+    Assert.assertEquals(compressed.size(), buffer.getCompressedSizeBytes());
+
+    buffer.release();
+    Assert.assertEquals((compressed.size() + 15) / 16, pool.getPooledChunkCount());
+  }
+
+  @Test
+  public void testEmptyBufferIsValidGzip() throws IOException {
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(new ByteChunkPool());
+    Assert.assertEquals(0, gunzip(buffer.newInputStream()).length);
+    buffer.release();
+  }
+
+  @Test
+  public void testDirectChunks() throws IOException {
+    ByteChunkPool pool = new ByteChunkPool(32, 10, true);
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(pool);
+    buffer.write("{\"direct\":true}");
+    Assert.assertEquals(
+        "{\"direct\":true}", new String(gunzip(buffer.newInputStream()), StandardCharsets.UTF_8));
+    buffer.release();
+  }
+
+  @Test
+  public void testSnowpipeRecordWriter() throws Exception {
+    RecordService service = new RecordService();
+    List<SinkRecord> records = TestUtils.createJsonStringSinkRecords(0, 100, "topic", 0);
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(new ByteChunkPool(64, 1000, false));
+    SnowpipeRecordWriter writer = service.newSnowpipeRecordWriter(buffer.asOutputStream());
+
+    StringBuilder expected = new StringBuilder();
+    for (SinkRecord record : records) {
+      expected.append(service.getProcessedRecordForSnowpipe(record));
+      writer.write(record);
+    }
+    // nothing reaches the buffer until the generator is flushed
+    Assert.assertTrue(writer.getBufferedBytes() > 0);
+    writer.close();
+    Assert.assertEquals(0, writer.getBufferedBytes());
+    Assert.assertEquals(
+        expected.toString(), new String(gunzip(buffer.newInputStream()), StandardCharsets.UTF_8));
+    buffer.release();
+  }
+
+  @Test
+  public void testPoolIsBounded() {
+    ByteChunkPool pool = new ByteChunkPool(16, 2, false);
+    List<ByteBuffer> chunks = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      chunks.add(pool.acquire());
+    }
+    chunks.forEach(pool::release);
+    Assert.assertEquals(2, pool.getPooledChunkCount());
+    pool.acquire();
+    Assert.assertEquals(1, pool.getPooledChunkCount());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testWriteAfterFinish() {
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(new ByteChunkPool());
+    buffer.write("a");
+    buffer.finish();
+    buffer.write("b");
+  }
+
+  private static byte[] gunzip(InputStream compressed) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    copy(new GZIPInputStream(compressed), out);
+    return out.toByteArray();
+  }
+
+  private static void copy(InputStream in, ByteArrayOutputStream out) throws IOException {
+    byte[] bytes = new byte[100];
+    int count;
+    while ((count = in.read(bytes)) != -1) {
+      out.write(bytes, 0, count);
+    }
+  }
+}
@@ -390,6 +390,30 @@ public class ConnectionServiceIT {
     assert !conn.pipeExist(pipeName);
   }
 
+  @Test
+  public void testPipeCompatibility() {
+    conn.createStage(stageName);
+    conn.createTable(tableName);
+    conn.createTable(tableName1);
+    String pipeName0 = pipeName + "_0";
+    String pipeName1 = pipeName + "_1";
+    String otherPipeName = TestUtils.randomPipeName();
+    conn.createPipe(tableName, stageName, pipeName0);
+    conn.createPipe(tableName1, stageName, pipeName1);
+    conn.createPipe(tableName, stageName, otherPipeName);
+    try {
+      Map<String, Boolean> compatibility =
+          conn.getPipeCompatibility(tableName, stageName, pipeName + "_");
+      assert compatibility.size() == 2;
+      assert compatibility.get(pipeName0.toUpperCase());
+      assert !compatibility.get(pipeName1.toUpperCase());
+    } finally {
+      conn.dropPipe(pipeName0);
+      conn.dropPipe(pipeName1);
+      conn.dropPipe(otherPipeName);
+    }
+  }
+
   @Test
   public void testTableCompatible() {
     TestUtils.executeQuery(
@@ -28,6 +28,8 @@ public class FileNameUtilsTest {
 
     assert FileNameUtils.removePrefixAndGZFromFileName("A/B/C/abc.tar.gz").equals("abc.tar");
     assert FileNameUtils.removePrefixAndGZFromFileName("A/B/C/abc.json").equals("abc.json");
+    assert FileNameUtils.removePrefixFromFileName("A/B/C/abc.tar.gz").equals("abc.tar.gz");
+    assert FileNameUtils.removePrefixFromFileName("abc.json.gz").equals("abc.json.gz");
     assert FileNameUtils.getPrefixFromFileName("A/B/C/abc.tar.gz").equals("A/B/C");
     assert FileNameUtils.getPrefixFromFileName("A/B/C/abc.json").equals("A/B/C");
     assert FileNameUtils.getPrefixFromFileName("abc.json") == null;
@@ -0,0 +1,57 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InFlightFileRegistryTest {
+  private static final long NOW = 1_700_000_000_000L;
+  private static final long ONE_MINUTE = 60 * 1000L;
+
+  @Test
+  public void testAddAndRemove() {
+    InFlightFileRegistry registry = new InFlightFileRegistry();
+    String name = fileName(0, 9, NOW);
+    Assert.assertTrue(registry.add(name));
+    Assert.assertFalse(registry.add(name));
+    Assert.assertEquals(1, registry.size());
+
+    StagedFileName file = registry.remove(name);
+    Assert.assertEquals(name, file.getName());
+    Assert.assertEquals(9, file.getEndOffset());
+    Assert.assertEquals(NOW, file.getTimeIngested());
+    Assert.assertNull(registry.remove(name));
+    Assert.assertEquals(0, registry.size());
+    Assert.assertFalse(registry.hasIngestedBefore(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testRemoveIngestedBefore() {
+    InFlightFileRegistry registry = new InFlightFileRegistry();
+    String oldest = fileName(0, 9, NOW - 70 * ONE_MINUTE);
+    // same minute as the cutoff, on both sides of it
+    String expired = fileName(10, 19, NOW - 60 * ONE_MINUTE - 1);
+    String notExpired = fileName(20, 29, NOW - 60 * ONE_MINUTE + 1);
+    String recent = fileName(30, 39, NOW - ONE_MINUTE);
+    registry.addAll(Arrays.asList(oldest, expired, notExpired, recent));
+
+    Assert.assertTrue(registry.hasIngestedBefore(NOW - 60 * ONE_MINUTE));
+    List<String> removed =
+        registry.removeIngestedBefore(NOW - 60 * ONE_MINUTE).stream()
+            .map(StagedFileName::getName)
+            .collect(Collectors.toList());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(oldest, expired)), new HashSet<>(removed));
+    Assert.assertFalse(registry.hasIngestedBefore(NOW - 60 * ONE_MINUTE));
+    Assert.assertTrue(registry.hasIngestedBefore(NOW - 10 * ONE_MINUTE));
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList(notExpired, recent)),
+        new HashSet<>(registry.getFileNames()));
+  }
+
+  private static String fileName(long start, long end, long time) {
+    return FileNameUtils.fileName(TestUtils.TEST_CONNECTOR_NAME, "test_table", 0, start, end, time);
+  }
+}
@@ -0,0 +1,46 @@
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.internal.InternalUtils.IngestedFileStatus;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoadHistoryCacheTest {
+
+  @Test
+  public void testOnlyUncoveredRangeIsFetched() {
+    LoadHistoryCache cache = new LoadHistoryCache(10);
+    // nothing cached, the whole window is fetched
+    Assert.assertEquals(0, cache.getFetchStart(0));
+
+    cache.add(Collections.singletonMap("a", IngestedFileStatus.LOADED), 100);
+    // the overlap before the covered end is fetched again
+    Assert.assertEquals(90, cache.getFetchStart(50));
+    Assert.assertEquals(95, cache.getFetchStart(95));
+    // cached history entirely before the window does not help
+    Assert.assertEquals(150, cache.getFetchStart(150));
+  }
+
+  @Test
+  public void testEvictionByRange() {
+    LoadHistoryCache cache = new LoadHistoryCache(0);
+    Map<String, IngestedFileStatus> first = new HashMap<>();
+    first.put("a", IngestedFileStatus.LOAD_IN_PROGRESS);
+    first.put("b", IngestedFileStatus.FAILED);
+    cache.add(first, 100);
+    cache.add(Collections.singletonMap("a", IngestedFileStatus.LOADED), 200);
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(IngestedFileStatus.LOADED, cache.get("a"));
+
+    cache.evictBefore(150);
+    // a was fetched again for the newer range and stays
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals(IngestedFileStatus.LOADED, cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+
+    cache.evictBefore(200);
+    Assert.assertEquals(0, cache.size());
+  }
+}
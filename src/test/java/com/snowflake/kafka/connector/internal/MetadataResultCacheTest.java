@@ -0,0 +1,36 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetadataResultCacheTest {
+  @Test
+  public void testResultReusedUntilInvalidated() {
+    MetadataResultCache cache = new MetadataResultCache(60_000L);
+    AtomicInteger checks = new AtomicInteger(0);
+
+    Assert.assertTrue(cache.get("table", "exist", () -> checks.incrementAndGet() > 0));
+    Assert.assertTrue(cache.get("table", "exist", () -> checks.incrementAndGet() < 0));
+    Assert.assertEquals(1, checks.get());
+
+    // other checks of the same object are cached separately
+    Assert.assertFalse(cache.get("table", "compatible", () -> checks.incrementAndGet() < 0));
+    Assert.assertEquals(2, checks.get());
+
+    cache.invalidate("table");
+    Assert.assertFalse(cache.get("table", "exist", () -> checks.incrementAndGet() < 0));
+    Assert.assertFalse(cache.get("table", "compatible", () -> checks.incrementAndGet() < 0));
+    Assert.assertEquals(4, checks.get());
+  }
+
+  @Test
+  public void testDisabledCache() {
+    MetadataResultCache cache = new MetadataResultCache(0);
+    AtomicInteger checks = new AtomicInteger(0);
+
+    Assert.assertTrue(cache.get("stage", "exist", () -> checks.incrementAndGet() > 0));
+    Assert.assertFalse(cache.get("stage", "exist", () -> checks.incrementAndGet() < 0));
+    Assert.assertEquals(2, checks.get());
+  }
+}
@@ -0,0 +1,58 @@
+package com.snowflake.kafka.connector.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelFileMoverTest {
+  @Test
+  public void testFailedMoveIsRethrownAfterOthersArePurged() {
+    ParallelFileMover mover = new ParallelFileMover(2, "test-move-", null);
+    RuntimeException failure = SnowflakeErrors.ERROR_2003.getException();
+    List<String> purged = new ArrayList<>();
+    try {
+      mover.moveAll(
+          Arrays.asList("a", "b", "c", "d"),
+          name -> {
+            if (name.equals("b")) {
+              throw failure;
+            }
+          },
+          purged::addAll);
+      Assert.fail("the failed move must be rethrown");
+    } catch (RuntimeException e) {
+      Assert.assertSame(failure, e);
+    } finally {
+      mover.shutdown();
+    }
+    Assert.assertEquals(Arrays.asList("a", "c", "d"), purged);
+  }
+
+  @Test
+  public void testFilesAreMovedConcurrently() {
+    ParallelFileMover mover = new ParallelFileMover(2, "test-move-", null);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    List<String> purged = new ArrayList<>();
+    try {
+      mover.moveAll(
+          Arrays.asList("a", "b"),
+          name -> {
+            bothStarted.countDown();
+            try {
+              // only completes if the other file is moved at the same time
+              Assert.assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          },
+          purged::addAll);
+    } finally {
+      mover.shutdown();
+    }
+    Assert.assertEquals(Arrays.asList("a", "b"), purged);
+  }
+}
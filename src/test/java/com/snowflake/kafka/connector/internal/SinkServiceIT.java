@@ -873,13 +873,13 @@ public class SinkServiceIT {
     System.out.println("break connection");
     doThrow(SnowflakeErrors.ERROR_2001.getException())
         .when(spyConn)
-        .purgeStage(anyString(), anyList());
+        .purgeStage(anyString(), anyList(), any());
     // Sleep 6 minutes so that cleaner encounters 6 exceptions. Just to make sure cleaner restart is
     // triggered
     Thread.sleep(6 * 60 * 1000);
 
     System.out.println("recover connection");
-    doCallRealMethod().when(spyConn).purgeStage(anyString(), anyList());
+    doCallRealMethod().when(spyConn).purgeStage(anyString(), anyList(), any());
 
     // Sleep 4 minutes. Total sleep time is 10 minutes to test read ingestHistory
     Thread.sleep(4 * 60 * 1000);
@@ -938,11 +938,11 @@ public class SinkServiceIT {
     service.callAllGetOffset();
     doThrow(SnowflakeErrors.ERROR_2001.getException())
         .when(spyConn)
-        .purgeStage(anyString(), anyList());
+        .purgeStage(anyString(), anyList(), any());
     Thread.sleep(120000);
 
     System.out.println("recover connection");
-    doCallRealMethod().when(spyConn).purgeStage(anyString(), anyList());
+    doCallRealMethod().when(spyConn).purgeStage(anyString(), anyList(), any());
 
     // count how many list statement are here
     Thread.sleep(1200000);
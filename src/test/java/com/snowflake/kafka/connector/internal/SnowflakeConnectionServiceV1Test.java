@@ -6,6 +6,9 @@ import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.snowflake.kafka.connector.internal.streaming.ChannelMigrateOffsetTokenResponseDTO;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import org.junit.Assert;
 import org.junit.Test;
 
 public class SnowflakeConnectionServiceV1Test {
@@ -36,4 +39,23 @@ public class SnowflakeConnectionServiceV1Test {
         .thenCallRealMethod();
     v1MockConnectionService.getChannelMigrateOffsetTokenResponseDTO(validMigrationResponse);
   }
+
+  @Test
+  public void testRemoveFilesQuery() {
+    String file1 = FileNameUtils.fileName("app", "table", 0, 0, 10, 1000);
+    String file2 = FileNameUtils.fileName("app", "table", 0, 11, 20, 2000);
+
+    String query =
+        SnowflakeConnectionServiceV1.removeFilesQuery(
+            "stage", "app/table/0", Arrays.asList(file1, file2));
+    Assert.assertTrue(query.startsWith("remove @stage/app/table/0/ pattern = '"));
+
+    String regex = query.substring(query.indexOf('\'') + 1, query.length() - 1);
+    Assert.assertTrue(Pattern.matches(regex, file1));
+    Assert.assertTrue(Pattern.matches(regex, file2));
+    // dots are literal and other files in the same directory are not matched
+    Assert.assertFalse(Pattern.matches(regex, file1.replace('.', 'x')));
+    Assert.assertFalse(
+        Pattern.matches(regex, FileNameUtils.fileName("app", "table", 0, 21, 30, 3000)));
+  }
 }
@@ -0,0 +1,173 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnowflakeSessionPoolTest {
+  @Test
+  public void testNestedCallsReuseSession() throws Exception {
+    Connection primary = mock(Connection.class);
+    AtomicInteger opened = new AtomicInteger(0);
+    SnowflakeSessionPool pool =
+        new SnowflakeSessionPool(
+            primary,
+            () -> {
+              opened.incrementAndGet();
+              return mock(Connection.class);
+            },
+            2);
+
+    Connection nested = pool.execute(outer -> pool.execute(inner -> inner));
+    Assert.assertSame(primary, nested);
+    Assert.assertEquals(0, opened.get());
+    Assert.assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testSessionOpenedWhenAllInUse() throws Exception {
+    Connection primary = mock(Connection.class);
+    Connection extra = mock(Connection.class);
+    SnowflakeSessionPool pool = new SnowflakeSessionPool(primary, () -> extra, 2);
+
+    CountDownLatch holding = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Connection> slow =
+          executor.submit(
+              () ->
+                  pool.execute(
+                      session -> {
+                        holding.countDown();
+                        try {
+                          done.await();
+                        } catch (InterruptedException e) {
+                          throw new SQLException(e);
+                        }
+                        return session;
+                      }));
+      Assert.assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+      // the primary connection is held by the slow call
+      Assert.assertSame(extra, pool.execute(session -> session));
+      Assert.assertEquals(2, pool.size());
+      done.countDown();
+      Assert.assertSame(primary, slow.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    pool.close();
+    verify(extra).close();
+    Assert.assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testClosedSessionIsReplaced() throws Exception {
+    Connection primary = mock(Connection.class);
+    Connection closed = mock(Connection.class);
+    Connection replacement = mock(Connection.class);
+    when(closed.isClosed()).thenReturn(true);
+    Connection[] sessions = {closed, replacement};
+    AtomicInteger opened = new AtomicInteger(0);
+    SnowflakeSessionPool pool =
+        new SnowflakeSessionPool(primary, () -> sessions[opened.getAndIncrement()], 2);
+
+    // the second session is opened while the primary connection is in use
+    Assert.assertSame(
+        closed, pool.execute(first -> runOnOtherThread(() -> pool.execute(second -> second))));
+    verify(closed).close();
+    Assert.assertEquals(1, pool.size());
+
+    Assert.assertSame(
+        replacement,
+        pool.execute(first -> runOnOtherThread(() -> pool.execute(second -> second))));
+    Assert.assertEquals(2, opened.get());
+    Assert.assertEquals(2, pool.size());
+  }
+
+  @Test
+  public void testPreparedStatementsReused() throws Exception {
+    Connection primary = mock(Connection.class);
+    PreparedStatement first = mock(PreparedStatement.class);
+    PreparedStatement second = mock(PreparedStatement.class);
+    when(primary.prepareStatement("desc table identifier(?)")).thenReturn(first, second);
+    SnowflakeSessionPool pool = new SnowflakeSessionPool(primary, () -> null, 1);
+
+    Assert.assertSame(first, pool.executePrepared("desc table identifier(?)", stmt -> stmt));
+    Assert.assertSame(first, pool.executePrepared("desc table identifier(?)", stmt -> stmt));
+    verify(primary, times(1)).prepareStatement("desc table identifier(?)");
+    verify(first, times(2)).clearParameters();
+
+    // nested calls with the same text do not share the statement
+    Assert.assertSame(
+        second,
+        pool.executePrepared(
+            "desc table identifier(?)",
+            outer -> pool.executePrepared("desc table identifier(?)", inner -> inner)));
+    // the outer statement stays cached
+    verify(first, never()).close();
+    verify(second).close();
+  }
+
+  @Test
+  public void testPoolWithoutPrimaryConnection() throws Exception {
+    Connection session = mock(Connection.class);
+    AtomicInteger opened = new AtomicInteger(0);
+    SnowflakeSessionPool pool =
+        new SnowflakeSessionPool(
+            null,
+            () -> {
+              if (opened.incrementAndGet() == 1) {
+                throw new SQLException("login failed");
+              }
+              return session;
+            },
+            2);
+    Assert.assertEquals(0, pool.size());
+
+    // nothing to wait for, the failed login is rethrown
+    try {
+      pool.execute(s -> s);
+      Assert.fail("the failed login must be rethrown");
+    } catch (SQLException e) {
+      Assert.assertEquals("login failed", e.getMessage());
+    }
+    Assert.assertEquals(0, pool.size());
+
+    // and tried again on the next call
+    Assert.assertSame(session, pool.execute(s -> s));
+    Assert.assertEquals(1, pool.size());
+
+    pool.close();
+    verify(session).close();
+    Assert.assertEquals(0, pool.size());
+  }
+
+  private static <T> T runOnOtherThread(Callable<T> callable) throws SQLException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      return executor.submit(callable).get(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new SQLException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
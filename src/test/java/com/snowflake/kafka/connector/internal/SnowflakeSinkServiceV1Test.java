@@ -0,0 +1,326 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryPipeStatus;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import com.snowflake.kafka.connector.records.SnowflakeConverter;
+import com.snowflake.kafka.connector.records.SnowflakeJsonConverter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class SnowflakeSinkServiceV1Test {
+  private static final String TOPIC = "test";
+  private static final String TABLE = "test_table";
+  private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+  private SnowflakeConnectionService conn;
+  private SnowflakeTelemetryService telemetry;
+  private SnowflakeIngestionService ingestionService;
+  private SnowflakeSinkServiceV1 service;
+  private ExecutorService testExecutor;
+
+  @Before
+  public void setUp() {
+    conn = mock(SnowflakeConnectionService.class);
+    ingestionService = mock(SnowflakeIngestionService.class);
+    telemetry = mock(SnowflakeTelemetryService.class);
+    when(conn.getTelemetryClient()).thenReturn(telemetry);
+    when(conn.getConnectorName()).thenReturn(TestUtils.TEST_CONNECTOR_NAME);
+    when(conn.buildIngestService(anyString(), anyString())).thenReturn(ingestionService);
+
+    service = new SnowflakeSinkServiceV1(conn);
+    service.setCustomJMXMetrics(false);
+    // every record is flushed into its own file
+    service.setRecordNumber(1);
+    service.startPartition(TABLE, PARTITION);
+    testExecutor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    testExecutor.shutdownNow();
+    service.setIsStoppedToTrue();
+  }
+
+  @Test
+  public void testOffsetOnlyMovesPastFilesUploadedInOrder() throws Exception {
+    CountDownLatch releaseFirstFile = new CountDownLatch(1);
+    CountDownLatch secondFileUploaded = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              if (startOffset(invocation.getArgument(1)) == 0) {
+                releaseFirstFile.await(10, TimeUnit.SECONDS);
+              } else {
+                secondFileUploaded.countDown();
+              }
+              return null;
+            })
+        .when(conn)
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+
+    service.insert(record(0));
+    service.insert(record(1));
+    Assert.assertTrue(secondFileUploaded.await(10, TimeUnit.SECONDS));
+
+    // the second file is on stage but the first one is not
+    Assert.assertEquals(0, service.getOffset(PARTITION));
+    verify(ingestionService, times(0)).ingestFiles(anyList());
+
+    releaseFirstFile.countDown();
+    long deadline = System.currentTimeMillis() + 10_000;
+    long offset;
+    while ((offset = service.getOffset(PARTITION)) != 2) {
+      // never committed past the second file only
+      Assert.assertEquals(0, offset);
+      Assert.assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+
+    ArgumentCaptor<List<String>> ingested = ArgumentCaptor.forClass(List.class);
+    verify(ingestionService, times(1)).ingestFiles(ingested.capture());
+    Assert.assertEquals(2, ingested.getValue().size());
+    Assert.assertEquals(0, startOffset(ingested.getValue().get(0)));
+    Assert.assertEquals(1, startOffset(ingested.getValue().get(1)));
+  }
+
+  @Test
+  public void testPutBlocksWhileTooManyUploadsArePending() throws Exception {
+    CountDownLatch releaseUploads = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              releaseUploads.await(10, TimeUnit.SECONDS);
+              return null;
+            })
+        .when(conn)
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+
+    int recordCount = SnowflakeSinkServiceV1.MAX_PENDING_UPLOADS + 1;
+    Future<?> put =
+        testExecutor.submit(
+            () -> {
+              for (int offset = 0; offset < recordCount; offset++) {
+                service.insert(record(offset));
+              }
+            });
+
+    try {
+      put.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail("put() must wait for a pending upload to complete");
+    } catch (TimeoutException e) {
+      // expected
+    }
+
+    releaseUploads.countDown();
+    put.get(10, TimeUnit.SECONDS);
+    verify(conn, timeout(10_000).times(recordCount))
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+  }
+
+  @Test
+  public void testUploadFailureIsRethrown() throws Exception {
+    RuntimeException failure = SnowflakeErrors.ERROR_2003.getException();
+    doAnswer(
+            invocation -> {
+              throw failure;
+            })
+        .when(conn)
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+
+    service.insert(record(0));
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (true) {
+      try {
+        service.getOffset(PARTITION);
+      } catch (RuntimeException e) {
+        Assert.assertSame(failure, e);
+        break;
+      }
+      Assert.assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+
+    try {
+      service.insert(record(1));
+      Assert.fail("put() must fail once an upload failed");
+    } catch (RuntimeException e) {
+      Assert.assertSame(failure, e);
+    }
+  }
+
+  @Test
+  public void testCloseCancelsUploadsNotStarted() throws Exception {
+    int threadCount = SnowflakeSinkServiceV1.UPLOAD_THREAD_COUNT;
+    CountDownLatch uploadsStarted = new CountDownLatch(threadCount);
+    CountDownLatch releaseUploads = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              uploadsStarted.countDown();
+              releaseUploads.await(10, TimeUnit.SECONDS);
+              return null;
+            })
+        .when(conn)
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+
+    // one more file than upload threads, the last one waits in the queue
+    for (int offset = 0; offset <= threadCount; offset++) {
+      service.insert(record(offset));
+    }
+    Assert.assertTrue(uploadsStarted.await(10, TimeUnit.SECONDS));
+
+    Future<?> close =
+        testExecutor.submit(() -> service.close(Collections.singletonList(PARTITION)));
+    try {
+      close.get(500, TimeUnit.MILLISECONDS);
+      Assert.fail("close must wait for the uploads in progress");
+    } catch (TimeoutException e) {
+      // expected
+    }
+
+    releaseUploads.countDown();
+    close.get(10, TimeUnit.SECONDS);
+    // the queued upload never ran
+    verify(conn, times(threadCount))
+        .putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+  }
+
+  @Test
+  public void testCloseReleasesUnflushedBuffer() {
+    service.setRecordNumber(100);
+    for (int offset = 0; offset < 3; offset++) {
+      service.insert(record(offset));
+    }
+    Assert.assertFalse(
+        service.isPartitionBufferEmpty(
+            SnowflakeSinkServiceV1.getNameIndex(TOPIC, PARTITION.partition())));
+    Assert.assertEquals(0, service.getPooledChunkCount());
+
+    service.close(Collections.singletonList(PARTITION));
+
+    // the buffered records are not part of the memory usage anymore
+    verify(telemetry)
+        .reportKafkaPartitionUsage(
+            argThat(status -> ((SnowflakeTelemetryPipeStatus) status).getMemoryUsage() == 0),
+            eq(true));
+    Assert.assertTrue(service.getPooledChunkCount() > 0);
+    verify(conn, times(0)).putWithCache(anyString(), anyString(), any(ChunkedGzipBuffer.class));
+  }
+
+  @Test
+  public void testCleanersAreStaggered() {
+    ScheduledThreadPoolExecutor cleanerExecutor = mock(ScheduledThreadPoolExecutor.class);
+    SnowflakeSinkServiceV1 sinkService =
+        new SnowflakeSinkServiceV1(conn, cleanerExecutor, mock(ScheduledThreadPoolExecutor.class));
+    sinkService.setCustomJMXMetrics(false);
+    int partitionCount = 3 * SnowflakeSinkServiceV1.PIPES_PER_CLEANER_THREAD;
+    for (int partition = 0; partition < partitionCount; partition++) {
+      sinkService.startPartition(TABLE, new TopicPartition(TOPIC, partition));
+      // the cleaner starts with the first record
+      sinkService.insert(record(partition, 0));
+    }
+
+    ArgumentCaptor<Long> initialDelays = ArgumentCaptor.forClass(Long.class);
+    verify(cleanerExecutor, times(partitionCount))
+        .scheduleWithFixedDelay(
+            any(Runnable.class),
+            initialDelays.capture(),
+            eq(SnowflakeSinkServiceV1.CLEAN_TIME),
+            eq(TimeUnit.MILLISECONDS));
+    for (long initialDelay : initialDelays.getAllValues()) {
+      Assert.assertTrue(initialDelay >= SnowflakeSinkServiceV1.CLEAN_TIME);
+      Assert.assertTrue(initialDelay < 2 * SnowflakeSinkServiceV1.CLEAN_TIME);
+    }
+    Assert.assertTrue(new HashSet<>(initialDelays.getAllValues()).size() > 1);
+    // the pool grows with the partitions
+    verify(cleanerExecutor, atLeastOnce()).setCorePoolSize(3);
+    sinkService.setIsStoppedToTrue();
+  }
+
+  @Test
+  public void testFailingCleanerDoesNotStopOtherPipes() {
+    String failingTable = "failing_table";
+    ScheduledThreadPoolExecutor cleanerExecutor = mock(ScheduledThreadPoolExecutor.class);
+    SnowflakeSinkServiceV1 sinkService =
+        new SnowflakeSinkServiceV1(conn, cleanerExecutor, mock(ScheduledThreadPoolExecutor.class));
+    sinkService.setCustomJMXMetrics(false);
+    sinkService.startPartition(failingTable, new TopicPartition(TOPIC, 0));
+    sinkService.startPartition(TABLE, new TopicPartition(TOPIC, 1));
+    sinkService.insert(record(0, 0));
+    sinkService.insert(record(1, 0));
+
+    ArgumentCaptor<Runnable> cleaners = ArgumentCaptor.forClass(Runnable.class);
+    verify(cleanerExecutor, times(2))
+        .scheduleWithFixedDelay(cleaners.capture(), anyLong(), anyLong(), any(TimeUnit.class));
+    Runnable failingCleaner = cleaners.getAllValues().get(0);
+    Runnable cleaner = cleaners.getAllValues().get(1);
+
+    doThrow(new RuntimeException("cleaner failure"))
+        .doNothing()
+        .when(telemetry)
+        .reportKafkaPartitionUsage(
+            argThat(status -> status != null && failingTable.equals(status.tableName)), eq(false));
+
+    // the exception does not escape, it would cancel the periodic run
+    failingCleaner.run();
+    verify(telemetry).reportKafkaConnectFatalError("cleaner failure");
+    cleaner.run();
+    verify(telemetry)
+        .reportKafkaPartitionUsage(
+            argThat(status -> status != null && TABLE.equals(status.tableName)), eq(false));
+
+    // the next run of the failing pipe lists its files again
+    String failingStage = Utils.stageName(TestUtils.TEST_CONNECTOR_NAME, failingTable);
+    String failingPrefix = FileNameUtils.filePrefix(TestUtils.TEST_CONNECTOR_NAME, failingTable, 0);
+    verify(conn, times(1)).listStage(failingStage, failingPrefix);
+    failingCleaner.run();
+    verify(conn, times(2)).listStage(failingStage, failingPrefix);
+    sinkService.setIsStoppedToTrue();
+  }
+
+  private static long startOffset(String fileName) {
+    return StagedFileName.parse(fileName).getStartOffset();
+  }
+
+  private static SinkRecord record(long offset) {
+    return record(PARTITION.partition(), offset);
+  }
+
+  private static SinkRecord record(int partition, long offset) {
+    SnowflakeConverter converter = new SnowflakeJsonConverter();
+    SchemaAndValue value =
+        converter.toConnectData(TOPIC, "{\"name\":\"test\"}".getBytes(StandardCharsets.UTF_8));
+    return new SinkRecord(TOPIC, partition, null, null, value.schema(), value.value(), offset);
+  }
+}
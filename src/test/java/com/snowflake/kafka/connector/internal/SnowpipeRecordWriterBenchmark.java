@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.snowflake.kafka.connector.internal;
+
+import com.snowflake.kafka.connector.records.RecordService;
+import com.snowflake.kafka.connector.records.SnowflakeJsonSchema;
+import com.snowflake.kafka.connector.records.SnowflakeRecordContent;
+import com.snowflake.kafka.connector.records.SnowpipeRecordWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how many records per second a single thread serializes into the gzip buffer of a
+ * Snowpipe partition, which is the throughput per core of the Snowpipe sink.
+ *
+ * <p>{@link #legacyTreeAndString} mimics the previous serialization which built an ObjectNode
+ * wrapping the content and the metadata of every record and dumped it into a String before
+ * writing it into the buffer. {@link #generator} is the current serialization which writes every
+ * record with one generator straight into the buffer.
+ *
+ * <p>Every invocation writes {@link #RECORDS_PER_BUFFER} records on a single thread, so the score
+ * JMH reports in ops/s is the number of records per second per core.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=
+ * com.snowflake.kafka.connector.internal.SnowpipeRecordWriterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class SnowpipeRecordWriterBenchmark {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final String TOPIC = "benchmark";
+  private static final int PARTITION = 0;
+  private static final int RECORDS_PER_BUFFER = 1000;
+
+  @Param({"10", "100", "300"})
+  public int noOfFields;
+
+  private final ByteChunkPool pool = new ByteChunkPool();
+
+  private RecordService recordService;
+
+  private List<SinkRecord> records;
+
+  @Setup
+  public void setup() throws Exception {
+    this.recordService = new RecordService();
+    ObjectNode value = MAPPER.createObjectNode();
+    for (int idx = 0; idx < noOfFields; idx++) {
+      if (idx % 2 == 0) {
+        value.put("field_" + idx, "value of field " + idx);
+      } else {
+        value.put("field_" + idx, idx * 1000L);
+      }
+    }
+    Schema schema = new SnowflakeJsonSchema();
+    SnowflakeRecordContent content = new SnowflakeRecordContent(value);
+    this.records = new ArrayList<>(RECORDS_PER_BUFFER);
+    for (long offset = 0; offset < RECORDS_PER_BUFFER; offset++) {
+      records.add(
+          new SinkRecord(
+              TOPIC,
+              PARTITION,
+              Schema.STRING_SCHEMA,
+              "key-" + offset,
+              schema,
+              content,
+              offset,
+              System.currentTimeMillis(),
+              TimestampType.CREATE_TIME));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BUFFER)
+  public long legacyTreeAndString() {
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(pool);
+    for (SinkRecord record : records) {
+      JsonNode[] content = ((SnowflakeRecordContent) record.value()).getData();
+      for (JsonNode node : content) {
+        ObjectNode meta = MAPPER.createObjectNode();
+        meta.put("topic", record.topic());
+        meta.put("offset", record.kafkaOffset());
+        meta.put("partition", record.kafkaPartition());
+        meta.put(record.timestampType().name, record.timestamp());
+        meta.put("key", record.key().toString());
+        ObjectNode data = MAPPER.createObjectNode();
+        data.set("content", node);
+        data.set("meta", meta);
+        buffer.write(data.toString());
+      }
+    }
+    buffer.finish();
+    long size = buffer.getCompressedSizeBytes();
+    buffer.release();
+    return size;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BUFFER)
+  public long generator() throws Exception {
+    ChunkedGzipBuffer buffer = new ChunkedGzipBuffer(pool);
+    SnowpipeRecordWriter writer = recordService.newSnowpipeRecordWriter(buffer.asOutputStream());
+    for (SinkRecord record : records) {
+      writer.write(record);
+    }
+    writer.close();
+    buffer.finish();
+    long size = buffer.getCompressedSizeBytes();
+    buffer.release();
+    return size;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(SnowpipeRecordWriterBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
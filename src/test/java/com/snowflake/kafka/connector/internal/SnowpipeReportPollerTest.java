@@ -0,0 +1,76 @@
+package com.snowflake.kafka.connector.internal;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.snowflake.kafka.connector.internal.InternalUtils.IngestedFileStatus;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnowpipeReportPollerTest {
+  private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testPolledStatusesAreDrained() throws Exception {
+    SnowflakeIngestionService ingestionService = mock(SnowflakeIngestionService.class);
+    Map<String, IngestedFileStatus> first = new HashMap<>();
+    first.put("a", IngestedFileStatus.LOAD_IN_PROGRESS);
+    first.put("b", IngestedFileStatus.FAILED);
+    when(ingestionService.readIngestReport())
+        .thenReturn(first)
+        .thenReturn(Collections.singletonMap("a", IngestedFileStatus.LOADED))
+        .thenReturn(Collections.emptyMap());
+
+    SnowpipeReportPoller poller = new SnowpipeReportPoller(executor, 10, 10);
+    AtomicInteger latencyCount = new AtomicInteger(0);
+    SnowpipeReportPoller.Registration registration =
+        poller.register(
+            "pipe", ingestionService, () -> 1, latency -> latencyCount.incrementAndGet());
+
+    TestUtils.assertWithRetry(() -> registration.getPollCount() >= 3, 1, 50);
+    registration.cancel();
+
+    Map<String, IngestedFileStatus> drained = registration.drain();
+    Assert.assertEquals(2, drained.size());
+    // the latest status of a file wins
+    Assert.assertEquals(IngestedFileStatus.LOADED, drained.get("a"));
+    Assert.assertEquals(IngestedFileStatus.FAILED, drained.get("b"));
+    Assert.assertTrue(registration.drain().isEmpty());
+    Assert.assertTrue(latencyCount.get() >= 3);
+  }
+
+  @Test
+  public void testIdlePipeIsNotPolled() throws Exception {
+    SnowflakeIngestionService ingestionService = mock(SnowflakeIngestionService.class);
+    SnowpipeReportPoller poller = new SnowpipeReportPoller(executor, 10, 10);
+    AtomicInteger checks = new AtomicInteger(0);
+    SnowpipeReportPoller.Registration registration =
+        poller.register(
+            "pipe",
+            ingestionService,
+            () -> {
+              checks.incrementAndGet();
+              return 0;
+            },
+            latency -> {});
+
+    TestUtils.assertWithRetry(() -> checks.get() >= 3, 1, 50);
+    registration.cancel();
+    verify(ingestionService, never()).readIngestReport();
+    Assert.assertEquals(0, registration.getPollCount());
+  }
+}
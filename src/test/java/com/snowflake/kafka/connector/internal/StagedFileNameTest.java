@@ -0,0 +1,61 @@
+package com.snowflake.kafka.connector.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StagedFileNameTest {
+  @Test
+  public void testRoundTrip() {
+    StagedFileName generated =
+        StagedFileName.of("app/table/12/", 12, 345L, Long.MAX_VALUE, 1_700_000_000_000L);
+    Assert.assertEquals(
+        "app/table/12/345_" + Long.MAX_VALUE + "_1700000000000.json.gz", generated.getName());
+
+    StagedFileName parsed = StagedFileName.parse(generated.getName());
+    Assert.assertEquals(generated, parsed);
+    Assert.assertEquals("app/table/12/", parsed.getPrefix());
+    Assert.assertEquals(12, parsed.getPartition());
+    Assert.assertEquals(345L, parsed.getStartOffset());
+    Assert.assertEquals(Long.MAX_VALUE, parsed.getEndOffset());
+    Assert.assertEquals(1_700_000_000_000L, parsed.getTimeIngested());
+
+    // the builder is reused, names generated before are not affected
+    StagedFileName next = StagedFileName.of("a_b/c_d/0/", 0, 1, 2, 3);
+    Assert.assertEquals("a_b/c_d/0/1_2_3.json.gz", next.getName());
+    Assert.assertEquals(next, StagedFileName.parse(next.getName()));
+    Assert.assertEquals(parsed, StagedFileName.parse(generated.getName()));
+  }
+
+  @Test
+  public void testInvalidNames() {
+    String[] invalidNames = {
+      null,
+      "",
+      "asdasdasdasdsa.json.gz",
+      "table/1/2_3_4.json.gz",
+      "/table/1/2_3_4.json.gz",
+      "app//1/2_3_4.json.gz",
+      "app/table/1/2_3_4.json",
+      "app/table/1/2_3_4.gz",
+      "app/table/x/2_3_4.json.gz",
+      "app/table/1/2_3.json.gz",
+      "app/table/1/2_3_4_5.json.gz",
+      "app/table/1/2__4.json.gz",
+      "app/table/1/2_3_.json.gz",
+      "app/table/1/-2_3_4.json.gz",
+      "app/table/1/dir/2_3_4.json.gz",
+      "app/table/1/2_3_99999999999999999999.json.gz",
+      "app/table/99999999999/2_3_4.json.gz",
+      "app/table/1/2_value_4.gz"
+    };
+    for (String name : invalidNames) {
+      Assert.assertNull(name, StagedFileName.tryParse(name));
+    }
+    try {
+      StagedFileName.parse("app/table/1/2_3.json.gz");
+      Assert.fail();
+    } catch (SnowflakeKafkaConnectorException e) {
+      assert e.checkErrorCode(SnowflakeErrors.ERROR_0008);
+    }
+  }
+}
@@ -482,7 +482,10 @@ public class TestUtils {
 
   /** @return snowflake connection for test */
   public static SnowflakeConnectionService getConnectionService() {
-    return SnowflakeConnectionServiceFactory.builder().setProperties(getConf()).build();
+    Map<String, String> configuration = getConf();
+    // tests change tables, stages and pipes outside of the service and check them right away
+    configuration.put(SnowflakeSinkConnectorConfig.SNOWFLAKE_METADATA_CACHE_TTL_MS, "0");
+    return SnowflakeConnectionServiceFactory.builder().setProperties(configuration).build();
   }
 
   /** @return snowflake connection using OAuth authentication for test */
@@ -734,6 +737,65 @@ public class TestUtils {
     return records;
   }
 
+  /* Generate (noOfRecords - startOffset) native struct records with noOfColumns columns of mixed types */
+  public static List<SinkRecord> createWideStructSinkRecords(
+      final long startOffset,
+      final long noOfRecords,
+      final String topicName,
+      final int partitionNo,
+      final int noOfColumns) {
+    ArrayList<SinkRecord> records = new ArrayList<>();
+
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct().name("wideTable");
+    for (int col = 0; col < noOfColumns; col++) {
+      switch (col % 4) {
+        case 0:
+          schemaBuilder.field("string_col_" + col, Schema.STRING_SCHEMA);
+          break;
+        case 1:
+          schemaBuilder.field("long_col_" + col, Schema.INT64_SCHEMA);
+          break;
+        case 2:
+          schemaBuilder.field("double_col_" + col, Schema.FLOAT64_SCHEMA);
+          break;
+        default:
+          schemaBuilder.field("boolean_col_" + col, Schema.BOOLEAN_SCHEMA);
+      }
+    }
+    Schema schema = schemaBuilder.build();
+
+    for (long i = startOffset; i < startOffset + noOfRecords; ++i) {
+      Struct value = new Struct(schema);
+      for (int col = 0; col < noOfColumns; col++) {
+        switch (col % 4) {
+          case 0:
+            value.put("string_col_" + col, "value_" + col + "_" + i);
+            break;
+          case 1:
+            value.put("long_col_" + col, i * col);
+            break;
+          case 2:
+            value.put("double_col_" + col, i * 0.5d + col);
+            break;
+          default:
+            value.put("boolean_col_" + col, (i + col) % 2 == 0);
+        }
+      }
+      records.add(
+          new SinkRecord(
+              topicName,
+              partitionNo,
+              Schema.STRING_SCHEMA,
+              "key" + i,
+              schema,
+              value,
+              i,
+              System.currentTimeMillis(),
+              TimestampType.CREATE_TIME));
+    }
+    return records;
+  }
+
   public static Map<String, String> getConfig() {
     Map<String, String> config = new HashMap<>();
     config.put(Utils.NAME, "test");
@@ -0,0 +1,100 @@
+package com.snowflake.kafka.connector.internal.streaming;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ChannelLaneTest {
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testWorkRunsInOrderOneAtATime() {
+    ChannelLane lane = new ChannelLane(executor, 1000);
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger running = new AtomicInteger(0);
+    AtomicInteger maxRunning = new AtomicInteger(0);
+    for (int i = 0; i < 200; i++) {
+      final int index = i;
+      lane.submit(
+          () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            order.add(index);
+            running.decrementAndGet();
+          });
+    }
+    Assert.assertEquals(200, (int) lane.call(order::size));
+    for (int i = 0; i < 200; i++) {
+      Assert.assertEquals(i, (int) order.get(i));
+    }
+    Assert.assertEquals(1, maxRunning.get());
+  }
+
+  @Test
+  public void testSubmitBlocksWhenLaneIsFull() throws Exception {
+    ChannelLane lane = new ChannelLane(executor, 1);
+    CountDownLatch release = new CountDownLatch(1);
+    lane.submit(
+        () -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+
+    CountDownLatch submitted = new CountDownLatch(1);
+    Thread producer =
+        new Thread(
+            () -> {
+              lane.submit(() -> {});
+              submitted.countDown();
+            });
+    producer.start();
+    Assert.assertFalse(submitted.await(200, TimeUnit.MILLISECONDS));
+
+    release.countDown();
+    Assert.assertTrue(submitted.await(10, TimeUnit.SECONDS));
+    producer.join();
+  }
+
+  @Test
+  public void testFailureIsRethrownAndLaterWorkDropped() {
+    ChannelLane lane = new ChannelLane(executor, 10);
+    AtomicInteger ran = new AtomicInteger(0);
+    CountDownLatch release = new CountDownLatch(1);
+    lane.submit(
+        () -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          throw new IllegalStateException("insert failed");
+        });
+    // queued before the failure happens
+    lane.submit(ran::incrementAndGet);
+    release.countDown();
+    lane.drain();
+    Assert.assertEquals(0, ran.get());
+
+    try {
+      lane.submit(ran::incrementAndGet);
+      Assert.fail("failure of the lane should be rethrown");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("insert failed", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package com.snowflake.kafka.connector.internal.streaming;
+
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class SchemaEvolutionCoordinatorTest {
+
+  @Test
+  public void testFindMismatch() {
+    Map<String, Boolean> columns = new LinkedHashMap<>();
+    columns.put("RECORD_METADATA", true);
+    columns.put("ID", false);
+    columns.put("NAME", true);
+
+    Map<String, Object> row1 = new HashMap<>();
+    row1.put("RECORD_METADATA", "{}");
+    row1.put("\"ID\"", 1);
+    row1.put("\"NAME\"", "a");
+    Map<String, Object> row2 = new HashMap<>();
+    row2.put("RECORD_METADATA", "{}");
+    row2.put("\"NAME\"", "b");
+    row2.put("\"AGE\"", 2);
+    Map<String, Object> row3 = new HashMap<>(row2);
+
+    SchemaEvolutionCoordinator.SchemaMismatch mismatch =
+        SchemaEvolutionCoordinator.findMismatch(columns, Arrays.asList(row1, row2, row3));
+    Assert.assertEquals(Collections.singletonMap("\"AGE\"", 1), mismatch.getExtraColumns());
+    Assert.assertEquals(Collections.singleton("\"ID\""), mismatch.getNonNullableColumns());
+
+    Assert.assertTrue(
+        SchemaEvolutionCoordinator.findMismatch(columns, Collections.singletonList(row1))
+            .isEmpty());
+  }
+
+  @Test
+  public void testCoordinatorsAreDroppedWithTheLastTask() {
+    SchemaEvolutionCoordinator.registerTask("release_connector");
+    SchemaEvolutionCoordinator.registerTask("release_connector");
+    SchemaEvolutionCoordinator coordinator =
+        SchemaEvolutionCoordinator.forTable("release_connector", "release_table");
+
+    SchemaEvolutionCoordinator.releaseTask("release_connector");
+    Assert.assertSame(
+        coordinator, SchemaEvolutionCoordinator.forTable("release_connector", "release_table"));
+
+    SchemaEvolutionCoordinator.releaseTask("release_connector");
+    Assert.assertNotSame(
+        coordinator, SchemaEvolutionCoordinator.forTable("release_connector", "release_table"));
+  }
+
+  @Test
+  public void testColumnsAreDescribedAgainAfterEvolution() {
+    SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
+    Mockito.when(conn.describeTableColumns("describe_table"))
+        .thenReturn(Collections.singletonMap("ID", true));
+    SchemaEvolutionCoordinator coordinator =
+        SchemaEvolutionCoordinator.forTable("test_connector", "describe_table");
+
+    Assert.assertEquals(Collections.singletonMap("ID", true), coordinator.getColumns(conn));
+    coordinator.getColumns(conn);
+    Mockito.verify(conn, Mockito.times(1)).describeTableColumns("describe_table");
+
+    coordinator.evolve(conn, Collections.emptyList(), Collections.singletonMap("\"AGE\"", "INT"));
+    coordinator.getColumns(conn);
+    Mockito.verify(conn, Mockito.times(2)).describeTableColumns("describe_table");
+  }
+
+  @Test
+  public void testConcurrentRequestsAreMerged() throws Exception {
+    SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
+    CountDownLatch firstEvolutionStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstEvolution = new CountDownLatch(1);
+    Mockito.doAnswer(
+            invocation -> {
+              firstEvolutionStarted.countDown();
+              releaseFirstEvolution.await();
+              return null;
+            })
+        .doNothing()
+        .when(conn)
+        .appendColumnsToTable(ArgumentMatchers.eq("merge_table"), ArgumentMatchers.any());
+    SchemaEvolutionCoordinator coordinator =
+        SchemaEvolutionCoordinator.forTable("test_connector", "merge_table");
+
+    Thread first =
+        new Thread(
+            () ->
+                coordinator.evolve(
+                    conn, Collections.emptyList(), Collections.singletonMap("\"A\"", "INT")));
+    first.start();
+    Assert.assertTrue(firstEvolutionStarted.await(10, TimeUnit.SECONDS));
+
+    // both requests wait for the running evolution and are applied together afterwards
+    List<Thread> waiting =
+        Arrays.asList(
+            new Thread(
+                () ->
+                    coordinator.evolve(
+                        conn, Collections.emptyList(), Collections.singletonMap("\"B\"", "INT"))),
+            new Thread(
+                () ->
+                    coordinator.evolve(
+                        conn,
+                        Collections.emptyList(),
+                        Collections.singletonMap("\"C\"", "VARCHAR"))));
+    for (Thread thread : waiting) {
+      thread.start();
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(10);
+      }
+    }
+    releaseFirstEvolution.countDown();
+    first.join();
+    for (Thread thread : waiting) {
+      thread.join();
+    }
+
+    Map<String, String> merged = new HashMap<>();
+    merged.put("\"B\"", "INT");
+    merged.put("\"C\"", "VARCHAR");
+    Mockito.verify(conn, Mockito.times(2))
+        .appendColumnsToTable(ArgumentMatchers.eq("merge_table"), ArgumentMatchers.any());
+    Mockito.verify(conn)
+        .appendColumnsToTable("merge_table", Collections.singletonMap("\"A\"", "INT"));
+    Mockito.verify(conn).appendColumnsToTable("merge_table", merged);
+  }
+
+  @Test
+  public void testFailedEvolutionFailsEveryMergedRequest() throws Exception {
+    SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
+    CountDownLatch firstEvolutionStarted = new CountDownLatch(1);
+    CountDownLatch releaseFirstEvolution = new CountDownLatch(1);
+    Mockito.doAnswer(
+            invocation -> {
+              firstEvolutionStarted.countDown();
+              releaseFirstEvolution.await();
+              return null;
+            })
+        .doThrow(new IllegalStateException("alter failed"))
+        .doNothing()
+        .when(conn)
+        .appendColumnsToTable(ArgumentMatchers.eq("failed_table"), ArgumentMatchers.any());
+    SchemaEvolutionCoordinator coordinator =
+        SchemaEvolutionCoordinator.forTable("test_connector", "failed_table");
+
+    Thread first =
+        new Thread(
+            () ->
+                coordinator.evolve(
+                    conn, Collections.emptyList(), Collections.singletonMap("\"A\"", "INT")));
+    first.start();
+    Assert.assertTrue(firstEvolutionStarted.await(10, TimeUnit.SECONDS));
+
+    // both requests are applied by the second evolution, which fails
+    AtomicInteger failedRequests = new AtomicInteger(0);
+    List<Thread> waiting = new ArrayList<>();
+    for (String columnName : Arrays.asList("\"B\"", "\"C\"")) {
+      waiting.add(
+          new Thread(
+              () -> {
+                try {
+                  coordinator.evolve(
+                      conn, Collections.emptyList(), Collections.singletonMap(columnName, "INT"));
+                } catch (RuntimeException e) {
+                  failedRequests.incrementAndGet();
+                }
+              }));
+    }
+    for (Thread thread : waiting) {
+      thread.start();
+      while (thread.getState() != Thread.State.WAITING) {
+        Thread.sleep(10);
+      }
+    }
+    releaseFirstEvolution.countDown();
+    first.join();
+    for (Thread thread : waiting) {
+      thread.join();
+    }
+
+    Assert.assertEquals(2, failedRequests.get());
+    Mockito.verify(conn, Mockito.times(2))
+        .appendColumnsToTable(ArgumentMatchers.eq("failed_table"), ArgumentMatchers.any());
+
+    // later requests run their own evolution
+    coordinator.evolve(conn, Collections.emptyList(), Collections.singletonMap("\"B\"", "INT"));
+    Mockito.verify(conn, Mockito.times(3))
+        .appendColumnsToTable(ArgumentMatchers.eq("failed_table"), ArgumentMatchers.any());
+  }
+}
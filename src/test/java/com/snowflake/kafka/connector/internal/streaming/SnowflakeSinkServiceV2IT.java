@@ -1,6 +1,7 @@
 package com.snowflake.kafka.connector.internal.streaming;
 
 import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_MAX_CLIENT_LAG;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS;
 import static com.snowflake.kafka.connector.internal.streaming.SnowflakeSinkServiceV2.partitionChannelKey;
 import static com.snowflake.kafka.connector.internal.streaming.TopicPartitionChannel.NO_OFFSET_TOKEN_REGISTERED_IN_SNOWFLAKE;
 
@@ -1095,6 +1096,8 @@ public class SnowflakeSinkServiceV2IT {
     conn.createTable(table);
     Map<String, String> config = TestUtils.getConfForStreaming();
     SnowflakeSinkConnectorConfig.setDefaultValues(config);
+    // offsets are asserted right after ingestion, fetch them on every call
+    config.put(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS, "0");
     SnowflakeSinkService service =
         SnowflakeSinkServiceFactory.builder(conn, IngestionMethodConfig.SNOWPIPE_STREAMING, config)
             .setRecordNumber(1)
@@ -1153,6 +1156,8 @@ public class SnowflakeSinkServiceV2IT {
     conn.createTable(table);
     Map<String, String> config = TestUtils.getConfForStreaming();
     SnowflakeSinkConnectorConfig.setDefaultValues(config);
+    // offsets are asserted right after ingestion, fetch them on every call
+    config.put(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS, "0");
     SnowflakeSinkService service =
         SnowflakeSinkServiceFactory.builder(conn, IngestionMethodConfig.SNOWPIPE_STREAMING, config)
             .setRecordNumber(1)
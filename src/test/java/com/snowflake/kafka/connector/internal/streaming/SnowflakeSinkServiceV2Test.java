@@ -0,0 +1,240 @@
+package com.snowflake.kafka.connector.internal.streaming;
+
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_INSERT_PARALLELISM;
+import static com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig.SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS;
+import static com.snowflake.kafka.connector.internal.TestUtils.TEST_CONNECTOR_NAME;
+import static com.snowflake.kafka.connector.internal.streaming.SnowflakeSinkServiceV2.partitionChannelKey;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.dlq.InMemoryKafkaRecordErrorReporter;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import com.snowflake.kafka.connector.internal.SnowflakeKafkaConnectorException;
+import com.snowflake.kafka.connector.internal.TestUtils;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import com.snowflake.kafka.connector.records.RecordService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import net.snowflake.ingest.streaming.InsertValidationResponse;
+import net.snowflake.ingest.streaming.OpenChannelRequest;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestChannel;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestClient;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+public class SnowflakeSinkServiceV2Test {
+  private static final String TOPIC = "TEST";
+  private static final String OTHER_TOPIC = "TEST_OTHER";
+  private static final String TABLE = "TEST_TABLE";
+
+  private SnowflakeConnectionService conn;
+  private SnowflakeStreamingIngestClient client;
+  private SnowflakeTelemetryService telemetry;
+  private Map<String, String> config;
+
+  @Before
+  public void setup() {
+    conn = Mockito.mock(SnowflakeConnectionService.class);
+    client = Mockito.mock(SnowflakeStreamingIngestClient.class);
+    telemetry = Mockito.mock(SnowflakeTelemetryService.class);
+    Mockito.when(conn.getConnectorName()).thenReturn(TEST_CONNECTOR_NAME);
+    Mockito.when(conn.getTelemetryClient()).thenReturn(telemetry);
+    Mockito.when(conn.tableExist(TABLE)).thenReturn(true);
+    Mockito.when(conn.isTableCompatible(TABLE)).thenReturn(true);
+    Mockito.when(client.isClosed()).thenReturn(false);
+    config = TestUtils.getConfig();
+    config.put(SNOWPIPE_STREAMING_OFFSET_TOKEN_MAX_STALENESS_MS, "0");
+  }
+
+  @Test
+  public void testTableCreatedOnceForManyPartitions() {
+    Mockito.when(client.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenAnswer(invocation -> Mockito.mock(SnowflakeStreamingIngestChannel.class));
+    List<TopicPartition> partitions =
+        Arrays.asList(
+            new TopicPartition(TOPIC, 0),
+            new TopicPartition(TOPIC, 1),
+            new TopicPartition(TOPIC, 2),
+            new TopicPartition(OTHER_TOPIC, 0));
+    SnowflakeSinkServiceV2 service = createService(partitions);
+
+    Map<String, String> topic2Table = new HashMap<>();
+    topic2Table.put(TOPIC, TABLE);
+    topic2Table.put(OTHER_TOPIC, TABLE);
+    service.startPartitions(partitions, topic2Table);
+
+    Mockito.verify(conn, Mockito.times(1)).tableExist(TABLE);
+    Mockito.verify(conn, Mockito.times(1)).isTableCompatible(TABLE);
+    Mockito.verify(client, Mockito.times(4))
+        .openChannel(ArgumentMatchers.any(OpenChannelRequest.class));
+    for (TopicPartition tp : partitions) {
+      Assert.assertTrue(
+          service
+              .getTopicPartitionChannelFromCacheKey(partitionChannelKey(tp.topic(), tp.partition()))
+              .isPresent());
+    }
+  }
+
+  @Test
+  public void testPartialOpenFailureKeepsOtherChannels() {
+    String failingChannel = partitionChannelKey(TOPIC, 1);
+    Mockito.when(client.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              OpenChannelRequest request = invocation.getArgument(0);
+              if (request.getChannelName().equals(failingChannel)) {
+                throw new IllegalStateException("open failed");
+              }
+              return Mockito.mock(SnowflakeStreamingIngestChannel.class);
+            });
+    List<TopicPartition> partitions =
+        Arrays.asList(
+            new TopicPartition(TOPIC, 0),
+            new TopicPartition(TOPIC, 1),
+            new TopicPartition(TOPIC, 2));
+    SnowflakeSinkServiceV2 service = createService(partitions);
+
+    try {
+      service.startPartitions(partitions, topic2Table());
+      Assert.fail("the failed open must be surfaced");
+    } catch (SnowflakeKafkaConnectorException e) {
+      Assert.assertTrue(e.checkErrorCode(SnowflakeErrors.ERROR_5025));
+    }
+
+    Assert.assertTrue(
+        service.getTopicPartitionChannelFromCacheKey(partitionChannelKey(TOPIC, 0)).isPresent());
+    Assert.assertFalse(service.getTopicPartitionChannelFromCacheKey(failingChannel).isPresent());
+    Assert.assertTrue(
+        service.getTopicPartitionChannelFromCacheKey(partitionChannelKey(TOPIC, 2)).isPresent());
+  }
+
+  @Test
+  public void testInterruptedWhileOpeningChannels() throws Exception {
+    String blockedChannel = partitionChannelKey(TOPIC, 1);
+    CountDownLatch blockedOpenStarted = new CountDownLatch(1);
+    CountDownLatch blockedOpenInterrupted = new CountDownLatch(1);
+    Mockito.when(client.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              OpenChannelRequest request = invocation.getArgument(0);
+              if (request.getChannelName().equals(blockedChannel)) {
+                blockedOpenStarted.countDown();
+                try {
+                  new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                  blockedOpenInterrupted.countDown();
+                  throw e;
+                }
+              }
+              return Mockito.mock(SnowflakeStreamingIngestChannel.class);
+            });
+    List<TopicPartition> partitions =
+        Arrays.asList(new TopicPartition(TOPIC, 0), new TopicPartition(TOPIC, 1));
+    SnowflakeSinkServiceV2 service = createService(partitions);
+
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    AtomicBoolean interruptFlagKept = new AtomicBoolean(false);
+    Thread taskThread =
+        new Thread(
+            () -> {
+              try {
+                service.startPartitions(partitions, topic2Table());
+              } catch (Exception e) {
+                failure.set(e);
+                interruptFlagKept.set(Thread.currentThread().isInterrupted());
+              }
+            });
+    taskThread.start();
+    Assert.assertTrue(blockedOpenStarted.await(10, TimeUnit.SECONDS));
+    taskThread.interrupt();
+    taskThread.join(TimeUnit.SECONDS.toMillis(10));
+
+    Assert.assertFalse(taskThread.isAlive());
+    Assert.assertTrue(failure.get() instanceof SnowflakeKafkaConnectorException);
+    Assert.assertTrue(
+        ((SnowflakeKafkaConnectorException) failure.get())
+            .checkErrorCode(SnowflakeErrors.ERROR_5025));
+    Assert.assertTrue(interruptFlagKept.get());
+    // the pending open is cancelled rather than left running
+    Assert.assertTrue(blockedOpenInterrupted.await(10, TimeUnit.SECONDS));
+    Assert.assertFalse(service.getTopicPartitionChannelFromCacheKey(blockedChannel).isPresent());
+  }
+
+  @Test
+  public void testGetOffsetDoesNotWaitForQueuedInserts() throws Exception {
+    config.put(SNOWPIPE_STREAMING_INSERT_PARALLELISM, "2");
+    SnowflakeStreamingIngestChannel channel = Mockito.mock(SnowflakeStreamingIngestChannel.class);
+    Mockito.when(client.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenReturn(channel);
+    Mockito.when(channel.getLatestCommittedOffsetToken()).thenReturn("5");
+    Mockito.when(channel.close()).thenReturn(CompletableFuture.completedFuture(null));
+    CountDownLatch insertStarted = new CountDownLatch(1);
+    CountDownLatch releaseInsert = new CountDownLatch(1);
+    Mockito.when(channel.insertRows(ArgumentMatchers.anyIterable(), ArgumentMatchers.anyString()))
+        .thenAnswer(
+            invocation -> {
+              insertStarted.countDown();
+              releaseInsert.await(10, TimeUnit.SECONDS);
+              return new InsertValidationResponse();
+            });
+    TopicPartition partition = new TopicPartition(TOPIC, 0);
+    List<TopicPartition> partitions = Collections.singletonList(partition);
+    SnowflakeSinkServiceV2 service = createService(partitions);
+    service.startPartitions(partitions, topic2Table());
+
+    ExecutorService getOffsetExecutor = Executors.newSingleThreadExecutor();
+    try {
+      service.insert(TestUtils.createNativeJsonSinkRecords(6, 1, TOPIC, 0));
+      Assert.assertTrue(insertStarted.await(10, TimeUnit.SECONDS));
+
+      // answered from the channel while the insert is still running
+      Future<Long> offset = getOffsetExecutor.submit(() -> service.getOffset(partition));
+      Assert.assertEquals(6L, (long) offset.get(5, TimeUnit.SECONDS));
+    } finally {
+      releaseInsert.countDown();
+      getOffsetExecutor.shutdownNow();
+      service.closeAll();
+    }
+  }
+
+  private Map<String, String> topic2Table() {
+    Map<String, String> topic2Table = new HashMap<>();
+    topic2Table.put(TOPIC, TABLE);
+    return topic2Table;
+  }
+
+  private SnowflakeSinkServiceV2 createService(List<TopicPartition> partitions) {
+    return new SnowflakeSinkServiceV2(
+        1,
+        10 * 1024 * 1024,
+        1,
+        conn,
+        new RecordService(),
+        telemetry,
+        null,
+        SnowflakeSinkConnectorConfig.BehaviorOnNullValues.DEFAULT,
+        false,
+        new InMemoryKafkaRecordErrorReporter(),
+        new InMemorySinkTaskContext(new HashSet<>(partitions)),
+        client,
+        config,
+        false,
+        new HashMap<>());
+  }
+}
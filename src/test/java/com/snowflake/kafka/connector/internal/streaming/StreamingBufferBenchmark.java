@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.snowflake.kafka.connector.internal.streaming;
+
+import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
+import com.snowflake.kafka.connector.internal.SnowflakeConnectionService;
+import com.snowflake.kafka.connector.internal.TestUtils;
+import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
+import com.snowflake.kafka.connector.records.RecordService;
+import com.snowflake.kafka.connector.records.SnowflakeJsonSchema;
+import com.snowflake.kafka.connector.records.SnowflakeRecordContent;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.snowflake.ingest.streaming.OpenChannelRequest;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestChannel;
+import net.snowflake.ingest.streaming.SnowflakeStreamingIngestClient;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.sink.SinkTaskContext;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per record cost of buffering records in {@link
+ * TopicPartitionChannel.StreamingBuffer} and fetching the rows for insertRows API.
+ *
+ * <p>{@link #legacyDoubleConversion} mimics the previous buffer which converted every record once
+ * to find its size and once again before calling insertRows API. {@link #singlePassConversion} is
+ * the current buffer which converts every record exactly once.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=
+ * com.snowflake.kafka.connector.internal.streaming.StreamingBufferBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingBufferBenchmark {
+  private static final String TOPIC = "benchmark";
+  private static final int PARTITION = 0;
+  private static final int RECORDS_PER_BUFFER = 100;
+
+  @Param({"10", "300"})
+  public int noOfColumns;
+
+  @Param({"true", "false"})
+  public boolean enableSchematization;
+
+  private TopicPartitionChannel topicPartitionChannel;
+
+  private RecordService recordService;
+
+  private List<SinkRecord> records;
+
+  @Setup
+  public void setup() {
+    SnowflakeStreamingIngestClient streamingClient =
+        Mockito.mock(SnowflakeStreamingIngestClient.class);
+    SnowflakeStreamingIngestChannel streamingChannel =
+        Mockito.mock(SnowflakeStreamingIngestChannel.class);
+    Mockito.when(streamingClient.isClosed()).thenReturn(false);
+    Mockito.when(streamingClient.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenReturn(streamingChannel);
+    Mockito.when(streamingChannel.getFullyQualifiedName()).thenReturn(TOPIC);
+
+    Map<String, String> config = TestUtils.getConfig();
+    config.put(
+        SnowflakeSinkConnectorConfig.ENABLE_SCHEMATIZATION_CONFIG,
+        Boolean.toString(enableSchematization));
+
+    this.recordService = new RecordService();
+    this.recordService.setEnableSchematization(enableSchematization);
+    this.topicPartitionChannel =
+        new TopicPartitionChannel(
+            streamingClient,
+            new TopicPartition(TOPIC, PARTITION),
+            TOPIC,
+            TOPIC,
+            false,
+            new StreamingBufferThreshold(1000, Long.MAX_VALUE, Long.MAX_VALUE),
+            config,
+            Mockito.mock(KafkaRecordErrorReporter.class),
+            Mockito.mock(SinkTaskContext.class),
+            Mockito.mock(SnowflakeConnectionService.class),
+            new RecordService(),
+            Mockito.mock(SnowflakeTelemetryService.class),
+            false,
+            null);
+    this.records =
+        TestUtils.createWideStructSinkRecords(0, RECORDS_PER_BUFFER, TOPIC, PARTITION, noOfColumns);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BUFFER)
+  public void singlePassConversion(Blackhole blackhole) {
+    TopicPartitionChannel.StreamingBuffer buffer = topicPartitionChannel.new StreamingBuffer();
+    for (SinkRecord record : records) {
+      buffer.insert(record);
+    }
+    blackhole.consume(buffer.getData());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BUFFER)
+  public void legacyDoubleConversion(Blackhole blackhole) throws Exception {
+    for (SinkRecord record : records) {
+      // first conversion was done to find the size of the record
+      Map<String, Object> sizingRow =
+          recordService.getProcessedRecordForStreamingIngest(wrap(record));
+      blackhole.consume(TopicPartitionChannel.getApproxSizeOfRowInBytes(sizingRow));
+    }
+    for (SinkRecord record : records) {
+      // second conversion was done just before calling insertRows API
+      blackhole.consume(recordService.getProcessedRecordForStreamingIngest(wrap(record)));
+    }
+  }
+
+  private static SinkRecord wrap(SinkRecord record) {
+    SnowflakeRecordContent content =
+        new SnowflakeRecordContent(record.valueSchema(), record.value(), true);
+    return new SinkRecord(
+        record.topic(),
+        record.kafkaPartition(),
+        record.keySchema(),
+        record.key(),
+        new SnowflakeJsonSchema(),
+        content,
+        record.kafkaOffset(),
+        record.timestamp(),
+        record.timestampType(),
+        record.headers());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(StreamingBufferBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -13,6 +13,7 @@ import static org.mockito.ArgumentMatchers.eq;
 
 import com.codahale.metrics.MetricRegistry;
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.dlq.InMemoryKafkaRecordErrorReporter;
 import com.snowflake.kafka.connector.dlq.KafkaRecordErrorReporter;
 import com.snowflake.kafka.connector.internal.BufferThreshold;
@@ -24,13 +25,18 @@ import com.snowflake.kafka.connector.internal.streaming.telemetry.SnowflakeTelem
 import com.snowflake.kafka.connector.internal.telemetry.SnowflakeTelemetryService;
 import com.snowflake.kafka.connector.records.RecordService;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import net.snowflake.ingest.streaming.InsertValidationResponse;
 import net.snowflake.ingest.streaming.OpenChannelRequest;
 import net.snowflake.ingest.streaming.SnowflakeStreamingIngestChannel;
@@ -40,6 +46,8 @@ import net.snowflake.ingest.utils.SFException;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.json.JsonConverter;
@@ -173,6 +181,47 @@ public class TopicPartitionChannelTest {
     Assert.assertEquals(100L, topicPartitionChannel.fetchOffsetTokenWithRetry());
   }
 
+  @Test
+  public void testGetOffsetSafeToCommitToKafka_cachedOffsetToken() {
+    Mockito.when(mockStreamingChannel.getLatestCommittedOffsetToken()).thenReturn("100");
+
+    TopicPartitionChannel topicPartitionChannel =
+        new TopicPartitionChannel(
+            mockStreamingClient,
+            topicPartition,
+            TEST_CHANNEL_NAME,
+            TEST_TABLE_NAME,
+            streamingBufferThreshold,
+            sfConnectorConfig,
+            mockKafkaRecordErrorReporter,
+            mockSinkTaskContext,
+            mockSnowflakeConnectionService,
+            mockTelemetryService);
+    // fetched once while opening the channel
+    Mockito.verify(mockStreamingChannel, Mockito.times(1)).getLatestCommittedOffsetToken();
+
+    // nothing cached yet, fetched from the channel
+    Assert.assertEquals(101L, topicPartitionChannel.getOffsetSafeToCommitToKafka(10_000));
+    Mockito.verify(mockStreamingChannel, Mockito.times(2)).getLatestCommittedOffsetToken();
+
+    // too old, fetched from the channel
+    long now = System.currentTimeMillis();
+    topicPartitionChannel.updateCommittedOffsetToken("200", now - 20_000);
+    Assert.assertEquals(101L, topicPartitionChannel.getOffsetSafeToCommitToKafka(10_000));
+    Mockito.verify(mockStreamingChannel, Mockito.times(3)).getLatestCommittedOffsetToken();
+
+    // an older fetch or an invalid offset token does not replace the cached one
+    topicPartitionChannel.updateCommittedOffsetToken("300", now);
+    topicPartitionChannel.updateCommittedOffsetToken("250", now - 1);
+    topicPartitionChannel.updateCommittedOffsetToken("invalidNo", now + 1);
+    Assert.assertEquals(301L, topicPartitionChannel.getOffsetSafeToCommitToKafka(10_000));
+    Mockito.verify(mockStreamingChannel, Mockito.times(3)).getLatestCommittedOffsetToken();
+
+    // disabled, fetched from the channel
+    Assert.assertEquals(101L, topicPartitionChannel.getOffsetSafeToCommitToKafka(0));
+    Mockito.verify(mockStreamingChannel, Mockito.times(4)).getLatestCommittedOffsetToken();
+  }
+
   // TODO:: Fix this test
   @Test
   public void testFirstRecordForChannel() {
@@ -599,27 +648,32 @@ public class TopicPartitionChannelTest {
     if (this.sfConnectorConfig
         .get(SnowflakeSinkConnectorConfig.ENABLE_SCHEMATIZATION_CONFIG)
         .equals("true")) {
-      InsertValidationResponse validationResponse1 = new InsertValidationResponse();
-      InsertValidationResponse.InsertError insertError1 =
+      // row 1 fails for a reason unrelated to the schema, rows 0 and 2 need one new column each
+      InsertValidationResponse validationResponse = new InsertValidationResponse();
+      InsertValidationResponse.InsertError insertError0 =
           new InsertValidationResponse.InsertError("CONTENT", 0);
+      insertError0.setException(SF_EXCEPTION);
+      insertError0.setExtraColNames(Collections.singletonList("\"GENDER\""));
+      validationResponse.addError(insertError0);
+      InsertValidationResponse.InsertError insertError1 =
+          new InsertValidationResponse.InsertError("CONTENT", 1);
       insertError1.setException(SF_EXCEPTION);
-      validationResponse1.addError(insertError1);
-
-      InsertValidationResponse validationResponse2 = new InsertValidationResponse();
+      validationResponse.addError(insertError1);
       InsertValidationResponse.InsertError insertError2 =
-          new InsertValidationResponse.InsertError("CONTENT", 0);
+          new InsertValidationResponse.InsertError("CONTENT", 2);
       insertError2.setException(SF_EXCEPTION);
-      insertError2.setExtraColNames(Collections.singletonList("gender"));
-      validationResponse2.addError(insertError2);
+      insertError2.setExtraColNames(Collections.singletonList("\"REGIONID\""));
+      validationResponse.addError(insertError2);
 
       Mockito.when(
-              mockStreamingChannel.insertRow(
-                  ArgumentMatchers.any(), ArgumentMatchers.any(String.class)))
-          .thenReturn(new InsertValidationResponse())
-          .thenReturn(validationResponse1)
-          .thenReturn(validationResponse2);
+              mockStreamingChannel.insertRows(
+                  ArgumentMatchers.any(Iterable.class), ArgumentMatchers.any(String.class)))
+          .thenReturn(validationResponse)
+          .thenReturn(new InsertValidationResponse());
 
-      Mockito.when(mockStreamingChannel.getLatestCommittedOffsetToken()).thenReturn("0");
+      Mockito.when(mockStreamingChannel.getLatestCommittedOffsetToken()).thenReturn(null);
+      Mockito.when(mockStreamingChannel.close())
+          .thenReturn(CompletableFuture.completedFuture(null));
 
       SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
       Mockito.when(
@@ -631,7 +685,7 @@ public class TopicPartitionChannelTest {
 
       long bufferFlushTimeSeconds = 5L;
       StreamingBufferThreshold bufferThreshold =
-          new StreamingBufferThreshold(bufferFlushTimeSeconds, 1_000 /* < 1KB */, 10000000L);
+          new StreamingBufferThreshold(bufferFlushTimeSeconds, 10_000 /* < 10KB */, 10000000L);
 
       Map<String, String> sfConnectorConfigWithErrors = new HashMap<>(sfConnectorConfig);
       sfConnectorConfigWithErrors.put(
@@ -676,7 +730,147 @@ public class TopicPartitionChannelTest {
       // Verify that the buffer is cleaned up and one record is in the DLQ
       Assert.assertTrue(topicPartitionChannel.isPartitionBufferEmpty());
       Assert.assertEquals(1, kafkaRecordErrorReporter.getReportedRecords().size());
+
+      // Both columns are added at once, the channel is closed and reopened to see them and only
+      // rows 0 and 2 are inserted again, without resetting the offset in Kafka
+      Map<String, String> expectedColumns = new HashMap<>();
+      expectedColumns.put("\"GENDER\"", "VARCHAR");
+      expectedColumns.put("\"REGIONID\"", "VARCHAR");
+      Mockito.verify(conn, Mockito.times(1))
+          .appendColumnsToTable(ArgumentMatchers.any(), ArgumentMatchers.eq(expectedColumns));
+      Mockito.verify(mockStreamingChannel, Mockito.times(1)).close();
+      Mockito.verify(mockStreamingClient, Mockito.times(2)).openChannel(ArgumentMatchers.any());
+      Mockito.verify(mockStreamingChannel, Mockito.times(2))
+          .insertRows(ArgumentMatchers.any(Iterable.class), ArgumentMatchers.eq("2"));
+      Mockito.verify(mockStreamingChannel, Mockito.times(1))
+          .insertRows(
+              ArgumentMatchers.argThat(rows -> rows != null && ((List<?>) rows).size() == 2),
+              ArgumentMatchers.eq("2"));
+      Mockito.verify(mockSinkTaskContext, Mockito.never())
+          .offset(ArgumentMatchers.eq(topicPartition), ArgumentMatchers.anyLong());
+    }
+  }
+
+  @Test
+  public void testSchemaMismatchAfterCheckInsertsRejectedRowsAgain() throws Exception {
+    if (!this.enableSchematization) {
+      return;
+    }
+    // the columns of the table are not known, rows 0 and 2 are only rejected by insertRows
+    SimulatedTable table = new SimulatedTable(columnsOf(record(0, "regionid")));
+    TopicPartitionChannel topicPartitionChannel = createSimulatedChannel(table, false);
+    List<SinkRecord> batch =
+        Arrays.asList(
+            record(0, "regionid", "gender"),
+            record(1, "regionid"),
+            record(2, "regionid", "gender"));
+
+    insertBatch(topicPartitionChannel, batch);
+    // row 1 was flushed when the channel was closed, rows 0 and 2 are in the reopened channel
+    Assert.assertEquals(Collections.singletonList(1L), table.getRowOffsets());
+    topicPartitionChannel.closeChannel();
+
+    Assert.assertEquals(Arrays.asList(1L, 0L, 2L), table.getRowOffsets());
+    Assert.assertEquals("2", table.getCommittedOffsetToken());
+    Mockito.verify(mockSinkTaskContext, Mockito.never())
+        .offset(ArgumentMatchers.eq(topicPartition), ArgumentMatchers.anyLong());
+  }
+
+  @Test
+  public void testRowsStillMismatchingAfterSchemaEvolutionAreReported() throws Exception {
+    if (!this.enableSchematization) {
+      return;
+    }
+    sfConnectorConfig.put(
+        ERRORS_TOLERANCE_CONFIG, SnowflakeSinkConnectorConfig.ErrorTolerance.ALL.toString());
+    sfConnectorConfig.put(ERRORS_DEAD_LETTER_QUEUE_TOPIC_NAME_CONFIG, "test_DLQ");
+    // the column cannot be added, rows 0 and 2 mismatch the table every time they are inserted
+    SimulatedTable table = new SimulatedTable(columnsOf(record(0, "regionid")));
+    table.failColumnAdditions();
+    TopicPartitionChannel topicPartitionChannel = createSimulatedChannel(table, true);
+    List<SinkRecord> batch =
+        Arrays.asList(
+            record(0, "regionid", "gender"),
+            record(1, "regionid"),
+            record(2, "regionid", "gender"));
+
+    insertBatch(topicPartitionChannel, batch);
+    topicPartitionChannel.closeChannel();
+
+    // row 1 is inserted once, rows 0 and 2 are reported once the attempts are exhausted
+    Assert.assertEquals(Collections.singletonList(1L), table.getRowOffsets());
+    Assert.assertEquals("2", table.getCommittedOffsetToken());
+    Mockito.verify(mockKafkaRecordErrorReporter, Mockito.times(2))
+        .reportError(ArgumentMatchers.any(), ArgumentMatchers.any());
+    Mockito.verify(mockKafkaRecordErrorReporter, Mockito.times(1))
+        .reportError(
+            ArgumentMatchers.argThat(record -> record.kafkaOffset() == 0L),
+            ArgumentMatchers.any());
+    Mockito.verify(mockKafkaRecordErrorReporter, Mockito.times(1))
+        .reportError(
+            ArgumentMatchers.argThat(record -> record.kafkaOffset() == 2L),
+            ArgumentMatchers.any());
+    Mockito.verify(mockSinkTaskContext, Mockito.never())
+        .offset(ArgumentMatchers.eq(topicPartition), ArgumentMatchers.anyLong());
+  }
+
+  @Test
+  public void testFailedCloseAfterSchemaEvolutionDoesNotInsertRowsTwice() throws Exception {
+    if (!this.enableSchematization) {
+      return;
+    }
+    SimulatedTable table = new SimulatedTable(columnsOf(record(0, "regionid")));
+    TopicPartitionChannel topicPartitionChannel = createSimulatedChannel(table, true);
+
+    insertBatch(
+        topicPartitionChannel,
+        Arrays.asList(record(0, "regionid"), record(1, "regionid"), record(2, "regionid")));
+
+    // the table is evolved for the second batch, closing the channel flushes the first batch and
+    // then fails. The committed offset token shows that no row is missing, the channel is reopened
+    // and the batch inserted
+    table.failNextClose();
+    insertBatch(
+        topicPartitionChannel,
+        Arrays.asList(
+            record(3, "regionid", "gender"),
+            record(4, "regionid", "gender"),
+            record(5, "regionid", "gender")));
+    Assert.assertEquals(Arrays.asList(0L, 1L, 2L), table.getRowOffsets());
+    topicPartitionChannel.closeChannel();
+
+    Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L), table.getRowOffsets());
+    Assert.assertEquals("5", table.getCommittedOffsetToken());
+    Mockito.verify(mockSinkTaskContext, Mockito.never())
+        .offset(ArgumentMatchers.eq(topicPartition), ArgumentMatchers.anyLong());
+  }
+
+  @Test
+  public void testRowsDroppedWithTheChannelAfterSchemaEvolutionAreConsumedAgain()
+      throws Exception {
+    if (!this.enableSchematization) {
+      return;
     }
+    SimulatedTable table = new SimulatedTable(columnsOf(record(0, "regionid")));
+    TopicPartitionChannel topicPartitionChannel = createSimulatedChannel(table, true);
+
+    insertBatch(
+        topicPartitionChannel,
+        Arrays.asList(record(0, "regionid"), record(1, "regionid"), record(2, "regionid")));
+
+    // closing the channel fails before flushing the first batch, it is consumed again from Kafka
+    table.failNextCloseWithoutFlush();
+    insertBatch(
+        topicPartitionChannel,
+        Arrays.asList(
+            record(3, "regionid", "gender"),
+            record(4, "regionid", "gender"),
+            record(5, "regionid", "gender")));
+    topicPartitionChannel.closeChannel();
+
+    Assert.assertTrue(table.getRowOffsets().isEmpty());
+    Assert.assertNull(table.getCommittedOffsetToken());
+    Mockito.verify(mockSinkTaskContext, Mockito.times(1)).offset(topicPartition, 0L);
   }
 
   /* SFExceptions is thrown in first attempt of insert rows. It is also thrown while refetching committed offset from snowflake after reopening the channel */
@@ -1125,4 +1319,195 @@ public class TopicPartitionChannelTest {
     topicPartitionChannel.closeChannel();
     assert resultStatus.getMetricsJmxReporter() == null;
   }
+
+  /** Insert the records of one batch, they are flushed once all of them are buffered */
+  private static void insertBatch(
+      TopicPartitionChannel topicPartitionChannel, List<SinkRecord> batch) {
+    for (int idx = 0; idx < batch.size(); idx++) {
+      topicPartitionChannel.insertRecordToBuffer(batch.get(idx), idx == 0);
+    }
+  }
+
+  private TopicPartitionChannel createSimulatedChannel(
+      SimulatedTable table, boolean isTableDescribed) {
+    SnowflakeConnectionService conn = Mockito.mock(SnowflakeConnectionService.class);
+    Mockito.when(conn.describeTableColumns(ArgumentMatchers.any()))
+        .thenAnswer(invocation -> isTableDescribed ? table.describeColumns() : new HashMap<>());
+    Mockito.doAnswer(
+            invocation -> {
+              table.addColumns(invocation.getArgument(1));
+              return null;
+            })
+        .when(conn)
+        .appendColumnsToTable(ArgumentMatchers.any(), ArgumentMatchers.any());
+    Mockito.when(mockStreamingClient.openChannel(ArgumentMatchers.any(OpenChannelRequest.class)))
+        .thenAnswer(invocation -> table.openChannel());
+
+    return new TopicPartitionChannel(
+        mockStreamingClient,
+        topicPartition,
+        TEST_CHANNEL_NAME,
+        table.getName(),
+        true,
+        new StreamingBufferThreshold(10, 10_000, 3),
+        sfConnectorConfig,
+        mockKafkaRecordErrorReporter,
+        mockSinkTaskContext,
+        conn,
+        new RecordService(),
+        mockTelemetryService,
+        false,
+        null);
+  }
+
+  /** Record whose value has one string field for every given field name */
+  private static SinkRecord record(long offset, String... fieldNames) {
+    SchemaBuilder schemaBuilder = SchemaBuilder.struct().name("sf.kc.test");
+    for (String fieldName : fieldNames) {
+      schemaBuilder.field(fieldName, Schema.STRING_SCHEMA);
+    }
+    Schema schema = schemaBuilder.build();
+    Struct value = new Struct(schema);
+    for (String fieldName : fieldNames) {
+      value.put(fieldName, "value");
+    }
+    return new SinkRecord(TOPIC, PARTITION, Schema.STRING_SCHEMA, "test", schema, value, offset);
+  }
+
+  /** Names of the columns the row of a record is inserted into */
+  private Set<String> columnsOf(SinkRecord record) throws Exception {
+    RecordService recordService = new RecordService();
+    recordService.setAndGetEnableSchematizationFromConfig(sfConnectorConfig);
+    Set<String> columns = new HashSet<>();
+    for (String columnName : recordService.getProcessedRecordForStreamingIngest(record).keySet()) {
+      columns.add(SchematizationUtils.formatName(columnName));
+    }
+    return columns;
+  }
+
+  /**
+   * Table written by channels which only see the columns the table had when they were opened, and
+   * whose rows only reach the table when they are closed. Rows of a channel which is opened again
+   * without being closed are dropped.
+   */
+  private static class SimulatedTable {
+    private static final Pattern OFFSET_PATTERN = Pattern.compile("\"offset\"\\s*:\\s*(\\d+)");
+
+    private final String name = TestUtils.randomTableName();
+    private final Set<String> columns;
+    private final List<Long> rowOffsets = new ArrayList<>();
+    private String committedOffsetToken = null;
+    private boolean failColumnAdditions = false;
+    private boolean failNextClose = false;
+    private boolean flushOnFailedClose = true;
+
+    SimulatedTable(Set<String> columns) {
+      this.columns = new HashSet<>(columns);
+    }
+
+    String getName() {
+      return name;
+    }
+
+    List<Long> getRowOffsets() {
+      return rowOffsets;
+    }
+
+    String getCommittedOffsetToken() {
+      return committedOffsetToken;
+    }
+
+    void failColumnAdditions() {
+      this.failColumnAdditions = true;
+    }
+
+    void failNextClose() {
+      this.failNextClose = true;
+      this.flushOnFailedClose = true;
+    }
+
+    void failNextCloseWithoutFlush() {
+      this.failNextClose = true;
+      this.flushOnFailedClose = false;
+    }
+
+    Map<String, Boolean> describeColumns() {
+      Map<String, Boolean> describedColumns = new HashMap<>();
+      columns.forEach(columnName -> describedColumns.put(columnName, true));
+      return describedColumns;
+    }
+
+    void addColumns(Map<String, String> columnsToType) {
+      if (!failColumnAdditions) {
+        columnsToType.keySet().forEach(name -> columns.add(SchematizationUtils.formatName(name)));
+      }
+    }
+
+    SnowflakeStreamingIngestChannel openChannel() {
+      Set<String> channelColumns = new HashSet<>(columns);
+      List<Long> bufferedRowOffsets = new ArrayList<>();
+      String[] bufferedOffsetToken = {committedOffsetToken};
+      SnowflakeStreamingIngestChannel channel = Mockito.mock(SnowflakeStreamingIngestChannel.class);
+      Mockito.when(channel.getFullyQualifiedName()).thenReturn(TEST_CHANNEL_NAME);
+      Mockito.when(channel.getTableName()).thenReturn(name);
+      Mockito.when(channel.getLatestCommittedOffsetToken())
+          .thenAnswer(invocation -> committedOffsetToken);
+      Mockito.when(
+              channel.insertRows(
+                  ArgumentMatchers.any(Iterable.class), ArgumentMatchers.any(String.class)))
+          .thenAnswer(
+              invocation -> {
+                Iterable<Map<String, Object>> rows = invocation.getArgument(0);
+                InsertValidationResponse response = new InsertValidationResponse();
+                long rowIndex = 0;
+                for (Map<String, Object> row : rows) {
+                  List<String> extraColNames = new ArrayList<>();
+                  for (String columnName : row.keySet()) {
+                    if (!channelColumns.contains(SchematizationUtils.formatName(columnName))) {
+                      extraColNames.add(columnName);
+                    }
+                  }
+                  if (extraColNames.isEmpty()) {
+                    bufferedRowOffsets.add(offsetOf(row));
+                  } else {
+                    InsertValidationResponse.InsertError insertError =
+                        new InsertValidationResponse.InsertError("CONTENT", rowIndex);
+                    insertError.setException(
+                        new SFException(ErrorCode.INVALID_VALUE_ROW, "extra columns"));
+                    insertError.setExtraColNames(extraColNames);
+                    response.addError(insertError);
+                  }
+                  rowIndex++;
+                }
+                bufferedOffsetToken[0] = invocation.getArgument(1);
+                return response;
+              });
+      Mockito.when(channel.close())
+          .thenAnswer(
+              invocation -> {
+                if (!failNextClose || flushOnFailedClose) {
+                  rowOffsets.addAll(bufferedRowOffsets);
+                  committedOffsetToken = bufferedOffsetToken[0];
+                }
+                bufferedRowOffsets.clear();
+                CompletableFuture<Void> closed = new CompletableFuture<>();
+                if (failNextClose) {
+                  failNextClose = false;
+                  closed.completeExceptionally(
+                      new SFException(ErrorCode.INVALID_CHANNEL, "close failed"));
+                } else {
+                  closed.complete(null);
+                }
+                return closed;
+              });
+      return channel;
+    }
+
+    private static long offsetOf(Map<String, Object> row) {
+      Matcher matcher =
+          OFFSET_PATTERN.matcher(String.valueOf(row.get(Utils.TABLE_COLUMN_METADATA)));
+      Assert.assertTrue(matcher.find());
+      return Long.parseLong(matcher.group(1));
+    }
+  }
 }
@@ -0,0 +1,239 @@
+package com.snowflake.kafka.connector.records;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AvroJsonDatumReaderTest {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final Schema DECIMAL_BYTES =
+      LogicalTypes.decimal(20, 4).addToSchema(Schema.create(Schema.Type.BYTES));
+  private static final Schema DECIMAL_BYTES_NO_SCALE =
+      LogicalTypes.decimal(38, 0).addToSchema(Schema.create(Schema.Type.BYTES));
+  private static final Schema DECIMAL_FIXED =
+      LogicalTypes.decimal(10, 2).addToSchema(Schema.createFixed("decimalFixed", null, null, 8));
+
+  private static final Schema NESTED =
+      SchemaBuilder.record("Nested")
+          .fields()
+          .requiredString("name")
+          .optionalLong("count")
+          .endRecord();
+
+  private static final Schema ALL_TYPES =
+      SchemaBuilder.record("AllTypes")
+          .fields()
+          .requiredInt("int")
+          .requiredLong("smallLong")
+          .requiredLong("bigLong")
+          .requiredFloat("float")
+          .requiredFloat("floatNaN")
+          .requiredDouble("double")
+          .requiredDouble("doubleInfinity")
+          .requiredBoolean("boolean")
+          .name("nullField")
+          .type()
+          .nullType()
+          .noDefault()
+          .requiredString("string")
+          .requiredBytes("bytes")
+          .name("decimal")
+          .type(DECIMAL_BYTES)
+          .noDefault()
+          .name("decimalNoScale")
+          .type(DECIMAL_BYTES_NO_SCALE)
+          .noDefault()
+          .name("decimalFixed")
+          .type(DECIMAL_FIXED)
+          .noDefault()
+          .name("fixed")
+          .type()
+          .fixed("plainFixed")
+          .size(4)
+          .noDefault()
+          .name("enum")
+          .type()
+          .enumeration("Suit")
+          .symbols("SPADES", "HEARTS")
+          .noDefault()
+          .name("array")
+          .type()
+          .array()
+          .items()
+          .unionOf()
+          .nullType()
+          .and()
+          .doubleType()
+          .endUnion()
+          .noDefault()
+          .name("map")
+          .type()
+          .map()
+          .values()
+          .longType()
+          .noDefault()
+          .optionalString("optionalString")
+          .name("optionalRecord")
+          .type()
+          .unionOf()
+          .nullType()
+          .and()
+          .type(NESTED)
+          .endUnion()
+          .nullDefault()
+          .endRecord();
+
+  @Test
+  public void testAllTypesMatchGenericRecordString() throws IOException {
+    GenericRecord nested = new GenericData.Record(NESTED);
+    nested.put("name", "nested \"quoted\" \u00e9\u2028");
+    nested.put("count", 42L);
+
+    Map<String, Long> map = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      map.put("key_" + i + "_\u00fc", (long) i * Integer.MAX_VALUE);
+    }
+
+    Conversions.DecimalConversion decimalConversion = new Conversions.DecimalConversion();
+    GenericRecord record = new GenericData.Record(ALL_TYPES);
+    record.put("int", -7);
+    record.put("smallLong", 12L);
+    record.put("bigLong", Long.MAX_VALUE);
+    record.put("float", 1.1f);
+    record.put("floatNaN", Float.NaN);
+    record.put("double", 1e300);
+    record.put("doubleInfinity", Double.NEGATIVE_INFINITY);
+    record.put("boolean", true);
+    record.put("nullField", null);
+    record.put("string", "tab\t newline\n slash\\ control\u0001");
+    record.put(
+        "bytes", ByteBuffer.wrap(new byte[] {0, 1, (byte) 0x7f, (byte) 0x80, (byte) 0xff}));
+    record.put(
+        "decimal",
+        decimalConversion.toBytes(
+            new BigDecimal("90.0000"), DECIMAL_BYTES, DECIMAL_BYTES.getLogicalType()));
+    record.put(
+        "decimalNoScale",
+        decimalConversion.toBytes(
+            new BigDecimal("123456789012345678901234567890"),
+            DECIMAL_BYTES_NO_SCALE,
+            DECIMAL_BYTES_NO_SCALE.getLogicalType()));
+    record.put(
+        "decimalFixed",
+        decimalConversion.toFixed(
+            new BigDecimal("-12.34"), DECIMAL_FIXED, DECIMAL_FIXED.getLogicalType()));
+    record.put(
+        "fixed",
+        new GenericData.Fixed(
+            ALL_TYPES.getField("fixed").schema(), new byte[] {1, -2, 3, (byte) 0xff}));
+    record.put("enum", new GenericData.EnumSymbol(ALL_TYPES.getField("enum").schema(), "HEARTS"));
+    record.put("array", Arrays.asList(1.5d, null, -0.0d));
+    record.put("map", map);
+    record.put("optionalString", null);
+    record.put("optionalRecord", nested);
+
+    byte[] data = serialize(ALL_TYPES, record);
+    assertSameAsGenericRecordString(data, ALL_TYPES, ALL_TYPES, true);
+    // decimals stay bytes and fixed when no conversion is registered
+    assertSameAsGenericRecordString(data, ALL_TYPES, ALL_TYPES, false);
+  }
+
+  @Test
+  public void testSchemaResolution() throws IOException {
+    Schema writerSchema =
+        SchemaBuilder.record("Resolution")
+            .fields()
+            .requiredInt("promoted")
+            .requiredString("removed")
+            .requiredString("kept")
+            .endRecord();
+    Schema readerSchema =
+        SchemaBuilder.record("Resolution")
+            .fields()
+            .requiredString("kept")
+            .name("added")
+            .type()
+            .doubleType()
+            .doubleDefault(2.5)
+            .requiredLong("promoted")
+            .endRecord();
+
+    GenericRecord record = new GenericData.Record(writerSchema);
+    record.put("promoted", 10);
+    record.put("removed", "gone");
+    record.put("kept", "here");
+
+    byte[] data = serialize(writerSchema, record);
+    JsonNode result = assertSameAsGenericRecordString(data, writerSchema, readerSchema, true);
+    Assert.assertEquals("{\"kept\":\"here\",\"added\":2.5,\"promoted\":10}", result.toString());
+  }
+
+  @Test
+  public void testReaderIsReusedAcrossRecords() throws IOException {
+    AvroJsonDatumReader reader = new AvroJsonDatumReader(NESTED, NESTED, true);
+    for (long i = 0; i < 10; i++) {
+      GenericRecord record = new GenericData.Record(NESTED);
+      record.put("name", "name" + i);
+      record.put("count", i % 2 == 0 ? null : i);
+      byte[] data = serialize(NESTED, record);
+      Assert.assertEquals(
+          mapper.readTree(record.toString()).toString(),
+          reader.read(null, DecoderFactory.get().binaryDecoder(data, null)).toString());
+    }
+  }
+
+  @Test
+  public void testIsSupported() {
+    Assert.assertTrue(AvroJsonDatumReader.isSupported(NESTED));
+    Assert.assertFalse(AvroJsonDatumReader.isSupported(Schema.create(Schema.Type.STRING)));
+  }
+
+  private static JsonNode assertSameAsGenericRecordString(
+      byte[] data, Schema writerSchema, Schema readerSchema, boolean decimalConversion)
+      throws IOException {
+    GenericData genericData = new GenericData();
+    if (decimalConversion) {
+      genericData.addLogicalTypeConversion(new Conversions.DecimalConversion());
+    }
+    GenericRecord datum =
+        new GenericDatumReader<GenericRecord>(writerSchema, readerSchema, genericData)
+            .read(null, DecoderFactory.get().binaryDecoder(data, null));
+    JsonNode expected = mapper.readTree(datum.toString());
+
+    JsonNode actual =
+        new AvroJsonDatumReader(writerSchema, readerSchema, decimalConversion)
+            .read(null, DecoderFactory.get().binaryDecoder(data, null));
+
+    Assert.assertEquals(expected, actual);
+    Assert.assertEquals(expected.toString(), actual.toString());
+    return actual;
+  }
+
+  private static byte[] serialize(Schema schema, GenericRecord record) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+    new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+    encoder.flush();
+    return out.toByteArray();
+  }
+}
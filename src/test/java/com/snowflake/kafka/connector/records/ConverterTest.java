@@ -60,6 +60,7 @@ import org.apache.kafka.connect.data.SchemaAndValue;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.storage.SimpleHeaderConverter;
 import org.junit.Assert;
 import org.junit.Test;
@@ -249,6 +250,42 @@ public class ConverterTest {
     assert content.getData()[0].toString().equals("{\"bytesDecimal\":90.0}");
   }
 
+  @Test
+  public void testJsonConverterLazyParsing() {
+    SnowflakeConverter converter = new SnowflakeJsonConverter();
+    converter.configure(
+        Collections.singletonMap(SnowflakeJsonConverter.LAZY_PARSING, "true"), false);
+
+    String json = "{ \"str\" : \"test\", \"arr\" : [1, 2.50, null] }";
+    SnowflakeRecordContent content =
+        (SnowflakeRecordContent)
+            converter.toConnectData("test", json.getBytes(StandardCharsets.UTF_8)).value();
+    // kept as received until its tree is needed
+    Assert.assertEquals(json, content.getRawJson().getValue());
+    Assert.assertEquals(
+        "{\"str\":\"test\",\"arr\":[1,2.5,null]}", content.getData()[0].toString());
+
+    SinkRecord record =
+        new SinkRecord("test", 0, null, null, new SnowflakeJsonSchema(), content, 1);
+    RecordService service = new RecordService();
+    Assert.assertEquals(
+        "{\"content\":" + json + ",\"meta\":{\"topic\":\"test\",\"offset\":1,\"partition\":0}}",
+        service.getProcessedRecordForSnowpipe(record));
+
+    // parsed as before when the bytes can not be written as is
+    for (String input : new String[] {"{\"a\":1,\"a\":2}", "{\"a\":1} {}", "\ufeff{}"}) {
+      content =
+          (SnowflakeRecordContent)
+              converter.toConnectData("test", input.getBytes(StandardCharsets.UTF_8)).value();
+      Assert.assertNull(content.getRawJson());
+      Assert.assertFalse(content.isBroken());
+    }
+    content =
+        (SnowflakeRecordContent)
+            converter.toConnectData("test", "fasfas".getBytes(StandardCharsets.UTF_8)).value();
+    Assert.assertTrue(content.isBroken());
+  }
+
   @Test
   public void testBrokenRecord() throws IOException {
     byte[] data = "fasfas".getBytes(StandardCharsets.UTF_8);
@@ -258,4 +258,38 @@ public class MetaColumnTest {
     content = (SnowflakeRecordContent) record.value();
     assert content.getSchemaID() == 1;
   }
+
+  @Test
+  public void testMetadataJson() throws IOException {
+    SnowflakeConverter converter = new SnowflakeJsonConverter();
+    RecordService service = new RecordService();
+    SchemaAndValue input =
+        converter.toConnectData(topic, "{\"name\":\"test\"}".getBytes(StandardCharsets.UTF_8));
+    SchemaAndValue key =
+        converter.toConnectData(topic, "{\"id\":[1,2]}".getBytes(StandardCharsets.UTF_8));
+
+    for (long offset = 0; offset < 2; offset++) {
+      SinkRecord record =
+          new SinkRecord(
+              "topic\"name",
+              partition,
+              key.schema(),
+              key.value(),
+              input.schema(),
+              input.value(),
+              offset,
+              1234L,
+              TimestampType.CREATE_TIME);
+      record.headers().addString("header", "value");
+
+      // metadata of every record is written as a separate object with the same fields order
+      assert service
+          .getProcessedRecordForSnowpipe(record)
+          .equals(
+              "{\"content\":{\"name\":\"test\"},\"meta\":{\"topic\":\"topic\\\"name\",\"offset\":"
+                  + offset
+                  + ",\"partition\":0,\"CreateTime\":1234,\"key\":{\"id\":[1,2]},"
+                  + "\"headers\":{\"header\":\"value\"}}}");
+    }
+  }
 }
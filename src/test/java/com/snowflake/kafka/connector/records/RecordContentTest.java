@@ -1,10 +1,12 @@
 package com.snowflake.kafka.connector.records;
 
 import com.snowflake.kafka.connector.SnowflakeSinkConnectorConfig;
+import com.snowflake.kafka.connector.Utils;
 import com.snowflake.kafka.connector.internal.SnowflakeErrors;
 import com.snowflake.kafka.connector.internal.SnowflakeKafkaConnectorException;
 import com.snowflake.kafka.connector.internal.TestUtils;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -15,10 +17,12 @@ import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.JsonProcessingE
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.core.type.TypeReference;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
 import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.data.Decimal;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaAndValue;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Timestamp;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.Test;
 
@@ -191,7 +195,7 @@ public class RecordContentTest {
             null,
             null,
             partition);
-    service.putKey(record, mapper.createObjectNode());
+    service.getProcessedRecordForSnowpipe(record);
   }
 
   @Test(expected = SnowflakeKafkaConnectorException.class)
@@ -201,7 +205,7 @@ public class RecordContentTest {
     SinkRecord record =
         new SinkRecord(
             topic, partition, new SnowflakeJsonSchema(), "string", null, null, partition);
-    service.putKey(record, mapper.createObjectNode());
+    service.getProcessedRecordForSnowpipe(record);
   }
 
   @Test(expected = SnowflakeKafkaConnectorException.class)
@@ -249,11 +253,78 @@ public class RecordContentTest {
             topic, partition, Schema.STRING_SCHEMA, "string", sv.schema(), sv.value(), partition);
 
     Map<String, Object> got = service.getProcessedRecordForStreamingIngest(record);
-    // each field should be dumped into string format
     // json string should not be enclosed in additional brackets
+    // numbers are given as Java values instead of being dumped into string format
     // a non-double-quoted column name will be transformed into uppercase
     assert got.get("\"NAME\"").equals("sf");
-    assert got.get("\"ANSWER\"").equals("42");
+    assert got.get("\"ANSWER\"").equals(42L);
+  }
+
+  @Test
+  public void testSchematizationStructConvertedDirectly() throws JsonProcessingException {
+    RecordService service = new RecordService();
+    service.setEnableSchematization(true);
+
+    Schema schema =
+        SchemaBuilder.struct()
+            .field("id", Schema.INT64_SCHEMA)
+            .field("score", Schema.FLOAT64_SCHEMA)
+            .field("active", Schema.BOOLEAN_SCHEMA)
+            .field("amount", Decimal.schema(2))
+            .field("payload", Schema.BYTES_SCHEMA)
+            .field("created", Timestamp.SCHEMA)
+            .field("tags", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+            .field("\"MiXeD\"", Schema.OPTIONAL_STRING_SCHEMA)
+            .build();
+    Struct value =
+        new Struct(schema)
+            .put("id", 42L)
+            .put("score", 0.5)
+            .put("active", true)
+            .put("amount", new BigDecimal("12.34"))
+            .put("payload", new byte[] {1, 2, 3})
+            .put("created", new java.util.Date(0))
+            .put("tags", Arrays.asList("a", "b"));
+    SinkRecord record =
+        new SinkRecord(topic, partition, Schema.STRING_SCHEMA, "string", schema, value, partition);
+    assert service.isValueConvertedDirectly(record);
+
+    Map<String, Object> got = service.getProcessedRecordForStreamingIngest(record);
+    assert got.containsKey("\"MiXeD\"") && got.get("\"MiXeD\"") == null;
+    assert got.containsKey(Utils.TABLE_COLUMN_METADATA);
+    assert got.get("\"ID\"").equals(42L);
+    assert got.get("\"SCORE\"").equals(0.5);
+    assert got.get("\"ACTIVE\"").equals(true);
+    assert got.get("\"AMOUNT\"").equals(new BigDecimal("12.34"));
+    assert Arrays.equals((byte[]) got.get("\"PAYLOAD\""), new byte[] {1, 2, 3});
+    // logical types other than decimal and nested values are still given as strings
+    assert got.get("\"CREATED\"") instanceof String;
+    assert got.get("\"TAGS\"").equals("[\"a\",\"b\"]");
+
+    // the same value serialized in Json gives the same columns, with numbers, booleans and bytes
+    // still given as Java values
+    SinkRecord jsonRecord =
+        new SinkRecord(
+            topic,
+            partition,
+            Schema.STRING_SCHEMA,
+            "string",
+            new SnowflakeJsonSchema(),
+            new SnowflakeRecordContent(schema, value, true),
+            partition);
+    Map<String, Object> gotFromJson = service.getProcessedRecordForStreamingIngest(jsonRecord);
+    assert gotFromJson.keySet().equals(got.keySet());
+    assert gotFromJson.get("\"ID\"").equals(42L);
+    assert gotFromJson.get("\"SCORE\"").equals(0.5);
+    assert gotFromJson.get("\"ACTIVE\"").equals(true);
+    assert gotFromJson.get("\"AMOUNT\"").equals(new BigDecimal("12.34"));
+    assert Arrays.equals((byte[]) gotFromJson.get("\"PAYLOAD\""), new byte[] {1, 2, 3});
+    // timestamps are numbers of milliseconds in the Json tree
+    assert gotFromJson.get("\"CREATED\"").equals(0L);
+    assert gotFromJson.get("\"TAGS\"").equals(got.get("\"TAGS\""));
+    assert gotFromJson
+        .get(Utils.TABLE_COLUMN_METADATA)
+        .equals(got.get(Utils.TABLE_COLUMN_METADATA));
   }
 
   @Test
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.snowflake.kafka.connector.records;
+
+import com.snowflake.kafka.connector.internal.TestUtils;
+import io.confluent.connect.avro.AvroConverter;
+import io.confluent.kafka.schemaregistry.client.MockSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Conversions;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link SnowflakeAvroConverter#toConnectData(String, byte[])} which decodes Avro straight
+ * into JsonNode against the previous conversion through {@link GenericRecord#toString()} and
+ * {@link ObjectMapper#readTree(String)}.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=
+ * com.snowflake.kafka.connector.records.SnowflakeAvroConverterBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnowflakeAvroConverterBenchmark {
+  private static final String TOPIC = "benchmark";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Param({"10", "300"})
+  public int noOfColumns;
+
+  private SnowflakeAvroConverter converter;
+
+  private Schema writerSchema;
+
+  private byte[] message;
+
+  @Setup
+  public void setup() throws Exception {
+    SinkRecord record = TestUtils.createWideStructSinkRecords(0, 1, TOPIC, 0, noOfColumns).get(0);
+
+    SchemaRegistryClient schemaRegistry = new MockSchemaRegistryClient();
+    AvroConverter avroConverter = new AvroConverter(schemaRegistry);
+    avroConverter.configure(
+        Collections.singletonMap("schema.registry.url", "http://fake-url"), false);
+    this.message = avroConverter.fromConnectData(TOPIC, record.valueSchema(), record.value());
+
+    this.converter = new SnowflakeAvroConverter();
+    this.converter.setSchemaRegistry(schemaRegistry);
+    this.writerSchema = schemaRegistry.getById(ByteBuffer.wrap(message, 1, 4).getInt());
+  }
+
+  @Benchmark
+  public Object directDecoding() {
+    return converter.toConnectData(TOPIC, message);
+  }
+
+  @Benchmark
+  public Object genericRecordToString() throws Exception {
+    final GenericData genericData = new GenericData();
+    genericData.addLogicalTypeConversion(new Conversions.DecimalConversion());
+    GenericRecord datum =
+        new GenericDatumReader<GenericRecord>(writerSchema, writerSchema, genericData)
+            .read(
+                null,
+                DecoderFactory.get()
+                    .binaryDecoder(
+                        new ByteArrayInputStream(message, 5, message.length - 5), null));
+    return new SnowflakeRecordContent(MAPPER.readTree(datum.toString()), 1);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(SnowflakeAvroConverterBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
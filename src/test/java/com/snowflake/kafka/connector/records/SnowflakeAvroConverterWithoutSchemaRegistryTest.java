@@ -0,0 +1,177 @@
+package com.snowflake.kafka.connector.records;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.file.SeekableByteArrayInput;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SnowflakeAvroConverterWithoutSchemaRegistryTest {
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private static final Schema DECIMAL_BYTES =
+      LogicalTypes.decimal(20, 4).addToSchema(Schema.create(Schema.Type.BYTES));
+
+  private static final Schema SCHEMA =
+      SchemaBuilder.record("Person")
+          .fields()
+          .requiredString("name")
+          .requiredInt("age")
+          .optionalDouble("score")
+          .name("decimal")
+          .type(DECIMAL_BYTES)
+          .noDefault()
+          .name("tags")
+          .type()
+          .array()
+          .items()
+          .stringType()
+          .noDefault()
+          .endRecord();
+
+  @Test
+  public void testNullCodecMatchesDataFileReader() throws IOException {
+    byte[] data = writeContainer(SCHEMA, createRecords(5), CodecFactory.nullCodec(), 0);
+    assertSameAsDataFileReader(new SnowflakeAvroConverterWithoutSchemaRegistry(), data, 5);
+  }
+
+  @Test
+  public void testDeflateCodecMatchesDataFileReader() throws IOException {
+    byte[] data = writeContainer(SCHEMA, createRecords(5), CodecFactory.deflateCodec(6), 0);
+    assertSameAsDataFileReader(new SnowflakeAvroConverterWithoutSchemaRegistry(), data, 5);
+  }
+
+  @Test
+  public void testMultipleBlocks() throws IOException {
+    // the smallest sync interval flushes a block after every record
+    List<CodecFactory> codecs =
+        Arrays.asList(CodecFactory.nullCodec(), CodecFactory.deflateCodec(1));
+    for (CodecFactory codec : codecs) {
+      byte[] data = writeContainer(SCHEMA, createRecords(50), codec, 32);
+      assertSameAsDataFileReader(new SnowflakeAvroConverterWithoutSchemaRegistry(), data, 50);
+    }
+  }
+
+  @Test
+  public void testNonRecordSchema() throws IOException {
+    Schema schema = Schema.createMap(Schema.create(Schema.Type.LONG));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<Object> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema))) {
+      writer.create(schema, out);
+      writer.append(Collections.singletonMap("key", 1L));
+    }
+    assertSameAsDataFileReader(
+        new SnowflakeAvroConverterWithoutSchemaRegistry(), out.toByteArray(), 1);
+  }
+
+  @Test
+  public void testSchemaCacheIsReusedAndBounded() throws IOException {
+    SnowflakeAvroConverterWithoutSchemaRegistry converter =
+        new SnowflakeAvroConverterWithoutSchemaRegistry();
+    byte[] data = writeContainer(SCHEMA, createRecords(1), CodecFactory.nullCodec(), 0);
+    for (int i = 0; i < 10; i++) {
+      assertSameAsDataFileReader(converter, data, 1);
+    }
+    Assert.assertEquals(1, converter.getCachedSchemaCount());
+
+    for (int i = 0; i < SnowflakeAvroConverterWithoutSchemaRegistry.MAX_CACHED_SCHEMAS * 2; i++) {
+      Schema schema = SchemaBuilder.record("Record" + i).fields().requiredInt("id").endRecord();
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("id", i);
+      byte[] single =
+          writeContainer(schema, Collections.singletonList(record), CodecFactory.nullCodec(), 0);
+      assertSameAsDataFileReader(converter, single, 1);
+    }
+    Assert.assertEquals(
+        SnowflakeAvroConverterWithoutSchemaRegistry.MAX_CACHED_SCHEMAS,
+        converter.getCachedSchemaCount());
+  }
+
+  @Test
+  public void testCorruptedSyncIsBroken() throws IOException {
+    byte[] data = writeContainer(SCHEMA, createRecords(2), CodecFactory.nullCodec(), 0);
+    data[data.length - 1] ^= 1;
+    SnowflakeRecordContent content =
+        (SnowflakeRecordContent)
+            new SnowflakeAvroConverterWithoutSchemaRegistry().toConnectData("test", data).value();
+    Assert.assertTrue(content.isBroken());
+    Assert.assertArrayEquals(data, content.getBrokenData());
+  }
+
+  private static void assertSameAsDataFileReader(
+      SnowflakeAvroConverterWithoutSchemaRegistry converter, byte[] data, int expectedCount)
+      throws IOException {
+    List<JsonNode> expected = new ArrayList<>();
+    try (DataFileReader<Object> reader =
+        new DataFileReader<>(new SeekableByteArrayInput(data), new GenericDatumReader<>())) {
+      while (reader.hasNext()) {
+        expected.add(mapper.readTree(reader.next().toString()));
+      }
+    }
+
+    SnowflakeRecordContent content =
+        (SnowflakeRecordContent) converter.toConnectData("test", data).value();
+    Assert.assertFalse(content.isBroken());
+    JsonNode[] actual = content.getData();
+    Assert.assertEquals(expectedCount, actual.length);
+    for (int i = 0; i < actual.length; i++) {
+      Assert.assertEquals(expected.get(i), actual[i]);
+      Assert.assertEquals(expected.get(i).toString(), actual[i].toString());
+    }
+  }
+
+  private static List<GenericRecord> createRecords(int count) {
+    Conversions.DecimalConversion decimalConversion = new Conversions.DecimalConversion();
+    List<GenericRecord> records = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      GenericRecord record = new GenericData.Record(SCHEMA);
+      record.put("name", "name \"" + i + "\" \u00e9");
+      record.put("age", i);
+      record.put("score", i % 2 == 0 ? null : i * 1.5);
+      ByteBuffer decimal =
+          decimalConversion.toBytes(
+              new BigDecimal(i).movePointLeft(4), DECIMAL_BYTES, DECIMAL_BYTES.getLogicalType());
+      record.put("decimal", decimal);
+      record.put("tags", Arrays.asList("tag" + i, "other"));
+      records.add(record);
+    }
+    return records;
+  }
+
+  private static byte[] writeContainer(
+      Schema schema, List<GenericRecord> records, CodecFactory codec, int syncInterval)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.setCodec(codec);
+      if (syncInterval > 0) {
+        writer.setSyncInterval(syncInterval);
+      }
+      writer.create(schema, out);
+      for (GenericRecord record : records) {
+        writer.append(record);
+      }
+    }
+    return out.toByteArray();
+  }
+}
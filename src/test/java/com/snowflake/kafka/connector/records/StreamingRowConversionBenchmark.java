@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Snowflake Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.snowflake.kafka.connector.records;
+
+import com.snowflake.kafka.connector.Utils;
+import com.snowflake.kafka.connector.internal.TestUtils;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.JsonNode;
+import net.snowflake.client.jdbc.internal.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per record cost of converting schematized records into rows for insertRows API,
+ * together with the parsing the Streaming Ingest SDK does for the values of numeric and boolean
+ * columns.
+ *
+ * <p>{@link #jsonStringValues} mimics the previous conversion which built the Json tree of every
+ * Struct and dumped every column that is not a Json string into a string, parsed again by the SDK
+ * according to the type of the column. {@link #jsonTypedValues} is the current conversion of
+ * records whose value is already a Json tree, which gives numbers and booleans as Java values.
+ * {@link #typedValues} is the current conversion of Structs, which goes from the Struct to the row
+ * directly.
+ *
+ * <p>Run with: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=
+ * com.snowflake.kafka.connector.records.StreamingRowConversionBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamingRowConversionBenchmark {
+  private static final String TOPIC = "benchmark";
+  private static final int PARTITION = 0;
+  private static final int RECORDS_PER_BATCH = 100;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Param({"10", "300"})
+  public int noOfColumns;
+
+  private RecordService recordService;
+
+  private Schema valueSchema;
+
+  private List<SinkRecord> records;
+
+  @Setup
+  public void setup() {
+    this.recordService = new RecordService();
+    this.recordService.setEnableSchematization(true);
+    this.records =
+        TestUtils.createWideStructSinkRecords(0, RECORDS_PER_BATCH, TOPIC, PARTITION, noOfColumns);
+    this.valueSchema = records.get(0).valueSchema();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BATCH)
+  public void jsonStringValues(Blackhole blackhole) throws Exception {
+    for (SinkRecord record : records) {
+      JsonNode node = RecordService.convertToJson(valueSchema, record.value(), true);
+      for (Field field : valueSchema.fields()) {
+        JsonNode columnNode = node.get(field.name());
+        String value =
+            columnNode.isTextual() ? columnNode.textValue() : MAPPER.writeValueAsString(columnNode);
+        // the SDK parses the strings of numeric and boolean columns
+        switch (field.schema().type()) {
+          case INT64:
+            blackhole.consume(Long.parseLong(value));
+            break;
+          case FLOAT64:
+            blackhole.consume(Double.parseDouble(value));
+            break;
+          case BOOLEAN:
+            blackhole.consume(Boolean.parseBoolean(value));
+            break;
+          default:
+            blackhole.consume(value);
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BATCH)
+  public void jsonTypedValues(Blackhole blackhole) throws Exception {
+    for (SinkRecord record : records) {
+      // the Json tree of the value was built before the row
+      Map<String, Object> row = recordService.getProcessedRecordForStreamingIngest(wrap(record));
+      for (Field field : valueSchema.fields()) {
+        blackhole.consume(row.get(Utils.quoteNameIfNeeded(field.name())));
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(RECORDS_PER_BATCH)
+  public void typedValues(Blackhole blackhole) throws Exception {
+    for (SinkRecord record : records) {
+      Map<String, Object> row = recordService.getProcessedRecordForStreamingIngest(record);
+      for (Field field : valueSchema.fields()) {
+        blackhole.consume(row.get(Utils.quoteNameIfNeeded(field.name())));
+      }
+    }
+  }
+
+  private static SinkRecord wrap(SinkRecord record) {
+    return new SinkRecord(
+        record.topic(),
+        record.kafkaPartition(),
+        record.keySchema(),
+        record.key(),
+        new SnowflakeJsonSchema(),
+        new SnowflakeRecordContent(record.valueSchema(), record.value(), true),
+        record.kafkaOffset());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(StreamingRowConversionBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
@@ -0,0 +1,49 @@
+package com.snowflake.kafka.connector.records;
+
+import com.snowflake.kafka.connector.internal.SnowflakeErrors;
+import com.snowflake.kafka.connector.internal.SnowflakeKafkaConnectorException;
+import java.util.Map;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StructRowConverterTest {
+
+  @Test
+  public void testSchemasAreCompiledOncePerInstance() throws Exception {
+    StructRowConverter converter = new StructRowConverter();
+    Schema schema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA).build();
+    Schema equalSchema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA).build();
+
+    converter.convert(schema, new Struct(schema).put("id", 1));
+    converter.convert(schema, new Struct(schema).put("id", 2));
+    Assert.assertEquals(1, converter.getCachedSchemaCount());
+
+    // schemas are cached by identity
+    Map<String, Object> row = converter.convert(equalSchema, new Struct(equalSchema).put("id", 3));
+    Assert.assertEquals(2, converter.getCachedSchemaCount());
+    Assert.assertEquals(3, row.get("\"ID\""));
+
+    for (int i = 0; i < StructRowConverter.MAX_CACHED_SCHEMAS; i++) {
+      Schema newSchema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA).build();
+      converter.convert(newSchema, new Struct(newSchema).put("id", i));
+    }
+    Assert.assertTrue(converter.getCachedSchemaCount() <= StructRowConverter.MAX_CACHED_SCHEMAS);
+  }
+
+  @Test
+  public void testMismatchingSchema() throws Exception {
+    StructRowConverter converter = new StructRowConverter();
+    Schema schema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA).build();
+    Schema otherSchema = SchemaBuilder.struct().field("id", Schema.INT32_SCHEMA).build();
+
+    try {
+      converter.convert(otherSchema, new Struct(schema).put("id", 1));
+      Assert.fail("struct of another schema should not be converted");
+    } catch (SnowflakeKafkaConnectorException e) {
+      assert e.checkErrorCode(SnowflakeErrors.ERROR_5015);
+    }
+  }
+}